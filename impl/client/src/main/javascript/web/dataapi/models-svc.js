@@ -129,6 +129,93 @@ pentaho.pda.model.svc.prototype.discoverModelDetail = function() {
     
 }
     
+// get the categories of the model with their number of columns, but without the columns. Meant for models too wide
+// to load at once with discoverModelDetail; the columns are loaded per category with loadCategoryColumns.
+pentaho.pda.model.svc.prototype.discoverModelSummary = function() {
+
+	var url = this.handler.SERVICE_URL+'?action=getmodel&summary=true&id='+escape(this.id);
+	var resultStr = pentahoPost( url, '', null, 'text/text' );
+
+    this.state = JSON.parse(resultStr);
+
+    this.categories = this.state.categories;
+    this.capabilities = this.state.capabilities;
+    if( this.capabilities == null ) {
+        this.capabilities = {};
+    }
+    this.elements = [];
+    this.categoryColumns = {};
+}
+
+// load the columns of one or more categories in one request and add them to the elements of the model. Categories
+// that are already loaded are not asked for again. Returns an object that maps each category id to its columns.
+pentaho.pda.model.svc.prototype.loadCategoryColumns = function( categoryIds ) {
+        if (!this.categoryColumns) {
+            this.categoryColumns = {};
+        }
+        var params = "";
+        for (var i = 0; i < categoryIds.length; i++) {
+            if (!this.categoryColumns[categoryIds[i]]) {
+                params += "&category="+encodeURIComponent(categoryIds[i]);
+            }
+        }
+        if (params) {
+            var resultStr = pentahoPost( this.handler.SERVICE_URL, "action=columns&id="+encodeURIComponent(this.id)+params, null, 'text/text' );
+            var loaded = JSON.parse(resultStr);
+            for (var categoryId in loaded) {
+                this.categoryColumns[categoryId] = loaded[categoryId];
+                for (var j = 0; j < loaded[categoryId].length; j++) {
+                    this.elements.push(loaded[categoryId][j]);
+                }
+            }
+        }
+        var result = {};
+        for (var k = 0; k < categoryIds.length; k++) {
+            result[categoryIds[k]] = this.categoryColumns[categoryIds[k]] || [];
+        }
+        return result;
+}
+
+// bring the elements of the model up to date with the changes since the version loaded last, without loading the
+// whole model again. The first call loads all the elements. Returns the diff, whose full flag is set if the elements
+// were replaced rather than updated.
+pentaho.pda.model.svc.prototype.refreshModelDetail = function() {
+
+	var url = this.handler.SERVICE_URL+'?action=modeldiff&id='+escape(this.id);
+	if (this.version) {
+	    url += '&version='+encodeURIComponent(this.version);
+	}
+	var diff = JSON.parse(pentahoPost( url, '', null, 'text/text' ));
+
+    var key = function(element) {
+        return (element.isQueryElement ? 'column:' + element.parentId : 'category:') + '/' + element.id;
+    };
+    if (diff.full || !this.elements) {
+        this.elements = diff.added;
+    } else {
+        var changes = {}, i;
+        for (i = 0; i < diff.removed.length; i++) {
+            changes[key(diff.removed[i])] = null;
+        }
+        for (i = 0; i < diff.changed.length; i++) {
+            changes[key(diff.changed[i])] = diff.changed[i];
+        }
+        var elements = [];
+        for (i = 0; i < this.elements.length; i++) {
+            var k = key(this.elements[i]);
+            if (!changes.hasOwnProperty(k)) {
+                elements.push(this.elements[i]);
+            } else if (changes[k]) {
+                elements.push(changes[k]);
+            }
+        }
+        this.elements = elements.concat(diff.added);
+    }
+    this.capabilities = diff.capabilities || {};
+    this.version = diff.version;
+    return diff;
+}
+
 pentaho.pda.model.svc.prototype.getAllColumns = function() {
         var columns = new Array();
 
@@ -153,6 +240,43 @@ pentaho.pda.model.svc.prototype.searchColumn = function( column, searchStr, rowL
 pentaho.pda.model.svc.prototype.getAllValuesForColumn = function( column, rowLimit ) {
         return this.searchColumn( column, undefined, rowLimit );
     }
+
+// get the distinct values of a column, served from a cache on the server. options.prefix or options.contains
+// restrict the values, options.limit caps their number. The result is { columnId, values, more }, where more tells
+// whether there are more matching values than the ones returned.
+pentaho.pda.model.svc.prototype.getColumnValues = function( column, options, callback ) {
+        options = options || {};
+
+        var handleValuesCallback = dojo.hitch(this, function(resultJson) {
+          var result = JSON.parse(resultJson);
+          if (callback) {
+            callback(result);
+          }
+          return result;
+        });
+
+        try {
+            var query = "action=values&id="+encodeURIComponent(this.id)+"&columnid="+encodeURIComponent(column.id);
+            if (column.parentId) {
+                query += "&parentid="+encodeURIComponent(column.parentId);
+            }
+            if (options.prefix) {
+                query += "&prefix="+encodeURIComponent(options.prefix);
+            } else if (options.contains) {
+                query += "&contains="+encodeURIComponent(options.contains);
+            }
+            if (options.limit) {
+                query += "&limit="+options.limit;
+            }
+            var resultJson = pentahoPost( this.handler.SERVICE_URL, query, callback ? handleValuesCallback : undefined, 'text/text');
+            if (!callback) {
+              return handleValuesCallback(resultJson);
+            }
+        } catch (e) {
+            alert(e.message);
+        }
+        return null;
+    }
     
     // create a new query
 pentaho.pda.model.svc.prototype.createQuery = function() {
@@ -225,6 +349,338 @@ pentaho.pda.model.svc.prototype.submit = function( jsonString, rowLimit, callbac
 
     }
 
+// submit a query and get its result in the compact encoding, which sends every distinct string of a column once and
+// numbers as flat arrays; much smaller for results with dimension columns. columns optionally lists the ids of the
+// columns to send; the server projects them from its cached result of the full query. The result is decoded into
+// the same pentaho.DataTable that submit returns.
+pentaho.pda.model.svc.prototype.submitCompact = function( jsonString, rowLimit, columns, callback ) {
+        if (!rowLimit) {
+            rowLimit = -1;
+        }
+        var handleResultCallback = dojo.hitch(this, function(resultJson) {
+          var jsonTable = pentaho.pda.model.svc.decodeCompactTable(JSON.parse(resultJson));
+          var result = new pentaho.DataTable(jsonTable);
+          if (callback) {
+            callback(result);
+          }
+          return result;
+        });
+
+        try {
+            var query = "action=query&encoding=compact&rowlimit="+rowLimit+"&query="+jsonString;
+            if (columns) {
+                for (var idx = 0; idx < columns.length; idx++) {
+                    query += "&columns="+encodeURIComponent(columns[idx]);
+                }
+            }
+            var resultJson = pentahoPost( this.handler.SERVICE_URL, query, callback ? handleResultCallback : undefined, 'text/text');
+            if (!callback) {
+              return handleResultCallback(resultJson);
+            }
+        } catch (e) {
+            alert(e.message);
+        }
+        return null;
+    }
+
+// decode a table in the compact encoding into the { cols, rows } JSON of a DataTable. Each entry of data holds one
+// column: values are the numbers of the rows, formatted the index of each row's string in dictionary, and
+// valueNulls and formattedNulls are base64 bitmaps with bit i%8 of byte i/8 set when row i has no such value.
+// A missing array means no row has such a value. A result the server cut short keeps its truncated flag.
+// Anything that is not a compact table is returned as it is.
+pentaho.pda.model.svc.decodeCompactTable = function( compact ) {
+        if (!compact || compact.encoding !== 'compact') {
+            return compact;
+        }
+        var readBitmap = function(base64) {
+            if (!base64) {
+                return null;
+            }
+            var chars = atob(base64);
+            var bits = new Array(chars.length);
+            for (var idx = 0; idx < chars.length; idx++) {
+                bits[idx] = chars.charCodeAt(idx);
+            }
+            return bits;
+        };
+        var isNull = function(bits, row) {
+            return bits !== null && (bits[row >> 3] & (1 << (row & 7))) !== 0;
+        };
+
+        var columns = [];
+        for (var col = 0; col < compact.data.length; col++) {
+            var data = compact.data[col];
+            columns.push({
+                values: data.values,
+                valueNulls: readBitmap(data.valueNulls),
+                dictionary: data.dictionary,
+                formatted: data.formatted,
+                formattedNulls: readBitmap(data.formattedNulls)
+            });
+        }
+        var rows = new Array(compact.rowCount);
+        for (var row = 0; row < compact.rowCount; row++) {
+            var cells = new Array(columns.length);
+            for (col = 0; col < columns.length; col++) {
+                var column = columns[col];
+                cells[col] = {
+                    v: column.values && !isNull(column.valueNulls, row) ? column.values[row] : null,
+                    f: column.formatted && !isNull(column.formattedNulls, row) ? column.dictionary[column.formatted[row]] : null
+                };
+            }
+            rows[row] = { c: cells };
+        }
+        var table = { cols: compact.cols, rows: rows };
+        if (compact.truncated) {
+            table.truncated = true;
+        }
+        return table;
+    }
+
+// get one page of the results of a query. The result is held on the server: the first call executes the query
+// and returns a cursor, later calls pass that cursor instead of the query to get other pages without re-executing it.
+// The callback receives { cursor, offset, totalRows, complete, table }.
+pentaho.pda.model.svc.prototype.submitPage = function( jsonString, offset, limit, cursor, callback ) {
+
+        var handlePageCallback = dojo.hitch(this, function(resultJson) {
+          var page = JSON.parse(resultJson);
+          if (page && page.table) {
+            page.table = new pentaho.DataTable(page.table);
+          }
+          if (callback) {
+            callback(page);
+          }
+          return page;
+        });
+
+        try {
+            var url = this.handler.SERVICE_URL;
+            var query = "action=page&offset="+(offset || 0);
+            if (limit) {
+                query += "&limit="+limit;
+            }
+            if (cursor) {
+                query += "&cursor="+encodeURIComponent(cursor);
+            } else {
+                query += "&query="+jsonString;
+            }
+            var resultJson = pentahoPost( url, query, callback ? handlePageCallback : undefined, 'text/text');
+            if (!callback) {
+              return handlePageCallback(resultJson);
+            }
+        } catch (e) {
+            alert(e.message);
+        }
+        return null;
+    }
+
+// count the rows of a query without fetching them. options.maxCount stops counting at that many rows,
+// options.estimate accepts an estimate from the database statistics when the source has one. The result is
+// { count, estimated, more }, where more tells whether counting stopped at maxCount.
+pentaho.pda.model.svc.prototype.countQuery = function( jsonString, options, callback ) {
+        options = options || {};
+
+        var handleCountCallback = dojo.hitch(this, function(resultJson) {
+          var result = JSON.parse(resultJson);
+          if (callback) {
+            callback(result);
+          }
+          return result;
+        });
+
+        try {
+            var query = "action=count&query="+jsonString;
+            if (options.maxCount) {
+                query += "&maxcount="+options.maxCount;
+            }
+            if (options.estimate) {
+                query += "&estimate=true";
+            }
+            var resultJson = pentahoPost( this.handler.SERVICE_URL, query, callback ? handleCountCallback : undefined, 'text/text');
+            if (!callback) {
+              return handleCountCallback(resultJson);
+            }
+        } catch (e) {
+            alert(e.message);
+        }
+        return null;
+    }
+
+// register a query that is run again and again with other parameter values, e.g. on every prompt change. The server
+// checks the query once and holds it in the session; the result is { handle, sourceId, parameters }, where
+// parameters lists the names that executePrepared can bind values to.
+pentaho.pda.model.svc.prototype.prepareQuery = function( jsonString, callback ) {
+        var handlePrepareCallback = dojo.hitch(this, function(resultJson) {
+          var result = JSON.parse(resultJson);
+          if (callback) {
+            callback(result);
+          }
+          return result;
+        });
+
+        try {
+            var resultJson = pentahoPost( this.handler.SERVICE_URL, "action=prepare&query="+encodeURIComponent(jsonString), callback ? handlePrepareCallback : undefined, 'text/text');
+            if (!callback) {
+              return handlePrepareCallback(resultJson);
+            }
+        } catch (e) {
+            alert(e.message);
+        }
+        return null;
+    }
+
+// run a prepared query. values maps parameter names to a value or an array of values; parameters without a value
+// keep the one they were prepared with. The result is the same pentaho.DataTable that submit returns.
+pentaho.pda.model.svc.prototype.executePrepared = function( handle, values, rowLimit, callback ) {
+        if (!rowLimit) {
+            rowLimit = -1;
+        }
+        var handleResultCallback = dojo.hitch(this, function(resultJson) {
+          var result = new pentaho.DataTable(JSON.parse(resultJson));
+          if (callback) {
+            callback(result);
+          }
+          return result;
+        });
+
+        try {
+            var query = "action=execute&handle="+encodeURIComponent(handle)+"&rowlimit="+rowLimit;
+            if (values) {
+                query += "&parameters="+encodeURIComponent(JSON.stringify(values));
+            }
+            var resultJson = pentahoPost( this.handler.SERVICE_URL, query, callback ? handleResultCallback : undefined, 'text/text');
+            if (!callback) {
+              return handleResultCallback(resultJson);
+            }
+        } catch (e) {
+            alert(e.message);
+        }
+        return null;
+    }
+
+// release a prepared query held on the server
+pentaho.pda.model.svc.prototype.closePrepared = function( handle ) {
+        if (handle) {
+            pentahoPost( this.handler.SERVICE_URL, "action=closeprepared&handle="+encodeURIComponent(handle), function() {}, 'text/text');
+        }
+    }
+
+// search the names and descriptions of the models, categories and columns the user can see. The result is
+// { total, offset, hits } where each hit is { type, modelId, modelName, categoryId, id, name, description, locale,
+// score } and type is one of model, category or column; hits are sorted by descending score.
+pentaho.pda.model.svc.prototype.searchCatalog = function( text, offset, limit, callback ) {
+        var handleSearchCallback = dojo.hitch(this, function(resultJson) {
+          var result = JSON.parse(resultJson);
+          if (callback) {
+            callback(result);
+          }
+          return result;
+        });
+
+        var params = "action=search&q="+encodeURIComponent(text)+"&offset="+(offset || 0);
+        if (limit) {
+            params += "&limit="+limit;
+        }
+        try {
+            var resultJson = pentahoPost( this.handler.SERVICE_URL, params, callback ? handleSearchCallback : undefined, 'text/text');
+            if (!callback) {
+              return handleSearchCallback(resultJson);
+            }
+        } catch (e) {
+            alert(e.message);
+        }
+        return null;
+    }
+
+// release a query result held on the server
+pentaho.pda.model.svc.prototype.closeCursor = function( cursor ) {
+        if (cursor) {
+            pentahoPost( this.handler.SERVICE_URL, "action=closecursor&cursor="+encodeURIComponent(cursor), function() {}, 'text/text');
+        }
+    }
+
+// run several queries in one request, e.g. for the panels of a dashboard. Each entry of queries is
+// { id, query, rowLimit } where query is the JSON string that submit would send. The server runs the queries
+// concurrently; the callback receives an object that maps each id to { id, complete, table } or { id, error }.
+pentaho.pda.model.svc.prototype.submitBatch = function( queries, callback ) {
+
+        var handleBatchCallback = dojo.hitch(this, function(resultJson) {
+          var results = {};
+          var list = JSON.parse(resultJson);
+          for (var i = 0; list && i < list.length; i++) {
+            if (list[i].table) {
+              list[i].table = new pentaho.DataTable(list[i].table);
+            }
+            results[list[i].id] = list[i];
+          }
+          if (callback) {
+            callback(results);
+          }
+          return results;
+        });
+
+        try {
+            var items = [];
+            for (var i = 0; i < queries.length; i++) {
+                var rowLimit = queries[i].rowLimit ? queries[i].rowLimit : -1;
+                items.push('{"id":'+JSON.stringify(String(queries[i].id))+',"rowLimit":'+rowLimit+',"query":'+queries[i].query+'}');
+            }
+            var query = "action=batchquery&queries="+encodeURIComponent("["+items.join(",")+"]");
+            var resultJson = pentahoPost( this.handler.SERVICE_URL, query, callback ? handleBatchCallback : undefined, 'text/text');
+            if (!callback) {
+              return handleBatchCallback(resultJson);
+            }
+        } catch (e) {
+            alert(e.message);
+        }
+        return null;
+    }
+
+// start a query in the background. The callback receives the job status { jobId, state, rowCount }; poll it with
+// getJobStatus until the state is DONE, FAILED or CANCELLED, then fetch the result with getJobResult.
+pentaho.pda.model.svc.prototype.submitJob = function( jsonString, callback ) {
+        this.postJobAction( "action=submitjob&query="+encodeURIComponent(jsonString), callback );
+    }
+
+pentaho.pda.model.svc.prototype.getJobStatus = function( jobId, callback ) {
+        this.postJobAction( "action=jobstatus&job="+encodeURIComponent(jobId), callback );
+    }
+
+// the callback receives a page of the result, like submitPage does
+pentaho.pda.model.svc.prototype.getJobResult = function( jobId, offset, limit, callback ) {
+        var query = "action=jobresult&job="+encodeURIComponent(jobId)+"&offset="+(offset || 0);
+        if (limit) {
+            query += "&limit="+limit;
+        }
+        this.postJobAction( query, function(page) {
+          if (page && page.table) {
+            page.table = new pentaho.DataTable(page.table);
+          }
+          if (callback) {
+            callback(page);
+          }
+        });
+    }
+
+// stop a job, e.g. when the user leaves the page
+pentaho.pda.model.svc.prototype.cancelJob = function( jobId ) {
+        if (jobId) {
+            this.postJobAction( "action=canceljob&job="+encodeURIComponent(jobId) );
+        }
+    }
+
+pentaho.pda.model.svc.prototype.postJobAction = function( query, callback ) {
+        try {
+            pentahoPost( this.handler.SERVICE_URL, query, function(resultJson) {
+              if (callback) {
+                callback(JSON.parse(resultJson));
+              }
+            }, 'text/text');
+        } catch (e) {
+            alert(e.message);
+        }
+    }
+
 // this helps show values from columns for the user to select from during parameter creation
 FilterHelper = function( filterColumn, filterEditBoxId, filterParameterState, model ) {
 
@@ -107,5 +107,147 @@ define(["common-data/models-svc", "common-repo/pentaho-ajax"], function(modelsSv
       expect(flag).toBeFalsy();
     });
 
+    describe("compact tables", function() {
+      var table = {
+        cols: [ { id: 'c1', label: 'Column 1', type: 'number' }, { id: 'c2', label: 'Column 2', type: 'string' } ],
+        rows: [
+          { c: [ { v: 1, f: 'one' }, { v: null, f: 'a' } ] },
+          { c: [ { v: null, f: null }, { v: null, f: 'b' } ] },
+          { c: [ { v: 2.5, f: 'two' }, { v: null, f: 'a' } ] }
+        ]
+      };
+      // as written by CompactDataTable for the table above
+      var compact = {
+        cols: table.cols,
+        rowCount: 3,
+        data: [
+          { values: [ 1, 0, 2.5 ], valueNulls: 'Ag==', dictionary: [ 'one', 'two' ], formatted: [ 0, 0, 1 ], formattedNulls: 'Ag==' },
+          { dictionary: [ 'a', 'b' ], formatted: [ 0, 1, 0 ] }
+        ],
+        encoding: 'compact'
+      };
+
+      it("decodeCompactTable() should restore the plain table", function() {
+        expect(pentaho.pda.model.svc.decodeCompactTable(compact)).toEqual(table);
+      });
+
+      it("decodeCompactTable() should decode null bitmaps beyond the first byte", function() {
+        var values = [], formatted = [], rows = [];
+        for (var i = 0; i < 10; i++) {
+          values.push(i === 9 ? 0 : i);
+          formatted.push(0);
+          rows.push({ c: [ { v: i === 9 ? null : i, f: 'x' } ] });
+        }
+        // bit 1 of the second byte
+        var decoded = pentaho.pda.model.svc.decodeCompactTable({
+          cols: [ table.cols[0] ], rowCount: 10, encoding: 'compact',
+          data: [ { values: values, valueNulls: btoa(String.fromCharCode(0, 2)), dictionary: [ 'x' ], formatted: formatted } ]
+        });
+        expect(decoded.rows).toEqual(rows);
+      });
+
+      it("decodeCompactTable() should keep the truncated flag", function() {
+        var truncated = JSON.parse(JSON.stringify(compact));
+        truncated.truncated = true;
+        var decoded = pentaho.pda.model.svc.decodeCompactTable(truncated);
+        expect(decoded.truncated).toBe(true);
+        expect(decoded.rows).toEqual(table.rows);
+      });
+
+      it("decodeCompactTable() should leave plain tables alone", function() {
+        expect(pentaho.pda.model.svc.decodeCompactTable(table)).toBe(table);
+      });
+
+      it("svc.submitCompact() should request the compact encoding and decode the response", function() {
+        var sent;
+        pentahoPost = function(url, query) {
+          sent = query;
+          return JSON.stringify(compact);
+        };
+
+        var result = svc.submitCompact('{}', 10, [ 'c2', 'c1' ]);
+        expect(sent).toContain('encoding=compact');
+        expect(sent).toContain('&columns=c2&columns=c1');
+        expect(result.jsonTable).toEqual(table);
+      });
+    });
+
+    it("svc.executePrepared() should send the handle and the parameter values", function() {
+      var obj = { name: 'name' };
+      var sent;
+      pentahoPost = function(url, query) {
+        sent = query;
+        return JSON.stringify(obj);
+      };
+
+      var result = svc.executePrepared('h1', { country: [ 'France', 'Spain' ] });
+      expect(sent).toContain('action=execute&handle=h1&rowlimit=-1');
+      expect(decodeURIComponent(sent)).toContain('parameters={"country":["France","Spain"]}');
+      expect(result.jsonTable).toEqual(obj);
+    });
+
+    it("svc.loadCategoryColumns() should only ask for categories not loaded yet", function() {
+      var sent = [];
+      pentahoPost = function(url, query) {
+        sent.push(url + query);
+        if (url.indexOf('summary=true') >= 0) {
+          return JSON.stringify({ categories: [ { id: 'c1', columnCount: 1 }, { id: 'c2', columnCount: 1 } ] });
+        }
+        return query.indexOf('category=c1') >= 0 ? JSON.stringify({ c1: [ { id: 'a' } ] })
+            : JSON.stringify({ c2: [ { id: 'b' } ] });
+      };
+
+      svc.id = 'm1';
+      svc.discoverModelSummary();
+      expect(svc.categories.length).toBe(2);
+      expect(svc.elements).toEqual([]);
+
+      expect(svc.loadCategoryColumns([ 'c1' ])).toEqual({ c1: [ { id: 'a' } ] });
+      var columns = svc.loadCategoryColumns([ 'c1', 'c2' ]);
+      expect(sent[2]).toBe('action=columns&id=m1&category=c2');
+      expect(columns).toEqual({ c1: [ { id: 'a' } ], c2: [ { id: 'b' } ] });
+      expect(svc.elements).toEqual([ { id: 'a' }, { id: 'b' } ]);
+    });
+
+    it("svc.refreshModelDetail() should apply the changes since the last version", function() {
+      var category = { id: 'g1', isQueryElement: false };
+      var diffs = [
+        { version: 'v1', full: true, added: [ category, { id: 'a', parentId: 'g1', isQueryElement: true, name: 'A' },
+          { id: 'b', parentId: 'g1', isQueryElement: true } ], changed: [], removed: [] },
+        { version: 'v2', baseVersion: 'v1', full: false, added: [ { id: 'c', parentId: 'g1', isQueryElement: true } ],
+          changed: [ { id: 'a', parentId: 'g1', isQueryElement: true, name: 'A2' } ],
+          removed: [ { id: 'b', parentId: 'g1', isQueryElement: true } ] }
+      ];
+      var urls = [];
+      pentahoPost = function(url) {
+        urls.push(url);
+        return JSON.stringify(diffs[urls.length - 1]);
+      };
+
+      svc.id = 'm1';
+      svc.elements = null;
+      svc.version = null;
+      svc.refreshModelDetail();
+      expect(svc.elements.length).toBe(3);
+      svc.refreshModelDetail();
+      expect(urls[1]).toBe('?action=modeldiff&id=m1&version=v1');
+      expect(svc.version).toBe('v2');
+      expect(svc.elements).toEqual([ category, { id: 'a', parentId: 'g1', isQueryElement: true, name: 'A2' },
+        { id: 'c', parentId: 'g1', isQueryElement: true } ]);
+    });
+
+    it("svc.searchCatalog() should send the search text and page", function() {
+      var obj = { total: 1, offset: 10, hits: [ { type: 'column', id: 'c1', name: 'Cafe' } ] };
+      var sent;
+      pentahoPost = function(url, query) {
+        sent = query;
+        return JSON.stringify(obj);
+      };
+
+      var result = svc.searchCatalog('cafe sales', 10, 5);
+      expect(sent).toBe('action=search&q=cafe%20sales&offset=10&limit=5');
+      expect(result).toEqual(obj);
+    });
+
   });
 })
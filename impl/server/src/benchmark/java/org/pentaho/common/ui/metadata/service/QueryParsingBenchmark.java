@@ -0,0 +1,105 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.pentaho.metadata.model.thin.Query;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Compares parsing a browser query payload with the streaming query deserializers and with the annotation driven
+ * mapper they replaced.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class QueryParsingBenchmark {
+
+  /**
+   * Number of selected columns, conditions and orders in the payload
+   */
+  @Param( { "5", "50" } )
+  private int size;
+
+  /**
+   * Whether the type ids come last, which makes the annotation driven mapper buffer every object
+   */
+  @Param( { "false", "true" } )
+  private boolean typeLast;
+
+  private String json;
+
+  private ObjectReader streaming;
+
+  private ObjectReader dataBinding;
+
+  @Setup
+  public void setUp() {
+    StringBuilder elements = new StringBuilder();
+    StringBuilder conditions = new StringBuilder();
+    StringBuilder orders = new StringBuilder();
+    for ( int i = 0; i < size; i++ ) {
+      String separator = i == 0 ? "" : ",";
+      elements.append( separator ).append( object( ThinQueryDeserializers.ELEMENT_TYPE, "\"id\":\"COLUMN_" + i
+          + "\",\"parentId\":\"CATEGORY\",\"name\":\"Column " + i + "\",\"defaultAggType\":\"SUM\"" ) );
+      conditions.append( separator ).append( object( ThinQueryDeserializers.LEGACY_CONDITION_TYPE,
+          "\"elementId\":\"COLUMN_" + i + "\",\"parentId\":\"CATEGORY\",\"operator\":\"EQUAL\","
+          + "\"value\":[\"a\",\"b\",\"c\"],\"combinationType\":\"AND\",\"selectedAggType\":\"NONE\"" ) );
+      orders.append( separator ).append( object( ThinQueryDeserializers.ORDER_TYPE, "\"elementId\":\"COLUMN_" + i
+          + "\",\"parentId\":\"CATEGORY\",\"orderType\":\"ASC\"" ) );
+    }
+    json = object( ThinQueryDeserializers.QUERY_TYPE, "\"sourceId\":\"provider~group~model\",\"elements\":["
+        + elements + "],\"conditions\":[" + conditions + "],\"orders\":[" + orders + "],\"parameters\":[]" );
+    streaming = MetadataModelsContentGenerator.createQueryObjectMapper().readerFor( Query.class );
+    dataBinding = DataBindingQueryMapper.create().readerFor( Query.class );
+  }
+
+  private String object( String type, String properties ) {
+    String typeId = "\"class\":\"" + type + "\"";
+    return typeLast ? "{" + properties + "," + typeId + "}" : "{" + typeId + "," + properties + "}";
+  }
+
+  @Benchmark
+  public Query streaming() throws Exception {
+    return streaming.readValue( json );
+  }
+
+  @Benchmark
+  public Query dataBinding() throws Exception {
+    return dataBinding.readValue( json );
+  }
+
+  public static void main( String[] args ) throws Exception {
+    new Runner( new OptionsBuilder().include( QueryParsingBenchmark.class.getSimpleName() ).build() ).run();
+  }
+
+}
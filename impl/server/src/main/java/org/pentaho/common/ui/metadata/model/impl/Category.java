@@ -29,16 +29,18 @@ public class Category implements ICategory, Serializable {
   private static final long serialVersionUID = -454688567483551796L;
   private String id, name, description;
   private Column[] columns = new Column[0];
+  // the escaped id and name, computed on first use
+  private transient String escapedId, escapedName;
 
   /**
    * Returns the id of the category
    */
   @Override
   public String getId() {
-    if ( this.id != null ) {
-      return this.id.replaceAll( "<", "&lt;" ).replaceAll( ">", "&gt;" );
+    if ( escapedId == null && id != null ) {
+      escapedId = escape( id );
     }
-    return this.id;
+    return escapedId;
   }
 
   /**
@@ -46,11 +48,10 @@ public class Category implements ICategory, Serializable {
    */
   @Override
   public String getName() {
-    if ( this.name != null ) {
-      return this.name.replaceAll( "<", "&lt;" ).replaceAll( ">", "&gt;" );
-    } else {
-      return this.name;
+    if ( escapedName == null && name != null ) {
+      escapedName = escape( name );
     }
+    return escapedName;
   }
 
   /**
@@ -60,6 +61,7 @@ public class Category implements ICategory, Serializable {
    */
   public void setId( String id ) {
     this.id = id;
+    this.escapedId = null;
   }
 
   /**
@@ -69,6 +71,7 @@ public class Category implements ICategory, Serializable {
    */
   public void setName( String name ) {
     this.name = name;
+    this.escapedName = null;
   }
 
   /**
@@ -96,4 +99,28 @@ public class Category implements ICategory, Serializable {
     return description;
   }
 
+  /**
+   * Replaces &lt; and &gt; with their entities
+   * 
+   * @param value
+   * @return the value itself if there is nothing to replace
+   */
+  private static String escape( String value ) {
+    if ( value.indexOf( '<' ) < 0 && value.indexOf( '>' ) < 0 ) {
+      return value;
+    }
+    StringBuilder escaped = new StringBuilder( value.length() + 8 );
+    for ( int i = 0; i < value.length(); i++ ) {
+      char c = value.charAt( i );
+      if ( c == '<' ) {
+        escaped.append( "&lt;" ); //$NON-NLS-1$
+      } else if ( c == '>' ) {
+        escaped.append( "&gt;" ); //$NON-NLS-1$
+      } else {
+        escaped.append( c );
+      }
+    }
+    return escaped.toString();
+  }
+
 }
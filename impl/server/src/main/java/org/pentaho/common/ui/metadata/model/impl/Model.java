@@ -14,6 +14,8 @@
 
 package org.pentaho.common.ui.metadata.model.impl;
 
+import java.util.Arrays;
+
 import org.pentaho.common.ui.metadata.model.IModel;
 
 /**
@@ -91,7 +93,7 @@ public class Model implements IModel {
   public int hashCode() {
     final int prime = 31;
     int result = 1;
-    result = prime * result + ( ( categories == null ) ? 0 : categories.hashCode() );
+    result = prime * result + Arrays.hashCode( categories );
     result = prime * result + ( ( id == null ) ? 0 : id.hashCode() );
     result = prime * result + ( ( name == null ) ? 0 : name.hashCode() );
     return result;
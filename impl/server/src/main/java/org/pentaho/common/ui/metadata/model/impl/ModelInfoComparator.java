@@ -14,19 +14,114 @@
 
 package org.pentaho.common.ui.metadata.model.impl;
 
+import java.text.CollationKey;
+import java.text.Collator;
 import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * compares two model info objects so that they can be sorted by name
+ * compares two model info objects so that they can be sorted by name, following the collation rules of a locale.
+ * Models without a name go last, and models with the same name are sorted by id. The collation key of every name is
+ * computed once per locale and cached, so sorting thousands of models does not compare the raw strings again and
+ * again.
  * 
  * @author jamesdixon
  * 
  */
 public class ModelInfoComparator implements Comparator<ModelInfo> {
 
+  private static final int MAX_CACHED_KEYS = 10000;
+
+  private static final Map<Locale, ModelInfoComparator> instances =
+      new ConcurrentHashMap<Locale, ModelInfoComparator>();
+
+  private final Locale locale;
+
+  private final Collator collator;
+
+  private final Map<String, CollationKey> keys = new ConcurrentHashMap<String, CollationKey>();
+
+  public ModelInfoComparator() {
+    this( Locale.getDefault() );
+  }
+
+  /**
+   * @param locale
+   *          the locale whose collation rules order the names
+   */
+  public ModelInfoComparator( Locale locale ) {
+    this.locale = locale;
+    this.collator = Collator.getInstance( locale );
+  }
+
+  /**
+   * Returns the comparator of a locale, shared so that the collation keys of the names are reused across requests
+   * 
+   * @param locale
+   * @return
+   */
+  public static ModelInfoComparator getInstance( Locale locale ) {
+    return instances.computeIfAbsent( locale, ModelInfoComparator::new );
+  }
+
+  public Locale getLocale() {
+    return locale;
+  }
+
   @Override
   public int compare( ModelInfo model1, ModelInfo model2 ) {
-    return model1.getModelName().compareTo( model2.getModelName() );
+    int result = compareNames( model1.getModelName(), model2.getModelName() );
+    return result != 0 ? result : compareIds( model1.getModelId(), model2.getModelId() );
+  }
+
+  /**
+   * Returns a comparator that sorts the thin model infos of the listmodels action the same way. Models of different
+   * providers with the same name and model id are sorted by their full id.
+   * 
+   * @return
+   */
+  public Comparator<org.pentaho.metadata.model.thin.ModelInfo> forThinModels() {
+    Comparator<org.pentaho.metadata.model.thin.ModelInfo> byName =
+        ( model1, model2 ) -> compareNames( model1.getName(), model2.getName() );
+    return byName.thenComparing( org.pentaho.metadata.model.thin.ModelInfo::getModelId, this::compareIds )
+        .thenComparing( org.pentaho.metadata.model.thin.ModelInfo::getId, this::compareIds );
+  }
+
+  /**
+   * Returns the collation key of a name
+   * 
+   * @param name
+   * @return
+   */
+  CollationKey getKey( String name ) {
+    CollationKey key = keys.get( name );
+    if ( key == null ) {
+      // collators are not thread safe
+      synchronized ( collator ) {
+        key = collator.getCollationKey( name );
+      }
+      if ( keys.size() >= MAX_CACHED_KEYS ) {
+        keys.clear();
+      }
+      keys.put( name, key );
+    }
+    return key;
+  }
+
+  private int compareNames( String name1, String name2 ) {
+    if ( name1 == null || name2 == null ) {
+      return name1 == null ? ( name2 == null ? 0 : 1 ) : -1;
+    }
+    return getKey( name1 ).compareTo( getKey( name2 ) );
+  }
+
+  private int compareIds( String id1, String id2 ) {
+    if ( id1 == null || id2 == null ) {
+      return id1 == null ? ( id2 == null ? 0 : 1 ) : -1;
+    }
+    return id1.compareTo( id2 );
   }
 
 }
@@ -0,0 +1,53 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import org.pentaho.metadata.model.thin.Query;
+
+/**
+ * Runs queries through {@link QueryAdmission}, so that they only reach the delegate when the user and the server
+ * have room for another query
+ */
+public class AdmissionQueryExecutor implements QueryExecutor {
+
+  private final QueryAdmission admission;
+
+  private final String user;
+
+  private final QueryExecutor delegate;
+
+  /**
+   * @param admission
+   * @param user
+   *          the user running the queries
+   * @param delegate
+   */
+  public AdmissionQueryExecutor( QueryAdmission admission, String user, QueryExecutor delegate ) {
+    this.admission = admission;
+    this.user = user == null ? "" : user; //$NON-NLS-1$
+    this.delegate = delegate;
+  }
+
+  @Override
+  public boolean execute( Query query, int rowLimit, QueryRowCallback callback ) throws Exception {
+    admission.acquire( user );
+    try {
+      return delegate.execute( query, rowLimit, callback );
+    } finally {
+      admission.release( user );
+    }
+  }
+
+}
@@ -0,0 +1,64 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import org.pentaho.metadata.model.thin.Query;
+
+/**
+ * One query of a batchquery request
+ */
+public class BatchQueryItem {
+
+  private String id;
+
+  private int rowLimit = -1;
+
+  private Query query;
+
+  /**
+   * Returns the id the client uses to match the result to the query
+   *
+   * @return
+   */
+  public String getId() {
+    return id;
+  }
+
+  public void setId( String id ) {
+    this.id = id;
+  }
+
+  /**
+   * Returns the maximum number of rows to return for this query, -1 for no limit
+   *
+   * @return
+   */
+  public int getRowLimit() {
+    return rowLimit;
+  }
+
+  public void setRowLimit( int rowLimit ) {
+    this.rowLimit = rowLimit;
+  }
+
+  public Query getQuery() {
+    return query;
+  }
+
+  public void setQuery( Query query ) {
+    this.query = query;
+  }
+
+}
@@ -0,0 +1,83 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import org.pentaho.common.ui.services.StatusMessage;
+import org.pentaho.metadata.datatable.DataTable;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * The result of one query of a batchquery request. Either the table or the error is set.
+ */
+@JsonInclude( JsonInclude.Include.NON_NULL )
+public class BatchQueryResult {
+
+  private String id;
+
+  private boolean complete;
+
+  private DataTable table;
+
+  private StatusMessage error;
+
+  /**
+   * Returns the id of the query this is the result of
+   *
+   * @return
+   */
+  public String getId() {
+    return id;
+  }
+
+  public void setId( String id ) {
+    this.id = id;
+  }
+
+  /**
+   * Returns false if the result was cut short by the server's memory limits
+   *
+   * @return
+   */
+  public boolean isComplete() {
+    return complete;
+  }
+
+  public void setComplete( boolean complete ) {
+    this.complete = complete;
+  }
+
+  public DataTable getTable() {
+    return table;
+  }
+
+  public void setTable( DataTable table ) {
+    this.table = table;
+  }
+
+  /**
+   * Returns the reason the query failed, or null if it succeeded
+   *
+   * @return
+   */
+  public StatusMessage getError() {
+    return error;
+  }
+
+  public void setError( StatusMessage error ) {
+    this.error = error;
+  }
+
+}
@@ -0,0 +1,194 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.common.ui.messages.Messages;
+import org.pentaho.common.ui.services.StatusMessage;
+import org.pentaho.platform.api.engine.IPentahoSession;
+
+/**
+ * Runs the queries of a batchquery request concurrently. All requests share one bounded thread pool, and each
+ * request has at most a configured number of queries running at a time, so that one large batch cannot take over
+ * the pool. Results are handed back on the calling thread in the order the queries complete. When the pool and its
+ * queue are full, queries run on the calling thread instead.
+ */
+public class BatchQueryRunner {
+
+  private static final int DEFAULT_THREADS = 8;
+
+  private static final int DEFAULT_QUEUE_SIZE = 100;
+
+  private static final int DEFAULT_PARALLELISM = 4;
+
+  private static final int DEFAULT_MAX_QUERIES = 50;
+
+  private static final long DEFAULT_MAX_ITEM_BYTES = 16L * 1024 * 1024;
+
+  private static BatchQueryRunner instance;
+
+  private static final Log logger = LogFactory.getLog( BatchQueryRunner.class );
+
+  private final ExecutorService executor;
+
+  private final int parallelism;
+
+  private final int maxQueries;
+
+  private final long maxItemBytes;
+
+  /**
+   * Receives the results of a batch
+   */
+  public interface ResultListener {
+
+    /**
+     * Called on the thread that runs the batch each time a query completes
+     *
+     * @param result
+     * @return false to cancel the queries that have not completed yet
+     * @throws Exception
+     */
+    boolean completed( BatchQueryResult result ) throws Exception;
+  }
+
+  BatchQueryRunner( ExecutorService executor, int parallelism, int maxQueries, long maxItemBytes ) {
+    this.executor = executor;
+    this.parallelism = Math.max( 1, parallelism );
+    this.maxQueries = maxQueries;
+    this.maxItemBytes = maxItemBytes;
+  }
+
+  public static synchronized BatchQueryRunner getInstance() {
+    if ( instance == null ) {
+      int threads = Math.max( 1, MetadataModelsSettings.getInt( MetadataModelsSettings.BATCH_THREADS,
+          DEFAULT_THREADS ) );
+      int queueSize = Math.max( 1, MetadataModelsSettings.getInt( MetadataModelsSettings.BATCH_QUEUE_SIZE,
+          DEFAULT_QUEUE_SIZE ) );
+      ThreadPoolExecutor executor = new ThreadPoolExecutor( threads, threads, 60, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>( queueSize ), new BatchThreadFactory(),
+          new ThreadPoolExecutor.CallerRunsPolicy() );
+      executor.allowCoreThreadTimeOut( true );
+      instance = new BatchQueryRunner( executor,
+          MetadataModelsSettings.getInt( MetadataModelsSettings.BATCH_PARALLELISM, DEFAULT_PARALLELISM ),
+          MetadataModelsSettings.getInt( MetadataModelsSettings.BATCH_MAX_QUERIES, DEFAULT_MAX_QUERIES ),
+          MetadataModelsSettings.getLong( MetadataModelsSettings.BATCH_MAX_ITEM_BYTES, DEFAULT_MAX_ITEM_BYTES ) );
+    }
+    return instance;
+  }
+
+  /**
+   * @return the maximum number of queries in one batch, 0 or less for no limit
+   */
+  public int getMaxQueries() {
+    return maxQueries;
+  }
+
+  /**
+   * Runs the queries and passes each result to the listener as soon as it is available. The queries run with the
+   * given session and the locale of the calling thread. A failed query produces a result with an error rather than
+   * failing the batch.
+   *
+   * @param items
+   * @param queryExecutor
+   * @param session
+   *          the session the queries run in
+   * @param listener
+   * @throws Exception
+   */
+  public void run( List<BatchQueryItem> items, QueryExecutor queryExecutor, IPentahoSession session,
+      ResultListener listener ) throws Exception {
+    CompletionService<BatchQueryResult> completion = new ExecutorCompletionService<BatchQueryResult>( executor );
+    List<Future<BatchQueryResult>> futures = new ArrayList<Future<BatchQueryResult>>();
+    int next = 0;
+    int running = 0;
+    try {
+      while ( next < items.size() || running > 0 ) {
+        while ( running < parallelism && next < items.size() ) {
+          BatchQueryItem item = items.get( next );
+          String id = item.getId() != null ? item.getId() : String.valueOf( next );
+          futures.add( completion.submit( new SessionCallable<BatchQueryResult>( session,
+              () -> execute( id, item, queryExecutor ) ) ) );
+          next++;
+          running++;
+        }
+        BatchQueryResult result = completion.take().get();
+        running--;
+        if ( !listener.completed( result ) ) {
+          return;
+        }
+      }
+    } finally {
+      for ( Future<BatchQueryResult> future : futures ) {
+        future.cancel( true );
+      }
+    }
+  }
+
+  private BatchQueryResult execute( String id, BatchQueryItem item, QueryExecutor queryExecutor ) {
+    BatchQueryResult result = new BatchQueryResult();
+    result.setId( id );
+    try {
+      DataTableCollector collector = new DataTableCollector( item.getRowLimit(), maxItemBytes );
+      queryExecutor.execute( item.getQuery(), item.getRowLimit(), collector );
+      result.setTable( collector.getTable() );
+      result.setComplete( !collector.isTruncated() );
+    } catch ( QueryValidationException e ) {
+      StatusMessage error = new StatusMessage();
+      error.setCode( e.getCode() );
+      error.setMessage( e.getMessage() );
+      result.setError( error );
+    } catch ( QueryRejectedException e ) {
+      StatusMessage error = new StatusMessage();
+      error.setCode( "ERROR_0008_TOO_MANY_QUERIES" ); //$NON-NLS-1$
+      error.setMessage( Messages.getErrorString( "MetadataModelsContentGenerator.ERROR_0008_TOO_MANY_QUERIES", //$NON-NLS-1$
+          String.valueOf( e.getRetryAfterSeconds() ) ) );
+      result.setError( error );
+    } catch ( Exception e ) {
+      logger.error( "Batched query " + id + " failed", e ); //$NON-NLS-1$ //$NON-NLS-2$
+      StatusMessage error = new StatusMessage();
+      error.setCode( "ERROR_0003_QUERY_FAILED" ); //$NON-NLS-1$
+      error.setMessage( Messages.getErrorString( "MetadataModelsContentGenerator.ERROR_0003_QUERY_FAILED", id ) ); //$NON-NLS-1$
+      result.setError( error );
+    }
+    return result;
+  }
+
+  private static class BatchThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread( Runnable runnable ) {
+      Thread thread = new Thread( runnable, "metadata-batch-query-" + count.incrementAndGet() ); //$NON-NLS-1$
+      thread.setDaemon( true );
+      return thread;
+    }
+  }
+
+}
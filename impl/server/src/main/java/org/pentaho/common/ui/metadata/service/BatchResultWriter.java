@@ -0,0 +1,97 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes the results of a batchquery request as an array, each result as soon as its query completes. Like
+ * {@link DataTableJsonWriter}, a failed write is treated as the client going away and cancels the rest of the batch.
+ */
+public class BatchResultWriter implements BatchQueryRunner.ResultListener {
+
+  private final JsonGenerator generator;
+
+  private int resultCount;
+
+  private boolean aborted;
+
+  /**
+   * @param mapper
+   *          the mapper used to serialize the results
+   * @param output
+   * @throws IOException
+   */
+  public BatchResultWriter( ObjectMapper mapper, OutputStream output ) throws IOException {
+    this.generator = mapper.getFactory().createGenerator( output, JsonEncoding.UTF8 );
+    this.generator.disable( JsonGenerator.Feature.AUTO_CLOSE_TARGET );
+    try {
+      generator.writeStartArray();
+    } catch ( IOException e ) {
+      aborted = true;
+    }
+  }
+
+  @Override
+  public boolean completed( BatchQueryResult result ) throws Exception {
+    if ( aborted ) {
+      return false;
+    }
+    try {
+      generator.writeObject( result );
+      generator.flush();
+      resultCount++;
+    } catch ( IOException e ) {
+      aborted = true;
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Completes the array
+   *
+   * @throws IOException
+   */
+  public void finish() throws IOException {
+    if ( aborted ) {
+      return;
+    }
+    try {
+      generator.writeEndArray();
+      generator.close();
+    } catch ( IOException e ) {
+      aborted = true;
+      throw e;
+    }
+  }
+
+  /**
+   * @return true if writing to the output failed, usually because the client disconnected
+   */
+  public boolean isAborted() {
+    return aborted;
+  }
+
+  public int getResultCount() {
+    return resultCount;
+  }
+
+}
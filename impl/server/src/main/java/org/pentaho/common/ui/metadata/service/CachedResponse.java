@@ -0,0 +1,73 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+/**
+ * A serialized response and the entity tag that identifies its content
+ */
+public class CachedResponse {
+
+  private final byte[] bytes;
+
+  private final String etag;
+
+  private final long created;
+
+  public CachedResponse( byte[] bytes, long created ) {
+    this.bytes = bytes;
+    this.etag = '"' + QueryFingerprint.hash( bytes ).substring( 0, 32 ) + '"';
+    this.created = created;
+  }
+
+  public byte[] getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Returns the strong entity tag of the response, quoted as it appears in the ETag header
+   *
+   * @return
+   */
+  public String getETag() {
+    return etag;
+  }
+
+  public long getCreated() {
+    return created;
+  }
+
+  /**
+   * Tells whether an If-None-Match header value matches this response
+   *
+   * @param ifNoneMatch
+   * @return
+   */
+  public boolean matches( String ifNoneMatch ) {
+    if ( ifNoneMatch == null ) {
+      return false;
+    }
+    for ( String tag : ifNoneMatch.split( "," ) ) { //$NON-NLS-1$
+      String value = tag.trim();
+      if ( value.startsWith( "W/" ) ) { //$NON-NLS-1$
+        value = value.substring( 2 );
+      }
+      if ( "*".equals( value ) || etag.equals( value ) ) { //$NON-NLS-1$
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
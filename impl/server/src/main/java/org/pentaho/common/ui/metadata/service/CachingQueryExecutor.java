@@ -0,0 +1,121 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.DataTable;
+import org.pentaho.metadata.datatable.Row;
+import org.pentaho.metadata.model.thin.Query;
+
+/**
+ * Serves queries from the {@link QueryResultCache}. On a miss the query is executed by the delegate; the rows are
+ * passed on to the caller as they arrive and collected on the side, and the result is cached once it is known to be
+ * complete.
+ */
+public class CachingQueryExecutor implements QueryExecutor {
+
+  private final QueryResultCache cache;
+
+  private final String securityKey;
+
+  private final QueryExecutor delegate;
+
+  /**
+   * @param cache
+   * @param securityKey
+   *          the security context of the user running the queries
+   * @param delegate
+   *          the executor that runs the queries that are not cached
+   */
+  public CachingQueryExecutor( QueryResultCache cache, String securityKey, QueryExecutor delegate ) {
+    this.cache = cache;
+    this.securityKey = securityKey;
+    this.delegate = delegate;
+  }
+
+  @Override
+  public boolean execute( Query query, int rowLimit, QueryRowCallback callback ) throws Exception {
+    if ( !cache.isEnabled() ) {
+      return delegate.execute( query, rowLimit, callback );
+    }
+    String key = cache.createKey( query, rowLimit, securityKey );
+    DataTable cached = cache.get( key );
+    if ( cached != null ) {
+      return StreamingQueryExecutor.replay( cached, callback );
+    }
+
+    CollectingCallback collecting = new CollectingCallback( callback, rowLimit, cache.getMaxEntryBytes() );
+    long start = System.nanoTime();
+    boolean executed = delegate.execute( query, rowLimit, collecting );
+    if ( executed && collecting.isComplete() ) {
+      cache.put( key, query.getSourceId(), collecting.collector.getTable(), collecting.collector.getEstimatedBytes(),
+          System.nanoTime() - start );
+    }
+    return executed;
+  }
+
+  /**
+   * Passes rows on to the caller while collecting them for the cache
+   */
+  private static class CollectingCallback implements QueryRowCallback {
+
+    private final QueryRowCallback callback;
+
+    private final int rowLimit;
+
+    private final DataTableCollector collector;
+
+    private boolean stopped;
+
+    CollectingCallback( QueryRowCallback callback, int rowLimit, long maxBytes ) {
+      this.callback = callback;
+      this.rowLimit = rowLimit;
+      this.collector = new DataTableCollector( -1, maxBytes );
+    }
+
+    @Override
+    public void columns( Column[] columns ) throws Exception {
+      collector.columns( columns );
+      callback.columns( columns );
+    }
+
+    @Override
+    public boolean row( Row row ) throws Exception {
+      collector.row( row );
+      if ( !callback.row( row ) ) {
+        stopped = true;
+        return false;
+      }
+      return true;
+    }
+
+    @Override
+    public void truncated( QueryLimits.Truncation reason ) throws Exception {
+      callback.truncated( reason );
+    }
+
+    /**
+     * A result is complete if it fit in the cache and the caller did not stop it early; stopping right at the row
+     * limit still yields the complete result for that limit.
+     */
+    boolean isComplete() {
+      if ( collector.isTruncated() ) {
+        return false;
+      }
+      return !stopped || ( rowLimit > 0 && collector.getRowCount() >= rowLimit );
+    }
+  }
+
+}
@@ -0,0 +1,152 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+/**
+ * A model, category or column found by the search action
+ */
+public class CatalogHit {
+
+  /**
+   * The hit is a model
+   */
+  public static final String MODEL = "model"; //$NON-NLS-1$
+
+  /**
+   * The hit is a category of a model
+   */
+  public static final String CATEGORY = "category"; //$NON-NLS-1$
+
+  /**
+   * The hit is a column of a model
+   */
+  public static final String COLUMN = "column"; //$NON-NLS-1$
+
+  private String type;
+
+  private String modelId;
+
+  private String modelName;
+
+  private String categoryId;
+
+  private String id;
+
+  private String name;
+
+  private String description;
+
+  private String locale;
+
+  private int score;
+
+  /**
+   * Returns one of model, category or column
+   *
+   * @return
+   */
+  public String getType() {
+    return type;
+  }
+
+  public void setType( String type ) {
+    this.type = type;
+  }
+
+  public String getModelId() {
+    return modelId;
+  }
+
+  public void setModelId( String modelId ) {
+    this.modelId = modelId;
+  }
+
+  public String getModelName() {
+    return modelName;
+  }
+
+  public void setModelName( String modelName ) {
+    this.modelName = modelName;
+  }
+
+  /**
+   * Returns the category of a column, or null for models and categories
+   *
+   * @return
+   */
+  public String getCategoryId() {
+    return categoryId;
+  }
+
+  public void setCategoryId( String categoryId ) {
+    this.categoryId = categoryId;
+  }
+
+  /**
+   * Returns the id of the category or column, or the model id for models
+   *
+   * @return
+   */
+  public String getId() {
+    return id;
+  }
+
+  public void setId( String id ) {
+    this.id = id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName( String name ) {
+    this.name = name;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public void setDescription( String description ) {
+    this.description = description;
+  }
+
+  /**
+   * Returns the locale of the name and description that matched
+   *
+   * @return
+   */
+  public String getLocale() {
+    return locale;
+  }
+
+  public void setLocale( String locale ) {
+    this.locale = locale;
+  }
+
+  /**
+   * Returns how well the hit matched, hits are sorted by descending score
+   *
+   * @return
+   */
+  public int getScore() {
+    return score;
+  }
+
+  public void setScore( int score ) {
+    this.score = score;
+  }
+
+}
@@ -0,0 +1,57 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+/**
+ * One page of the hits of the search action
+ */
+public class CatalogSearchResult {
+
+  private int total;
+
+  private int offset;
+
+  private CatalogHit[] hits;
+
+  /**
+   * Returns the number of hits of all pages
+   *
+   * @return
+   */
+  public int getTotal() {
+    return total;
+  }
+
+  public void setTotal( int total ) {
+    this.total = total;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  public void setOffset( int offset ) {
+    this.offset = offset;
+  }
+
+  public CatalogHit[] getHits() {
+    return hits;
+  }
+
+  public void setHits( CatalogHit[] hits ) {
+    this.hits = hits;
+  }
+
+}
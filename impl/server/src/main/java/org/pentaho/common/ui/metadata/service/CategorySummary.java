@@ -0,0 +1,62 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+/**
+ * A category of a model and the number of its columns
+ */
+public class CategorySummary {
+
+  private String id;
+
+  private String name;
+
+  private String description;
+
+  private int columnCount;
+
+  public String getId() {
+    return id;
+  }
+
+  public void setId( String id ) {
+    this.id = id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName( String name ) {
+    this.name = name;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public void setDescription( String description ) {
+    this.description = description;
+  }
+
+  public int getColumnCount() {
+    return columnCount;
+  }
+
+  public void setColumnCount( int columnCount ) {
+    this.columnCount = columnCount;
+  }
+
+}
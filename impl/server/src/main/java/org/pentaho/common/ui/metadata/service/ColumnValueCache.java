@@ -0,0 +1,290 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.IPentahoSession;
+
+/**
+ * Caches the distinct values of columns, by model, column and security context of the user, for the values action.
+ * Values older than the refresh interval are still served while they are reloaded in the background, so a prompt
+ * never waits for the database once its column has been loaded; values older than the time to live are reloaded
+ * before they are served. The least recently used columns are evicted once there are too many.
+ */
+public class ColumnValueCache {
+
+  private static final long DEFAULT_TTL_SECONDS = 3600;
+
+  private static final long DEFAULT_REFRESH_SECONDS = 300;
+
+  private static final int DEFAULT_MAX_ENTRIES = 500;
+
+  private static final int DEFAULT_MAX_VALUES = 10000;
+
+  private static final int REFRESH_QUEUE_SIZE = 100;
+
+  private static final Log logger = LogFactory.getLog( ColumnValueCache.class );
+
+  private static ColumnValueCache instance;
+
+  private final long ttlMillis;
+
+  private final long refreshMillis;
+
+  private final int maxEntries;
+
+  private final int maxValues;
+
+  private final Executor refresher;
+
+  private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true );
+
+  /**
+   * Changes whenever entries are invalidated, so that loads started before are not cached
+   */
+  private long generation;
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final AtomicLong refreshes = new AtomicLong();
+
+  /**
+   * @param ttlMillis
+   *          the age from which values are reloaded before they are served, 0 or less to keep them forever
+   * @param refreshMillis
+   *          the age from which values are reloaded in the background, 0 or less to never refresh them
+   * @param maxEntries
+   *          the maximum number of cached columns
+   * @param maxValues
+   *          the maximum number of values cached for a column
+   * @param refresher
+   *          runs the background reloads
+   */
+  ColumnValueCache( long ttlMillis, long refreshMillis, int maxEntries, int maxValues, Executor refresher ) {
+    this.ttlMillis = ttlMillis;
+    this.refreshMillis = refreshMillis;
+    this.maxEntries = Math.max( 1, maxEntries );
+    this.maxValues = Math.max( 1, maxValues );
+    this.refresher = refresher;
+  }
+
+  public static synchronized ColumnValueCache getInstance() {
+    if ( instance == null ) {
+      long ttl = MetadataModelsSettings.getLong( MetadataModelsSettings.VALUES_CACHE_TTL_SECONDS, DEFAULT_TTL_SECONDS );
+      long refresh = MetadataModelsSettings.getLong( MetadataModelsSettings.VALUES_CACHE_REFRESH_SECONDS,
+          DEFAULT_REFRESH_SECONDS );
+      int maxEntries =
+          MetadataModelsSettings.getInt( MetadataModelsSettings.VALUES_CACHE_MAX_ENTRIES, DEFAULT_MAX_ENTRIES );
+      int maxValues =
+          MetadataModelsSettings.getInt( MetadataModelsSettings.VALUES_CACHE_MAX_VALUES, DEFAULT_MAX_VALUES );
+      ThreadPoolExecutor pool = new ThreadPoolExecutor( 1, 1, 60, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>( REFRESH_QUEUE_SIZE ), runnable -> {
+            Thread thread = new Thread( runnable, "metadata-values-refresh" ); //$NON-NLS-1$
+            thread.setDaemon( true );
+            return thread;
+          } );
+      pool.allowCoreThreadTimeOut( true );
+      instance = new ColumnValueCache( ttl * 1000, refresh * 1000, maxEntries, maxValues, pool );
+    }
+    return instance;
+  }
+
+  /**
+   * @return the maximum number of values cached for a column
+   */
+  public int getMaxValues() {
+    return maxValues;
+  }
+
+  /**
+   * Builds the cache key of a column
+   *
+   * @param sourceId
+   *          the id of the model
+   * @param parentId
+   *          the id of the category of the column, may be null
+   * @param columnId
+   * @param securityKey
+   *          the security context of the user, see {@link SecurityContextKey}
+   * @return
+   */
+  public String createKey( String sourceId, String parentId, String columnId, String securityKey ) {
+    return QueryFingerprint.hash( sourceId + '\u0000' + parentId + '\u0000' + columnId ) + '|' + securityKey;
+  }
+
+  /**
+   * Returns the values of a column, loading them on a miss. Values due for a refresh are returned as they are and
+   * reloaded in the background, in the given session.
+   *
+   * @param key
+   * @param sourceId
+   *          the id of the model, see {@link #invalidate(String)}
+   * @param loader
+   *          loads the values of the column
+   * @param session
+   *          the session the background reload runs in
+   * @return
+   * @throws Exception
+   *           if the values were not cached and could not be loaded
+   */
+  public DistinctValues get( String key, String sourceId, Callable<DistinctValues> loader, IPentahoSession session )
+    throws Exception {
+    Entry entry;
+    long loadGeneration;
+    boolean refresh = false;
+    synchronized ( this ) {
+      long now = currentTimeMillis();
+      entry = entries.get( key );
+      if ( entry != null && ttlMillis > 0 && now - entry.loaded > ttlMillis ) {
+        entries.remove( key );
+        entry = null;
+      }
+      if ( entry != null && refreshMillis > 0 && now - entry.loaded > refreshMillis && !entry.refreshing ) {
+        entry.refreshing = true;
+        refresh = true;
+      }
+      loadGeneration = generation;
+    }
+    if ( entry == null ) {
+      misses.incrementAndGet();
+      DistinctValues values = loader.call();
+      put( key, sourceId, values, loadGeneration );
+      return values;
+    }
+    hits.incrementAndGet();
+    if ( refresh ) {
+      refresh( key, entry, loader, session, loadGeneration );
+    }
+    return entry.values;
+  }
+
+  private void refresh( String key, Entry stale, Callable<DistinctValues> loader, IPentahoSession session,
+      long loadGeneration ) {
+    Callable<Void> task = new SessionCallable<Void>( session, () -> {
+      try {
+        put( key, stale.sourceId, loader.call(), loadGeneration );
+        refreshes.incrementAndGet();
+      } catch ( Exception e ) {
+        logger.warn( "Could not refresh the values of column " + key, e ); //$NON-NLS-1$
+        refreshFailed( stale );
+      }
+      return null;
+    } );
+    try {
+      refresher.execute( new FutureTask<Void>( task ) );
+    } catch ( RejectedExecutionException e ) {
+      refreshFailed( stale );
+    }
+  }
+
+  /**
+   * Lets the next request retry the refresh of the entry
+   */
+  private synchronized void refreshFailed( Entry stale ) {
+    stale.refreshing = false;
+  }
+
+  private synchronized void put( String key, String sourceId, DistinctValues values, long loadGeneration ) {
+    if ( values == null || loadGeneration != generation ) {
+      return;
+    }
+    entries.put( key, new Entry( sourceId, values, currentTimeMillis() ) );
+    Iterator<Entry> it = entries.values().iterator();
+    while ( entries.size() > maxEntries && it.hasNext() ) {
+      // the map is in access order, so the least recently used entries go first
+      it.next();
+      it.remove();
+    }
+  }
+
+  /**
+   * Drops the cached values of a domain
+   *
+   * @param domainId
+   *          the id of the domain, see {@link DomainIds}
+   * @return the number of dropped columns
+   */
+  public synchronized int invalidate( String domainId ) {
+    generation++;
+    int count = 0;
+    Iterator<Entry> it = entries.values().iterator();
+    while ( it.hasNext() ) {
+      Entry entry = it.next();
+      if ( DomainIds.matches( entry.sourceId, domainId ) ) {
+        it.remove();
+        count++;
+      }
+    }
+    return count;
+  }
+
+  public synchronized void invalidateAll() {
+    generation++;
+    entries.clear();
+  }
+
+  /**
+   * @return the hit and miss counts, the number of background refreshes and the number of cached columns
+   */
+  public synchronized Map<String, Object> getStatistics() {
+    Map<String, Object> stats = new LinkedHashMap<String, Object>();
+    stats.put( "entries", entries.size() ); //$NON-NLS-1$
+    stats.put( "hits", hits.get() ); //$NON-NLS-1$
+    stats.put( "misses", misses.get() ); //$NON-NLS-1$
+    stats.put( "refreshes", refreshes.get() ); //$NON-NLS-1$
+    return stats;
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  private static class Entry {
+
+    private final String sourceId;
+
+    private final DistinctValues values;
+
+    private final long loaded;
+
+    private boolean refreshing;
+
+    Entry( String sourceId, DistinctValues values, long loaded ) {
+      this.sourceId = sourceId;
+      this.values = values;
+      this.loaded = loaded;
+    }
+  }
+
+}
@@ -0,0 +1,67 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+/**
+ * The values of a column returned by the values action
+ */
+public class ColumnValues {
+
+  private String columnId;
+
+  private String[] values;
+
+  private boolean more;
+
+  /**
+   * Returns the id of the column
+   *
+   * @return
+   */
+  public String getColumnId() {
+    return columnId;
+  }
+
+  public void setColumnId( String columnId ) {
+    this.columnId = columnId;
+  }
+
+  /**
+   * Returns the matching values, sorted without regard to case, or by number for a numeric column
+   *
+   * @return
+   */
+  public String[] getValues() {
+    return values;
+  }
+
+  public void setValues( String[] values ) {
+    this.values = values;
+  }
+
+  /**
+   * Returns true if there may be more matching values than the ones returned
+   *
+   * @return
+   */
+  public boolean isMore() {
+    return more;
+  }
+
+  public void setMore( boolean more ) {
+    this.more = more;
+  }
+
+}
@@ -0,0 +1,252 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pentaho.metadata.datatable.Cell;
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.DataTable;
+import org.pentaho.metadata.datatable.Row;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A DataTable in the compact encoding the query action sends when asked for <code>encoding=compact</code>. The table
+ * is sent column by column instead of row by row: the numeric values of a column are one flat array, and its
+ * formatted values are indexes into a dictionary of the distinct strings, so a dimension value is sent once however
+ * many rows it appears in. Which cells have no value is carried in null bitmaps, base64 encoded with bit
+ * <code>i % 8</code> of byte <code>i / 8</code> set for a null in row <code>i</code>; the array entries of null cells
+ * are 0. The decoder is <code>pentaho.pda.model.svc.decodeCompactTable</code> in models-svc.js.
+ */
+public class CompactDataTable {
+
+  public static final String ENCODING = "compact"; //$NON-NLS-1$
+
+  private Column[] cols;
+
+  private int rowCount;
+
+  private ColumnData[] data;
+
+  private boolean truncated;
+
+  /**
+   * Encodes a table, keeping only some of its columns
+   *
+   * @param table
+   * @param columnIds
+   *          the ids of the columns to keep, in the order to send them; null to keep all the columns. Ids of columns
+   *          that are not in the table are ignored.
+   * @return
+   */
+  public static CompactDataTable encode( DataTable table, String[] columnIds ) {
+    Column[] columns = table.getCols() == null ? new Column[0] : table.getCols();
+    Row[] rows = table.getRows() == null ? new Row[0] : table.getRows();
+    List<Integer> selected = new ArrayList<Integer>();
+    if ( columnIds == null ) {
+      for ( int i = 0; i < columns.length; i++ ) {
+        selected.add( i );
+      }
+    } else {
+      for ( String columnId : columnIds ) {
+        for ( int i = 0; i < columns.length; i++ ) {
+          if ( columns[i] != null && columnId.equals( columns[i].getId() ) ) {
+            selected.add( i );
+            break;
+          }
+        }
+      }
+    }
+
+    CompactDataTable compact = new CompactDataTable();
+    compact.cols = new Column[selected.size()];
+    compact.data = new ColumnData[selected.size()];
+    compact.rowCount = rows.length;
+    for ( int i = 0; i < selected.size(); i++ ) {
+      compact.cols[i] = columns[selected.get( i )];
+      compact.data[i] = encodeColumn( rows, selected.get( i ) );
+    }
+    return compact;
+  }
+
+  private static ColumnData encodeColumn( Row[] rows, int index ) {
+    BigDecimal[] values = new BigDecimal[rows.length];
+    byte[] valueNulls = new byte[( rows.length + 7 ) / 8];
+    int valueCount = 0;
+    int[] formatted = new int[rows.length];
+    byte[] formattedNulls = new byte[valueNulls.length];
+    int formattedCount = 0;
+    Map<String, Integer> codes = new HashMap<String, Integer>();
+    List<String> dictionary = new ArrayList<String>();
+
+    for ( int i = 0; i < rows.length; i++ ) {
+      Cell[] cells = rows[i] == null ? null : rows[i].getC();
+      Cell cell = cells == null || index >= cells.length ? null : cells[index];
+      BigDecimal value = cell == null ? null : cell.getV();
+      if ( value == null ) {
+        values[i] = BigDecimal.ZERO;
+        setBit( valueNulls, i );
+      } else {
+        values[i] = value;
+        valueCount++;
+      }
+      String text = cell == null ? null : cell.getF();
+      if ( text == null ) {
+        setBit( formattedNulls, i );
+      } else {
+        Integer code = codes.get( text );
+        if ( code == null ) {
+          code = dictionary.size();
+          codes.put( text, code );
+          dictionary.add( text );
+        }
+        formatted[i] = code;
+        formattedCount++;
+      }
+    }
+
+    // a column without any value of a kind leaves out that kind entirely
+    ColumnData data = new ColumnData();
+    if ( valueCount > 0 ) {
+      data.values = values;
+      data.valueNulls = valueCount < rows.length ? Base64.getEncoder().encodeToString( valueNulls ) : null;
+    }
+    if ( formattedCount > 0 ) {
+      data.dictionary = dictionary.toArray( new String[dictionary.size()] );
+      data.formatted = formatted;
+      data.formattedNulls =
+          formattedCount < rows.length ? Base64.getEncoder().encodeToString( formattedNulls ) : null;
+    }
+    return data;
+  }
+
+  private static void setBit( byte[] bitmap, int i ) {
+    bitmap[i >> 3] |= 1 << ( i & 7 );
+  }
+
+  /**
+   * Returns the encoding name, so that a client can tell a compact table from a plain one
+   *
+   * @return
+   */
+  public String getEncoding() {
+    return ENCODING;
+  }
+
+  /**
+   * Returns the columns that were sent, in the order of {@link #getData()}
+   *
+   * @return
+   */
+  public Column[] getCols() {
+    return cols;
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * Returns the values of each column
+   *
+   * @return
+   */
+  public ColumnData[] getData() {
+    return data;
+  }
+
+  /**
+   * Returns true if the server cut the result short
+   *
+   * @return
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  public void setTruncated( boolean truncated ) {
+    this.truncated = truncated;
+  }
+
+  /**
+   * The values of one column. A missing array means the column has no value of that kind in any row; a missing
+   * bitmap means it has one in every row.
+   */
+  @JsonInclude( JsonInclude.Include.NON_NULL )
+  public static class ColumnData {
+
+    private BigDecimal[] values;
+
+    private String valueNulls;
+
+    private String[] dictionary;
+
+    private int[] formatted;
+
+    private String formattedNulls;
+
+    /**
+     * Returns the numeric value of each row
+     *
+     * @return
+     */
+    public BigDecimal[] getValues() {
+      return values;
+    }
+
+    /**
+     * Returns the null bitmap of the numeric values
+     *
+     * @return
+     */
+    public String getValueNulls() {
+      return valueNulls;
+    }
+
+    /**
+     * Returns the distinct formatted values, in order of first appearance
+     *
+     * @return
+     */
+    public String[] getDictionary() {
+      return dictionary;
+    }
+
+    /**
+     * Returns the index in the dictionary of the formatted value of each row
+     *
+     * @return
+     */
+    public int[] getFormatted() {
+      return formatted;
+    }
+
+    /**
+     * Returns the null bitmap of the formatted values
+     *
+     * @return
+     */
+    public String getFormattedNulls() {
+      return formattedNulls;
+    }
+  }
+
+}
@@ -0,0 +1,148 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pentaho.metadata.datatable.Cell;
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.DataTable;
+import org.pentaho.metadata.datatable.Row;
+
+/**
+ * Collects a streamed query result into a DataTable, keeping track of its approximate heap size. Collection stops,
+ * and the result is flagged as truncated, once the row or byte limit is reached.
+ */
+public class DataTableCollector implements QueryRowCallback {
+
+  private static final int ROW_OVERHEAD = 32;
+
+  private static final int CELL_OVERHEAD = 32;
+
+  private static final int NUMBER_SIZE = 40;
+
+  private static final int STRING_OVERHEAD = 40;
+
+  private final int maxRows;
+
+  private final long maxBytes;
+
+  private Column[] columns;
+
+  private final List<Row> rows = new ArrayList<Row>();
+
+  private long bytes;
+
+  private boolean truncated;
+
+  /**
+   * @param maxRows
+   *          the maximum number of rows to collect, 0 or less for no limit
+   * @param maxBytes
+   *          the maximum estimated size of the collected rows, 0 or less for no limit
+   */
+  public DataTableCollector( int maxRows, long maxBytes ) {
+    this.maxRows = maxRows;
+    this.maxBytes = maxBytes;
+  }
+
+  @Override
+  public void columns( Column[] columns ) {
+    this.columns = columns;
+  }
+
+  @Override
+  public boolean row( Row row ) {
+    if ( maxRows > 0 && rows.size() >= maxRows ) {
+      truncated = true;
+      return false;
+    }
+    long rowBytes = estimateSize( row );
+    if ( maxBytes > 0 && bytes + rowBytes > maxBytes ) {
+      truncated = true;
+      return false;
+    }
+    rows.add( row );
+    bytes += rowBytes;
+    return true;
+  }
+
+  @Override
+  public void truncated( QueryLimits.Truncation reason ) {
+    truncated = true;
+  }
+
+  /**
+   * @return the collected result, or null if the query produced no table
+   */
+  public DataTable getTable() {
+    if ( columns == null ) {
+      return null;
+    }
+    DataTable table = new DataTable();
+    table.setCols( columns );
+    table.setRows( rows.toArray( new Row[rows.size()] ) );
+    return table;
+  }
+
+  public int getRowCount() {
+    return rows.size();
+  }
+
+  /**
+   * @return the estimated heap size of the collected rows
+   */
+  public long getEstimatedBytes() {
+    return bytes;
+  }
+
+  /**
+   * @return true if rows were dropped because a limit of this collector or of the server was reached
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  static long estimateSize( Row row ) {
+    long size = ROW_OVERHEAD;
+    Cell[] cells = row == null ? null : row.getC();
+    if ( cells != null ) {
+      for ( Cell cell : cells ) {
+        size += CELL_OVERHEAD;
+        if ( cell != null ) {
+          if ( cell.getV() != null ) {
+            size += NUMBER_SIZE;
+          }
+          if ( cell.getF() != null ) {
+            size += STRING_OVERHEAD + 2L * cell.getF().length();
+          }
+        }
+      }
+    }
+    return size;
+  }
+
+  static long estimateSize( DataTable table ) {
+    long size = 0;
+    if ( table != null && table.getRows() != null ) {
+      for ( Row row : table.getRows() ) {
+        size += estimateSize( row );
+      }
+    }
+    return size;
+  }
+
+}
@@ -0,0 +1,156 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.Row;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes a query result to the output as the same JSON document a serialized DataTable would produce, one row at a
+ * time. With a mapper for one of the binary {@link ResultFormat}s the same document is written in that encoding. The
+ * output is flushed after the first row and then every <code>flushRows</code> rows. A failed write is treated as the
+ * client going away: the writer stops accepting rows, which in turn stops the provider.
+ */
+public class DataTableJsonWriter implements QueryRowCallback {
+
+  private final JsonGenerator generator;
+
+  private final int rowLimit;
+
+  private final int flushRows;
+
+  private int rowCount;
+
+  private boolean started;
+
+  private boolean aborted;
+
+  private boolean truncated;
+
+  /**
+   * @param mapper
+   *          the mapper used to serialize columns and rows
+   * @param output
+   * @param rowLimit
+   *          the maximum number of rows to write, 0 or less for no limit
+   * @param flushRows
+   *          the number of rows written between two flushes of the output
+   * @throws IOException
+   */
+  public DataTableJsonWriter( ObjectMapper mapper, OutputStream output, int rowLimit, int flushRows )
+    throws IOException {
+    this.generator = mapper.getFactory().createGenerator( output, JsonEncoding.UTF8 );
+    this.generator.disable( JsonGenerator.Feature.AUTO_CLOSE_TARGET );
+    this.rowLimit = rowLimit;
+    this.flushRows = Math.max( 1, flushRows );
+  }
+
+  @Override
+  public void columns( Column[] columns ) throws Exception {
+    if ( started || aborted ) {
+      return;
+    }
+    started = true;
+    try {
+      generator.writeStartObject();
+      generator.writeFieldName( "cols" ); //$NON-NLS-1$
+      generator.writeObject( columns );
+      generator.writeFieldName( "rows" ); //$NON-NLS-1$
+      generator.writeStartArray();
+    } catch ( IOException e ) {
+      aborted = true;
+    }
+  }
+
+  @Override
+  public boolean row( Row row ) throws Exception {
+    if ( aborted || !started || isLimitReached() ) {
+      return false;
+    }
+    try {
+      generator.writeObject( row );
+      rowCount++;
+      if ( rowCount == 1 || rowCount % flushRows == 0 ) {
+        generator.flush();
+      }
+    } catch ( IOException e ) {
+      aborted = true;
+      return false;
+    }
+    return !isLimitReached();
+  }
+
+  @Override
+  public void truncated( QueryLimits.Truncation reason ) {
+    truncated = true;
+  }
+
+  /**
+   * Completes the JSON document. If no columns were ever reported the result is written as <code>null</code>, like
+   * a missing DataTable. A result the server cut short ends with a <code>truncated</code> flag.
+   *
+   * @throws IOException
+   */
+  public void finish() throws IOException {
+    if ( aborted ) {
+      return;
+    }
+    try {
+      if ( started ) {
+        generator.writeEndArray();
+        if ( truncated ) {
+          generator.writeBooleanField( "truncated", true ); //$NON-NLS-1$
+        }
+        generator.writeEndObject();
+      } else {
+        generator.writeNull();
+      }
+      generator.close();
+    } catch ( IOException e ) {
+      aborted = true;
+      throw e;
+    }
+  }
+
+  /**
+   * @return true if writing to the output failed, usually because the client disconnected
+   */
+  public boolean isAborted() {
+    return aborted;
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * @return true if the server cut the result short
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  private boolean isLimitReached() {
+    return rowLimit > 0 && rowCount >= rowLimit;
+  }
+
+}
@@ -0,0 +1,240 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.pentaho.metadata.datatable.Cell;
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.Row;
+import org.pentaho.metadata.model.thin.Query;
+
+/**
+ * The distinct values of a column, sorted without regard to case so that the values starting with a prefix can be
+ * found with a binary search. The values of a numeric column are sorted by number instead, and a prefix or a text
+ * is then looked for in their plain decimal form. Instances are immutable and can be shared between threads.
+ */
+public class DistinctValues {
+
+  private static final Comparator<String> ORDER =
+      Comparator.comparing( ( String value ) -> value.toLowerCase( Locale.ROOT ) ).thenComparing( value -> value );
+
+  private final String[] values;
+
+  /**
+   * The lower case forms of the values, in the same order
+   */
+  private final String[] keys;
+
+  private final boolean complete;
+
+  private final boolean numeric;
+
+  /**
+   * @param values
+   *          the values, duplicates and nulls are dropped
+   * @param complete
+   *          false if the column has more values than these
+   */
+  public DistinctValues( Collection<String> values, boolean complete ) {
+    this( values, complete, false );
+  }
+
+  /**
+   * @param values
+   *          the values, duplicates and nulls are dropped
+   * @param complete
+   *          false if the column has more values than these
+   * @param numeric
+   *          true to sort the values by number; ignored unless every value is a number
+   */
+  public DistinctValues( Collection<String> values, boolean complete, boolean numeric ) {
+    Set<String> distinct = new LinkedHashSet<String>( values );
+    distinct.remove( null );
+    String[] sorted = distinct.toArray( new String[distinct.size()] );
+    BigDecimal[] numbers = numeric ? toNumbers( sorted ) : null;
+    if ( numbers != null ) {
+      Arrays.sort( numbers );
+      for ( int i = 0; i < numbers.length; i++ ) {
+        sorted[ i ] = numbers[ i ].toPlainString();
+      }
+    } else {
+      Arrays.sort( sorted, ORDER );
+    }
+    this.values = sorted;
+    this.numeric = numbers != null;
+    this.keys = new String[ this.values.length ];
+    for ( int i = 0; i < keys.length; i++ ) {
+      keys[ i ] = this.values[ i ].toLowerCase( Locale.ROOT );
+    }
+    this.complete = complete;
+  }
+
+  /**
+   * Executes a query and collects the distinct values of its first column
+   *
+   * @param executor
+   * @param query
+   * @param maxValues
+   *          the maximum number of values to collect
+   * @return the values, incomplete if the query returned more than <code>maxValues</code> rows
+   * @throws Exception
+   */
+  public static DistinctValues load( QueryExecutor executor, Query query, int maxValues ) throws Exception {
+    List<String> values = new ArrayList<String>();
+    boolean[] more = new boolean[1];
+    boolean[] numeric = new boolean[] { true };
+    executor.execute( query, maxValues + 1, new QueryRowCallback() {
+      @Override
+      public void columns( Column[] columns ) {
+      }
+
+      @Override
+      public boolean row( Row row ) {
+        if ( values.size() >= maxValues ) {
+          more[ 0 ] = true;
+          return false;
+        }
+        Cell[] cells = row.getC();
+        Cell cell = cells == null || cells.length == 0 ? null : cells[ 0 ];
+        // some providers only fill in the formatted value
+        Object value = cell == null ? null : cell.getV() != null ? cell.getV() : cell.getF();
+        numeric[ 0 ] &= value == null || value instanceof Number;
+        values.add( value == null ? null : value.toString() );
+        return true;
+      }
+
+      @Override
+      public void truncated( QueryLimits.Truncation reason ) {
+        more[ 0 ] = true;
+      }
+    } );
+    return new DistinctValues( values, !more[ 0 ], numeric[ 0 ] );
+  }
+
+  /**
+   * @param values
+   * @return the numbers, or null if a value is not a number
+   */
+  private static BigDecimal[] toNumbers( String[] values ) {
+    BigDecimal[] numbers = new BigDecimal[ values.length ];
+    try {
+      for ( int i = 0; i < values.length; i++ ) {
+        numbers[ i ] = new BigDecimal( values[ i ] );
+      }
+    } catch ( NumberFormatException e ) {
+      // NaN, infinity or text
+      return null;
+    }
+    return numbers;
+  }
+
+  /**
+   * @return false if the column has more values than these
+   */
+  public boolean isComplete() {
+    return complete;
+  }
+
+  public int size() {
+    return values.length;
+  }
+
+  /**
+   * @return true if the values are sorted by number
+   */
+  public boolean isNumeric() {
+    return numeric;
+  }
+
+  /**
+   * Returns the first values
+   *
+   * @param max
+   *          the maximum number of values to return, 0 or less for all
+   * @return
+   */
+  public List<String> first( int max ) {
+    int count = max > 0 ? Math.min( max, values.length ) : values.length;
+    return Collections.unmodifiableList( Arrays.asList( values ).subList( 0, count ) );
+  }
+
+  /**
+   * Returns the values that start with a prefix, ignoring case
+   *
+   * @param prefix
+   * @param max
+   *          the maximum number of values to return, 0 or less for all
+   * @return
+   */
+  public List<String> startingWith( String prefix, int max ) {
+    String key = prefix.toLowerCase( Locale.ROOT );
+    if ( numeric ) {
+      // the values starting with a prefix are spread over the numeric order
+      List<String> matches = new ArrayList<String>();
+      for ( int i = 0; i < keys.length && ( max <= 0 || matches.size() < max ); i++ ) {
+        if ( keys[ i ].startsWith( key ) ) {
+          matches.add( values[ i ] );
+        }
+      }
+      return matches;
+    }
+    // all the keys with the prefix follow each other, starting at the first key not less than the prefix
+    int low = 0;
+    int high = keys.length;
+    while ( low < high ) {
+      int middle = ( low + high ) >>> 1;
+      if ( keys[ middle ].compareTo( key ) < 0 ) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    List<String> matches = new ArrayList<String>();
+    for ( int i = low; i < keys.length && keys[ i ].startsWith( key ) && ( max <= 0 || matches.size() < max ); i++ ) {
+      matches.add( values[ i ] );
+    }
+    return matches;
+  }
+
+  /**
+   * Returns the values that contain a text, ignoring case
+   *
+   * @param text
+   * @param max
+   *          the maximum number of values to return, 0 or less for all
+   * @return
+   */
+  public List<String> containing( String text, int max ) {
+    String key = text.toLowerCase( Locale.ROOT );
+    List<String> matches = new ArrayList<String>();
+    for ( int i = 0; i < keys.length && ( max <= 0 || matches.size() < max ); i++ ) {
+      if ( keys[ i ].contains( key ) ) {
+        matches.add( values[ i ] );
+      }
+    }
+    return matches;
+  }
+
+}
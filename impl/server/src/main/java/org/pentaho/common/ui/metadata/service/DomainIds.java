@@ -0,0 +1,48 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+/**
+ * Matches cached models against the domain id of an <code>invalidatecache</code> request. The id of a model is
+ * <code>provider~group~model</code>, where the group is the domain the model was published in, so a domain id
+ * matches the group segment of a model id exactly, or else the whole model id.
+ */
+final class DomainIds {
+
+  private static final char SEPARATOR = '~';
+
+  private DomainIds() {
+  }
+
+  /**
+   * @param modelId
+   *          the id of a cached model
+   * @param domainId
+   *          the id of the domain being invalidated
+   * @return whether the model belongs to the domain
+   */
+  static boolean matches( String modelId, String domainId ) {
+    if ( modelId == null || domainId == null ) {
+      return false;
+    }
+    if ( modelId.equals( domainId ) ) {
+      return true;
+    }
+    int first = modelId.indexOf( SEPARATOR );
+    int last = modelId.lastIndexOf( SEPARATOR );
+    return first >= 0 && last > first && modelId.substring( first + 1, last ).equals( domainId );
+  }
+
+}
@@ -0,0 +1,198 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.pentaho.metadata.model.thin.Query;
+
+/**
+ * Keeps track of the queries being executed, so that identical queries arriving while one is running wait for its
+ * result instead of being executed again. Queries are identical when they have the same canonical fingerprint, row
+ * limit and security context, see {@link SingleFlightQueryExecutor}.
+ */
+public class InFlightQueries {
+
+  private static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+  private static InFlightQueries instance;
+
+  private final boolean enabled;
+
+  private final long maxBytes;
+
+  private final Map<String, Flight> flights = new HashMap<String, Flight>();
+
+  private final AtomicLong executions = new AtomicLong();
+
+  private final AtomicLong coalesced = new AtomicLong();
+
+  private final AtomicLong fallbacks = new AtomicLong();
+
+  private final AtomicLong waitTimeouts = new AtomicLong();
+
+  /**
+   * @param enabled
+   * @param maxBytes
+   *          the maximum estimated size of a result that is shared with waiting queries
+   */
+  InFlightQueries( boolean enabled, long maxBytes ) {
+    this.enabled = enabled;
+    this.maxBytes = maxBytes;
+  }
+
+  public static synchronized InFlightQueries getInstance() {
+    if ( instance == null ) {
+      instance = new InFlightQueries(
+          MetadataModelsSettings.getBoolean( MetadataModelsSettings.SINGLE_FLIGHT_ENABLED, true ),
+          MetadataModelsSettings.getLong( MetadataModelsSettings.SINGLE_FLIGHT_MAX_BYTES, DEFAULT_MAX_BYTES ) );
+    }
+    return instance;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Builds the key that identifies identical queries
+   *
+   * @param query
+   * @param rowLimit
+   * @param securityKey
+   *          the security context of the user, see {@link SecurityContextKey}
+   * @return
+   */
+  public String createKey( Query query, int rowLimit, String securityKey ) {
+    return QueryFingerprint.of( query ) + '|' + rowLimit + '|' + securityKey;
+  }
+
+  /**
+   * Returns the number of executions started, the number of queries that waited for one of them instead, the number
+   * of those that had to execute the query themselves after all because the result was too large to share, and the
+   * number of those that gave up waiting
+   *
+   * @return
+   */
+  public Map<String, Object> getStatistics() {
+    Map<String, Object> stats = new LinkedHashMap<String, Object>();
+    stats.put( "enabled", enabled ); //$NON-NLS-1$
+    synchronized ( this ) {
+      stats.put( "inFlight", flights.size() ); //$NON-NLS-1$
+    }
+    stats.put( "executions", executions.get() ); //$NON-NLS-1$
+    stats.put( "coalesced", coalesced.get() ); //$NON-NLS-1$
+    stats.put( "fallbacks", fallbacks.get() ); //$NON-NLS-1$
+    stats.put( "waitTimeouts", waitTimeouts.get() ); //$NON-NLS-1$
+    return stats;
+  }
+
+  /**
+   * Returns a new flight, to be passed to {@link #join(String, Flight)}
+   *
+   * @return
+   */
+  Flight newFlight() {
+    return new Flight( maxBytes );
+  }
+
+  /**
+   * Joins the execution of an identical query, or registers a new one if there is none
+   *
+   * @param key
+   * @param flight
+   *          the flight to register if no identical query is running
+   * @return the flight of the identical query being executed, or null if the caller has to execute the query
+   */
+  synchronized Flight join( String key, Flight flight ) {
+    Flight running = flights.get( key );
+    if ( running == null ) {
+      flights.put( key, flight );
+      executions.incrementAndGet();
+      return null;
+    }
+    synchronized ( running ) {
+      running.waiters++;
+    }
+    coalesced.incrementAndGet();
+    return running;
+  }
+
+  /**
+   * Ends an execution and wakes up the queries waiting for it
+   *
+   * @param key
+   * @param flight
+   * @param executed
+   *          what the executor returned
+   * @param complete
+   *          true if the whole result was collected
+   * @param error
+   *          the reason the execution failed, or null
+   */
+  void land( String key, Flight flight, boolean executed, boolean complete, Exception error ) {
+    synchronized ( this ) {
+      if ( flights.get( key ) == flight ) {
+        flights.remove( key );
+      }
+    }
+    synchronized ( flight ) {
+      flight.done = true;
+      flight.executed = executed;
+      flight.complete = complete;
+      flight.error = error;
+      flight.notifyAll();
+    }
+  }
+
+  void countFallback() {
+    fallbacks.incrementAndGet();
+  }
+
+  void countWaitTimeout() {
+    waitTimeouts.incrementAndGet();
+  }
+
+  synchronized int size() {
+    return flights.size();
+  }
+
+  /**
+   * One execution and the queries waiting for it. The collector is only used by the executing thread until the
+   * flight is done; the other fields are guarded by the flight itself.
+   */
+  static class Flight {
+
+    final DataTableCollector collector;
+
+    int waiters;
+
+    boolean done;
+
+    boolean executed;
+
+    boolean complete;
+
+    Exception error;
+
+    Flight( long maxBytes ) {
+      this.collector = new DataTableCollector( -1, maxBytes );
+    }
+  }
+
+}
@@ -0,0 +1,241 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.Row;
+import org.pentaho.metadata.model.thin.Query;
+import org.pentaho.platform.api.engine.IPentahoSession;
+
+/**
+ * Enforces the {@link QueryLimits} of a user. A query may return at most the maximum number of rows, whatever row
+ * limit the client asks for. A query with a timeout runs on a pool thread while the request waits for it until the
+ * deadline; a query still running then is cancelled, which interrupts the thread running the provider, and its
+ * result ends there. Rows arriving after the timeout are not passed on either, which also stops a streaming provider
+ * at the next row. A provider blocked in a call that ignores interrupts keeps its thread until that call returns, but
+ * nothing it produces reaches the client any more. The caller is told about a result that was cut short through
+ * {@link QueryRowCallback#truncated(QueryLimits.Truncation)}, and the truncation is counted in the
+ * {@link RequestMetrics}.
+ */
+public class LimitingQueryExecutor implements QueryExecutor {
+
+  private static final int DEFAULT_THREADS = 64;
+
+  private static ExecutorService pool;
+
+  private final QueryLimits.Limit limit;
+
+  private final RequestMetrics metrics;
+
+  private final ExecutorService executor;
+
+  private final IPentahoSession session;
+
+  private final QueryExecutor delegate;
+
+  /**
+   * Enforces the timeout on the rows only, for queries that run on the calling thread
+   *
+   * @param limit
+   *          the limits of the user running the queries
+   * @param metrics
+   * @param delegate
+   */
+  public LimitingQueryExecutor( QueryLimits.Limit limit, RequestMetrics metrics, QueryExecutor delegate ) {
+    this( limit, metrics, null, null, delegate );
+  }
+
+  /**
+   * @param limit
+   *          the limits of the user running the queries
+   * @param metrics
+   * @param executor
+   *          the pool queries with a timeout run on, or null to run them on the calling thread
+   * @param session
+   *          the session the queries run in on the pool
+   * @param delegate
+   */
+  public LimitingQueryExecutor( QueryLimits.Limit limit, RequestMetrics metrics, ExecutorService executor,
+      IPentahoSession session, QueryExecutor delegate ) {
+    this.limit = limit;
+    this.metrics = metrics;
+    this.executor = executor;
+    this.session = session;
+    this.delegate = delegate;
+  }
+
+  /**
+   * Returns the pool queries with a timeout run on. It does not queue: when all its threads are busy, a query runs
+   * on the calling thread and only its rows are subject to the timeout.
+   *
+   * @return
+   */
+  public static synchronized ExecutorService getPool() {
+    if ( pool == null ) {
+      int threads = Math.max( 1, MetadataModelsSettings.getInt( MetadataModelsSettings.QUERY_TIMEOUT_THREADS,
+          DEFAULT_THREADS ) );
+      pool = new ThreadPoolExecutor( 0, threads, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+          new QueryThreadFactory() );
+    }
+    return pool;
+  }
+
+  @Override
+  public boolean execute( Query query, int rowLimit, QueryRowCallback callback ) throws Exception {
+    int maxRows = limit.getMaxRows();
+    boolean capped = maxRows > 0 && ( rowLimit <= 0 || rowLimit > maxRows );
+    long timeoutMillis = limit.getTimeoutMillis();
+    if ( !capped && timeoutMillis <= 0 ) {
+      return delegate.execute( query, rowLimit, callback );
+    }
+    long deadline = timeoutMillis > 0 ? nanoTime() + TimeUnit.MILLISECONDS.toNanos( timeoutMillis ) : 0;
+    LimitedCallback limited = new LimitedCallback( callback, capped ? maxRows : -1, deadline );
+    int executedRowLimit = limit.getExecutedRowLimit( rowLimit );
+    boolean executed;
+    Future<Boolean> future = null;
+    if ( timeoutMillis > 0 && executor != null ) {
+      try {
+        future = executor.submit( new SessionCallable<Boolean>( session,
+            () -> delegate.execute( query, executedRowLimit, limited ) ) );
+      } catch ( RejectedExecutionException e ) {
+        // every thread is busy: run here, the rows still stop at the deadline
+      }
+    }
+    if ( future == null ) {
+      executed = delegate.execute( query, executedRowLimit, limited );
+    } else {
+      executed = await( future, timeoutMillis, limited );
+    }
+    QueryLimits.Truncation truncation = limited.getTruncation();
+    if ( truncation != null ) {
+      metrics.truncated( truncation );
+    }
+    return executed;
+  }
+
+  /**
+   * Waits for a query running on the pool until the deadline, and cancels it then
+   */
+  private static boolean await( Future<Boolean> future, long timeoutMillis, LimitedCallback limited )
+    throws Exception {
+    try {
+      return future.get( timeoutMillis, TimeUnit.MILLISECONDS );
+    } catch ( TimeoutException e ) {
+      // end the result before interrupting, so nothing the provider still produces gets through
+      limited.timeOut();
+      future.cancel( true );
+      return true;
+    } catch ( InterruptedException e ) {
+      future.cancel( true );
+      throw e;
+    } catch ( ExecutionException e ) {
+      throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    }
+  }
+
+  protected long nanoTime() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Passes rows on until a limit is reached. The rows may come from a pool thread while the request thread ends the
+   * result at the deadline, so the callback is called by one thread at a time.
+   */
+  private class LimitedCallback implements QueryRowCallback {
+
+    private final QueryRowCallback callback;
+
+    private final int maxRows;
+
+    private final long deadline;
+
+    private int rows;
+
+    private QueryLimits.Truncation truncation;
+
+    LimitedCallback( QueryRowCallback callback, int maxRows, long deadline ) {
+      this.callback = callback;
+      this.maxRows = maxRows;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public synchronized void columns( Column[] columns ) throws Exception {
+      if ( truncation == null ) {
+        callback.columns( columns );
+      }
+    }
+
+    @Override
+    public synchronized boolean row( Row row ) throws Exception {
+      if ( truncation != null ) {
+        return false;
+      }
+      if ( maxRows >= 0 && rows >= maxRows ) {
+        return truncate( QueryLimits.Truncation.ROWS );
+      }
+      if ( deadline != 0 && nanoTime() - deadline > 0 ) {
+        return truncate( QueryLimits.Truncation.TIMEOUT );
+      }
+      rows++;
+      return callback.row( row );
+    }
+
+    @Override
+    public synchronized void truncated( QueryLimits.Truncation reason ) throws Exception {
+      truncate( reason );
+    }
+
+    synchronized void timeOut() throws Exception {
+      truncate( QueryLimits.Truncation.TIMEOUT );
+    }
+
+    synchronized QueryLimits.Truncation getTruncation() {
+      return truncation;
+    }
+
+    private boolean truncate( QueryLimits.Truncation reason ) throws Exception {
+      if ( truncation == null ) {
+        truncation = reason;
+        callback.truncated( reason );
+      }
+      return false;
+    }
+  }
+
+  private static class QueryThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread( Runnable runnable ) {
+      Thread thread = new Thread( runnable, "metadata-query-" + count.incrementAndGet() ); //$NON-NLS-1$
+      thread.setDaemon( true );
+      return thread;
+    }
+  }
+
+}
@@ -14,130 +14,898 @@
 
 package org.pentaho.common.ui.metadata.service;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Predicate;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.pentaho.common.ui.messages.Messages;
+import org.pentaho.common.ui.metadata.model.impl.ModelInfoComparator;
+import org.pentaho.common.ui.services.StatusMessage;
 import org.pentaho.metadata.datatable.DataTable;
 import org.pentaho.metadata.model.thin.Condition;
 import org.pentaho.metadata.model.thin.Element;
 import org.pentaho.metadata.model.thin.MetadataModelsService;
-import org.pentaho.metadata.model.thin.Model;
 import org.pentaho.metadata.model.thin.ModelInfo;
 import org.pentaho.metadata.model.thin.Order;
-import org.pentaho.metadata.model.thin.Parameter;
 import org.pentaho.metadata.model.thin.Query;
+import org.pentaho.platform.api.engine.IAuthorizationPolicy;
 import org.pentaho.platform.api.engine.IParameterProvider;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.services.solution.SimpleContentGenerator;
+import org.pentaho.platform.util.messages.LocaleHelper;
 
 import com.fasterxml.jackson.annotation.JsonAlias;
-import com.fasterxml.jackson.annotation.JsonSubTypes;
-import com.fasterxml.jackson.annotation.JsonTypeInfo;
-import com.fasterxml.jackson.annotation.OptBoolean;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
-
+/**
+ * Serves the actions of MetadataModelsSvc. An instance only holds the parameters of the request it serves: the
+ * models service, the caches and the thread pools are shared by all requests and sessions, so the platform creates a
+ * new, short-lived instance for every request.
+ */
 public class MetadataModelsContentGenerator extends SimpleContentGenerator {
 
   private static final long serialVersionUID = -3934988366302705814L;
-  private static final String QUERY_TYPE = "org.pentaho.metadata.model.thin.Query";
-  private static final String ELEMENT_TYPE = "org.pentaho.metadata.model.thin.Element";
-  private static final String CONDITION_TYPE = "org.pentaho.metadata.model.thin.Condition";
-  private static final String LEGACY_CONDITION_TYPE = "org.pentaho.common.ui.metadata.model.impl.Condition";
-  private static final String ORDER_TYPE = "org.pentaho.metadata.model.thin.Order";
-  private static final String PARAMETER_TYPE = "org.pentaho.metadata.model.thin.Parameter";
-  private static final String LEGACY_PARAMETER_TYPE = "org.pentaho.common.ui.metadata.model.impl.Parameter";
-
-  @JsonTypeInfo( use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "class",
-      requireTypeIdForSubtypes = OptBoolean.FALSE )
-  @JsonSubTypes( @JsonSubTypes.Type( value = Query.class, name = QUERY_TYPE ) )
-  private abstract static class QueryMixin {
-  }
-
-  @JsonTypeInfo( use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "class",
-      requireTypeIdForSubtypes = OptBoolean.FALSE )
-  @JsonSubTypes( @JsonSubTypes.Type( value = Element.class, name = ELEMENT_TYPE ) )
+
   private abstract static class ElementMixin {
     @JsonAlias( "defaultAggType" )
     abstract void setDefaultAggregation( String defaultAggregation );
   }
 
-  @JsonTypeInfo( use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "class",
-      requireTypeIdForSubtypes = OptBoolean.FALSE )
-  @JsonSubTypes( {
-    @JsonSubTypes.Type( value = Condition.class, name = CONDITION_TYPE ),
-    @JsonSubTypes.Type( value = Condition.class, name = LEGACY_CONDITION_TYPE )
-  } )
   private abstract static class ConditionMixin {
     @JsonAlias( "selectedAggType" )
     abstract void setSelectedAggregation( String selectedAggregation );
   }
 
-  @JsonTypeInfo( use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "class",
-      requireTypeIdForSubtypes = OptBoolean.FALSE )
-  @JsonSubTypes( @JsonSubTypes.Type( value = Order.class, name = ORDER_TYPE ) )
-  private abstract static class OrderMixin {
-  }
-
-  @JsonTypeInfo( use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "class",
-      requireTypeIdForSubtypes = OptBoolean.FALSE )
-  @JsonSubTypes( {
-    @JsonSubTypes.Type( value = Parameter.class, name = PARAMETER_TYPE ),
-    @JsonSubTypes.Type( value = Parameter.class, name = LEGACY_PARAMETER_TYPE )
-  } )
-  private abstract static class ParameterMixin {
-  }
-
   private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
   private static final ObjectMapper QUERY_OBJECT_MAPPER = createQueryObjectMapper();
+  private static final ObjectReader QUERY_READER = QUERY_OBJECT_MAPPER.readerFor( Query.class );
+  private static final ObjectReader BATCH_READER = QUERY_OBJECT_MAPPER.readerFor( BatchQueryItem[].class );
+  private static final ObjectReader PARAMETERS_READER = QUERY_OBJECT_MAPPER.readerFor(
+      new TypeReference<Map<String, String[]>>() { } ).with( DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY );
+  /**
+   * The service has no per-request state; its providers are registered globally
+   */
+  private static final MetadataModelsService MODELS_SERVICE = new MetadataModelsService();
+  private static final StreamingQueryExecutor QUERY_EXECUTOR = new StreamingQueryExecutor( MODELS_SERVICE );
+  private static final int DEFAULT_FLUSH_ROWS = 500;
+  private static final int DEFAULT_PAGE_SIZE = 100;
+  private static final int DEFAULT_VALUES_LIMIT = 100;
+  private static final int DEFAULT_SEARCH_LIMIT = 50;
+  private static final int SC_TOO_MANY_REQUESTS = 429;
 
-  private Log logger = LogFactory.getLog( MetadataModelsContentGenerator.class );
+  private static final Log logger = LogFactory.getLog( MetadataModelsContentGenerator.class );
 
   public static final String LIST_MODELS_ACTION = "listmodels"; //$NON-NLS-1$
   public static final String GET_MODEL_ACTION = "getmodel"; //$NON-NLS-1$
+  public static final String CATEGORY_COLUMNS_ACTION = "columns"; //$NON-NLS-1$
+  public static final String MODEL_DIFF_ACTION = "modeldiff"; //$NON-NLS-1$
+  public static final String SEARCH_ACTION = "search"; //$NON-NLS-1$
   public static final String QUERY_ACTION = "query"; //$NON-NLS-1$
+  public static final String PAGE_ACTION = "page"; //$NON-NLS-1$
+  public static final String COUNT_ACTION = "count"; //$NON-NLS-1$
+  public static final String PREPARE_ACTION = "prepare"; //$NON-NLS-1$
+  public static final String EXECUTE_ACTION = "execute"; //$NON-NLS-1$
+  public static final String CLOSE_PREPARED_ACTION = "closeprepared"; //$NON-NLS-1$
+  public static final String BATCH_QUERY_ACTION = "batchquery"; //$NON-NLS-1$
+  public static final String SUBMIT_JOB_ACTION = "submitjob"; //$NON-NLS-1$
+  public static final String JOB_STATUS_ACTION = "jobstatus"; //$NON-NLS-1$
+  public static final String JOB_RESULT_ACTION = "jobresult"; //$NON-NLS-1$
+  public static final String CANCEL_JOB_ACTION = "canceljob"; //$NON-NLS-1$
+  public static final String VALUES_ACTION = "values"; //$NON-NLS-1$
+  public static final String CLOSE_CURSOR_ACTION = "closecursor"; //$NON-NLS-1$
+  public static final String CACHE_STATS_ACTION = "cachestats"; //$NON-NLS-1$
+  public static final String ADMISSION_STATS_ACTION = "admissionstats"; //$NON-NLS-1$
+  public static final String METRICS_ACTION = "metrics"; //$NON-NLS-1$
+  public static final String INVALIDATE_CACHE_ACTION = "invalidatecache"; //$NON-NLS-1$
+
+  private static final String ADMINISTER_SECURITY_ACTION = "org.pentaho.security.administerSecurity"; //$NON-NLS-1$
 
   static ObjectMapper createQueryObjectMapper() {
     ObjectMapper mapper = new ObjectMapper();
     mapper.enable( JsonParser.Feature.STRICT_DUPLICATE_DETECTION );
     // Legacy Flexjson FQCNs are protocol identifiers, not classes that Jackson may load dynamically.
-    mapper.addMixIn( Query.class, QueryMixin.class );
+    // The aliases are needed by the bean deserializers the streaming deserializers fall back to.
     mapper.addMixIn( Element.class, ElementMixin.class );
     mapper.addMixIn( Condition.class, ConditionMixin.class );
-    mapper.addMixIn( Order.class, OrderMixin.class );
-    mapper.addMixIn( Parameter.class, ParameterMixin.class );
+    mapper.registerModule( ThinQueryDeserializers.createModule() );
     return mapper;
   }
 
   @Override
   public void createContent( OutputStream output ) throws Exception {
+    try {
+      dispatch( output );
+    } catch ( QueryValidationException e ) {
+      HttpServletResponse httpResponse = getHttpResponse();
+      if ( httpResponse != null ) {
+        httpResponse.setStatus( HttpServletResponse.SC_BAD_REQUEST );
+      }
+      writeError( e.getCode(), e.getMessage(), output );
+    } catch ( QueryRejectedException e ) {
+      HttpServletResponse httpResponse = getHttpResponse();
+      if ( httpResponse != null ) {
+        httpResponse.setStatus( SC_TOO_MANY_REQUESTS );
+        httpResponse.setHeader( "Retry-After", String.valueOf( e.getRetryAfterSeconds() ) ); //$NON-NLS-1$
+      }
+      writeError( "ERROR_0008_TOO_MANY_QUERIES", Messages.getErrorString( //$NON-NLS-1$
+          "MetadataModelsContentGenerator.ERROR_0008_TOO_MANY_QUERIES", String.valueOf( e.getRetryAfterSeconds() ) ), //$NON-NLS-1$
+          output );
+    }
+  }
+
+  private void dispatch( OutputStream output ) throws Exception {
 
     IParameterProvider params = parameterProviders.get( IParameterProvider.SCOPE_REQUEST );
     String action = params.getStringParameter( "action", null ); //$NON-NLS-1$
 
+    RequestTimer timer = RequestMetrics.getInstance().start( action );
+    try {
+      dispatch( action, params, timer, timer.count( output ) );
+      timer.succeeded();
+    } finally {
+      timer.finish();
+    }
+  }
+
+  private void dispatch( String action, IParameterProvider params, RequestTimer timer, OutputStream output )
+    throws Exception {
+
     if ( LIST_MODELS_ACTION.equals( action ) ) {
       String providerId = params.getStringParameter( "providerid", null ); //$NON-NLS-1$
       String groupId = params.getStringParameter( "groupid", null ); //$NON-NLS-1$
       String match = params.getStringParameter( "match", null ); //$NON-NLS-1$
-      MetadataModelsService svc = new MetadataModelsService();
-      ModelInfo[] infos = svc.getModelList( providerId, groupId, match );
-      writeJson( infos, output );
+      timer.setSubject( "providerid " + providerId + ", groupid " + groupId + ", match " + match ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+      String key = ModelResponseCache.listKey( providerId, groupId, match, LocaleHelper.getLocale(),
+          SecurityContextKey.get( getSession() ) );
+      boolean status = "true".equals( params.getStringParameter( "status", null ) ); //$NON-NLS-1$ //$NON-NLS-2$
+      int offset = (int) params.getLongParameter( "offset", 0 ); //$NON-NLS-1$
+      int limit = (int) params.getLongParameter( "limit", 0 ); //$NON-NLS-1$
+      ModelListFanOut fanOut = getModelListFanOut();
+      if ( !status && ( offset > 0 || limit > 0 ) ) {
+        listModelPage( fanOut, key, providerId, groupId, match, offset, limit, timer, output );
+      } else if ( providerId == null && fanOut.hasProviders() ) {
+        listModels( fanOut, key, groupId, match, status, timer, output );
+      } else {
+        writeCachedJson( key, () -> getModelsService().getModelList( providerId, groupId, match ), timer, output );
+      }
     } else if ( GET_MODEL_ACTION.equals( action ) ) {
       String id = params.getStringParameter( "id", null ); //$NON-NLS-1$
-      MetadataModelsService svc = new MetadataModelsService();
-      Model model = svc.getModel( id );
-      writeJson( model, output );
+      timer.setSubject( "model " + id ); //$NON-NLS-1$
+      String securityKey = SecurityContextKey.get( getSession() );
+      if ( "true".equals( params.getStringParameter( "summary", null ) ) ) { //$NON-NLS-1$ //$NON-NLS-2$
+        String key = ModelResponseCache.summaryKey( id, LocaleHelper.getLocale(), securityKey );
+        writeCachedJson( key, () -> {
+          ModelIndex index = ModelIndexCache.getInstance().getIndex( id, securityKey, getModelsService() );
+          if ( index == null ) {
+            return null;
+          }
+          ModelSnapshotCache.getInstance().add(
+              ModelResponseCache.modelKey( id, LocaleHelper.getLocale(), securityKey ), index );
+          return index.getSummary();
+        }, timer, output );
+      } else {
+        String key = ModelResponseCache.modelKey( id, LocaleHelper.getLocale(), securityKey );
+        writeCachedJson( key, () -> getModelsService().getModel( id ), timer, output );
+      }
+    } else if ( MODEL_DIFF_ACTION.equals( action ) ) {
+      modelDiff( params, timer, output );
+    } else if ( CATEGORY_COLUMNS_ACTION.equals( action ) ) {
+      String id = params.getStringParameter( "id", null ); //$NON-NLS-1$
+      String[] categoryIds = params.getStringArrayParameter( "category", null ); //$NON-NLS-1$
+      timer.setSubject( "columns of model " + id ); //$NON-NLS-1$
+      timer.phase( RequestTimer.Phase.EXECUTE );
+      ModelIndex index = ValidatingQueryExecutor.getIndex( ModelIndexCache.getInstance(), id,
+          SecurityContextKey.get( getSession() ), getModelsService() );
+      Map<String, Element[]> columns = index.getColumns( categoryIds );
+      timer.phase( RequestTimer.Phase.SERIALIZE );
+      writeJson( columns, output );
+    } else if ( SEARCH_ACTION.equals( action ) ) {
+      searchCatalog( params, timer, output );
     } else if ( QUERY_ACTION.equals( action ) ) {
-      String queryStr = params.getStringParameter( "query", null ); //$NON-NLS-1$
       int rowLimit = (int) params.getLongParameter( "rowlimit", -1 ); //$NON-NLS-1$
-      Query query = QUERY_OBJECT_MAPPER.readValue( queryStr, Query.class );
-      MetadataModelsService svc = new MetadataModelsService();
-      DataTable table = svc.executeQuery( query, rowLimit );
-      writeJson( table, output );
+      Query query = readQueryPayload( params, "query", QUERY_READER ); //$NON-NLS-1$
+      timer.setQuery( query );
+      writeQueryResult( query, createQueryExecutor(), params, timer, output );
+    } else if ( PREPARE_ACTION.equals( action ) ) {
+      prepareQuery( params, output );
+    } else if ( EXECUTE_ACTION.equals( action ) ) {
+      executePrepared( params, timer, output );
+    } else if ( CLOSE_PREPARED_ACTION.equals( action ) ) {
+      String handle = params.getStringParameter( "handle", null ); //$NON-NLS-1$
+      writeJson( PreparedQueryStore.getInstance( getSession() ).remove( handle ), output );
+    } else if ( COUNT_ACTION.equals( action ) ) {
+      int maxCount = (int) params.getLongParameter( "maxcount", -1 ); //$NON-NLS-1$
+      boolean estimate = "true".equals( params.getStringParameter( "estimate", null ) ); //$NON-NLS-1$ //$NON-NLS-2$
+      Query query = readQueryPayload( params, "query", QUERY_READER ); //$NON-NLS-1$
+      IPentahoSession session = getSession();
+      QueryCounter counter = new QueryCounter( QueryResultCache.getInstance(), SecurityContextKey.get( session ),
+          QueryLimits.getInstance().get( session == null ? null : session.getName() ), createQueryExecutor() );
+      writeJson( counter.count( query, maxCount, estimate ), output );
+    } else if ( PAGE_ACTION.equals( action ) ) {
+      queryPage( params, output );
+    } else if ( BATCH_QUERY_ACTION.equals( action ) ) {
+      BatchQueryItem[] items = readQueryPayload( params, "queries", BATCH_READER ); //$NON-NLS-1$
+      batchQuery( Arrays.asList( items ), output );
+    } else if ( SUBMIT_JOB_ACTION.equals( action ) ) {
+      submitJob( params, output );
+    } else if ( JOB_STATUS_ACTION.equals( action ) ) {
+      QueryJob job = getJob( params, output );
+      if ( job != null ) {
+        writeJson( job.getStatus(), output );
+      }
+    } else if ( JOB_RESULT_ACTION.equals( action ) ) {
+      jobResult( params, output );
+    } else if ( CANCEL_JOB_ACTION.equals( action ) ) {
+      String jobId = params.getStringParameter( "job", null ); //$NON-NLS-1$
+      writeJson( QueryJobStore.getInstance( getSession() ).cancel( jobId ), output );
+    } else if ( VALUES_ACTION.equals( action ) ) {
+      columnValues( params, output );
+    } else if ( CLOSE_CURSOR_ACTION.equals( action ) ) {
+      String cursor = params.getStringParameter( "cursor", null ); //$NON-NLS-1$
+      boolean closed = cursor != null && QueryCursorStore.getInstance( getSession() ).remove( cursor );
+      writeJson( closed, output );
+    } else if ( CACHE_STATS_ACTION.equals( action ) ) {
+      if ( checkAdministrator( output ) ) {
+        Map<String, Object> stats = QueryResultCache.getInstance().getStatistics();
+        stats.put( "inFlight", InFlightQueries.getInstance().getStatistics() ); //$NON-NLS-1$
+        stats.put( "columnValues", ColumnValueCache.getInstance().getStatistics() ); //$NON-NLS-1$
+        writeJson( stats, output );
+      }
+    } else if ( ADMISSION_STATS_ACTION.equals( action ) ) {
+      if ( checkAdministrator( output ) ) {
+        writeJson( QueryAdmission.getInstance().getStatistics(), output );
+      }
+    } else if ( METRICS_ACTION.equals( action ) ) {
+      if ( checkAdministrator( output ) ) {
+        writeBytes( RequestMetrics.getInstance().getText().getBytes( StandardCharsets.UTF_8 ), output );
+      }
+    } else if ( INVALIDATE_CACHE_ACTION.equals( action ) ) {
+      if ( checkAdministrator( output ) ) {
+        String domainId = params.getStringParameter( "domainid", null ); //$NON-NLS-1$
+        if ( domainId == null ) {
+          QueryResultCache.getInstance().invalidateAll();
+          ModelResponseCache.getInstance().invalidateAll();
+          ColumnValueCache.getInstance().invalidateAll();
+          ModelIndexCache.getInstance().invalidateAll();
+          ModelCatalogIndex.getInstance().invalidateAll();
+          SortedModelListCache.getInstance().invalidateAll();
+        } else {
+          QueryResultCache.getInstance().invalidate( domainId );
+          ModelResponseCache.getInstance().invalidate( domainId );
+          ColumnValueCache.getInstance().invalidate( domainId );
+          ModelIndexCache.getInstance().invalidate( domainId );
+          ModelCatalogIndex.getInstance().invalidate( domainId );
+          SortedModelListCache.getInstance().invalidate( domainId );
+        }
+        writeJson( true, output );
+      }
+    }
+
+  }
+
+  /**
+   * Reads the query payload of a request. A POST with a JSON content type carries the payload as its body, which is
+   * parsed straight from the request stream; otherwise the payload is the value of the named request parameter, as
+   * sent by models-svc.js.
+   */
+  protected <T> T readQueryPayload( IParameterProvider params, String name, ObjectReader reader ) throws IOException {
+    HttpServletRequest httpRequest = getHttpRequest();
+    if ( isJsonBody( httpRequest ) ) {
+      return reader.readValue( httpRequest.getInputStream() );
+    }
+    return reader.readValue( params.getStringParameter( name, null ) );
+  }
+
+  private static boolean isJsonBody( HttpServletRequest httpRequest ) {
+    if ( httpRequest == null ) {
+      return false;
+    }
+    String contentType = httpRequest.getContentType();
+    return "POST".equalsIgnoreCase( httpRequest.getMethod() ) && contentType != null //$NON-NLS-1$
+        && contentType.trim().toLowerCase( Locale.ROOT ).startsWith( "application/json" ); //$NON-NLS-1$
+  }
+
+  /**
+   * Returns the fan-out listing the models of the providers concurrently
+   */
+  protected ModelListFanOut getModelListFanOut() {
+    return ModelListFanOut.getInstance();
+  }
+
+  /**
+   * Returns the models service shared by all requests and sessions
+   */
+  protected MetadataModelsService getModelsService() {
+    return MODELS_SERVICE;
+  }
+
+  /**
+   * Returns the executor for the queries of this request: the time and rows of every query are limited, results are
+   * served from the query cache where possible, the other queries are checked against their model, identical
+   * queries running at the same time share one execution, and the remaining queries only run once admission
+   * control lets them
+   */
+  protected QueryExecutor createQueryExecutor() {
+    return createQueryExecutor( MetadataModelsSettings.getBoolean( MetadataModelsSettings.QUERY_VALIDATION_ENABLED,
+        true ) );
+  }
+
+  /**
+   * Returns the executor for the queries of this request
+   *
+   * @param validate
+   *          false for queries that were already checked against their model
+   */
+  protected QueryExecutor createQueryExecutor( boolean validate ) {
+    IPentahoSession session = getSession();
+    String securityKey = SecurityContextKey.get( session );
+    String user = session == null ? null : session.getName();
+    QueryLimits.Limit limit = QueryLimits.getInstance().get( user );
+    QueryExecutor admitted = new AdmissionQueryExecutor( QueryAdmission.getInstance(), user, QUERY_EXECUTOR );
+    QueryExecutor shared = new SingleFlightQueryExecutor( InFlightQueries.getInstance(), securityKey,
+        limit.getTimeoutMillis(), admitted );
+    if ( validate ) {
+      shared = new ValidatingQueryExecutor( ModelIndexCache.getInstance(), securityKey, getModelsService(), shared );
+    }
+    QueryExecutor cached = new CachingQueryExecutor( QueryResultCache.getInstance(), securityKey, shared );
+    return new LimitingQueryExecutor( limit, RequestMetrics.getInstance(), LimitingQueryExecutor.getPool(), session,
+        cached );
+  }
+
+  /**
+   * Returns a page of a query result held on the server. Without a cursor the query is executed and its result is
+   * held in the session, so that later pages can be fetched with the returned cursor without re-executing it.
+   */
+  protected void queryPage( IParameterProvider params, OutputStream output ) throws Exception {
+    String cursor = params.getStringParameter( "cursor", null ); //$NON-NLS-1$
+    QueryCursorStore store = QueryCursorStore.getInstance( getSession() );
+
+    if ( cursor == null ) {
+      int rowLimit = (int) params.getLongParameter( "rowlimit", -1 ); //$NON-NLS-1$
+      Query query = readQueryPayload( params, "query", QUERY_READER ); //$NON-NLS-1$
+      DataTableCollector collector = new DataTableCollector( rowLimit, store.getMaxBytes() );
+      createQueryExecutor().execute( query, rowLimit, collector );
+      DataTable table = collector.getTable();
+      if ( table == null ) {
+        writeResult( null, output );
+        return;
+      }
+      cursor = store.add( table, !collector.isTruncated(), collector.getEstimatedBytes() );
+    }
+    writePage( store, cursor, params, output );
+  }
+
+  /**
+   * Writes the page of a held result selected by the offset and limit parameters
+   */
+  private void writePage( QueryCursorStore store, String cursor, IParameterProvider params, OutputStream output ) {
+    int offset = (int) params.getLongParameter( "offset", 0 ); //$NON-NLS-1$
+    int defaultPageSize = MetadataModelsSettings.getInt( MetadataModelsSettings.PAGE_SIZE, DEFAULT_PAGE_SIZE );
+    int limit = (int) params.getLongParameter( "limit", defaultPageSize ); //$NON-NLS-1$
+    QueryPage page = store.getPage( cursor, offset, limit );
+    if ( page == null ) {
+      writeError( "ERROR_0001_UNKNOWN_CURSOR", //$NON-NLS-1$
+          Messages.getErrorString( "MetadataModelsContentGenerator.ERROR_0001_UNKNOWN_CURSOR", cursor ), output ); //$NON-NLS-1$
+      return;
+    }
+    writeResult( page, output );
+  }
+
+  /**
+   * Starts a query in the background and returns the status of the new job. The client polls the job with the
+   * jobstatus action and fetches the result with jobresult, or stops it with canceljob.
+   */
+  protected void submitJob( IParameterProvider params, OutputStream output ) throws Exception {
+    int rowLimit = (int) params.getLongParameter( "rowlimit", -1 ); //$NON-NLS-1$
+    Query query = readQueryPayload( params, "query", QUERY_READER ); //$NON-NLS-1$
+    IPentahoSession session = getSession();
+    QueryJob job;
+    try {
+      job = QueryJobStore.getInstance( session ).submit( query, rowLimit, createQueryExecutor(), session,
+          QueryCursorStore.getInstance( session ) );
+    } catch ( RejectedExecutionException e ) {
+      writeError( "ERROR_0007_TOO_MANY_JOBS", //$NON-NLS-1$
+          Messages.getErrorString( "MetadataModelsContentGenerator.ERROR_0007_TOO_MANY_JOBS" ), output ); //$NON-NLS-1$
+      return;
+    }
+    writeJson( job.getStatus(), output );
+  }
+
+  /**
+   * Writes a page of the result of a finished query job
+   */
+  protected void jobResult( IParameterProvider params, OutputStream output ) {
+    QueryJob job = getJob( params, output );
+    if ( job == null ) {
+      return;
+    }
+    if ( job.getState() != QueryJob.State.DONE ) {
+      writeError( "ERROR_0006_JOB_NOT_DONE", Messages.getErrorString( //$NON-NLS-1$
+          "MetadataModelsContentGenerator.ERROR_0006_JOB_NOT_DONE", job.getId(), job.getState().name() ), output ); //$NON-NLS-1$
+      return;
+    }
+    if ( job.getCursor() == null ) {
+      writeResult( null, output );
+      return;
+    }
+    writePage( QueryCursorStore.getInstance( getSession() ), job.getCursor(), params, output );
+  }
+
+  /**
+   * Returns the job named by the job parameter, or writes an error if there is no such job
+   */
+  private QueryJob getJob( IParameterProvider params, OutputStream output ) {
+    String jobId = params.getStringParameter( "job", null ); //$NON-NLS-1$
+    QueryJob job = QueryJobStore.getInstance( getSession() ).get( jobId );
+    if ( job == null ) {
+      writeError( "ERROR_0005_UNKNOWN_JOB", //$NON-NLS-1$
+          Messages.getErrorString( "MetadataModelsContentGenerator.ERROR_0005_UNKNOWN_JOB", jobId ), output ); //$NON-NLS-1$
+    }
+    return job;
+  }
+
+  /**
+   * Executes several queries concurrently and writes each result as soon as its query completes
+   */
+  protected void batchQuery( List<BatchQueryItem> items, OutputStream output ) throws Exception {
+    BatchQueryRunner runner = BatchQueryRunner.getInstance();
+    if ( runner.getMaxQueries() > 0 && items.size() > runner.getMaxQueries() ) {
+      writeError( "ERROR_0004_TOO_MANY_QUERIES", Messages.getErrorString( //$NON-NLS-1$
+          "MetadataModelsContentGenerator.ERROR_0004_TOO_MANY_QUERIES", String.valueOf( runner.getMaxQueries() ) ), //$NON-NLS-1$
+          output );
+      return;
+    }
+    BatchResultWriter writer;
+    try {
+      writer = new BatchResultWriter( prepareResultFormat().getMapper(), output );
+    } catch ( Exception e ) {
+      logger.error( "Could not write JSON to output stream", e );
+      return;
+    }
+    runner.run( items, createQueryExecutor(), getSession(), writer );
+    writer.finish();
+    if ( writer.isAborted() ) {
+      logger.debug( "Client went away, batch stopped after " + writer.getResultCount() + " results" ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+  }
+
+  /**
+   * Writes the distinct values of a column that start with the prefix parameter or contain the contains parameter.
+   * The values come from the {@link ColumnValueCache}; only if the column has more distinct values than the cache
+   * holds does a search go to the provider.
+   */
+  protected void columnValues( IParameterProvider params, OutputStream output ) throws Exception {
+    String sourceId = params.getStringParameter( "id", null ); //$NON-NLS-1$
+    String columnId = params.getStringParameter( "columnid", null ); //$NON-NLS-1$
+    String parentId = params.getStringParameter( "parentid", null ); //$NON-NLS-1$
+    String prefix = params.getStringParameter( "prefix", null ); //$NON-NLS-1$
+    String contains = params.getStringParameter( "contains", null ); //$NON-NLS-1$
+    int limit = (int) params.getLongParameter( "limit", DEFAULT_VALUES_LIMIT ); //$NON-NLS-1$
+    if ( sourceId == null || columnId == null ) {
+      writeError( "ERROR_0009_MISSING_PARAMETER", Messages.getErrorString( //$NON-NLS-1$
+          "MetadataModelsContentGenerator.ERROR_0009_MISSING_PARAMETER", sourceId == null ? "id" : "columnid" ), //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+          output );
+      return;
     }
 
+    ColumnValueCache cache = ColumnValueCache.getInstance();
+    IPentahoSession session = getSession();
+    QueryExecutor executor = createQueryExecutor();
+    String key = cache.createKey( sourceId, parentId, columnId, SecurityContextKey.get( session ) );
+    DistinctValues values = cache.get( key, sourceId, () -> DistinctValues.load( executor,
+        createValuesQuery( sourceId, parentId, columnId, null, null ), cache.getMaxValues() ), session );
+
+    // one more than the limit tells whether there are more matches
+    int max = limit > 0 ? limit + 1 : -1;
+    List<String> matches;
+    boolean more = !values.isComplete();
+    if ( prefix == null && contains == null ) {
+      matches = values.first( max );
+    } else if ( values.isComplete() ) {
+      matches = prefix != null ? values.startingWith( prefix, max ) : values.containing( contains, max );
+    } else {
+      String operator = prefix != null ? "BEGINS WITH" : "CONTAINS"; //$NON-NLS-1$ //$NON-NLS-2$
+      Query search = createValuesQuery( sourceId, parentId, columnId, operator, prefix != null ? prefix : contains );
+      DistinctValues found = DistinctValues.load( executor, search, limit > 0 ? max : cache.getMaxValues() );
+      matches = found.first( max );
+      more = !found.isComplete();
+    }
+    if ( limit > 0 && matches.size() > limit ) {
+      matches = matches.subList( 0, limit );
+      more = true;
+    }
+
+    ColumnValues result = new ColumnValues();
+    result.setColumnId( columnId );
+    result.setValues( matches.toArray( new String[matches.size()] ) );
+    result.setMore( more );
+    writeJson( result, output );
+  }
+
+  /**
+   * Builds the query for the distinct values of a column, optionally restricted by a condition on the column
+   */
+  private static Query createValuesQuery( String sourceId, String parentId, String columnId, String operator,
+      String value ) {
+    Element element = new Element();
+    element.setId( columnId );
+    element.setParentId( parentId );
+    Order order = new Order();
+    order.setElementId( columnId );
+    order.setParentId( parentId );
+    order.setOrderType( "ASC" ); //$NON-NLS-1$
+    Query query = new Query();
+    query.setSourceId( sourceId );
+    query.setElements( new Element[] { element } );
+    query.setOrders( new Order[] { order } );
+    if ( operator != null ) {
+      Condition condition = new Condition();
+      condition.setElementId( columnId );
+      condition.setParentId( parentId );
+      condition.setOperator( operator );
+      condition.setCombinationType( "AND" ); //$NON-NLS-1$
+      condition.setValue( new String[] { value } );
+      query.setConditions( new Condition[] { condition } );
+    }
+    return query;
+  }
+
+  /**
+   * Checks a query against its model and holds it in the session, so that it can be executed again and again with
+   * only new parameter values
+   */
+  protected void prepareQuery( IParameterProvider params, OutputStream output ) throws Exception {
+    Query query = readQueryPayload( params, "query", QUERY_READER ); //$NON-NLS-1$
+    ModelIndex index = null;
+    if ( MetadataModelsSettings.getBoolean( MetadataModelsSettings.QUERY_VALIDATION_ENABLED, true ) ) {
+      index = ValidatingQueryExecutor.getIndex( ModelIndexCache.getInstance(), query.getSourceId(),
+          SecurityContextKey.get( getSession() ), getModelsService() );
+      index.validate( query );
+    }
+    writeJson( PreparedQueryStore.getInstance( getSession() ).add( query, index ).getInfo(), output );
+  }
+
+  /**
+   * Executes a prepared query with the parameter values of the request. The query is only checked again if its
+   * model changed since it was prepared.
+   */
+  protected void executePrepared( IParameterProvider params, RequestTimer timer, OutputStream output )
+    throws Exception {
+    String handle = params.getStringParameter( "handle", null ); //$NON-NLS-1$
+    PreparedQuery prepared = PreparedQueryStore.getInstance( getSession() ).get( handle );
+    if ( prepared == null ) {
+      writeError( "ERROR_0014_UNKNOWN_PREPARED_QUERY", Messages.getErrorString( //$NON-NLS-1$
+          "MetadataModelsContentGenerator.ERROR_0014_UNKNOWN_PREPARED_QUERY", handle ), output ); //$NON-NLS-1$
+      return;
+    }
+    Map<String, String[]> values = null;
+    if ( params.getStringParameter( "parameters", null ) != null || isJsonBody( getHttpRequest() ) ) { //$NON-NLS-1$
+      values = readQueryPayload( params, "parameters", PARAMETERS_READER ); //$NON-NLS-1$
+    }
+    Query query = prepared.bind( values );
+    timer.setQuery( query );
+    boolean validate = MetadataModelsSettings.getBoolean( MetadataModelsSettings.QUERY_VALIDATION_ENABLED, true );
+    if ( validate ) {
+      prepared.revalidate( ValidatingQueryExecutor.getIndex( ModelIndexCache.getInstance(), query.getSourceId(),
+          SecurityContextKey.get( getSession() ), getModelsService() ) );
+    }
+    writeQueryResult( query, createQueryExecutor( false ), params, timer, output );
+  }
+
+  /**
+   * Writes the result of a query action in the requested encoding
+   */
+  private void writeQueryResult( Query query, QueryExecutor executor, IParameterProvider params, RequestTimer timer,
+      OutputStream output ) throws Exception {
+    int rowLimit = (int) params.getLongParameter( "rowlimit", -1 ); //$NON-NLS-1$
+    if ( CompactDataTable.ENCODING.equals( params.getStringParameter( "encoding", null ) ) ) { //$NON-NLS-1$
+      String[] columnIds = params.getStringArrayParameter( "columns", null ); //$NON-NLS-1$
+      compactQuery( query, executor, rowLimit, columnIds, timer, output );
+    } else {
+      streamQuery( query, executor, rowLimit, timer, output );
+    }
+  }
+
+  /**
+   * Executes the query and writes each row to the output as soon as the provider produces it
+   */
+  protected void streamQuery( Query query, QueryExecutor executor, int rowLimit, RequestTimer timer,
+      OutputStream output ) throws Exception {
+    int flushRows = MetadataModelsSettings.getInt( MetadataModelsSettings.STREAM_FLUSH_ROWS, DEFAULT_FLUSH_ROWS );
+    ResultFormat format = prepareResultFormat();
+    DataTableJsonWriter writer;
+    try {
+      writer = new DataTableJsonWriter( format.getMapper(), output, rowLimit, flushRows );
+    } catch ( Exception e ) {
+      logger.error( "Could not write JSON to output stream", e );
+      return;
+    }
+    timer.phase( RequestTimer.Phase.EXECUTE );
+    executor.execute( query, rowLimit, timer.serializing( writer ) );
+    timer.phase( RequestTimer.Phase.SERIALIZE );
+    writer.finish();
+    timer.addRows( writer.getRowCount() );
+    if ( writer.isAborted() ) {
+      logger.debug( "Client went away, query stopped after " + writer.getRowCount() + " rows" ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+  }
+
+  /**
+   * Executes the query and writes the result as a {@link CompactDataTable}. The compact encoding is column by column,
+   * so the whole result is collected first. Only the columns in <code>columnIds</code> are sent, but the query is left
+   * as it is, so that every projection of the same query is served from one cached result.
+   */
+  protected void compactQuery( Query query, QueryExecutor executor, int rowLimit, String[] columnIds,
+      RequestTimer timer, OutputStream output ) throws Exception {
+    timer.phase( RequestTimer.Phase.EXECUTE );
+    DataTableCollector collector = new DataTableCollector( rowLimit, 0 );
+    executor.execute( query, rowLimit, collector );
+    timer.phase( RequestTimer.Phase.SERIALIZE );
+    DataTable table = collector.getTable();
+    timer.addRows( collector.getRowCount() );
+    CompactDataTable compact = null;
+    if ( table != null ) {
+      compact = CompactDataTable.encode( table, columnIds );
+      compact.setTruncated( collector.isTruncated() );
+    }
+    writeResult( compact, output );
+  }
+
+  /**
+   * Returns the encoding negotiated for the result of a query, execute, page, batchquery or jobresult action, JSON
+   * for all the other actions
+   */
+  protected ResultFormat getResultFormat() {
+    IParameterProvider params = getRequestParameters();
+    if ( params == null ) {
+      return ResultFormat.JSON;
+    }
+    String action = params.getStringParameter( "action", null ); //$NON-NLS-1$
+    if ( !QUERY_ACTION.equals( action ) && !EXECUTE_ACTION.equals( action ) && !PAGE_ACTION.equals( action )
+        && !BATCH_QUERY_ACTION.equals( action ) && !JOB_RESULT_ACTION.equals( action ) ) {
+      return ResultFormat.JSON;
+    }
+    HttpServletRequest httpRequest = getHttpRequest();
+    String accept = httpRequest == null ? null : httpRequest.getHeader( "Accept" ); //$NON-NLS-1$
+    return ResultFormat.negotiate( params.getStringParameter( "format", null ), accept ); //$NON-NLS-1$
+  }
+
+  /**
+   * Negotiates the result encoding and sets the matching response headers
+   */
+  private ResultFormat prepareResultFormat() {
+    ResultFormat format = getResultFormat();
+    HttpServletResponse httpResponse = getHttpResponse();
+    if ( httpResponse != null ) {
+      httpResponse.setContentType( format.getMimeType() );
+      httpResponse.setHeader( "Vary", "Accept" ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    return format;
+  }
+
+  /**
+   * Writes a query result in the negotiated encoding
+   */
+  protected void writeResult( Object object, OutputStream output ) {
+    try {
+      output.write( prepareResultFormat().getMapper().writeValueAsBytes( object ) );
+    } catch ( Exception e ) {
+      logger.error( "Could not write result to output stream", e );
+    }
+  }
+
+  /**
+   * Lists the models of all providers concurrently. Only a list to which every provider contributed is cached. With
+   * the status the response also tells how each provider answered, and is always listed afresh.
+   */
+  protected void listModels( ModelListFanOut fanOut, String key, String groupId, String match, boolean status,
+      RequestTimer timer, OutputStream output ) throws Exception {
+    if ( status ) {
+      timer.phase( RequestTimer.Phase.EXECUTE );
+      ModelList list = fanOut.list( getModelsService(), groupId, match, getSession() );
+      timer.phase( RequestTimer.Phase.SERIALIZE );
+      writeJson( list, output );
+      return;
+    }
+    ModelList[] list = new ModelList[ 1 ];
+    writeCachedJson( key, () -> {
+      list[ 0 ] = fanOut.list( getModelsService(), groupId, match, getSession() );
+      return list[ 0 ].getModels();
+    }, value -> list[ 0 ].isComplete(), timer, output );
+  }
+
+  /**
+   * Returns the changes to a model since the version the client has. The current version is kept as a snapshot, so
+   * the client can ask for the changes since it with its next request.
+   */
+  protected void modelDiff( IParameterProvider params, RequestTimer timer, OutputStream output ) throws Exception {
+    String id = params.getStringParameter( "id", null ); //$NON-NLS-1$
+    String version = params.getStringParameter( "version", null ); //$NON-NLS-1$
+    timer.setSubject( "diff of model " + id + " since " + version ); //$NON-NLS-1$ //$NON-NLS-2$
+
+    timer.phase( RequestTimer.Phase.EXECUTE );
+    String securityKey = SecurityContextKey.get( getSession() );
+    ModelIndex current =
+        ValidatingQueryExecutor.getIndex( ModelIndexCache.getInstance(), id, securityKey, getModelsService() );
+    String key = ModelResponseCache.modelKey( id, LocaleHelper.getLocale(), securityKey );
+    ModelSnapshotCache snapshots = ModelSnapshotCache.getInstance();
+    ModelIndex base = snapshots.get( key, version );
+    snapshots.add( key, current );
+    ModelDiff diff = current.diff( base );
+
+    timer.phase( RequestTimer.Phase.SERIALIZE );
+    writeJson( diff, output );
+  }
+
+  /**
+   * Returns a page of the models, sorted by name in the locale of the user. The sorted list is cached, so paging
+   * through it does not list and sort the models again; only a list to which every provider contributed is cached.
+   */
+  protected void listModelPage( ModelListFanOut fanOut, String key, String providerId, String groupId, String match,
+      int offset, int limit, RequestTimer timer, OutputStream output ) {
+    timer.phase( RequestTimer.Phase.EXECUTE );
+    SortedModelListCache cache = SortedModelListCache.getInstance();
+    ModelInfo[] sorted = cache.get( key );
+    if ( sorted == null ) {
+      Comparator<ModelInfo> order = ModelInfoComparator.getInstance( LocaleHelper.getLocale() ).forThinModels();
+      if ( providerId == null && fanOut.hasProviders() ) {
+        ModelList list = fanOut.list( getModelsService(), groupId, match, getSession() );
+        sorted = list.isComplete() ? cache.update( key, list.getModels(), order ) : list.getModels();
+      } else {
+        sorted = cache.update( key, getModelsService().getModelList( providerId, groupId, match ), order );
+      }
+    }
+    ModelPage page = ModelPage.of( sorted, offset, limit );
+    timer.addRows( page.getModels().length );
+
+    timer.phase( RequestTimer.Phase.SERIALIZE );
+    writeJson( page, output );
+  }
+
+  /**
+   * Searches the names and descriptions of the models, categories and columns the user can see. Visible models that
+   * are not in the search index yet are added to it first.
+   */
+  protected void searchCatalog( IParameterProvider params, RequestTimer timer, OutputStream output ) {
+    String text = params.getStringParameter( "q", null ); //$NON-NLS-1$
+    int offset = (int) params.getLongParameter( "offset", 0 ); //$NON-NLS-1$
+    int limit = (int) params.getLongParameter( "limit", DEFAULT_SEARCH_LIMIT ); //$NON-NLS-1$
+    timer.setSubject( "search " + text ); //$NON-NLS-1$
+
+    timer.phase( RequestTimer.Phase.EXECUTE );
+    ModelListFanOut fanOut = getModelListFanOut();
+    ModelInfo[] models = fanOut.hasProviders() ? fanOut.list( getModelsService(), null, null, getSession() ).getModels()
+        : getModelsService().getModelList( null, null, null );
+    Set<String> modelIds = new HashSet<String>();
+    for ( ModelInfo model : models == null ? new ModelInfo[ 0 ] : models ) {
+      modelIds.add( model.getId() );
+    }
+    String securityKey = SecurityContextKey.get( getSession() );
+    ModelCatalogIndex index = ModelCatalogIndex.getInstance();
+    index.update( models, index.getLocales( LocaleHelper.getLocale() ), securityKey, getModelsService() );
+    CatalogSearchResult result = index.search( text, modelIds, securityKey, offset, limit );
+    timer.addRows( result.getHits().length );
+
+    timer.phase( RequestTimer.Phase.SERIALIZE );
+    writeJson( result, output );
+  }
+
+  /**
+   * Writes a response from the model response cache, loading and serializing it on a miss. The response carries an
+   * ETag; if the client already has the same content, only a 304 status is sent.
+   */
+  protected void writeCachedJson( String key, Callable<Object> loader, RequestTimer timer, OutputStream output )
+    throws Exception {
+    writeCachedJson( key, loader, value -> value != null, timer, output );
+  }
+
+  /**
+   * Writes a response from the model response cache, loading it on a miss and caching it if it is cacheable
+   */
+  protected void writeCachedJson( String key, Callable<Object> loader, Predicate<Object> cacheable, RequestTimer timer,
+      OutputStream output ) throws Exception {
+    timer.phase( RequestTimer.Phase.EXECUTE );
+    ModelResponseCache cache = ModelResponseCache.getInstance();
+    CachedResponse response = cache.get( key );
+    if ( response == null ) {
+      Object value = loader.call();
+      timer.phase( RequestTimer.Phase.SERIALIZE );
+      byte[] bytes = OBJECT_MAPPER.writeValueAsBytes( value );
+      response = cacheable.test( value ) ? cache.put( key, bytes ) : new CachedResponse( bytes, 0 );
+    }
+
+    timer.phase( RequestTimer.Phase.SERIALIZE );
+    HttpServletResponse httpResponse = getHttpResponse();
+    if ( httpResponse != null ) {
+      httpResponse.setHeader( "ETag", response.getETag() ); //$NON-NLS-1$
+      HttpServletRequest httpRequest = getHttpRequest();
+      if ( httpRequest != null && response.matches( httpRequest.getHeader( "If-None-Match" ) ) ) { //$NON-NLS-1$
+        httpResponse.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+        return;
+      }
+    }
+    writeBytes( response.getBytes(), output );
+  }
+
+  /**
+   * Writes an error unless the current user may administer security
+   */
+  protected boolean checkAdministrator( OutputStream output ) {
+    if ( isAdministrator() ) {
+      return true;
+    }
+    writeError( "ERROR_0002_NOT_ALLOWED", //$NON-NLS-1$
+        Messages.getErrorString( "MetadataModelsContentGenerator.ERROR_0002_NOT_ALLOWED" ), output ); //$NON-NLS-1$
+    return false;
+  }
+
+  /**
+   * package-local visibility for testing purposes
+   */
+  boolean isAdministrator() {
+    IAuthorizationPolicy policy = PentahoSystem.get( IAuthorizationPolicy.class, getSession() );
+    return policy != null && policy.isAllowed( ADMINISTER_SECURITY_ACTION );
+  }
+
+  protected void writeError( String code, String message, OutputStream output ) {
+    StatusMessage msg = new StatusMessage();
+    msg.setCode( code );
+    msg.setMessage( message );
+    writeResult( msg, output );
+  }
+
+  /**
+   * Returns the session of the current user, or null when running outside of a session
+   */
+  protected IPentahoSession getSession() {
+    return userSession != null ? userSession : PentahoSessionHolder.getSession();
+  }
+
+  /**
+   * Returns the servlet request, or null when not running in a servlet container
+   */
+  protected HttpServletRequest getHttpRequest() {
+    IParameterProvider pathParams = parameterProviders.get( "path" ); //$NON-NLS-1$
+    Object request = pathParams == null ? null : pathParams.getParameter( "httprequest" ); //$NON-NLS-1$
+    return request instanceof HttpServletRequest ? (HttpServletRequest) request : null;
+  }
+
+  /**
+   * Returns the servlet response, or null when not running in a servlet container
+   */
+  protected HttpServletResponse getHttpResponse() {
+    IParameterProvider pathParams = parameterProviders.get( "path" ); //$NON-NLS-1$
+    Object response = pathParams == null ? null : pathParams.getParameter( "httpresponse" ); //$NON-NLS-1$
+    return response instanceof HttpServletResponse ? (HttpServletResponse) response : null;
+  }
+
+  protected void writeBytes( byte[] bytes, OutputStream output ) {
+    try {
+      output.write( bytes );
+    } catch ( Exception e ) {
+      logger.error( "Could not write JSON to output stream", e );
+    }
   }
 
   protected void writeJson( Object object, OutputStream output ) {
@@ -150,9 +918,17 @@ public class MetadataModelsContentGenerator extends SimpleContentGenerator {
 
   }
 
+  private IParameterProvider getRequestParameters() {
+    return parameterProviders == null ? null : parameterProviders.get( IParameterProvider.SCOPE_REQUEST );
+  }
+
   @Override
   public String getMimeType() {
-    return "application/json"; //$NON-NLS-1$
+    IParameterProvider params = getRequestParameters();
+    if ( params != null && METRICS_ACTION.equals( params.getStringParameter( "action", null ) ) ) { //$NON-NLS-1$
+      return "text/plain"; //$NON-NLS-1$
+    }
+    return getResultFormat().getMimeType();
   }
 
   @Override
@@ -0,0 +1,306 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import org.pentaho.common.ui.Const;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+
+/**
+ * Reads the tuning settings of the metadata models service from the plugin's settings.xml. Missing or malformed
+ * values fall back to the supplied defaults.
+ */
+class MetadataModelsSettings {
+
+  static final String SETTINGS_FILE = Const.PLUGIN_ID + "/settings.xml"; //$NON-NLS-1$
+
+  /**
+   * Number of rows written between two flushes of a streamed query result
+   */
+  static final String STREAM_FLUSH_ROWS = "metadata-query-flush-rows"; //$NON-NLS-1$
+
+  /**
+   * Default number of rows in a page of the page action
+   */
+  static final String PAGE_SIZE = "metadata-page-size"; //$NON-NLS-1$
+
+  /**
+   * Seconds a held query result survives without being accessed
+   */
+  static final String CURSOR_TTL_SECONDS = "metadata-cursor-ttl-seconds"; //$NON-NLS-1$
+
+  /**
+   * Maximum estimated size in bytes of the query results held for one session
+   */
+  static final String CURSOR_MAX_BYTES = "metadata-cursor-max-bytes"; //$NON-NLS-1$
+
+  /**
+   * Maximum number of query results held for one session
+   */
+  static final String CURSOR_MAX_RESULTS = "metadata-cursor-max-results"; //$NON-NLS-1$
+
+  /**
+   * Whether query results are cached
+   */
+  static final String QUERY_CACHE_ENABLED = "metadata-query-cache-enabled"; //$NON-NLS-1$
+
+  /**
+   * Seconds a query result stays in the cache
+   */
+  static final String QUERY_CACHE_TTL_SECONDS = "metadata-query-cache-ttl-seconds"; //$NON-NLS-1$
+
+  /**
+   * Maximum estimated size in bytes of all the cached query results
+   */
+  static final String QUERY_CACHE_MAX_BYTES = "metadata-query-cache-max-bytes"; //$NON-NLS-1$
+
+  /**
+   * Maximum estimated size in bytes of a single cached query result
+   */
+  static final String QUERY_CACHE_MAX_ENTRY_BYTES = "metadata-query-cache-max-entry-bytes"; //$NON-NLS-1$
+
+  /**
+   * Maximum number of cached query results
+   */
+  static final String QUERY_CACHE_MAX_ENTRIES = "metadata-query-cache-max-entries"; //$NON-NLS-1$
+
+  /**
+   * Whether users with the same roles share cached query results
+   */
+  static final String QUERY_CACHE_SHARE_BY_ROLES = "metadata-query-cache-share-by-roles"; //$NON-NLS-1$
+
+  /**
+   * Whether getmodel and listmodels responses are cached
+   */
+  static final String MODEL_CACHE_ENABLED = "metadata-model-cache-enabled"; //$NON-NLS-1$
+
+  /**
+   * Seconds a getmodel or listmodels response stays in the cache
+   */
+  static final String MODEL_CACHE_TTL_SECONDS = "metadata-model-cache-ttl-seconds"; //$NON-NLS-1$
+
+  /**
+   * Maximum number of cached getmodel and listmodels responses
+   */
+  static final String MODEL_CACHE_MAX_ENTRIES = "metadata-model-cache-max-entries"; //$NON-NLS-1$
+
+  /**
+   * Maximum size in bytes of all the cached getmodel and listmodels responses
+   */
+  static final String MODEL_CACHE_MAX_BYTES = "metadata-model-cache-max-bytes"; //$NON-NLS-1$
+
+  /**
+   * Number of versions of each model kept for modeldiff
+   */
+  static final String MODEL_SNAPSHOT_VERSIONS = "metadata-model-snapshot-versions"; //$NON-NLS-1$
+
+  /**
+   * Number of threads shared by all listmodels requests to ask the providers concurrently
+   */
+  static final String LIST_THREADS = "metadata-list-threads"; //$NON-NLS-1$
+
+  /**
+   * Providers listmodels asks concurrently besides those registered with the platform, as a comma separated list of
+   * provider ids
+   */
+  static final String LIST_PROVIDERS = "metadata-list-providers"; //$NON-NLS-1$
+
+  /**
+   * Milliseconds listmodels waits for a provider before leaving out its models
+   */
+  static final String LIST_TIMEOUT_MILLIS = "metadata-list-timeout-millis"; //$NON-NLS-1$
+
+  /**
+   * Deadlines of individual providers, as a comma separated list of providerId=millis entries
+   */
+  static final String LIST_PROVIDER_TIMEOUTS = "metadata-list-provider-timeouts"; //$NON-NLS-1$
+
+  /**
+   * Locales the search index holds the models in, as a comma separated list; empty for the locale of each user
+   */
+  static final String SEARCH_LOCALES = "metadata-search-locales"; //$NON-NLS-1$
+
+  /**
+   * Seconds after which a query is cancelled and its result ends
+   */
+  static final String QUERY_TIMEOUT_SECONDS = "metadata-query-timeout-seconds"; //$NON-NLS-1$
+
+  /**
+   * Maximum number of threads running queries with a timeout
+   */
+  static final String QUERY_TIMEOUT_THREADS = "metadata-query-timeout-threads"; //$NON-NLS-1$
+
+  /**
+   * Maximum number of rows of a query, whatever row limit the client asks for
+   */
+  static final String QUERY_MAX_ROWS = "metadata-query-max-rows"; //$NON-NLS-1$
+
+  /**
+   * Timeouts and row limits of individual users, as a comma separated list of user=seconds/rows entries
+   */
+  static final String QUERY_USER_LIMITS = "metadata-query-user-limits"; //$NON-NLS-1$
+
+  /**
+   * Whether queries are checked against their model before they are executed
+   */
+  static final String QUERY_VALIDATION_ENABLED = "metadata-query-validation-enabled"; //$NON-NLS-1$
+
+  /**
+   * Seconds a prepared query survives without being executed
+   */
+  static final String PREPARED_TTL_SECONDS = "metadata-prepared-ttl-seconds"; //$NON-NLS-1$
+
+  /**
+   * Maximum number of prepared queries held for one session
+   */
+  static final String PREPARED_MAX_PER_SESSION = "metadata-prepared-max-per-session"; //$NON-NLS-1$
+
+  /**
+   * Number of threads shared by all batchquery requests
+   */
+  static final String BATCH_THREADS = "metadata-batch-threads"; //$NON-NLS-1$
+
+  /**
+   * Number of batched queries that can wait for a thread before they run on the requesting thread
+   */
+  static final String BATCH_QUEUE_SIZE = "metadata-batch-queue-size"; //$NON-NLS-1$
+
+  /**
+   * Maximum number of queries of one batchquery request running at the same time
+   */
+  static final String BATCH_PARALLELISM = "metadata-batch-parallelism"; //$NON-NLS-1$
+
+  /**
+   * Maximum number of queries in one batchquery request
+   */
+  static final String BATCH_MAX_QUERIES = "metadata-batch-max-queries"; //$NON-NLS-1$
+
+  /**
+   * Maximum estimated size in bytes of the result of one batched query
+   */
+  static final String BATCH_MAX_ITEM_BYTES = "metadata-batch-max-item-bytes"; //$NON-NLS-1$
+
+  /**
+   * Number of threads shared by the query jobs of all sessions
+   */
+  static final String JOB_THREADS = "metadata-job-threads"; //$NON-NLS-1$
+
+  /**
+   * Number of query jobs that can wait for a thread before new jobs are refused
+   */
+  static final String JOB_QUEUE_SIZE = "metadata-job-queue-size"; //$NON-NLS-1$
+
+  /**
+   * Seconds a query job survives without being polled
+   */
+  static final String JOB_TTL_SECONDS = "metadata-job-ttl-seconds"; //$NON-NLS-1$
+
+  /**
+   * Maximum number of query jobs held for one session
+   */
+  static final String JOB_MAX_PER_SESSION = "metadata-job-max-per-session"; //$NON-NLS-1$
+
+  /**
+   * Maximum number of queries running at the same time on this server
+   */
+  static final String ADMISSION_MAX_RUNNING = "metadata-admission-max-running"; //$NON-NLS-1$
+
+  /**
+   * Maximum number of queries of one user running at the same time
+   */
+  static final String ADMISSION_MAX_RUNNING_PER_USER = "metadata-admission-max-running-per-user"; //$NON-NLS-1$
+
+  /**
+   * Maximum number of queries waiting to run before new queries are rejected
+   */
+  static final String ADMISSION_MAX_QUEUED = "metadata-admission-max-queued"; //$NON-NLS-1$
+
+  /**
+   * Milliseconds a query waits to run before it is rejected
+   */
+  static final String ADMISSION_MAX_WAIT_MILLIS = "metadata-admission-max-wait-millis"; //$NON-NLS-1$
+
+  /**
+   * Seconds a rejected client is asked to wait before retrying
+   */
+  static final String ADMISSION_RETRY_AFTER_SECONDS = "metadata-admission-retry-after-seconds"; //$NON-NLS-1$
+
+  /**
+   * Whether identical queries running at the same time share one execution
+   */
+  static final String SINGLE_FLIGHT_ENABLED = "metadata-single-flight-enabled"; //$NON-NLS-1$
+
+  /**
+   * Maximum estimated size in bytes of a result shared between identical queries
+   */
+  static final String SINGLE_FLIGHT_MAX_BYTES = "metadata-single-flight-max-bytes"; //$NON-NLS-1$
+
+  /**
+   * Milliseconds from which a listmodels, getmodel or query request is logged as slow
+   */
+  static final String METRICS_SLOW_REQUEST_MILLIS = "metadata-metrics-slow-request-millis"; //$NON-NLS-1$
+
+  /**
+   * Seconds after which the cached values of a column are reloaded before they are served
+   */
+  static final String VALUES_CACHE_TTL_SECONDS = "metadata-values-cache-ttl-seconds"; //$NON-NLS-1$
+
+  /**
+   * Seconds after which the cached values of a column are reloaded in the background
+   */
+  static final String VALUES_CACHE_REFRESH_SECONDS = "metadata-values-cache-refresh-seconds"; //$NON-NLS-1$
+
+  /**
+   * Maximum number of columns whose values are cached
+   */
+  static final String VALUES_CACHE_MAX_ENTRIES = "metadata-values-cache-max-entries"; //$NON-NLS-1$
+
+  /**
+   * Maximum number of values cached for one column
+   */
+  static final String VALUES_CACHE_MAX_VALUES = "metadata-values-cache-max-values"; //$NON-NLS-1$
+
+  private MetadataModelsSettings() {
+  }
+
+  static String getString( String name, String defaultValue ) {
+    String value = PentahoSystem.getSystemSetting( SETTINGS_FILE, name, null );
+    if ( value == null || value.trim().length() == 0 ) {
+      return defaultValue;
+    }
+    return value.trim();
+  }
+
+  static int getInt( String name, int defaultValue ) {
+    return (int) getLong( name, defaultValue );
+  }
+
+  static long getLong( String name, long defaultValue ) {
+    String value = getString( name, null );
+    if ( value == null ) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong( value );
+    } catch ( NumberFormatException e ) {
+      return defaultValue;
+    }
+  }
+
+  static boolean getBoolean( String name, boolean defaultValue ) {
+    String value = getString( name, null );
+    return value == null ? defaultValue : Boolean.parseBoolean( value );
+  }
+
+}
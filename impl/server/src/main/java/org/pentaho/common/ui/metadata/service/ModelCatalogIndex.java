@@ -0,0 +1,592 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.metadata.model.thin.Element;
+import org.pentaho.metadata.model.thin.MetadataModelsService;
+import org.pentaho.metadata.model.thin.Model;
+import org.pentaho.metadata.model.thin.ModelInfo;
+import org.pentaho.platform.util.messages.LocaleHelper;
+
+/**
+ * An inverted index over the names and descriptions of the models, categories and columns of all providers, in every
+ * locale listed in <code>metadata-search-locales</code>. Models are added the first time a search sees them and are
+ * dropped with {@link #invalidate(String)} when their domain is republished, so the next search indexes them again.
+ * Which categories and columns of a model a user sees depends on the user, so a model is indexed separately for every
+ * security context it is loaded in, and a search only returns what was indexed for the security context of the user.
+ * A model that cannot be loaded is not asked for again by every search, but only after a delay that doubles with
+ * every failure. The index shares the time to live and size of the {@link ModelResponseCache}: a model indexed longer
+ * ago than the time to live is indexed again by the next search that sees it, and once more models are indexed than
+ * the cache holds, the models searched the longest time ago are dropped.
+ * <p>
+ * Names and descriptions are split into lower case tokens without accents. Every token of a search must match a token
+ * of a hit, either exactly or as a prefix; a match in the name counts more than one in the description, and an exact
+ * match more than a prefix.
+ */
+public class ModelCatalogIndex {
+
+  private static final int NAME_WEIGHT = 4;
+
+  private static final int DESCRIPTION_WEIGHT = 1;
+
+  private static final int EXACT_NAME_BONUS = 10;
+
+  private static final long RETRY_MILLIS = 30000;
+
+  private static final long MAX_RETRY_MILLIS = 1800000;
+
+  private static final long DEFAULT_TTL_SECONDS = 600;
+
+  private static final int DEFAULT_MAX_ENTRIES = 500;
+
+  private static final Log logger = LogFactory.getLog( ModelCatalogIndex.class );
+
+  private static ModelCatalogIndex instance;
+
+  private static final Comparator<CatalogHit> HIT_ORDER = new Comparator<CatalogHit>() {
+    @Override
+    public int compare( CatalogHit a, CatalogHit b ) {
+      if ( a.getScore() != b.getScore() ) {
+        return a.getScore() > b.getScore() ? -1 : 1;
+      }
+      int result = compareNullsLast( a.getName(), b.getName() );
+      if ( result == 0 ) {
+        result = compareNullsLast( a.getModelId(), b.getModelId() );
+      }
+      return result == 0 ? compareNullsLast( a.getId(), b.getId() ) : result;
+    }
+
+    private int compareNullsLast( String a, String b ) {
+      if ( a == null || b == null ) {
+        return a == null ? ( b == null ? 0 : 1 ) : -1;
+      }
+      return a.compareToIgnoreCase( b );
+    }
+  };
+
+  private final List<Locale> locales;
+
+  private final Map<Integer, Document> documents = new HashMap<Integer, Document>();
+
+  private final long ttlMillis;
+
+  private final int maxEntries;
+
+  private final Map<String, IndexedModel> documentsByModel =
+      new LinkedHashMap<String, IndexedModel>( 16, 0.75f, true );
+
+  private final Map<String, Failure> failures = new LinkedHashMap<String, Failure>();
+
+  private final TreeMap<String, Map<Integer, Integer>> postings = new TreeMap<String, Map<Integer, Integer>>();
+
+  private int nextDocument;
+
+  /**
+   * An index without a time to live or size limit
+   *
+   * @param locales
+   *          the locales every model is indexed in, empty to index the locale of the searching user only
+   */
+  ModelCatalogIndex( List<Locale> locales ) {
+    this( locales, 0, Integer.MAX_VALUE );
+  }
+
+  /**
+   * @param locales
+   *          the locales every model is indexed in, empty to index the locale of the searching user only
+   * @param ttlMillis
+   *          how long a model stays indexed before it is indexed again, 0 or less to keep it until it is invalidated
+   * @param maxEntries
+   *          the maximum number of models indexed, counting every locale and security context
+   */
+  ModelCatalogIndex( List<Locale> locales, long ttlMillis, int maxEntries ) {
+    this.locales = Collections.unmodifiableList( new ArrayList<Locale>( locales ) );
+    this.ttlMillis = ttlMillis;
+    this.maxEntries = Math.max( 1, maxEntries );
+  }
+
+  public static synchronized ModelCatalogIndex getInstance() {
+    if ( instance == null ) {
+      long ttl = MetadataModelsSettings.getLong( MetadataModelsSettings.MODEL_CACHE_TTL_SECONDS, DEFAULT_TTL_SECONDS );
+      int maxEntries =
+          MetadataModelsSettings.getInt( MetadataModelsSettings.MODEL_CACHE_MAX_ENTRIES, DEFAULT_MAX_ENTRIES );
+      instance = new ModelCatalogIndex(
+          parseLocales( MetadataModelsSettings.getString( MetadataModelsSettings.SEARCH_LOCALES, null ) ),
+          ttl * 1000, maxEntries );
+    }
+    return instance;
+  }
+
+  /**
+   * Reads a comma separated list of locales such as <code>en, de_DE</code>
+   *
+   * @param value
+   *          the list, or null
+   * @return
+   */
+  static List<Locale> parseLocales( String value ) {
+    List<Locale> locales = new ArrayList<Locale>();
+    if ( value == null ) {
+      return locales;
+    }
+    for ( String entry : value.split( "," ) ) { //$NON-NLS-1$
+      if ( entry.trim().length() > 0 ) {
+        locales.add( Locale.forLanguageTag( entry.trim().replace( '_', '-' ) ) );
+      }
+    }
+    return locales;
+  }
+
+  /**
+   * Returns the locales models are indexed in for a user
+   *
+   * @param current
+   *          the locale of the user
+   * @return
+   */
+  public List<Locale> getLocales( Locale current ) {
+    return locales.isEmpty() ? Collections.singletonList( current ) : locales;
+  }
+
+  /**
+   * Indexes the given models in the given locales, unless they are already. The models are loaded through the service
+   * in the session of the current thread, with its locale switched to each locale in turn; a model that fails to load
+   * is logged and left out until its retry delay has passed.
+   *
+   * @param models
+   *          the models the user can see
+   * @param locales
+   * @param securityKey
+   *          the security context of the user
+   * @param service
+   */
+  public void update( ModelInfo[] models, List<Locale> locales, String securityKey, MetadataModelsService service ) {
+    if ( models == null ) {
+      return;
+    }
+    Locale current = LocaleHelper.getLocale();
+    try {
+      for ( Locale locale : locales ) {
+        for ( ModelInfo info : models ) {
+          if ( info == null || !isDue( info.getId(), locale, securityKey ) ) {
+            continue;
+          }
+          // loaded outside of the lock, a slow provider must not hold up the searches of other users
+          LocaleHelper.setLocale( locale );
+          Model model = null;
+          try {
+            model = service.getModel( info.getId() );
+          } catch ( Exception e ) {
+            logger.warn( "Could not index model " + info.getId() + " in locale " + locale, e ); //$NON-NLS-1$ //$NON-NLS-2$
+          }
+          if ( model != null ) {
+            index( model, locale, securityKey );
+          } else {
+            failed( info.getId(), locale, securityKey );
+          }
+        }
+      }
+    } finally {
+      LocaleHelper.setLocale( current );
+    }
+  }
+
+  public synchronized boolean isIndexed( String modelId, Locale locale, String securityKey ) {
+    IndexedModel indexed = documentsByModel.get( modelKey( modelId, locale, securityKey ) );
+    return indexed != null && !isExpired( indexed, currentTimeMillis() );
+  }
+
+  /**
+   * Tells whether a model has to be loaded: it is not indexed, or was indexed too long ago, and did not fail to load
+   * too recently. Looking a model up marks it as recently used.
+   */
+  private synchronized boolean isDue( String modelId, Locale locale, String securityKey ) {
+    String key = modelKey( modelId, locale, securityKey );
+    IndexedModel indexed = documentsByModel.get( key );
+    if ( indexed != null && !isExpired( indexed, currentTimeMillis() ) ) {
+      return false;
+    }
+    Failure failure = failures.get( key );
+    return failure == null || currentTimeMillis() >= failure.retryAt;
+  }
+
+  private synchronized void failed( String modelId, Locale locale, String securityKey ) {
+    String key = modelKey( modelId, locale, securityKey );
+    Failure failure = failures.get( key );
+    if ( failure == null ) {
+      failure = new Failure( modelId );
+      failures.put( key, failure );
+      // the failures are bounded like the models, the oldest are forgotten first
+      Iterator<Failure> it = failures.values().iterator();
+      while ( failures.size() > maxEntries ) {
+        it.next();
+        it.remove();
+      }
+    }
+    long delay = RETRY_MILLIS << Math.min( failure.attempts, 16 );
+    failure.attempts++;
+    failure.retryAt = currentTimeMillis() + Math.min( delay, MAX_RETRY_MILLIS );
+  }
+
+  /**
+   * Indexes a model, its categories and its columns, replacing what was indexed for the model in the same locale and
+   * security context
+   *
+   * @param model
+   *          the model as the users of the security context see it
+   * @param locale
+   *          the locale of the names and descriptions of the model
+   * @param securityKey
+   *          the security context the model was loaded in
+   */
+  public synchronized void index( Model model, Locale locale, String securityKey ) {
+    String key = modelKey( model.getId(), locale, securityKey );
+    remove( key );
+    failures.remove( key );
+    IndexedModel added = new IndexedModel( model.getId(), currentTimeMillis() );
+    added.add( add( new Document( CatalogHit.MODEL, model, null, model.getId(), model.getName(),
+        model.getDescription(), locale, securityKey ) ) );
+    Element[] elements = model.getElements() == null ? new Element[0] : model.getElements();
+    for ( Element element : elements ) {
+      if ( element == null || element.isHiddenForUser() ) {
+        continue;
+      }
+      boolean column = element.getIsQueryElement();
+      added.add( add( new Document( column ? CatalogHit.COLUMN : CatalogHit.CATEGORY, model,
+          column ? element.getParentId() : null, element.getId(), element.getName(), element.getDescription(),
+          locale, securityKey ) ) );
+    }
+    documentsByModel.put( key, added );
+    evict();
+  }
+
+  /**
+   * Returns a page of the hits of a search
+   *
+   * @param text
+   *          the words to search for, the last one may be incomplete
+   * @param modelIds
+   *          the models the user can see, or null to search all models
+   * @param securityKey
+   *          the security context of the user, only what was indexed for it is returned
+   * @param offset
+   *          the number of hits to skip
+   * @param limit
+   *          the maximum number of hits to return, 0 or less for all
+   * @return
+   */
+  public synchronized CatalogSearchResult search( String text, Set<String> modelIds, String securityKey, int offset,
+      int limit ) {
+    Map<Integer, Integer> scores = null;
+    for ( String term : tokenize( text ) ) {
+      Map<Integer, Integer> termScores = new HashMap<Integer, Integer>();
+      for ( Map.Entry<String, Map<Integer, Integer>> entry : postings.subMap( term, true, term + Character.MAX_VALUE,
+          true ).entrySet() ) {
+        int factor = entry.getKey().equals( term ) ? 2 : 1;
+        for ( Map.Entry<Integer, Integer> posting : entry.getValue().entrySet() ) {
+          termScores.merge( posting.getKey(), posting.getValue() * factor, Math::max );
+        }
+      }
+      if ( scores == null ) {
+        scores = termScores;
+      } else {
+        scores.keySet().retainAll( termScores.keySet() );
+        for ( Map.Entry<Integer, Integer> score : scores.entrySet() ) {
+          score.setValue( score.getValue() + termScores.get( score.getKey() ) );
+        }
+      }
+      if ( scores.isEmpty() ) {
+        break;
+      }
+    }
+
+    // an element indexed in several locales is returned once, with the locale it matched best in
+    Map<String, CatalogHit> hits = new LinkedHashMap<String, CatalogHit>();
+    if ( scores != null ) {
+      String normalized = normalize( text ).trim();
+      for ( Map.Entry<Integer, Integer> score : scores.entrySet() ) {
+        Document document = documents.get( score.getKey() );
+        if ( !Objects.equals( securityKey, document.securityKey )
+            || modelIds != null && !modelIds.contains( document.modelId ) ) {
+          continue;
+        }
+        int value = score.getValue();
+        if ( document.name != null && normalize( document.name ).trim().equals( normalized ) ) {
+          value += EXACT_NAME_BONUS;
+        }
+        CatalogHit previous = hits.get( document.getKey() );
+        if ( previous == null || previous.getScore() < value ) {
+          hits.put( document.getKey(), document.toHit( value ) );
+        }
+      }
+    }
+
+    List<CatalogHit> sorted = new ArrayList<CatalogHit>( hits.values() );
+    Collections.sort( sorted, HIT_ORDER );
+    int from = Math.min( Math.max( 0, offset ), sorted.size() );
+    int to = limit > 0 ? Math.min( sorted.size(), from + limit ) : sorted.size();
+    CatalogSearchResult result = new CatalogSearchResult();
+    result.setTotal( sorted.size() );
+    result.setOffset( from );
+    result.setHits( sorted.subList( from, to ).toArray( new CatalogHit[ to - from ] ) );
+    return result;
+  }
+
+  /**
+   * Drops the models of a domain in all locales and security contexts, and forgets that they failed to load
+   *
+   * @param domainId
+   *          the id of the domain, matched against the ids of the indexed models
+   * @return the number of dropped models
+   */
+  public synchronized int invalidate( String domainId ) {
+    List<String> keys = new ArrayList<String>();
+    for ( Map.Entry<String, IndexedModel> entry : documentsByModel.entrySet() ) {
+      if ( DomainIds.matches( entry.getValue().modelId, domainId ) ) {
+        keys.add( entry.getKey() );
+      }
+    }
+    for ( String key : keys ) {
+      remove( key );
+    }
+    for ( Iterator<Failure> it = failures.values().iterator(); it.hasNext(); ) {
+      if ( DomainIds.matches( it.next().modelId, domainId ) ) {
+        it.remove();
+      }
+    }
+    return keys.size();
+  }
+
+  public synchronized void invalidateAll() {
+    documents.clear();
+    documentsByModel.clear();
+    postings.clear();
+    failures.clear();
+  }
+
+  /**
+   * Returns the number of indexed models, categories and columns
+   *
+   * @return
+   */
+  synchronized int size() {
+    return documents.size();
+  }
+
+  /**
+   * Splits a text into the tokens it is indexed and searched by
+   *
+   * @param text
+   * @return the distinct tokens in the order they appear
+   */
+  static Set<String> tokenize( String text ) {
+    Set<String> tokens = new LinkedHashSet<String>();
+    if ( text != null ) {
+      for ( String token : normalize( text ).split( "[^\\p{L}\\p{N}]+" ) ) { //$NON-NLS-1$
+        if ( token.length() > 0 ) {
+          tokens.add( token );
+        }
+      }
+    }
+    return tokens;
+  }
+
+  private static String normalize( String text ) {
+    return Normalizer.normalize( text, Normalizer.Form.NFD ).replaceAll( "\\p{M}+", "" ) //$NON-NLS-1$ //$NON-NLS-2$
+        .toLowerCase( Locale.ROOT );
+  }
+
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  private boolean isExpired( IndexedModel indexed, long now ) {
+    return ttlMillis > 0 && now - indexed.created > ttlMillis;
+  }
+
+  /**
+   * Drops the expired models, and the models searched the longest time ago while there are too many
+   */
+  private void evict() {
+    long now = currentTimeMillis();
+    int size = documentsByModel.size();
+    List<String> keys = new ArrayList<String>();
+    for ( Map.Entry<String, IndexedModel> entry : documentsByModel.entrySet() ) {
+      if ( size > maxEntries || isExpired( entry.getValue(), now ) ) {
+        keys.add( entry.getKey() );
+        size--;
+      }
+    }
+    for ( String key : keys ) {
+      remove( key );
+    }
+  }
+
+  private static String modelKey( String modelId, Locale locale, String securityKey ) {
+    return securityKey + '|' + modelId + '|' + locale;
+  }
+
+  private int add( Document document ) {
+    int id = nextDocument++;
+    documents.put( id, document );
+    for ( String token : tokenize( document.name ) ) {
+      post( token, id, NAME_WEIGHT );
+    }
+    for ( String token : tokenize( document.description ) ) {
+      post( token, id, DESCRIPTION_WEIGHT );
+    }
+    return id;
+  }
+
+  private void post( String token, int document, int weight ) {
+    Map<Integer, Integer> posted = postings.get( token );
+    if ( posted == null ) {
+      posted = new HashMap<Integer, Integer>();
+      postings.put( token, posted );
+    }
+    posted.merge( document, weight, Math::max );
+  }
+
+  private void remove( String key ) {
+    IndexedModel indexed = documentsByModel.remove( key );
+    if ( indexed == null ) {
+      return;
+    }
+    for ( Integer id : indexed.documents ) {
+      Document document = documents.remove( id );
+      Set<String> tokens = tokenize( document.name );
+      tokens.addAll( tokenize( document.description ) );
+      for ( String token : tokens ) {
+        Map<Integer, Integer> posted = postings.get( token );
+        if ( posted != null ) {
+          posted.remove( id );
+          if ( posted.isEmpty() ) {
+            postings.remove( token );
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * The documents of a model in one locale and security context
+   */
+  private static class IndexedModel {
+
+    private final String modelId;
+
+    private final long created;
+
+    private final List<Integer> documents = new ArrayList<Integer>();
+
+    IndexedModel( String modelId, long created ) {
+      this.modelId = modelId;
+      this.created = created;
+    }
+
+    void add( int document ) {
+      documents.add( document );
+    }
+  }
+
+  /**
+   * A model that could not be loaded, and when to try again
+   */
+  private static class Failure {
+
+    private final String modelId;
+
+    private int attempts;
+
+    private long retryAt;
+
+    Failure( String modelId ) {
+      this.modelId = modelId;
+    }
+  }
+
+  /**
+   * An indexed model, category or column in one locale and security context
+   */
+  private static class Document {
+
+    private final String type;
+
+    private final String modelId;
+
+    private final String modelName;
+
+    private final String categoryId;
+
+    private final String id;
+
+    private final String name;
+
+    private final String description;
+
+    private final Locale locale;
+
+    private final String securityKey;
+
+    Document( String type, Model model, String categoryId, String id, String name, String description,
+        Locale locale, String securityKey ) {
+      this.type = type;
+      this.modelId = model.getId();
+      this.modelName = model.getName();
+      this.categoryId = categoryId;
+      this.id = id;
+      this.name = name;
+      this.description = description;
+      this.locale = locale;
+      this.securityKey = securityKey;
+    }
+
+    String getKey() {
+      return type + '|' + modelId + '|' + categoryId + '|' + id;
+    }
+
+    CatalogHit toHit( int score ) {
+      CatalogHit hit = new CatalogHit();
+      hit.setType( type );
+      hit.setModelId( modelId );
+      hit.setModelName( modelName );
+      hit.setCategoryId( categoryId );
+      hit.setId( id );
+      hit.setName( name );
+      hit.setDescription( description );
+      hit.setLocale( locale == null ? null : locale.toString() );
+      hit.setScore( score );
+      return hit;
+    }
+  }
+
+}
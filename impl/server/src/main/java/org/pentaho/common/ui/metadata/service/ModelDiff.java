@@ -0,0 +1,153 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.Map;
+
+import org.pentaho.metadata.model.thin.Element;
+
+/**
+ * The changes to the categories and columns of a model since a version the client has, as returned by the modeldiff
+ * action. If the server no longer has the client's version, the diff is a full one: every element is added and the
+ * client replaces what it has.
+ */
+public class ModelDiff {
+
+  private String modelId;
+
+  private String baseVersion;
+
+  private String version;
+
+  private boolean full;
+
+  private String name;
+
+  private String description;
+
+  private Map<String, String> capabilities;
+
+  private Element[] added;
+
+  private Element[] changed;
+
+  private Element[] removed;
+
+  /**
+   * Returns the full id of the model
+   *
+   * @return
+   */
+  public String getModelId() {
+    return modelId;
+  }
+
+  public void setModelId( String modelId ) {
+    this.modelId = modelId;
+  }
+
+  /**
+   * Returns the version the changes are relative to, or null for a full diff
+   *
+   * @return
+   */
+  public String getBaseVersion() {
+    return baseVersion;
+  }
+
+  public void setBaseVersion( String baseVersion ) {
+    this.baseVersion = baseVersion;
+  }
+
+  /**
+   * Returns the current version, which the client sends with its next request
+   *
+   * @return
+   */
+  public String getVersion() {
+    return version;
+  }
+
+  public void setVersion( String version ) {
+    this.version = version;
+  }
+
+  public boolean isFull() {
+    return full;
+  }
+
+  public void setFull( boolean full ) {
+    this.full = full;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName( String name ) {
+    this.name = name;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public void setDescription( String description ) {
+    this.description = description;
+  }
+
+  public Map<String, String> getCapabilities() {
+    return capabilities;
+  }
+
+  public void setCapabilities( Map<String, String> capabilities ) {
+    this.capabilities = capabilities;
+  }
+
+  public Element[] getAdded() {
+    return added;
+  }
+
+  public void setAdded( Element[] added ) {
+    this.added = added;
+  }
+
+  /**
+   * Returns the current form of the elements that changed
+   *
+   * @return
+   */
+  public Element[] getChanged() {
+    return changed;
+  }
+
+  public void setChanged( Element[] changed ) {
+    this.changed = changed;
+  }
+
+  /**
+   * Returns the removed elements as they were in the base version
+   *
+   * @return
+   */
+  public Element[] getRemoved() {
+    return removed;
+  }
+
+  public void setRemoved( Element[] removed ) {
+    this.removed = removed;
+  }
+
+}
@@ -0,0 +1,75 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pentaho.metadata.model.thin.Element;
+import org.pentaho.metadata.model.thin.Model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+/**
+ * Computes the content fingerprints models are versioned with. An element's fingerprint covers all of its properties,
+ * in canonical JSON form like {@link QueryFingerprint}, and a model's fingerprint covers its name, description,
+ * capabilities and the fingerprints of its elements in order, so any change to what getmodel returns changes it.
+ */
+public class ModelFingerprint {
+
+  private static final int LENGTH = 32;
+
+  private ModelFingerprint() {
+  }
+
+  /**
+   * Returns the fingerprint of an element
+   *
+   * @param element
+   * @return
+   */
+  public static String of( Element element ) {
+    return hash( element );
+  }
+
+  /**
+   * Returns the fingerprint of a model
+   *
+   * @param model
+   * @param elementFingerprints
+   *          the fingerprints of the elements of the model, in order
+   * @return
+   */
+  public static String of( Model model, List<String> elementFingerprints ) {
+    Map<String, Object> content = new LinkedHashMap<String, Object>();
+    content.put( "id", model.getId() ); //$NON-NLS-1$
+    content.put( "name", model.getName() ); //$NON-NLS-1$
+    content.put( "description", model.getDescription() ); //$NON-NLS-1$
+    content.put( "capabilities", model.getCapabilities() ); //$NON-NLS-1$
+    content.put( "elements", elementFingerprints ); //$NON-NLS-1$
+    return hash( content );
+  }
+
+  private static String hash( Object value ) {
+    try {
+      return QueryFingerprint.hash( QueryFingerprint.CANONICAL_MAPPER.writeValueAsBytes( value ) ).substring( 0,
+          LENGTH );
+    } catch ( JsonProcessingException e ) {
+      throw new IllegalArgumentException( e.getMessage(), e );
+    }
+  }
+
+}
@@ -0,0 +1,386 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.pentaho.common.ui.messages.Messages;
+import org.pentaho.metadata.model.thin.Condition;
+import org.pentaho.metadata.model.thin.Element;
+import org.pentaho.metadata.model.thin.Model;
+import org.pentaho.metadata.model.thin.Order;
+import org.pentaho.metadata.model.thin.Parameter;
+import org.pentaho.metadata.model.thin.Query;
+
+/**
+ * The categories and columns of a Model, indexed for checking queries against it. Columns are looked up by category
+ * and id, or by id alone for query parts without a category, so validating a query takes one lookup per element,
+ * condition, order and parameter. The columns are also kept by category, so that the categories of a wide model can
+ * be sent first and their columns on demand.
+ * <p>
+ * An index is an immutable snapshot of one version of the model: it holds its own copy of the model, which is never
+ * modified once built, so one index is shared by all the threads and sessions that see that version and the model the
+ * index was built from stays with its provider. The repeated strings and capabilities of the copied elements are
+ * shared with the other cached models through the {@link ModelInterner}.
+ */
+public class ModelIndex {
+
+  private static final String NO_AGGREGATION = "NONE"; //$NON-NLS-1$
+
+  private static final char KEY_SEPARATOR = '\u0000';
+
+  private final String modelId;
+
+  private final Map<String, IndexedColumn> columnsById = new HashMap<String, IndexedColumn>();
+
+  private final Map<String, IndexedColumn> columnsByCategory = new HashMap<String, IndexedColumn>();
+
+  private final Model model;
+
+  private final Map<String, Element> categoryElements = new LinkedHashMap<String, Element>();
+
+  private final Map<String, Element[]> categoryColumns = new LinkedHashMap<String, Element[]>();
+
+  private Versions versions;
+
+  /**
+   * @param model
+   *          the model as the user sees it, which is copied and left as it is
+   */
+  public ModelIndex( Model model ) {
+    model = ModelInterner.getInstance().internModel( model );
+    this.modelId = model.getId();
+    this.model = model;
+    Map<String, List<Element>> columns = new LinkedHashMap<String, List<Element>>();
+    Element[] elements = model.getElements() == null ? new Element[0] : model.getElements();
+    for ( Element element : elements ) {
+      if ( element == null ) {
+        continue;
+      }
+      if ( !element.getIsQueryElement() ) {
+        categoryElements.put( element.getId(), element );
+        getColumns( columns, element.getId() );
+        continue;
+      }
+      IndexedColumn column = new IndexedColumn( element );
+      if ( element.getParentId() != null ) {
+        columnsByCategory.put( key( element.getParentId(), element.getId() ), column );
+        getColumns( columns, element.getParentId() ).add( element );
+      }
+      // a column that is in several categories is found by id alone in the first one
+      if ( !columnsById.containsKey( element.getId() ) ) {
+        columnsById.put( element.getId(), column );
+      }
+    }
+    for ( Map.Entry<String, List<Element>> entry : columns.entrySet() ) {
+      categoryColumns.put( entry.getKey(), entry.getValue().toArray( new Element[ entry.getValue().size() ] ) );
+    }
+  }
+
+  private static String key( String categoryId, String columnId ) {
+    return categoryId + KEY_SEPARATOR + columnId;
+  }
+
+  private static List<Element> getColumns( Map<String, List<Element>> columns, String categoryId ) {
+    List<Element> list = columns.get( categoryId );
+    if ( list == null ) {
+      list = new ArrayList<Element>();
+      columns.put( categoryId, list );
+    }
+    return list;
+  }
+
+  public String getModelId() {
+    return modelId;
+  }
+
+  /**
+   * Returns the model with its categories and their number of columns, but without the columns
+   *
+   * @return
+   */
+  public ModelSummary getSummary() {
+    ModelSummary summary = new ModelSummary();
+    summary.setProvider( model.getProvider() );
+    summary.setGroupId( model.getGroupId() );
+    summary.setModelId( model.getModelId() );
+    summary.setName( model.getName() );
+    summary.setDescription( model.getDescription() );
+    summary.setCapabilities( model.getCapabilities() );
+    List<CategorySummary> summaries = new ArrayList<CategorySummary>( categoryColumns.size() );
+    for ( Map.Entry<String, Element[]> entry : categoryColumns.entrySet() ) {
+      Element element = categoryElements.get( entry.getKey() );
+      CategorySummary category = new CategorySummary();
+      category.setId( entry.getKey() );
+      category.setName( element == null ? entry.getKey() : element.getName() );
+      category.setDescription( element == null ? null : element.getDescription() );
+      category.setColumnCount( entry.getValue().length );
+      summaries.add( category );
+    }
+    summary.setCategories( summaries.toArray( new CategorySummary[ summaries.size() ] ) );
+    summary.setVersion( getVersion() );
+    return summary;
+  }
+
+  /**
+   * Returns the columns of some categories, as getmodel returns them. The arrays are copies, but the columns in them
+   * are shared by all the users of the index and must not be modified.
+   *
+   * @param categoryIds
+   * @return the columns by category, in the order of the given ids
+   * @throws QueryValidationException
+   *           if a category is not in the model
+   */
+  public Map<String, Element[]> getColumns( String[] categoryIds ) throws QueryValidationException {
+    Map<String, Element[]> columns = new LinkedHashMap<String, Element[]>();
+    for ( String categoryId : categoryIds == null ? new String[0] : categoryIds ) {
+      Element[] elements = categoryColumns.get( categoryId );
+      if ( elements == null ) {
+        throw new QueryValidationException( "ERROR_0016_CATEGORY_NOT_FOUND", Messages.getErrorString( //$NON-NLS-1$
+            "MetadataModelsContentGenerator.ERROR_0016_CATEGORY_NOT_FOUND", categoryId, modelId ) ); //$NON-NLS-1$
+      }
+      columns.put( categoryId, elements.clone() );
+    }
+    return columns;
+  }
+
+  /**
+   * Returns the content fingerprint of the model
+   *
+   * @return
+   */
+  public String getVersion() {
+    return getVersions().version;
+  }
+
+  /**
+   * Two indexes are equal if they are of the same version of the same model
+   */
+  @Override
+  public boolean equals( Object obj ) {
+    if ( this == obj ) {
+      return true;
+    }
+    if ( !( obj instanceof ModelIndex ) ) {
+      return false;
+    }
+    ModelIndex other = (ModelIndex) obj;
+    return Objects.equals( modelId, other.modelId ) && getVersion().equals( other.getVersion() );
+  }
+
+  @Override
+  public int hashCode() {
+    return getVersions().hashCode;
+  }
+
+  /**
+   * Returns the categories and columns that were added, changed or removed since an earlier version of the model
+   *
+   * @param base
+   *          the index of the version the client has, or null if it is not known
+   * @return the changes, or all the elements if there is no base version
+   */
+  public ModelDiff diff( ModelIndex base ) {
+    Versions current = getVersions();
+    ModelDiff diff = new ModelDiff();
+    diff.setModelId( modelId );
+    diff.setVersion( current.version );
+    diff.setName( model.getName() );
+    diff.setDescription( model.getDescription() );
+    diff.setCapabilities( model.getCapabilities() );
+    List<Element> added = new ArrayList<Element>();
+    List<Element> changed = new ArrayList<Element>();
+    List<Element> removed = new ArrayList<Element>();
+    if ( base == null ) {
+      diff.setFull( true );
+      added.addAll( current.elements.values() );
+    } else {
+      Versions previous = base.getVersions();
+      diff.setBaseVersion( previous.version );
+      if ( !previous.version.equals( current.version ) ) {
+        for ( Map.Entry<String, Element> entry : current.elements.entrySet() ) {
+          String fingerprint = previous.fingerprints.get( entry.getKey() );
+          if ( fingerprint == null ) {
+            added.add( entry.getValue() );
+          } else if ( !fingerprint.equals( current.fingerprints.get( entry.getKey() ) ) ) {
+            changed.add( entry.getValue() );
+          }
+        }
+        for ( Map.Entry<String, Element> entry : previous.elements.entrySet() ) {
+          if ( !current.elements.containsKey( entry.getKey() ) ) {
+            removed.add( entry.getValue() );
+          }
+        }
+      }
+    }
+    diff.setAdded( added.toArray( new Element[ added.size() ] ) );
+    diff.setChanged( changed.toArray( new Element[ changed.size() ] ) );
+    diff.setRemoved( removed.toArray( new Element[ removed.size() ] ) );
+    return diff;
+  }
+
+  /**
+   * Returns the fingerprints of the model and its elements, computed when they are first asked for so that indexes
+   * used for validation only do not pay for them
+   */
+  private synchronized Versions getVersions() {
+    if ( versions == null ) {
+      versions = new Versions( model );
+    }
+    return versions;
+  }
+
+  /**
+   * Checks that every column a query refers to is in the model, and that the aggregations it asks for are available
+   * for their columns
+   *
+   * @param query
+   * @throws QueryValidationException
+   *           for the first part of the query that does not match the model
+   */
+  public void validate( Query query ) throws QueryValidationException {
+    Element[] elements = query.getElements();
+    for ( int i = 0; elements != null && i < elements.length; i++ ) {
+      Element element = elements[i];
+      if ( element != null ) {
+        String where = "elements[" + i + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+        IndexedColumn column = findColumn( where, element.getParentId(), element.getId() );
+        String aggregation = element.getSelectedAggregation() != null ? element.getSelectedAggregation()
+            : element.getDefaultAggregation();
+        checkAggregation( column, aggregation );
+      }
+    }
+    Condition[] conditions = query.getConditions();
+    for ( int i = 0; conditions != null && i < conditions.length; i++ ) {
+      Condition condition = conditions[i];
+      if ( condition != null ) {
+        String where = "conditions[" + i + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+        IndexedColumn column = findColumn( where, condition.getParentId(), condition.getElementId() );
+        checkAggregation( column, condition.getSelectedAggregation() );
+      }
+    }
+    Order[] orders = query.getOrders();
+    for ( int i = 0; orders != null && i < orders.length; i++ ) {
+      if ( orders[i] != null ) {
+        findColumn( "orders[" + i + "]", orders[i].getParentId(), orders[i].getElementId() ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+    Parameter[] parameters = query.getParameters();
+    for ( int i = 0; parameters != null && i < parameters.length; i++ ) {
+      if ( parameters[i] != null && parameters[i].getElementId() != null ) {
+        findColumn( "parameters[" + i + "]", null, parameters[i].getElementId() ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+  }
+
+  private IndexedColumn findColumn( String where, String categoryId, String columnId )
+    throws QueryValidationException {
+    IndexedColumn column;
+    if ( categoryId == null ) {
+      column = columnsById.get( columnId );
+    } else {
+      if ( !categoryColumns.containsKey( categoryId ) ) {
+        throw new QueryValidationException( "ERROR_0011_UNKNOWN_CATEGORY", Messages.getErrorString( //$NON-NLS-1$
+            "MetadataModelsContentGenerator.ERROR_0011_UNKNOWN_CATEGORY", where, categoryId, modelId ) ); //$NON-NLS-1$
+      }
+      column = columnsByCategory.get( key( categoryId, columnId ) );
+    }
+    if ( column == null ) {
+      throw new QueryValidationException( "ERROR_0012_UNKNOWN_COLUMN", Messages.getErrorString( //$NON-NLS-1$
+          "MetadataModelsContentGenerator.ERROR_0012_UNKNOWN_COLUMN", where, columnId, modelId ) ); //$NON-NLS-1$
+    }
+    return column;
+  }
+
+  private static void checkAggregation( IndexedColumn column, String aggregation ) throws QueryValidationException {
+    if ( aggregation == null || column.aggregations == null ) {
+      return;
+    }
+    String name = aggregation.toUpperCase( Locale.ROOT );
+    if ( !NO_AGGREGATION.equals( name ) && !column.aggregations.contains( name ) ) {
+      throw new QueryValidationException( "ERROR_0013_INVALID_AGGREGATION", Messages.getErrorString( //$NON-NLS-1$
+          "MetadataModelsContentGenerator.ERROR_0013_INVALID_AGGREGATION", column.id, aggregation, //$NON-NLS-1$
+          column.aggregations.toString() ) );
+    }
+  }
+
+  /**
+   * The fingerprints of a model and of its elements, which are keyed by category for columns so that a column moved
+   * to another category is removed from one and added to the other
+   */
+  private static class Versions {
+
+    private final String version;
+
+    private final int hashCode;
+
+    private final Map<String, Element> elements = new LinkedHashMap<String, Element>();
+
+    private final Map<String, String> fingerprints = new HashMap<String, String>();
+
+    Versions( Model model ) {
+      List<String> all = new ArrayList<String>();
+      for ( Element element : model.getElements() == null ? new Element[0] : model.getElements() ) {
+        if ( element == null ) {
+          continue;
+        }
+        String fingerprint = ModelFingerprint.of( element );
+        String key = element.getIsQueryElement() ? key( element.getParentId(), element.getId() )
+            : KEY_SEPARATOR + element.getId();
+        all.add( fingerprint );
+        elements.put( key, element );
+        fingerprints.put( key, fingerprint );
+      }
+      this.version = ModelFingerprint.of( model, all );
+      this.hashCode = 31 * Objects.hashCode( model.getId() ) + version.hashCode();
+    }
+  }
+
+  private static class IndexedColumn {
+
+    private final String id;
+
+    /**
+     * The aggregations the column allows, or null if the model does not say
+     */
+    private final Set<String> aggregations;
+
+    IndexedColumn( Element element ) {
+      this.id = element.getId();
+      Set<String> names = new HashSet<String>();
+      if ( element.getAvailableAggregations() != null ) {
+        for ( String name : Arrays.asList( element.getAvailableAggregations() ) ) {
+          if ( name != null ) {
+            names.add( name.toUpperCase( Locale.ROOT ) );
+          }
+        }
+      }
+      if ( element.getDefaultAggregation() != null ) {
+        names.add( element.getDefaultAggregation().toUpperCase( Locale.ROOT ) );
+      }
+      this.aggregations = names.isEmpty() ? null : ModelInterner.getInstance().internSet( names );
+    }
+  }
+
+}
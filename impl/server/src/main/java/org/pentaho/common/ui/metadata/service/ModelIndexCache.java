@@ -0,0 +1,159 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.pentaho.metadata.model.thin.MetadataModelsService;
+import org.pentaho.metadata.model.thin.Model;
+import org.pentaho.platform.util.messages.LocaleHelper;
+
+/**
+ * Caches the {@link ModelIndex} queries are validated against and model summaries are served from. Entries are keyed
+ * by the model id, the locale and the security context of the user, because the names and the visible elements
+ * depend on them, and share the time to live and size of the {@link ModelResponseCache}, which holds the same models
+ * in serialized form.
+ */
+public class ModelIndexCache {
+
+  private static final long DEFAULT_TTL_SECONDS = 600;
+
+  private static final int DEFAULT_MAX_ENTRIES = 500;
+
+  private static ModelIndexCache instance;
+
+  private final boolean enabled;
+
+  private final long ttlMillis;
+
+  private final int maxEntries;
+
+  private final Map<String, CachedIndex> entries = new LinkedHashMap<String, CachedIndex>( 16, 0.75f, true );
+
+  ModelIndexCache( boolean enabled, long ttlMillis, int maxEntries ) {
+    this.enabled = enabled;
+    this.ttlMillis = ttlMillis;
+    this.maxEntries = Math.max( 1, maxEntries );
+  }
+
+  public static synchronized ModelIndexCache getInstance() {
+    if ( instance == null ) {
+      boolean enabled = MetadataModelsSettings.getBoolean( MetadataModelsSettings.MODEL_CACHE_ENABLED, true );
+      long ttl = MetadataModelsSettings.getLong( MetadataModelsSettings.MODEL_CACHE_TTL_SECONDS, DEFAULT_TTL_SECONDS );
+      int maxEntries =
+          MetadataModelsSettings.getInt( MetadataModelsSettings.MODEL_CACHE_MAX_ENTRIES, DEFAULT_MAX_ENTRIES );
+      instance = new ModelIndexCache( enabled, ttl * 1000, maxEntries );
+    }
+    return instance;
+  }
+
+  /**
+   * Returns the index of a model, loading the model on a miss
+   *
+   * @param modelId
+   * @param securityKey
+   *          the security context of the user
+   * @param service
+   *          the service that loads the model in the current session
+   * @return the index, or null if there is no such model
+   * @throws Exception
+   */
+  public ModelIndex getIndex( String modelId, String securityKey, MetadataModelsService service ) throws Exception {
+    if ( modelId == null ) {
+      return null;
+    }
+    String key = modelId + '|' + LocaleHelper.getLocale() + '|' + securityKey;
+    synchronized ( this ) {
+      CachedIndex cached = entries.get( key );
+      if ( cached != null && !isExpired( cached, currentTimeMillis() ) ) {
+        return cached.index;
+      }
+    }
+    // loaded outside of the lock, a slow provider must not hold up the other models
+    Model model = service.getModel( modelId );
+    if ( model == null ) {
+      return null;
+    }
+    ModelIndex index = new ModelIndex( model );
+    if ( enabled ) {
+      synchronized ( this ) {
+        entries.put( key, new CachedIndex( index, currentTimeMillis() ) );
+        evict();
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Drops the cached indexes of the models of a domain
+   *
+   * @param domainId
+   *          the id of the domain, see {@link DomainIds}
+   * @return the number of dropped indexes
+   */
+  public synchronized int invalidate( String domainId ) {
+    int count = 0;
+    Iterator<CachedIndex> it = entries.values().iterator();
+    while ( it.hasNext() ) {
+      if ( DomainIds.matches( it.next().index.getModelId(), domainId ) ) {
+        it.remove();
+        count++;
+      }
+    }
+    return count;
+  }
+
+  public synchronized void invalidateAll() {
+    entries.clear();
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  private boolean isExpired( CachedIndex cached, long now ) {
+    return ttlMillis > 0 && now - cached.created > ttlMillis;
+  }
+
+  private void evict() {
+    long now = currentTimeMillis();
+    Iterator<CachedIndex> it = entries.values().iterator();
+    while ( it.hasNext() ) {
+      CachedIndex cached = it.next();
+      if ( entries.size() > maxEntries || isExpired( cached, now ) ) {
+        it.remove();
+      }
+    }
+  }
+
+  private static class CachedIndex {
+
+    private final ModelIndex index;
+
+    private final long created;
+
+    CachedIndex( ModelIndex index, long created ) {
+      this.index = index;
+      this.created = created;
+    }
+  }
+
+}
@@ -0,0 +1,165 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.pentaho.metadata.model.thin.Element;
+import org.pentaho.metadata.model.thin.Model;
+import org.pentaho.metadata.model.thin.Provider;
+
+/**
+ * Shares equal values among the cached models. Data types, element types, alignments, format masks, aggregations and
+ * capabilities repeat in nearly every column of every model, so a cached model holds one instance of each instead of
+ * one per column. Shared maps and sets are unmodifiable. Values are only weakly held, a value no cached model uses
+ * any more is garbage collected. Models are copied rather than changed, they may still be in use by their provider.
+ */
+public class ModelInterner {
+
+  private static ModelInterner instance;
+
+  private final Map<Object, WeakReference<Object>> values = new WeakHashMap<Object, WeakReference<Object>>();
+
+  ModelInterner() {
+  }
+
+  public static synchronized ModelInterner getInstance() {
+    if ( instance == null ) {
+      instance = new ModelInterner();
+    }
+    return instance;
+  }
+
+  /**
+   * Returns the shared instance of a value
+   *
+   * @param value
+   *          a string, or an unmodifiable map or set
+   * @return the first equal value seen, or the value itself
+   */
+  @SuppressWarnings( "unchecked" )
+  public synchronized <T> T intern( T value ) {
+    if ( value == null ) {
+      return null;
+    }
+    WeakReference<Object> shared = values.get( value );
+    Object existing = shared == null ? null : shared.get();
+    if ( existing != null ) {
+      return (T) existing;
+    }
+    values.put( value, new WeakReference<Object>( value ) );
+    return value;
+  }
+
+  /**
+   * Returns the shared, unmodifiable instance of a map
+   *
+   * @param map
+   * @return
+   */
+  public Map<String, String> internMap( Map<String, String> map ) {
+    if ( map == null ) {
+      return null;
+    }
+    Map<String, String> copy = new HashMap<String, String>( map.size() );
+    for ( Map.Entry<String, String> entry : map.entrySet() ) {
+      copy.put( intern( entry.getKey() ), intern( entry.getValue() ) );
+    }
+    return intern( Collections.unmodifiableMap( copy ) );
+  }
+
+  /**
+   * Returns the shared, unmodifiable instance of a set
+   *
+   * @param set
+   * @return
+   */
+  public Set<String> internSet( Set<String> set ) {
+    if ( set == null ) {
+      return null;
+    }
+    Set<String> copy = new HashSet<String>( set.size() );
+    for ( String value : set ) {
+      copy.add( intern( value ) );
+    }
+    return intern( Collections.unmodifiableSet( copy ) );
+  }
+
+  /**
+   * Copies a model and its elements, with the repeated values replaced by their shared instances. The given model is
+   * left as it is; the copy must not be modified, it is about to be cached.
+   *
+   * @param model
+   * @return the copy
+   */
+  public Model internModel( Model model ) {
+    Model copy = new Model();
+    if ( model.getProvider() != null ) {
+      Provider provider = new Provider();
+      provider.setId( intern( model.getProvider().getId() ) );
+      provider.setName( intern( model.getProvider().getName() ) );
+      copy.setProvider( provider );
+    }
+    copy.setGroupId( model.getGroupId() );
+    copy.setModelId( model.getModelId() );
+    copy.setName( model.getName() );
+    copy.setDescription( model.getDescription() );
+    copy.setCapabilities( internMap( model.getCapabilities() ) );
+    if ( model.getElements() != null ) {
+      Element[] elements = new Element[ model.getElements().length ];
+      for ( int i = 0; i < elements.length; i++ ) {
+        elements[ i ] = internElement( model.getElements()[ i ] );
+      }
+      copy.setElements( elements );
+    }
+    return copy;
+  }
+
+  private Element internElement( Element element ) {
+    if ( element == null ) {
+      return null;
+    }
+    Element copy = new Element();
+    copy.setId( element.getId() );
+    copy.setName( element.getName() );
+    copy.setDescription( element.getDescription() );
+    copy.setParentId( intern( element.getParentId() ) );
+    copy.setElementType( intern( element.getElementType() ) );
+    copy.setDataType( intern( element.getDataType() ) );
+    copy.setHorizontalAlignment( intern( element.getHorizontalAlignment() ) );
+    copy.setFormatMask( intern( element.getFormatMask() ) );
+    copy.setDefaultAggregation( intern( element.getDefaultAggregation() ) );
+    copy.setSelectedAggregation( intern( element.getSelectedAggregation() ) );
+    String[] aggregations = element.getAvailableAggregations();
+    if ( aggregations != null ) {
+      String[] interned = new String[ aggregations.length ];
+      for ( int i = 0; i < aggregations.length; i++ ) {
+        interned[ i ] = intern( aggregations[ i ] );
+      }
+      copy.setAvailableAggregations( interned );
+    }
+    copy.setHiddenForUser( element.isHiddenForUser() );
+    copy.setIsQueryElement( element.getIsQueryElement() );
+    copy.setCapabilities( internMap( element.getCapabilities() ) );
+    return copy;
+  }
+
+}
@@ -0,0 +1,66 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import org.pentaho.metadata.model.thin.ModelInfo;
+
+/**
+ * The models of all providers with the status of each provider, as returned by the listmodels action when the status
+ * is requested
+ */
+public class ModelList {
+
+  private ModelInfo[] models;
+
+  private ProviderStatus[] providers;
+
+  /**
+   * Returns the models of the providers that answered in time, sorted by name
+   *
+   * @return
+   */
+  public ModelInfo[] getModels() {
+    return models;
+  }
+
+  public void setModels( ModelInfo[] models ) {
+    this.models = models;
+  }
+
+  public ProviderStatus[] getProviders() {
+    return providers;
+  }
+
+  public void setProviders( ProviderStatus[] providers ) {
+    this.providers = providers;
+  }
+
+  /**
+   * Returns true if every provider listed its models
+   *
+   * @return
+   */
+  public boolean isComplete() {
+    if ( providers != null ) {
+      for ( ProviderStatus provider : providers ) {
+        if ( !ProviderStatus.OK.equals( provider.getStatus() ) ) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+}
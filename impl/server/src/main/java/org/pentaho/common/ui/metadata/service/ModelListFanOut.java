@@ -0,0 +1,352 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.common.ui.metadata.model.impl.ModelInfoComparator;
+import org.pentaho.metadata.model.thin.MetadataModelsService;
+import org.pentaho.metadata.model.thin.ModelInfo;
+import org.pentaho.metadata.model.thin.ModelProvider;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.util.messages.LocaleHelper;
+
+/**
+ * Lists the models of all providers concurrently, so that a slow provider only delays its own models. Every provider
+ * has a deadline; the models of the providers that miss it or fail are left out, and the list reports the status of
+ * each provider. The fan-out asks {@link MetadataModelsService} for the models of each {@link ModelProvider}
+ * registered with the platform, and of each provider id added in {@link MetadataModelsSettings#LIST_PROVIDERS} for
+ * providers that are only registered with {@link MetadataModelsService}; the setting adds providers, it never leaves
+ * a registered one out. As long as no provider is known, models are listed through {@link MetadataModelsService} one
+ * provider after the other.
+ */
+public class ModelListFanOut {
+
+  private static final int DEFAULT_THREADS = 8;
+
+  private static final int DEFAULT_QUEUE_SIZE = 100;
+
+  private static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+  private static final Log logger = LogFactory.getLog( ModelListFanOut.class );
+
+  private static ModelListFanOut instance;
+
+  private final ExecutorService executor;
+
+  private final List<String> providerIds;
+
+  private final Supplier<Collection<String>> registeredProviderIds;
+
+  private final long timeoutMillis;
+
+  private final Map<String, Long> providerTimeouts;
+
+  private final RequestMetrics metrics;
+
+  /**
+   * Lists the given providers only
+   */
+  ModelListFanOut( ExecutorService executor, List<String> providerIds, long timeoutMillis,
+      Map<String, Long> providerTimeouts, RequestMetrics metrics ) {
+    this( executor, providerIds, Collections::<String>emptyList, timeoutMillis, providerTimeouts, metrics );
+  }
+
+  /**
+   * @param executor
+   *          the pool the providers are asked on
+   * @param providerIds
+   *          the providers whose models are listed besides the registered ones
+   * @param registeredProviderIds
+   *          returns the providers currently registered with the platform
+   * @param timeoutMillis
+   *          the deadline of the providers without a deadline of their own
+   * @param providerTimeouts
+   *          the deadlines of individual providers
+   * @param metrics
+   *          receives the latency of every provider
+   */
+  ModelListFanOut( ExecutorService executor, List<String> providerIds,
+      Supplier<Collection<String>> registeredProviderIds, long timeoutMillis, Map<String, Long> providerTimeouts,
+      RequestMetrics metrics ) {
+    this.executor = executor;
+    this.providerIds = Collections.unmodifiableList( new ArrayList<String>( providerIds ) );
+    this.registeredProviderIds = registeredProviderIds;
+    this.timeoutMillis = timeoutMillis;
+    this.providerTimeouts = Collections.unmodifiableMap( new HashMap<String, Long>( providerTimeouts ) );
+    this.metrics = metrics;
+  }
+
+  public static synchronized ModelListFanOut getInstance() {
+    if ( instance == null ) {
+      int threads = Math.max( 1, MetadataModelsSettings.getInt( MetadataModelsSettings.LIST_THREADS,
+          DEFAULT_THREADS ) );
+      ThreadPoolExecutor executor = new ThreadPoolExecutor( threads, threads, 60, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>( DEFAULT_QUEUE_SIZE ), new ListThreadFactory() );
+      executor.allowCoreThreadTimeOut( true );
+      instance = new ModelListFanOut( executor,
+          parseProviderIds( MetadataModelsSettings.getString( MetadataModelsSettings.LIST_PROVIDERS, null ) ),
+          ModelListFanOut::getRegisteredProviderIds,
+          MetadataModelsSettings.getLong( MetadataModelsSettings.LIST_TIMEOUT_MILLIS, DEFAULT_TIMEOUT_MILLIS ),
+          parseTimeouts( MetadataModelsSettings.getString( MetadataModelsSettings.LIST_PROVIDER_TIMEOUTS, null ) ),
+          RequestMetrics.getInstance() );
+    }
+    return instance;
+  }
+
+  /**
+   * Returns the ids of the providers registered with the platform
+   *
+   * @return
+   */
+  static Collection<String> getRegisteredProviderIds() {
+    List<String> ids = new ArrayList<String>();
+    try {
+      List<ModelProvider> providers = PentahoSystem.getAll( ModelProvider.class, null );
+      for ( ModelProvider provider : providers == null ? Collections.<ModelProvider>emptyList() : providers ) {
+        if ( provider != null && provider.getId() != null ) {
+          ids.add( provider.getId() );
+        }
+      }
+    } catch ( RuntimeException e ) {
+      logger.warn( "Could not look up the registered model providers", e ); //$NON-NLS-1$
+    }
+    return ids;
+  }
+
+  /**
+   * Returns the providers to ask: the registered ones, then the configured ones that are not registered
+   *
+   * @return
+   */
+  Set<String> getProviderIds() {
+    Set<String> ids = new LinkedHashSet<String>( registeredProviderIds.get() );
+    ids.addAll( providerIds );
+    return ids;
+  }
+
+  /**
+   * Reads the providers to ask concurrently. Blank entries and repeated ids are skipped.
+   *
+   * @param value
+   *          a comma separated list of provider ids, or null
+   * @return
+   */
+  static List<String> parseProviderIds( String value ) {
+    List<String> providerIds = new ArrayList<String>();
+    if ( value == null ) {
+      return providerIds;
+    }
+    for ( String entry : value.split( "," ) ) { //$NON-NLS-1$
+      String providerId = entry.trim();
+      if ( providerId.length() > 0 && !providerIds.contains( providerId ) ) {
+        providerIds.add( providerId );
+      }
+    }
+    return providerIds;
+  }
+
+  /**
+   * Reads the deadlines of individual providers. Malformed entries are logged and skipped.
+   *
+   * @param value
+   *          a comma separated list of <code>providerId=millis</code> entries, or null
+   * @return
+   */
+  static Map<String, Long> parseTimeouts( String value ) {
+    Map<String, Long> timeouts = new HashMap<String, Long>();
+    if ( value == null ) {
+      return timeouts;
+    }
+    for ( String entry : value.split( "," ) ) { //$NON-NLS-1$
+      if ( entry.trim().length() == 0 ) {
+        continue;
+      }
+      int equals = entry.lastIndexOf( '=' );
+      try {
+        if ( equals <= 0 ) {
+          throw new NumberFormatException();
+        }
+        timeouts.put( entry.substring( 0, equals ).trim(), Long.parseLong( entry.substring( equals + 1 ).trim() ) );
+      } catch ( NumberFormatException e ) {
+        logger.warn( "Ignoring malformed provider deadline " + entry.trim() + ", expected providerId=millis" ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+    return timeouts;
+  }
+
+  /**
+   * @return true if models are listed through the fan-out rather than through {@link MetadataModelsService}
+   */
+  public boolean hasProviders() {
+    return !getProviderIds().isEmpty();
+  }
+
+  /**
+   * Lists the models of the registered and configured providers
+   *
+   * @param service
+   *          the service the providers are registered with
+   * @param groupId
+   * @param match
+   * @param session
+   *          the session the providers are asked in
+   * @return
+   */
+  public ModelList list( MetadataModelsService service, String groupId, String match, IPentahoSession session ) {
+    long start = System.nanoTime();
+    Set<String> providerIds = getProviderIds();
+    List<ProviderCall> calls = new ArrayList<ProviderCall>( providerIds.size() );
+    for ( String providerId : providerIds ) {
+      ProviderCall call = new ProviderCall( service, providerId, groupId, match );
+      try {
+        call.future = executor.submit( new SessionCallable<ModelInfo[]>( session, call ) );
+      } catch ( RejectedExecutionException e ) {
+        logger.warn( "Too many providers are being asked, skipping " + providerId ); //$NON-NLS-1$
+      }
+      calls.add( call );
+    }
+
+    List<ModelInfo> models = new ArrayList<ModelInfo>();
+    ProviderStatus[] statuses = new ProviderStatus[ providerIds.size() ];
+    for ( int i = 0; i < calls.size(); i++ ) {
+      ProviderCall call = calls.get( i );
+      String providerId = call.providerId;
+      ProviderStatus status = new ProviderStatus();
+      status.setProviderId( providerId );
+      status.setStatus( ProviderStatus.FAILED );
+      try {
+        if ( call.future != null ) {
+          ModelInfo[] listed = await( call.future, getTimeoutMillis( providerId ), start );
+          if ( listed != null ) {
+            models.addAll( Arrays.asList( listed ) );
+            status.setModelCount( listed.length );
+          }
+          status.setStatus( ProviderStatus.OK );
+        }
+      } catch ( TimeoutException e ) {
+        call.future.cancel( true );
+        logger.warn( "Provider " + providerId + " did not list its models in time" ); //$NON-NLS-1$ //$NON-NLS-2$
+        status.setStatus( ProviderStatus.TIMEOUT );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        call.future.cancel( true );
+      } catch ( ExecutionException e ) {
+        logger.error( "Provider " + providerId + " could not list its models", e.getCause() ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+      // a provider that did not finish is charged the time it was waited for
+      long nanos = call.nanos >= 0 && !ProviderStatus.TIMEOUT.equals( status.getStatus() ) ? call.nanos
+          : System.nanoTime() - start;
+      status.setMillis( TimeUnit.NANOSECONDS.toMillis( nanos ) );
+      metrics.providerListed( providerId, status.getStatus(), nanos );
+      statuses[ i ] = status;
+    }
+
+    Collections.sort( models, ModelInfoComparator.getInstance( LocaleHelper.getLocale() ).forThinModels() );
+    ModelList list = new ModelList();
+    list.setModels( models.toArray( new ModelInfo[ models.size() ] ) );
+    list.setProviders( statuses );
+    return list;
+  }
+
+  /**
+   * Waits for a provider until its deadline. All providers are asked at once, so every deadline counts from the
+   * start of the request.
+   */
+  private static ModelInfo[] await( Future<ModelInfo[]> future, long timeoutMillis, long start )
+    throws InterruptedException, ExecutionException, TimeoutException {
+    if ( timeoutMillis <= 0 ) {
+      return future.get();
+    }
+    long remaining = TimeUnit.MILLISECONDS.toNanos( timeoutMillis ) - ( System.nanoTime() - start );
+    return future.get( Math.max( 0, remaining ), TimeUnit.NANOSECONDS );
+  }
+
+  private long getTimeoutMillis( String providerId ) {
+    Long timeout = providerId == null ? null : providerTimeouts.get( providerId );
+    return timeout == null ? timeoutMillis : timeout;
+  }
+
+  /**
+   * Asks one provider for its models and measures how long it takes
+   */
+  private static class ProviderCall implements Callable<ModelInfo[]> {
+
+    private final MetadataModelsService service;
+
+    private final String providerId;
+
+    private final String groupId;
+
+    private final String match;
+
+    private Future<ModelInfo[]> future;
+
+    private volatile long nanos = -1;
+
+    ProviderCall( MetadataModelsService service, String providerId, String groupId, String match ) {
+      this.service = service;
+      this.providerId = providerId;
+      this.groupId = groupId;
+      this.match = match;
+    }
+
+    @Override
+    public ModelInfo[] call() throws Exception {
+      long start = System.nanoTime();
+      try {
+        return service.getModelList( providerId, groupId, match );
+      } finally {
+        nanos = System.nanoTime() - start;
+      }
+    }
+  }
+
+  private static class ListThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread( Runnable runnable ) {
+      Thread thread = new Thread( runnable, "metadata-list-models-" + count.incrementAndGet() ); //$NON-NLS-1$
+      thread.setDaemon( true );
+      return thread;
+    }
+  }
+
+}
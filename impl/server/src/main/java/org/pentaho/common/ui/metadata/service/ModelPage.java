@@ -0,0 +1,82 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.Arrays;
+
+import org.pentaho.metadata.model.thin.ModelInfo;
+
+/**
+ * One page of the sorted models, as returned by the listmodels action when an offset or limit is given
+ */
+public class ModelPage {
+
+  private ModelInfo[] models;
+
+  private int offset;
+
+  private int total;
+
+  /**
+   * Returns a page of a sorted list
+   *
+   * @param sorted
+   *          the models of all pages
+   * @param offset
+   *          the number of models to skip
+   * @param limit
+   *          the maximum number of models to return, 0 or less for all
+   * @return
+   */
+  public static ModelPage of( ModelInfo[] sorted, int offset, int limit ) {
+    int from = Math.min( Math.max( 0, offset ), sorted.length );
+    int to = limit > 0 ? Math.min( sorted.length, from + limit ) : sorted.length;
+    ModelPage page = new ModelPage();
+    page.setModels( Arrays.copyOfRange( sorted, from, to ) );
+    page.setOffset( from );
+    page.setTotal( sorted.length );
+    return page;
+  }
+
+  public ModelInfo[] getModels() {
+    return models;
+  }
+
+  public void setModels( ModelInfo[] models ) {
+    this.models = models;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  public void setOffset( int offset ) {
+    this.offset = offset;
+  }
+
+  /**
+   * Returns the number of models of all pages
+   *
+   * @return
+   */
+  public int getTotal() {
+    return total;
+  }
+
+  public void setTotal( int total ) {
+    this.total = total;
+  }
+
+}
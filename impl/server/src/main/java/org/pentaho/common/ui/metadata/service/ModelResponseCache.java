@@ -0,0 +1,199 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Caches the serialized responses of the getmodel and listmodels actions, together with their ETags. Entries are
+ * keyed by the request parameters, the locale and the security context of the user, because both the localized
+ * names and the visible models and elements depend on them. Entries expire after a fixed time to live; the least
+ * recently used entries are evicted once the number of entries or their total size exceeds the configured limits.
+ * Entries are dropped explicitly with {@link #invalidate(String)} when a domain is republished.
+ */
+public class ModelResponseCache {
+
+  private static final long DEFAULT_TTL_SECONDS = 600;
+
+  private static final int DEFAULT_MAX_ENTRIES = 500;
+
+  private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+  private static final String MODEL_PREFIX = "model|"; //$NON-NLS-1$
+
+  private static final String LIST_PREFIX = "list|"; //$NON-NLS-1$
+
+  private static ModelResponseCache instance;
+
+  private final boolean enabled;
+
+  private final long ttlMillis;
+
+  private final int maxEntries;
+
+  private final long maxBytes;
+
+  private final Map<String, CachedResponse> entries = new LinkedHashMap<String, CachedResponse>( 16, 0.75f, true );
+
+  private long bytes;
+
+  ModelResponseCache( boolean enabled, long ttlMillis, int maxEntries, long maxBytes ) {
+    this.enabled = enabled;
+    this.ttlMillis = ttlMillis;
+    this.maxEntries = Math.max( 1, maxEntries );
+    this.maxBytes = maxBytes;
+  }
+
+  public static synchronized ModelResponseCache getInstance() {
+    if ( instance == null ) {
+      boolean enabled = MetadataModelsSettings.getBoolean( MetadataModelsSettings.MODEL_CACHE_ENABLED, true );
+      long ttl = MetadataModelsSettings.getLong( MetadataModelsSettings.MODEL_CACHE_TTL_SECONDS, DEFAULT_TTL_SECONDS );
+      int maxEntries =
+          MetadataModelsSettings.getInt( MetadataModelsSettings.MODEL_CACHE_MAX_ENTRIES, DEFAULT_MAX_ENTRIES );
+      long maxBytes = MetadataModelsSettings.getLong( MetadataModelsSettings.MODEL_CACHE_MAX_BYTES, DEFAULT_MAX_BYTES );
+      instance = new ModelResponseCache( enabled, ttl * 1000, maxEntries, maxBytes );
+    }
+    return instance;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  static String modelKey( String id, Locale locale, String securityKey ) {
+    return MODEL_PREFIX + id + '|' + locale + '|' + securityKey;
+  }
+
+  static String summaryKey( String id, Locale locale, String securityKey ) {
+    return modelKey( id, locale, securityKey ) + "|summary"; //$NON-NLS-1$
+  }
+
+  /**
+   * Returns the id of the model a key was built for by {@link #modelKey(String, Locale, String)}
+   *
+   * @param key
+   * @return the model id, or null for the key of a list
+   */
+  static String modelIdOf( String key ) {
+    if ( !key.startsWith( MODEL_PREFIX ) ) {
+      return null;
+    }
+    int end = key.indexOf( '|', MODEL_PREFIX.length() );
+    return key.substring( MODEL_PREFIX.length(), end < 0 ? key.length() : end );
+  }
+
+  static String listKey( String providerId, String groupId, String match, Locale locale, String securityKey ) {
+    return LIST_PREFIX + providerId + '|' + groupId + '|' + match + '|' + locale + '|' + securityKey;
+  }
+
+  /**
+   * @param key
+   * @return the cached response, or null if it is not cached or has expired
+   */
+  public synchronized CachedResponse get( String key ) {
+    CachedResponse response = entries.get( key );
+    if ( response != null && isExpired( response, currentTimeMillis() ) ) {
+      remove( key );
+      return null;
+    }
+    return response;
+  }
+
+  /**
+   * Caches a serialized response, unless it alone is larger than the maximum size of the cache
+   *
+   * @param key
+   * @param bytes
+   * @return the response
+   */
+  public synchronized CachedResponse put( String key, byte[] bytes ) {
+    CachedResponse response = new CachedResponse( bytes, currentTimeMillis() );
+    if ( enabled && ( maxBytes <= 0 || bytes.length <= maxBytes ) ) {
+      remove( key );
+      entries.put( key, response );
+      this.bytes += bytes.length;
+      evict();
+    }
+    return response;
+  }
+
+  /**
+   * Drops the cached models of a domain, and all the cached model lists since any of them may include it
+   *
+   * @param domainId
+   *          the id of the domain, see {@link DomainIds}
+   * @return the number of dropped responses
+   */
+  public synchronized int invalidate( String domainId ) {
+    int count = 0;
+    Iterator<Map.Entry<String, CachedResponse>> it = entries.entrySet().iterator();
+    while ( it.hasNext() ) {
+      Map.Entry<String, CachedResponse> entry = it.next();
+      String key = entry.getKey();
+      if ( key.startsWith( LIST_PREFIX ) || DomainIds.matches( modelIdOf( key ), domainId ) ) {
+        it.remove();
+        bytes -= entry.getValue().getBytes().length;
+        count++;
+      }
+    }
+    return count;
+  }
+
+  public synchronized void invalidateAll() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  synchronized long bytes() {
+    return bytes;
+  }
+
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  private boolean isExpired( CachedResponse response, long now ) {
+    return ttlMillis > 0 && now - response.getCreated() > ttlMillis;
+  }
+
+  private void remove( String key ) {
+    CachedResponse response = entries.remove( key );
+    if ( response != null ) {
+      bytes -= response.getBytes().length;
+    }
+  }
+
+  private void evict() {
+    long now = currentTimeMillis();
+    Iterator<CachedResponse> it = entries.values().iterator();
+    while ( it.hasNext() ) {
+      CachedResponse response = it.next();
+      boolean overLimit = entries.size() > maxEntries || ( maxBytes > 0 && bytes > maxBytes );
+      if ( overLimit || isExpired( response, now ) ) {
+        // the map is in access order, so the least recently used entries go first
+        it.remove();
+        bytes -= response.getBytes().length;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,104 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the last versions of the models handed out to clients, so that modeldiff can compare a client's version with
+ * the current one. Snapshots are keyed like the models of the {@link ModelResponseCache}, by model id, locale and
+ * security context, and survive the invalidation of the model caches: that is when a domain was republished and the
+ * diff is needed. Only the last <code>metadata-model-snapshot-versions</code> versions of a model are kept, for the
+ * models of the most recently used <code>metadata-model-cache-max-entries</code> keys.
+ */
+public class ModelSnapshotCache {
+
+  private static final int DEFAULT_VERSIONS = 5;
+
+  private static final int DEFAULT_MAX_ENTRIES = 500;
+
+  private static ModelSnapshotCache instance;
+
+  private final int versions;
+
+  private final int maxEntries;
+
+  private final Map<String, Map<String, ModelIndex>> entries =
+      new LinkedHashMap<String, Map<String, ModelIndex>>( 16, 0.75f, true );
+
+  ModelSnapshotCache( int versions, int maxEntries ) {
+    this.versions = Math.max( 1, versions );
+    this.maxEntries = Math.max( 1, maxEntries );
+  }
+
+  public static synchronized ModelSnapshotCache getInstance() {
+    if ( instance == null ) {
+      int versions = MetadataModelsSettings.getInt( MetadataModelsSettings.MODEL_SNAPSHOT_VERSIONS, DEFAULT_VERSIONS );
+      int maxEntries =
+          MetadataModelsSettings.getInt( MetadataModelsSettings.MODEL_CACHE_MAX_ENTRIES, DEFAULT_MAX_ENTRIES );
+      instance = new ModelSnapshotCache( versions, maxEntries );
+    }
+    return instance;
+  }
+
+  /**
+   * Records a version of a model, unless it is already the latest one
+   *
+   * @param key
+   *          see {@link ModelResponseCache#modelKey}
+   * @param index
+   */
+  public synchronized void add( String key, ModelIndex index ) {
+    Map<String, ModelIndex> snapshots = entries.get( key );
+    if ( snapshots == null ) {
+      snapshots = new LinkedHashMap<String, ModelIndex>();
+      entries.put( key, snapshots );
+    }
+    // re-inserted, so that the order is the order in which the versions were last seen
+    snapshots.remove( index.getVersion() );
+    snapshots.put( index.getVersion(), index );
+    Iterator<ModelIndex> versionIt = snapshots.values().iterator();
+    while ( snapshots.size() > versions ) {
+      versionIt.next();
+      versionIt.remove();
+    }
+    Iterator<Map<String, ModelIndex>> it = entries.values().iterator();
+    while ( entries.size() > maxEntries ) {
+      it.next();
+      it.remove();
+    }
+  }
+
+  /**
+   * @param key
+   * @param version
+   * @return the snapshot of the given version of a model, or null if it is not kept
+   */
+  public synchronized ModelIndex get( String key, String version ) {
+    Map<String, ModelIndex> snapshots = entries.get( key );
+    return snapshots == null || version == null ? null : snapshots.get( version );
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+}
@@ -0,0 +1,62 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.Map;
+
+import org.pentaho.metadata.model.thin.ModelInfo;
+
+/**
+ * A model with its categories but without their columns, as returned by getmodel in summary mode. The columns are
+ * fetched per category with the columns action.
+ */
+public class ModelSummary extends ModelInfo {
+
+  private Map<String, String> capabilities;
+
+  private CategorySummary[] categories;
+
+  private String version;
+
+  public Map<String, String> getCapabilities() {
+    return capabilities;
+  }
+
+  public void setCapabilities( Map<String, String> capabilities ) {
+    this.capabilities = capabilities;
+  }
+
+  public CategorySummary[] getCategories() {
+    return categories;
+  }
+
+  public void setCategories( CategorySummary[] categories ) {
+    this.categories = categories;
+  }
+
+  /**
+   * Returns the content fingerprint of the model, to ask modeldiff for later changes
+   *
+   * @return
+   */
+  public String getVersion() {
+    return version;
+  }
+
+  public void setVersion( String version ) {
+    this.version = version;
+  }
+
+}
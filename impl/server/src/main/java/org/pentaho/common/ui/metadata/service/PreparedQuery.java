@@ -0,0 +1,168 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.pentaho.common.ui.messages.Messages;
+import org.pentaho.metadata.model.thin.Parameter;
+import org.pentaho.metadata.model.thin.Query;
+
+/**
+ * A query registered with the prepare action. The query is parsed and checked against its model once; every
+ * execution only binds new parameter values to a copy that shares the elements, conditions and orders of the
+ * prepared query.
+ */
+public class PreparedQuery {
+
+  private final String handle;
+
+  private final Query query;
+
+  private final Map<String, Integer> parameterPositions;
+
+  private volatile ModelIndex index;
+
+  private volatile long lastAccess;
+
+  /**
+   * @param handle
+   * @param query
+   * @param index
+   *          the index of the model the query was checked against, or null if queries are not checked
+   * @param lastAccess
+   */
+  PreparedQuery( String handle, Query query, ModelIndex index, long lastAccess ) {
+    this.handle = handle;
+    this.query = query;
+    this.index = index;
+    this.lastAccess = lastAccess;
+    Map<String, Integer> positions = new LinkedHashMap<String, Integer>();
+    Parameter[] parameters = query.getParameters();
+    if ( parameters != null ) {
+      for ( int i = 0; i < parameters.length; i++ ) {
+        String name = getName( parameters[ i ] );
+        if ( name != null && !positions.containsKey( name ) ) {
+          positions.put( name, i );
+        }
+      }
+    }
+    this.parameterPositions = Collections.unmodifiableMap( positions );
+  }
+
+  /**
+   * Returns the name a parameter is bound by: its name, or the id of its column if it has none
+   */
+  private static String getName( Parameter parameter ) {
+    if ( parameter == null ) {
+      return null;
+    }
+    return parameter.getName() != null ? parameter.getName() : parameter.getElementId();
+  }
+
+  public String getHandle() {
+    return handle;
+  }
+
+  /**
+   * Returns the query as it was prepared
+   *
+   * @return
+   */
+  public Query getQuery() {
+    return query;
+  }
+
+  /**
+   * Returns the handle and the parameter names, as returned by the prepare action
+   *
+   * @return
+   */
+  public PreparedQueryInfo getInfo() {
+    PreparedQueryInfo info = new PreparedQueryInfo();
+    info.setHandle( handle );
+    info.setSourceId( query.getSourceId() );
+    info.setParameters( parameterPositions.keySet().toArray( new String[ parameterPositions.size() ] ) );
+    return info;
+  }
+
+  /**
+   * Returns a copy of the query with new parameter values. Parameters without a new value keep the value they were
+   * prepared with.
+   *
+   * @param values
+   *          the new values by parameter name, or null
+   * @return
+   * @throws QueryValidationException
+   *           if a value is given for a parameter the query does not have
+   */
+  public Query bind( Map<String, String[]> values ) throws QueryValidationException {
+    if ( values == null || values.isEmpty() ) {
+      return query;
+    }
+    Parameter[] parameters = query.getParameters() == null ? new Parameter[ 0 ] : query.getParameters().clone();
+    for ( Map.Entry<String, String[]> entry : values.entrySet() ) {
+      Integer position = parameterPositions.get( entry.getKey() );
+      if ( position == null ) {
+        throw new QueryValidationException( "ERROR_0015_UNKNOWN_PARAMETER", Messages.getErrorString( //$NON-NLS-1$
+            "MetadataModelsContentGenerator.ERROR_0015_UNKNOWN_PARAMETER", entry.getKey(), handle ) ); //$NON-NLS-1$
+      }
+      Parameter prepared = parameters[ position ];
+      Parameter bound = new Parameter();
+      bound.setElementId( prepared.getElementId() );
+      bound.setName( prepared.getName() );
+      bound.setType( prepared.getType() );
+      bound.setDefaultValue( prepared.getDefaultValue() );
+      bound.setValue( entry.getValue() );
+      parameters[ position ] = bound;
+    }
+    Query bound = new Query();
+    bound.setSourceId( query.getSourceId() );
+    bound.setElements( query.getElements() );
+    bound.setConditions( query.getConditions() );
+    bound.setOrders( query.getOrders() );
+    bound.setParameters( parameters );
+    bound.setDefaultParameterMap( query.getDefaultParameterMap() );
+    bound.setDisableDistinct( query.getDisableDistinct() );
+    return bound;
+  }
+
+  /**
+   * Checks the query again if its model changed since it was last checked. Parameter values cannot make a query
+   * invalid, so a query is checked once per version of its model rather than once per execution.
+   *
+   * @param current
+   *          the current index of the query's model
+   * @throws QueryValidationException
+   *           if the query no longer fits its model
+   */
+  public void revalidate( ModelIndex current ) throws QueryValidationException {
+    if ( current != index ) {
+      current.validate( query );
+      index = current;
+    }
+  }
+
+  long getLastAccess() {
+    return lastAccess;
+  }
+
+  void touch( long now ) {
+    lastAccess = now;
+  }
+
+}
@@ -0,0 +1,62 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+/**
+ * A prepared query, as returned by the prepare action
+ */
+public class PreparedQueryInfo {
+
+  private String handle;
+
+  private String sourceId;
+
+  private String[] parameters;
+
+  /**
+   * Returns the handle that the execute action takes instead of the query
+   *
+   * @return
+   */
+  public String getHandle() {
+    return handle;
+  }
+
+  public void setHandle( String handle ) {
+    this.handle = handle;
+  }
+
+  public String getSourceId() {
+    return sourceId;
+  }
+
+  public void setSourceId( String sourceId ) {
+    this.sourceId = sourceId;
+  }
+
+  /**
+   * Returns the names of the parameters that values can be bound to
+   *
+   * @return
+   */
+  public String[] getParameters() {
+    return parameters;
+  }
+
+  public void setParameters( String[] parameters ) {
+    this.parameters = parameters;
+  }
+
+}
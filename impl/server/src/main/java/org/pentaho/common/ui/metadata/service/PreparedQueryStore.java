@@ -0,0 +1,143 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.pentaho.metadata.model.thin.Query;
+import org.pentaho.platform.api.engine.IPentahoSession;
+
+/**
+ * Holds the prepared queries of one user session. A prepared query that is not executed for longer than the
+ * configured time is forgotten, and the least recently executed queries are dropped once a session has too many.
+ */
+public class PreparedQueryStore {
+
+  static final String SESSION_ATTRIBUTE = PreparedQueryStore.class.getName();
+
+  private static final long DEFAULT_TTL_SECONDS = 1800;
+
+  private static final int DEFAULT_MAX_QUERIES = 100;
+
+  private static PreparedQueryStore sessionlessStore;
+
+  private final long ttlMillis;
+
+  private final int maxQueries;
+
+  private final Map<String, PreparedQuery> queries = new LinkedHashMap<String, PreparedQuery>( 16, 0.75f, true );
+
+  PreparedQueryStore( long ttlMillis, int maxQueries ) {
+    this.ttlMillis = ttlMillis;
+    this.maxQueries = Math.max( 1, maxQueries );
+  }
+
+  /**
+   * Returns the store bound to the session, creating it on first use
+   *
+   * @param session
+   *          the user session, or null when running outside of a session
+   * @return
+   */
+  public static PreparedQueryStore getInstance( IPentahoSession session ) {
+    if ( session == null ) {
+      synchronized ( PreparedQueryStore.class ) {
+        if ( sessionlessStore == null ) {
+          sessionlessStore = createFromSettings();
+        }
+        return sessionlessStore;
+      }
+    }
+    synchronized ( session ) {
+      Object store = session.getAttribute( SESSION_ATTRIBUTE );
+      if ( !( store instanceof PreparedQueryStore ) ) {
+        store = createFromSettings();
+        session.setAttribute( SESSION_ATTRIBUTE, store );
+      }
+      return (PreparedQueryStore) store;
+    }
+  }
+
+  private static PreparedQueryStore createFromSettings() {
+    long ttl = MetadataModelsSettings.getLong( MetadataModelsSettings.PREPARED_TTL_SECONDS, DEFAULT_TTL_SECONDS );
+    int maxQueries =
+        MetadataModelsSettings.getInt( MetadataModelsSettings.PREPARED_MAX_PER_SESSION, DEFAULT_MAX_QUERIES );
+    return new PreparedQueryStore( ttl * 1000, maxQueries );
+  }
+
+  /**
+   * Holds a query that was checked against its model
+   *
+   * @param query
+   * @param index
+   *          the index of the model the query was checked against, or null if queries are not checked
+   * @return the prepared query with its new handle
+   */
+  public synchronized PreparedQuery add( Query query, ModelIndex index ) {
+    PreparedQuery prepared = new PreparedQuery( UUID.randomUUID().toString(), query, index, currentTimeMillis() );
+    queries.put( prepared.getHandle(), prepared );
+    evict();
+    return prepared;
+  }
+
+  /**
+   * Returns a prepared query and marks it as still wanted
+   *
+   * @param handle
+   * @return the query, or null if the handle is unknown or has expired
+   */
+  public synchronized PreparedQuery get( String handle ) {
+    evict();
+    PreparedQuery prepared = handle == null ? null : queries.get( handle );
+    if ( prepared != null ) {
+      prepared.touch( currentTimeMillis() );
+    }
+    return prepared;
+  }
+
+  /**
+   * Forgets a prepared query
+   *
+   * @param handle
+   * @return true if the handle was known
+   */
+  public synchronized boolean remove( String handle ) {
+    return handle != null && queries.remove( handle ) != null;
+  }
+
+  synchronized int size() {
+    return queries.size();
+  }
+
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  private void evict() {
+    long now = currentTimeMillis();
+    Iterator<PreparedQuery> it = queries.values().iterator();
+    while ( it.hasNext() ) {
+      PreparedQuery prepared = it.next();
+      if ( ( ttlMillis > 0 && now - prepared.getLastAccess() > ttlMillis ) || queries.size() > maxQueries ) {
+        // the map is in access order, so the least recently executed queries go first
+        it.remove();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,87 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+/**
+ * How one provider answered a listmodels request, as returned with the models when the status is requested
+ */
+public class ProviderStatus {
+
+  /**
+   * The provider listed its models in time
+   */
+  public static final String OK = "OK"; //$NON-NLS-1$
+
+  /**
+   * The provider did not answer before its deadline, its models are missing
+   */
+  public static final String TIMEOUT = "TIMEOUT"; //$NON-NLS-1$
+
+  /**
+   * The provider failed, its models are missing
+   */
+  public static final String FAILED = "FAILED"; //$NON-NLS-1$
+
+  private String providerId;
+
+  private String status;
+
+  private long millis;
+
+  private int modelCount;
+
+  public String getProviderId() {
+    return providerId;
+  }
+
+  public void setProviderId( String providerId ) {
+    this.providerId = providerId;
+  }
+
+  /**
+   * Returns one of OK, TIMEOUT or FAILED
+   *
+   * @return
+   */
+  public String getStatus() {
+    return status;
+  }
+
+  public void setStatus( String status ) {
+    this.status = status;
+  }
+
+  /**
+   * Returns the time the provider took, or the time it was waited for if it timed out
+   *
+   * @return
+   */
+  public long getMillis() {
+    return millis;
+  }
+
+  public void setMillis( long millis ) {
+    this.millis = millis;
+  }
+
+  public int getModelCount() {
+    return modelCount;
+  }
+
+  public void setModelCount( int modelCount ) {
+    this.modelCount = modelCount;
+  }
+
+}
@@ -0,0 +1,202 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of queries executing at the same time, in total and per user. A query that cannot run right
+ * away waits in a bounded queue; it is rejected at once when the queue is full, and after the configured time if it
+ * is still waiting by then. Rejected clients are told when to retry. Only queries that actually reach a provider
+ * are counted, so results served from the cache are never held back.
+ */
+public class QueryAdmission {
+
+  private static final int DEFAULT_MAX_RUNNING = 16;
+
+  private static final int DEFAULT_MAX_RUNNING_PER_USER = 4;
+
+  private static final int DEFAULT_MAX_QUEUED = 50;
+
+  private static final long DEFAULT_MAX_WAIT_MILLIS = 30000;
+
+  private static final int DEFAULT_RETRY_AFTER_SECONDS = 5;
+
+  private static QueryAdmission instance;
+
+  private final int maxRunning;
+
+  private final int maxRunningPerUser;
+
+  private final int maxQueued;
+
+  private final long maxWaitMillis;
+
+  private final int retryAfterSeconds;
+
+  private final Map<String, Integer> runningByUser = new HashMap<String, Integer>();
+
+  private int running;
+
+  private int queued;
+
+  private int peakQueued;
+
+  private long admitted;
+
+  private long rejected;
+
+  private long totalWaitNanos;
+
+  private long maxWaitNanos;
+
+  /**
+   * @param maxRunning
+   *          the maximum number of queries running at the same time, 0 or less for no limit
+   * @param maxRunningPerUser
+   *          the maximum number of queries of one user running at the same time, 0 or less for no limit
+   * @param maxQueued
+   *          the maximum number of queries waiting to run
+   * @param maxWaitMillis
+   *          the maximum time a query waits to run, 0 or less for no limit
+   * @param retryAfterSeconds
+   *          the delay suggested to rejected clients
+   */
+  QueryAdmission( int maxRunning, int maxRunningPerUser, int maxQueued, long maxWaitMillis, int retryAfterSeconds ) {
+    this.maxRunning = maxRunning;
+    this.maxRunningPerUser = maxRunningPerUser;
+    this.maxQueued = Math.max( 0, maxQueued );
+    this.maxWaitMillis = maxWaitMillis;
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public static synchronized QueryAdmission getInstance() {
+    if ( instance == null ) {
+      instance = new QueryAdmission(
+          MetadataModelsSettings.getInt( MetadataModelsSettings.ADMISSION_MAX_RUNNING, DEFAULT_MAX_RUNNING ),
+          MetadataModelsSettings.getInt( MetadataModelsSettings.ADMISSION_MAX_RUNNING_PER_USER,
+              DEFAULT_MAX_RUNNING_PER_USER ),
+          MetadataModelsSettings.getInt( MetadataModelsSettings.ADMISSION_MAX_QUEUED, DEFAULT_MAX_QUEUED ),
+          MetadataModelsSettings.getLong( MetadataModelsSettings.ADMISSION_MAX_WAIT_MILLIS, DEFAULT_MAX_WAIT_MILLIS ),
+          MetadataModelsSettings.getInt( MetadataModelsSettings.ADMISSION_RETRY_AFTER_SECONDS,
+              DEFAULT_RETRY_AFTER_SECONDS ) );
+    }
+    return instance;
+  }
+
+  /**
+   * Waits until the user may run another query. Every successful call must be followed by a call to
+   * {@link #release(String)}.
+   *
+   * @param user
+   * @throws QueryRejectedException
+   *           if the wait queue is full or the query waited too long
+   * @throws InterruptedException
+   */
+  public synchronized void acquire( String user ) throws QueryRejectedException, InterruptedException {
+    if ( canRun( user ) ) {
+      admit( user, 0 );
+      return;
+    }
+    if ( queued >= maxQueued ) {
+      rejected++;
+      throw new QueryRejectedException( "Query queue is full", retryAfterSeconds ); //$NON-NLS-1$
+    }
+    long start = System.nanoTime();
+    queued++;
+    peakQueued = Math.max( peakQueued, queued );
+    try {
+      while ( !canRun( user ) ) {
+        if ( maxWaitMillis > 0 ) {
+          long remaining = maxWaitMillis - TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+          if ( remaining <= 0 ) {
+            rejected++;
+            throw new QueryRejectedException( "Query waited too long to run", retryAfterSeconds ); //$NON-NLS-1$
+          }
+          wait( remaining );
+        } else {
+          wait();
+        }
+      }
+    } finally {
+      queued--;
+    }
+    admit( user, System.nanoTime() - start );
+  }
+
+  /**
+   * Ends a query admitted by {@link #acquire(String)}
+   *
+   * @param user
+   */
+  public synchronized void release( String user ) {
+    running--;
+    Integer count = runningByUser.get( user );
+    if ( count != null && count > 1 ) {
+      runningByUser.put( user, count - 1 );
+    } else {
+      runningByUser.remove( user );
+    }
+    notifyAll();
+  }
+
+  /**
+   * Returns the number of running and waiting queries, the number of admitted and rejected queries, and the time
+   * admitted queries spent waiting
+   *
+   * @return
+   */
+  public synchronized Map<String, Object> getStatistics() {
+    Map<String, Object> stats = new LinkedHashMap<String, Object>();
+    stats.put( "running", running ); //$NON-NLS-1$
+    stats.put( "queued", queued ); //$NON-NLS-1$
+    stats.put( "peakQueued", peakQueued ); //$NON-NLS-1$
+    stats.put( "admitted", admitted ); //$NON-NLS-1$
+    stats.put( "rejected", rejected ); //$NON-NLS-1$
+    stats.put( "averageWaitMillis", admitted == 0 ? 0.0 //$NON-NLS-1$
+        : (double) TimeUnit.NANOSECONDS.toMicros( totalWaitNanos ) / 1000 / admitted );
+    stats.put( "maxWaitMillis", TimeUnit.NANOSECONDS.toMillis( maxWaitNanos ) ); //$NON-NLS-1$
+    return stats;
+  }
+
+  synchronized int getRunning() {
+    return running;
+  }
+
+  synchronized int getQueued() {
+    return queued;
+  }
+
+  private boolean canRun( String user ) {
+    if ( maxRunning > 0 && running >= maxRunning ) {
+      return false;
+    }
+    Integer count = runningByUser.get( user );
+    return maxRunningPerUser <= 0 || count == null || count < maxRunningPerUser;
+  }
+
+  private void admit( String user, long waitNanos ) {
+    running++;
+    Integer count = runningByUser.get( user );
+    runningByUser.put( user, count == null ? 1 : count + 1 );
+    admitted++;
+    totalWaitNanos += waitNanos;
+    maxWaitNanos = Math.max( maxWaitNanos, waitNanos );
+  }
+
+}
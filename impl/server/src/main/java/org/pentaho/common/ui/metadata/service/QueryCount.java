@@ -0,0 +1,67 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+/**
+ * The number of rows of a query, as returned by the count action
+ */
+public class QueryCount {
+
+  private long count;
+
+  private boolean estimated;
+
+  private boolean more;
+
+  /**
+   * Returns the number of rows
+   *
+   * @return
+   */
+  public long getCount() {
+    return count;
+  }
+
+  public void setCount( long count ) {
+    this.count = count;
+  }
+
+  /**
+   * Returns true if the count is an estimate from the provider's statistics
+   *
+   * @return
+   */
+  public boolean isEstimated() {
+    return estimated;
+  }
+
+  public void setEstimated( boolean estimated ) {
+    this.estimated = estimated;
+  }
+
+  /**
+   * Returns true if counting stopped at the requested maximum, so the query has at least that many rows
+   *
+   * @return
+   */
+  public boolean isMore() {
+    return more;
+  }
+
+  public void setMore( boolean more ) {
+    this.more = more;
+  }
+
+}
@@ -0,0 +1,193 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.DataTable;
+import org.pentaho.metadata.datatable.Row;
+import org.pentaho.metadata.model.thin.Order;
+import org.pentaho.metadata.model.thin.Query;
+
+/**
+ * Counts the rows of thin queries without sending them to the client. A result of the query already in the
+ * {@link QueryResultCache} is counted directly. Otherwise the query is executed without its orders, which do not
+ * change the count, and its rows are counted and dropped as they arrive.
+ * <p>
+ * This is not a count pushed down to the database: the thin query has no way to ask a provider for the number of
+ * distinct rows, so the provider still produces every row up to <code>maxCount</code> and the server row limit. What
+ * the count saves is serializing and sending the rows, and the client holding them. The execution goes through the
+ * same executor as a normal query, so it is cached, shared, admitted and filtered for the user the same way; a small
+ * enough result is therefore also kept in the query cache. In estimate mode the registered {@link RowCountEstimator}s
+ * are asked first; none is registered unless a provider brings one.
+ */
+public class QueryCounter {
+
+  private static final List<RowCountEstimator> estimators = new CopyOnWriteArrayList<RowCountEstimator>();
+
+  private final QueryResultCache cache;
+
+  private final String securityKey;
+
+  private final QueryLimits.Limit limit;
+
+  private final QueryExecutor executor;
+
+  /**
+   * @param cache
+   * @param securityKey
+   *          the security context of the user running the queries
+   * @param limit
+   *          the limits of the user, which the executor applies and the cached results were executed with
+   * @param executor
+   *          the executor that runs the queries that have to be counted
+   */
+  public QueryCounter( QueryResultCache cache, String securityKey, QueryLimits.Limit limit, QueryExecutor executor ) {
+    this.cache = cache;
+    this.securityKey = securityKey;
+    this.limit = limit;
+    this.executor = executor;
+  }
+
+  public static void addEstimator( RowCountEstimator estimator ) {
+    if ( estimator != null && !estimators.contains( estimator ) ) {
+      estimators.add( estimator );
+    }
+  }
+
+  public static void removeEstimator( RowCountEstimator estimator ) {
+    estimators.remove( estimator );
+  }
+
+  /**
+   * Counts the rows of a query
+   *
+   * @param query
+   * @param maxCount
+   *          the count at which to stop counting, 0 or less to count all the rows
+   * @param estimate
+   *          true to accept an estimate from the provider's statistics
+   * @return the count, or null if no provider owns the query's source
+   * @throws Exception
+   */
+  public QueryCount count( Query query, int maxCount, boolean estimate ) throws Exception {
+    DataTable cached = getCached( query );
+    if ( cached != null ) {
+      int rows = cached.getRows() == null ? 0 : cached.getRows().length;
+      int maxRows = limit.getMaxRows();
+      if ( maxRows > 0 && rows > maxRows && ( maxCount <= 0 || maxCount > maxRows ) ) {
+        // the result was cut short at the server's row limit
+        QueryCount count = createCount( maxRows, false, maxCount );
+        count.setMore( true );
+        return count;
+      }
+      return createCount( rows, false, maxCount );
+    }
+    if ( estimate ) {
+      for ( RowCountEstimator estimator : estimators ) {
+        long count = estimator.estimateRowCount( query );
+        if ( count >= 0 ) {
+          return createCount( count, true, maxCount );
+        }
+      }
+    }
+
+    int rowLimit = maxCount > 0 ? maxCount + 1 : -1;
+    RowCounter counter = new RowCounter( rowLimit );
+    if ( !executor.execute( withoutOrders( query ), rowLimit, counter ) ) {
+      return null;
+    }
+    QueryCount count = createCount( counter.count, false, maxCount );
+    if ( counter.truncated ) {
+      // the server's row limit stopped the counting
+      count.setMore( true );
+    }
+    return count;
+  }
+
+  /**
+   * Looks for a cached result of the query as a client would have run it, or of an earlier count of it. Results are
+   * cached with the row limit the {@link LimitingQueryExecutor} executed them with.
+   */
+  private DataTable getCached( Query query ) {
+    if ( !cache.isEnabled() ) {
+      return null;
+    }
+    int rowLimit = limit.getExecutedRowLimit( -1 );
+    DataTable cached = cache.get( cache.createKey( query, rowLimit, securityKey ) );
+    if ( cached == null ) {
+      cached = cache.get( cache.createKey( withoutOrders( query ), rowLimit, securityKey ) );
+    }
+    return cached;
+  }
+
+  private static QueryCount createCount( long count, boolean estimated, int maxCount ) {
+    QueryCount result = new QueryCount();
+    result.setEstimated( estimated );
+    if ( maxCount > 0 && count > maxCount ) {
+      result.setCount( maxCount );
+      result.setMore( true );
+    } else {
+      result.setCount( count );
+    }
+    return result;
+  }
+
+  /**
+   * Returns a copy of the query without orders
+   */
+  static Query withoutOrders( Query query ) {
+    Query copy = new Query();
+    copy.setSourceId( query.getSourceId() );
+    copy.setElements( query.getElements() );
+    copy.setConditions( query.getConditions() );
+    copy.setOrders( new Order[0] );
+    copy.setParameters( query.getParameters() );
+    copy.setDefaultParameterMap( query.getDefaultParameterMap() );
+    copy.setDisableDistinct( query.getDisableDistinct() );
+    return copy;
+  }
+
+  private static class RowCounter implements QueryRowCallback {
+
+    private final int rowLimit;
+
+    private long count;
+
+    private boolean truncated;
+
+    RowCounter( int rowLimit ) {
+      this.rowLimit = rowLimit;
+    }
+
+    @Override
+    public void columns( Column[] columns ) {
+    }
+
+    @Override
+    public boolean row( Row row ) {
+      count++;
+      return rowLimit <= 0 || count < rowLimit;
+    }
+
+    @Override
+    public void truncated( QueryLimits.Truncation reason ) {
+      truncated = true;
+    }
+  }
+
+}
@@ -0,0 +1,213 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.pentaho.metadata.datatable.DataTable;
+import org.pentaho.metadata.datatable.Row;
+import org.pentaho.platform.api.engine.IPentahoSession;
+
+/**
+ * Holds query results of one user session so that they can be paged through without re-executing the query. Every
+ * result is identified by an opaque cursor token. Results expire after a period without access, and the least
+ * recently used results are evicted once the number of results or their estimated size exceeds the configured
+ * limits.
+ */
+public class QueryCursorStore {
+
+  static final String SESSION_ATTRIBUTE = QueryCursorStore.class.getName();
+
+  private static final long DEFAULT_TTL_SECONDS = 300;
+
+  private static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+  private static final int DEFAULT_MAX_RESULTS = 5;
+
+  private static QueryCursorStore sessionlessStore;
+
+  private final long ttlMillis;
+
+  private final long maxBytes;
+
+  private final int maxResults;
+
+  private final Map<String, HeldResult> results = new LinkedHashMap<String, HeldResult>( 16, 0.75f, true );
+
+  private long bytes;
+
+  QueryCursorStore( long ttlMillis, long maxBytes, int maxResults ) {
+    this.ttlMillis = ttlMillis;
+    this.maxBytes = maxBytes;
+    this.maxResults = Math.max( 1, maxResults );
+  }
+
+  /**
+   * Returns the store bound to the session, creating it on first use
+   *
+   * @param session
+   *          the user session, or null when running outside of a session
+   * @return
+   */
+  public static QueryCursorStore getInstance( IPentahoSession session ) {
+    if ( session == null ) {
+      synchronized ( QueryCursorStore.class ) {
+        if ( sessionlessStore == null ) {
+          sessionlessStore = createFromSettings();
+        }
+        return sessionlessStore;
+      }
+    }
+    synchronized ( session ) {
+      Object store = session.getAttribute( SESSION_ATTRIBUTE );
+      if ( !( store instanceof QueryCursorStore ) ) {
+        store = createFromSettings();
+        session.setAttribute( SESSION_ATTRIBUTE, store );
+      }
+      return (QueryCursorStore) store;
+    }
+  }
+
+  private static QueryCursorStore createFromSettings() {
+    long ttl = MetadataModelsSettings.getLong( MetadataModelsSettings.CURSOR_TTL_SECONDS, DEFAULT_TTL_SECONDS );
+    long maxBytes = MetadataModelsSettings.getLong( MetadataModelsSettings.CURSOR_MAX_BYTES, DEFAULT_MAX_BYTES );
+    int maxResults = MetadataModelsSettings.getInt( MetadataModelsSettings.CURSOR_MAX_RESULTS, DEFAULT_MAX_RESULTS );
+    return new QueryCursorStore( ttl * 1000, maxBytes, maxResults );
+  }
+
+  /**
+   * @return the maximum estimated size of all the results held by this store, 0 or less for no limit
+   */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * Holds a result and returns the cursor token that identifies it
+   *
+   * @param table
+   * @param complete
+   *          false if the result was cut short
+   * @param size
+   *          the estimated size of the result
+   * @return
+   */
+  public synchronized String add( DataTable table, boolean complete, long size ) {
+    String cursor = UUID.randomUUID().toString();
+    results.put( cursor, new HeldResult( table, complete, size, currentTimeMillis() ) );
+    bytes += size;
+    evict();
+    return cursor;
+  }
+
+  /**
+   * Returns a page of a held result
+   *
+   * @param cursor
+   * @param offset
+   *          the index of the first row to return
+   * @param limit
+   *          the maximum number of rows to return
+   * @return the page, or null if the cursor is unknown or has expired
+   */
+  public synchronized QueryPage getPage( String cursor, int offset, int limit ) {
+    evict();
+    HeldResult result = cursor == null ? null : results.get( cursor );
+    if ( result == null ) {
+      return null;
+    }
+    result.lastAccess = currentTimeMillis();
+
+    Row[] rows = result.table.getRows() == null ? new Row[0] : result.table.getRows();
+    int from = Math.min( Math.max( 0, offset ), rows.length );
+    int to = limit < 0 ? rows.length : (int) Math.min( (long) from + limit, rows.length );
+    DataTable table = new DataTable();
+    table.setCols( result.table.getCols() );
+    table.setRows( Arrays.copyOfRange( rows, from, to ) );
+
+    QueryPage page = new QueryPage();
+    page.setCursor( cursor );
+    page.setOffset( from );
+    page.setTotalRows( rows.length );
+    page.setComplete( result.complete );
+    page.setTable( table );
+    return page;
+  }
+
+  /**
+   * Releases a held result
+   *
+   * @param cursor
+   * @return true if the cursor was held
+   */
+  public synchronized boolean remove( String cursor ) {
+    HeldResult result = results.remove( cursor );
+    if ( result == null ) {
+      return false;
+    }
+    bytes -= result.size;
+    return true;
+  }
+
+  synchronized int size() {
+    return results.size();
+  }
+
+  synchronized long getBytes() {
+    return bytes;
+  }
+
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  private void evict() {
+    long now = currentTimeMillis();
+    Iterator<HeldResult> it = results.values().iterator();
+    while ( it.hasNext() ) {
+      HeldResult result = it.next();
+      boolean expired = ttlMillis > 0 && now - result.lastAccess > ttlMillis;
+      boolean overLimit = results.size() > maxResults || ( maxBytes > 0 && bytes > maxBytes );
+      if ( expired || overLimit ) {
+        // the map is in access order, so the least recently used results go first
+        it.remove();
+        bytes -= result.size;
+      }
+    }
+  }
+
+  private static class HeldResult {
+
+    private final DataTable table;
+
+    private final boolean complete;
+
+    private final long size;
+
+    private long lastAccess;
+
+    HeldResult( DataTable table, boolean complete, long size, long lastAccess ) {
+      this.table = table;
+      this.complete = complete;
+      this.size = size;
+      this.lastAccess = lastAccess;
+    }
+  }
+
+}
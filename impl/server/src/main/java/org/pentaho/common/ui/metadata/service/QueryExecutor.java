@@ -0,0 +1,36 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import org.pentaho.metadata.model.thin.Query;
+
+/**
+ * Executes a thin query, passing its result to a callback row by row. Implementations are stacked, each one adding a
+ * concern (caching, ...) on top of the {@link StreamingQueryExecutor} that talks to the providers.
+ */
+public interface QueryExecutor {
+
+  /**
+   * Executes the query, passing the columns and then every row to the callback
+   *
+   * @param query
+   * @param rowLimit
+   * @param callback
+   * @return false if no provider could execute the query
+   * @throws Exception
+   */
+  public boolean execute( Query query, int rowLimit, QueryRowCallback callback ) throws Exception;
+
+}
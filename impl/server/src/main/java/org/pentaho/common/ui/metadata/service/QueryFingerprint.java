@@ -0,0 +1,108 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.pentaho.metadata.model.thin.Query;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Computes a canonical fingerprint of a thin query. Two queries that select the same elements with the same
+ * conditions, orders and parameters get the same fingerprint, regardless of property order, null or empty
+ * properties, the order of the parameters or the type ids sent by the client.
+ */
+public class QueryFingerprint {
+
+  static final ObjectMapper CANONICAL_MAPPER = JsonMapper.builder()
+      .enable( MapperFeature.SORT_PROPERTIES_ALPHABETICALLY )
+      .enable( SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS )
+      .serializationInclusion( JsonInclude.Include.NON_EMPTY )
+      .build();
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+  private QueryFingerprint() {
+  }
+
+  /**
+   * Returns the canonical JSON form of the query
+   *
+   * @param query
+   * @return
+   */
+  public static String canonicalize( Query query ) {
+    JsonNode tree = CANONICAL_MAPPER.valueToTree( query );
+    if ( tree instanceof ObjectNode ) {
+      // parameters are referenced by name, so their order does not matter
+      JsonNode parameters = tree.get( "parameters" ); //$NON-NLS-1$
+      if ( parameters instanceof ArrayNode ) {
+        List<JsonNode> sorted = new ArrayList<JsonNode>();
+        parameters.forEach( sorted::add );
+        Collections.sort( sorted, Comparator.comparing( ( JsonNode node ) -> node.path( "name" ).asText() ) ); //$NON-NLS-1$
+        ( (ArrayNode) parameters ).removeAll().addAll( sorted );
+      }
+    }
+    try {
+      return CANONICAL_MAPPER.writeValueAsString( tree );
+    } catch ( JsonProcessingException e ) {
+      throw new IllegalArgumentException( e.getMessage(), e );
+    }
+  }
+
+  /**
+   * Returns a SHA-256 hash of the canonical form of the query
+   *
+   * @param query
+   * @return
+   */
+  public static String of( Query query ) {
+    return hash( canonicalize( query ) );
+  }
+
+  static String hash( String value ) {
+    return hash( value.getBytes( StandardCharsets.UTF_8 ) );
+  }
+
+  static String hash( byte[] value ) {
+    try {
+      byte[] digest = MessageDigest.getInstance( "SHA-256" ).digest( value ); //$NON-NLS-1$
+      char[] chars = new char[ digest.length * 2 ];
+      for ( int i = 0; i < digest.length; i++ ) {
+        chars[ i * 2 ] = HEX[ ( digest[ i ] >> 4 ) & 0xf ];
+        chars[ i * 2 + 1 ] = HEX[ digest[ i ] & 0xf ];
+      }
+      return new String( chars );
+    } catch ( NoSuchAlgorithmException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
+}
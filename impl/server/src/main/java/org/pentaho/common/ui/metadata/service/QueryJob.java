@@ -0,0 +1,201 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.DataTable;
+import org.pentaho.metadata.datatable.Row;
+import org.pentaho.metadata.model.thin.Query;
+
+/**
+ * A query running in the background on behalf of a user session. The rows are collected as the provider produces
+ * them; once the query completes, the result is handed to the session's {@link QueryCursorStore} so that it can be
+ * paged through. Cancelling the job, or no longer polling it, stops the provider at the next row and interrupts the
+ * thread running it.
+ * <p>
+ * A cancel can race with the job starting or completing. The state only leaves QUEUED by a compare-and-set, so a job
+ * is either cancelled before it runs or runs; once running, only the thread running it finishes it. Whether a running
+ * job ends up CANCELLED or with its result is decided by whichever of {@link #cancel()} and the completing thread
+ * first claims the outcome.
+ */
+public class QueryJob implements QueryRowCallback {
+
+  /**
+   * The states of a job
+   */
+  public enum State {
+    QUEUED, RUNNING, DONE, FAILED, CANCELLED
+  }
+
+  private static final Log logger = LogFactory.getLog( QueryJob.class );
+
+  private final String id;
+
+  private final QueryJobStore store;
+
+  private final DataTableCollector collector;
+
+  private final AtomicReference<State> state = new AtomicReference<State>( State.QUEUED );
+
+  // set by whoever decides the outcome first: a cancel, an abandoned poll or the completing thread
+  private final AtomicBoolean decided = new AtomicBoolean();
+
+  private volatile boolean cancelled;
+
+  private volatile int rowCount;
+
+  private volatile long lastAccess;
+
+  private volatile Future<?> future;
+
+  private volatile String cursor;
+
+  QueryJob( String id, QueryJobStore store, int rowLimit, long maxBytes ) {
+    this.id = id;
+    this.store = store;
+    this.collector = new DataTableCollector( rowLimit, maxBytes );
+    this.lastAccess = store.currentTimeMillis();
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public State getState() {
+    return state.get();
+  }
+
+  /**
+   * Returns the cursor of the result in the session's {@link QueryCursorStore}, or null until the job is done
+   *
+   * @return
+   */
+  public String getCursor() {
+    return cursor;
+  }
+
+  /**
+   * Returns a snapshot of the job's progress
+   *
+   * @return
+   */
+  public QueryJobStatus getStatus() {
+    State current = state.get();
+    QueryJobStatus status = new QueryJobStatus();
+    status.setJobId( id );
+    status.setState( current.name() );
+    status.setRowCount( rowCount );
+    if ( current == State.DONE ) {
+      status.setComplete( !collector.isTruncated() );
+      status.setCursor( cursor );
+    }
+    return status;
+  }
+
+  /**
+   * Stops the job. A queued job never runs; a running job stops at the next row and its thread is interrupted.
+   *
+   * @return true if this call cancelled the job, false if it had already completed or been cancelled
+   */
+  public boolean cancel() {
+    if ( !decided.compareAndSet( false, true ) ) {
+      return false;
+    }
+    cancelled = true;
+    // a queued job is finished right away; a running one is finished by its thread once the provider stops
+    state.compareAndSet( State.QUEUED, State.CANCELLED );
+    Future<?> f = future;
+    if ( f != null ) {
+      f.cancel( true );
+    }
+    return true;
+  }
+
+  public boolean isFinished() {
+    State current = state.get();
+    return current == State.DONE || current == State.FAILED || current == State.CANCELLED;
+  }
+
+  @Override
+  public void columns( Column[] columns ) {
+    collector.columns( columns );
+  }
+
+  @Override
+  public boolean row( Row row ) {
+    if ( cancelled ) {
+      return false;
+    }
+    if ( store.isAbandoned( this ) && decided.compareAndSet( false, true ) ) {
+      cancelled = true;
+      return false;
+    }
+    if ( !collector.row( row ) ) {
+      return false;
+    }
+    rowCount++;
+    return true;
+  }
+
+  @Override
+  public void truncated( QueryLimits.Truncation reason ) {
+    collector.truncated( reason );
+  }
+
+  void setFuture( Future<?> future ) {
+    this.future = future;
+  }
+
+  long getLastAccess() {
+    return lastAccess;
+  }
+
+  void touch() {
+    lastAccess = store.currentTimeMillis();
+  }
+
+  void run( QueryExecutor queryExecutor, Query query, int rowLimit, QueryCursorStore cursors ) {
+    if ( !state.compareAndSet( State.QUEUED, State.RUNNING ) ) {
+      // cancelled while queued
+      return;
+    }
+    try {
+      queryExecutor.execute( query, rowLimit, this );
+      if ( !decided.compareAndSet( false, true ) ) {
+        state.set( State.CANCELLED );
+        return;
+      }
+      DataTable table = collector.getTable();
+      if ( table != null ) {
+        cursor = cursors.add( table, !collector.isTruncated(), collector.getEstimatedBytes() );
+      }
+      state.set( State.DONE );
+    } catch ( Exception e ) {
+      if ( !decided.compareAndSet( false, true ) ) {
+        state.set( State.CANCELLED );
+      } else {
+        logger.error( "Query job " + id + " failed", e ); //$NON-NLS-1$ //$NON-NLS-2$
+        state.set( State.FAILED );
+      }
+    }
+  }
+
+}
@@ -0,0 +1,95 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * The progress of a query job, as returned by the submitjob and jobstatus actions
+ */
+@JsonInclude( JsonInclude.Include.NON_NULL )
+public class QueryJobStatus {
+
+  private String jobId;
+
+  private String state;
+
+  private int rowCount;
+
+  private Boolean complete;
+
+  private String cursor;
+
+  public String getJobId() {
+    return jobId;
+  }
+
+  public void setJobId( String jobId ) {
+    this.jobId = jobId;
+  }
+
+  /**
+   * Returns one of QUEUED, RUNNING, DONE, FAILED or CANCELLED
+   *
+   * @return
+   */
+  public String getState() {
+    return state;
+  }
+
+  public void setState( String state ) {
+    this.state = state;
+  }
+
+  /**
+   * Returns the number of rows produced so far
+   *
+   * @return
+   */
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  public void setRowCount( int rowCount ) {
+    this.rowCount = rowCount;
+  }
+
+  /**
+   * Returns false if the result was cut short by the server's memory limits, null until the job is done
+   *
+   * @return
+   */
+  public Boolean getComplete() {
+    return complete;
+  }
+
+  public void setComplete( Boolean complete ) {
+    this.complete = complete;
+  }
+
+  /**
+   * Returns the cursor to pass to the page action for the result, null until the job is done
+   *
+   * @return
+   */
+  public String getCursor() {
+    return cursor;
+  }
+
+  public void setCursor( String cursor ) {
+    this.cursor = cursor;
+  }
+
+}
@@ -0,0 +1,208 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.pentaho.metadata.model.thin.Query;
+import org.pentaho.platform.api.engine.IPentahoSession;
+
+/**
+ * Holds the query jobs of one user session. The jobs of all sessions run on one shared, bounded thread pool. A job
+ * that is not polled for longer than the configured time is considered abandoned: it is cancelled and forgotten, and
+ * the least recently polled jobs are dropped the same way once a session has too many.
+ */
+public class QueryJobStore {
+
+  static final String SESSION_ATTRIBUTE = QueryJobStore.class.getName();
+
+  private static final long DEFAULT_TTL_SECONDS = 120;
+
+  private static final int DEFAULT_MAX_JOBS = 10;
+
+  private static final int DEFAULT_THREADS = 4;
+
+  private static final int DEFAULT_QUEUE_SIZE = 50;
+
+  private static ExecutorService sharedExecutor;
+
+  private static QueryJobStore sessionlessStore;
+
+  private final ExecutorService executor;
+
+  private final long ttlMillis;
+
+  private final int maxJobs;
+
+  private final Map<String, QueryJob> jobs = new LinkedHashMap<String, QueryJob>( 16, 0.75f, true );
+
+  QueryJobStore( ExecutorService executor, long ttlMillis, int maxJobs ) {
+    this.executor = executor;
+    this.ttlMillis = ttlMillis;
+    this.maxJobs = Math.max( 1, maxJobs );
+  }
+
+  /**
+   * Returns the store bound to the session, creating it on first use
+   *
+   * @param session
+   *          the user session, or null when running outside of a session
+   * @return
+   */
+  public static QueryJobStore getInstance( IPentahoSession session ) {
+    if ( session == null ) {
+      synchronized ( QueryJobStore.class ) {
+        if ( sessionlessStore == null ) {
+          sessionlessStore = createFromSettings();
+        }
+        return sessionlessStore;
+      }
+    }
+    synchronized ( session ) {
+      Object store = session.getAttribute( SESSION_ATTRIBUTE );
+      if ( !( store instanceof QueryJobStore ) ) {
+        store = createFromSettings();
+        session.setAttribute( SESSION_ATTRIBUTE, store );
+      }
+      return (QueryJobStore) store;
+    }
+  }
+
+  private static QueryJobStore createFromSettings() {
+    long ttl = MetadataModelsSettings.getLong( MetadataModelsSettings.JOB_TTL_SECONDS, DEFAULT_TTL_SECONDS );
+    int maxJobs = MetadataModelsSettings.getInt( MetadataModelsSettings.JOB_MAX_PER_SESSION, DEFAULT_MAX_JOBS );
+    return new QueryJobStore( getSharedExecutor(), ttl * 1000, maxJobs );
+  }
+
+  private static synchronized ExecutorService getSharedExecutor() {
+    if ( sharedExecutor == null ) {
+      int threads = Math.max( 1, MetadataModelsSettings.getInt( MetadataModelsSettings.JOB_THREADS,
+          DEFAULT_THREADS ) );
+      int queueSize = Math.max( 1, MetadataModelsSettings.getInt( MetadataModelsSettings.JOB_QUEUE_SIZE,
+          DEFAULT_QUEUE_SIZE ) );
+      ThreadPoolExecutor pool = new ThreadPoolExecutor( threads, threads, 60, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>( queueSize ), new JobThreadFactory() );
+      pool.allowCoreThreadTimeOut( true );
+      sharedExecutor = pool;
+    }
+    return sharedExecutor;
+  }
+
+  /**
+   * Starts a query in the background
+   *
+   * @param query
+   * @param rowLimit
+   * @param queryExecutor
+   * @param session
+   *          the session the query runs in
+   * @param cursors
+   *          the store that receives the result
+   * @return the new job
+   * @throws RejectedExecutionException
+   *           if the pool's queue is full
+   */
+  public QueryJob submit( final Query query, final int rowLimit, final QueryExecutor queryExecutor,
+      IPentahoSession session, final QueryCursorStore cursors ) {
+    final QueryJob job = new QueryJob( UUID.randomUUID().toString(), this, rowLimit, cursors.getMaxBytes() );
+    Future<?> future = executor.submit( new SessionCallable<Object>( session, () -> {
+      job.run( queryExecutor, query, rowLimit, cursors );
+      return null;
+    } ) );
+    job.setFuture( future );
+    synchronized ( this ) {
+      jobs.put( job.getId(), job );
+      evict();
+    }
+    return job;
+  }
+
+  /**
+   * Returns a job and marks it as still wanted
+   *
+   * @param id
+   * @return the job, or null if it is unknown or was abandoned
+   */
+  public synchronized QueryJob get( String id ) {
+    evict();
+    QueryJob job = id == null ? null : jobs.get( id );
+    if ( job != null ) {
+      job.touch();
+    }
+    return job;
+  }
+
+  /**
+   * Cancels a job. The job stays known, in the cancelled state, until it is abandoned.
+   *
+   * @param id
+   * @return true if the job was cancelled, false if it is unknown or had already completed or been cancelled
+   */
+  public boolean cancel( String id ) {
+    QueryJob job = get( id );
+    return job != null && job.cancel();
+  }
+
+  synchronized int size() {
+    return jobs.size();
+  }
+
+  /**
+   * @return true if the job has not been polled for longer than the configured time
+   */
+  boolean isAbandoned( QueryJob job ) {
+    return ttlMillis > 0 && currentTimeMillis() - job.getLastAccess() > ttlMillis;
+  }
+
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  private void evict() {
+    Iterator<QueryJob> it = jobs.values().iterator();
+    while ( it.hasNext() ) {
+      QueryJob job = it.next();
+      if ( isAbandoned( job ) || jobs.size() > maxJobs ) {
+        // the map is in access order, so the least recently polled jobs go first
+        it.remove();
+        job.cancel();
+      }
+    }
+  }
+
+  private static class JobThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread( Runnable runnable ) {
+      Thread thread = new Thread( runnable, "metadata-query-job-" + count.incrementAndGet() ); //$NON-NLS-1$
+      thread.setDaemon( true );
+      return thread;
+    }
+  }
+
+}
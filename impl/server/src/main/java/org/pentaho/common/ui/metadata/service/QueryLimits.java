@@ -0,0 +1,176 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * The time and row limits of queries, configured in the plugin's settings.xml. The global limits apply to every
+ * user, unless <code>metadata-query-user-limits</code> has limits for the user; its value is a comma separated list
+ * of <code>user=seconds/rows</code> entries, such as <code>etl=3600/0, kiosk=30/10000</code>, where 0 means no limit.
+ */
+public class QueryLimits {
+
+  /**
+   * The reasons a result can be cut short
+   */
+  public enum Truncation {
+    /**
+     * The query reached the maximum number of rows
+     */
+    ROWS,
+    /**
+     * The query ran longer than the timeout
+     */
+    TIMEOUT;
+
+    /**
+     * Returns the name of the reason in metric names and labels
+     *
+     * @return
+     */
+    public String getLabel() {
+      return name().toLowerCase( Locale.ROOT );
+    }
+  }
+
+  private static final long DEFAULT_TIMEOUT_SECONDS = 300;
+
+  private static final int DEFAULT_MAX_ROWS = 1000000;
+
+  private static final Log logger = LogFactory.getLog( QueryLimits.class );
+
+  private static QueryLimits instance;
+
+  private final Limit defaults;
+
+  private final Map<String, Limit> users;
+
+  /**
+   * @param defaults
+   *          the limits of the users without limits of their own
+   * @param users
+   *          the limits of individual users
+   */
+  QueryLimits( Limit defaults, Map<String, Limit> users ) {
+    this.defaults = defaults;
+    this.users = Collections.unmodifiableMap( new HashMap<String, Limit>( users ) );
+  }
+
+  public static synchronized QueryLimits getInstance() {
+    if ( instance == null ) {
+      long timeout =
+          MetadataModelsSettings.getLong( MetadataModelsSettings.QUERY_TIMEOUT_SECONDS, DEFAULT_TIMEOUT_SECONDS );
+      int maxRows = MetadataModelsSettings.getInt( MetadataModelsSettings.QUERY_MAX_ROWS, DEFAULT_MAX_ROWS );
+      instance = new QueryLimits( new Limit( timeout * 1000, maxRows ),
+          parseUserLimits( MetadataModelsSettings.getString( MetadataModelsSettings.QUERY_USER_LIMITS, null ) ) );
+    }
+    return instance;
+  }
+
+  /**
+   * Reads the limits of individual users. Malformed entries are logged and skipped.
+   *
+   * @param value
+   *          the list of <code>user=seconds/rows</code> entries, or null
+   * @return
+   */
+  static Map<String, Limit> parseUserLimits( String value ) {
+    Map<String, Limit> users = new HashMap<String, Limit>();
+    if ( value == null ) {
+      return users;
+    }
+    for ( String entry : value.split( "," ) ) { //$NON-NLS-1$
+      if ( entry.trim().length() == 0 ) {
+        continue;
+      }
+      int equals = entry.lastIndexOf( '=' );
+      int slash = entry.lastIndexOf( '/' );
+      try {
+        if ( equals <= 0 || slash < equals ) {
+          throw new NumberFormatException();
+        }
+        long seconds = Long.parseLong( entry.substring( equals + 1, slash ).trim() );
+        int rows = Integer.parseInt( entry.substring( slash + 1 ).trim() );
+        users.put( entry.substring( 0, equals ).trim(), new Limit( seconds * 1000, rows ) );
+      } catch ( NumberFormatException e ) {
+        logger.warn( "Ignoring malformed query limit " + entry.trim() + ", expected user=seconds/rows" ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+    return users;
+  }
+
+  /**
+   * Returns the limits of a user
+   *
+   * @param user
+   *          the user name, or null when running outside of a session
+   * @return
+   */
+  public Limit get( String user ) {
+    Limit limit = user == null ? null : users.get( user );
+    return limit == null ? defaults : limit;
+  }
+
+  /**
+   * The time and row limit of a query
+   */
+  public static class Limit {
+
+    private final long timeoutMillis;
+
+    private final int maxRows;
+
+    /**
+     * @param timeoutMillis
+     *          the time a query may take, 0 or less for no limit
+     * @param maxRows
+     *          the number of rows a query may return, 0 or less for no limit
+     */
+    public Limit( long timeoutMillis, int maxRows ) {
+      this.timeoutMillis = timeoutMillis;
+      this.maxRows = maxRows;
+    }
+
+    public long getTimeoutMillis() {
+      return timeoutMillis;
+    }
+
+    public int getMaxRows() {
+      return maxRows;
+    }
+
+    /**
+     * Returns the row limit a query is executed with when the client asks for a given limit: the client's limit if it
+     * is within the maximum, otherwise one row more than the maximum, which tells a result that was cut short from one
+     * that just fits. Executors below the {@link LimitingQueryExecutor}, such as the query cache, see this limit.
+     *
+     * @param rowLimit
+     *          the limit the client asked for, 0 or less for none
+     * @return
+     */
+    public int getExecutedRowLimit( int rowLimit ) {
+      boolean capped = maxRows > 0 && ( rowLimit <= 0 || rowLimit > maxRows );
+      return capped ? maxRows + 1 : rowLimit;
+    }
+  }
+
+}
@@ -0,0 +1,99 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import org.pentaho.metadata.datatable.DataTable;
+
+/**
+ * One page of a query result held on the server, as returned by the page action
+ */
+public class QueryPage {
+
+  private String cursor;
+
+  private int offset;
+
+  private int totalRows;
+
+  private boolean complete;
+
+  private DataTable table;
+
+  /**
+   * Returns the token to pass back to fetch more pages of the same result
+   *
+   * @return
+   */
+  public String getCursor() {
+    return cursor;
+  }
+
+  public void setCursor( String cursor ) {
+    this.cursor = cursor;
+  }
+
+  /**
+   * Returns the index of the first row of this page within the whole result
+   *
+   * @return
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  public void setOffset( int offset ) {
+    this.offset = offset;
+  }
+
+  /**
+   * Returns the number of rows held for the cursor
+   *
+   * @return
+   */
+  public int getTotalRows() {
+    return totalRows;
+  }
+
+  public void setTotalRows( int totalRows ) {
+    this.totalRows = totalRows;
+  }
+
+  /**
+   * Returns false if the held result was cut short by the server's memory limits
+   *
+   * @return
+   */
+  public boolean isComplete() {
+    return complete;
+  }
+
+  public void setComplete( boolean complete ) {
+    this.complete = complete;
+  }
+
+  /**
+   * Returns the rows of this page
+   *
+   * @return
+   */
+  public DataTable getTable() {
+    return table;
+  }
+
+  public void setTable( DataTable table ) {
+    this.table = table;
+  }
+
+}
@@ -0,0 +1,41 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+/**
+ * Thrown when a query is refused because too many queries are running and waiting. The client should try again
+ * after the suggested delay.
+ */
+public class QueryRejectedException extends Exception {
+
+  private static final long serialVersionUID = 6107422185904371830L;
+
+  private final int retryAfterSeconds;
+
+  public QueryRejectedException( String message, int retryAfterSeconds ) {
+    super( message );
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  /**
+   * Returns the number of seconds the client should wait before sending the query again
+   *
+   * @return
+   */
+  public int getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+
+}
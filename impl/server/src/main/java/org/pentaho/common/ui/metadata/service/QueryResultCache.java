@@ -0,0 +1,251 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.pentaho.metadata.datatable.DataTable;
+import org.pentaho.metadata.model.thin.Query;
+
+/**
+ * Caches query results by the canonical fingerprint of the query, its row limit and the security context of the
+ * user. Entries expire after a fixed time to live; the least recently used entries are evicted once the number of
+ * entries or their estimated size exceeds the configured limits. Results of a domain can be dropped explicitly with
+ * {@link #invalidate(String)}, e.g. when the domain is republished.
+ */
+public class QueryResultCache {
+
+  private static final long DEFAULT_TTL_SECONDS = 300;
+
+  private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+  private static final long DEFAULT_MAX_ENTRY_BYTES = 4L * 1024 * 1024;
+
+  private static final int DEFAULT_MAX_ENTRIES = 1000;
+
+  private static QueryResultCache instance;
+
+  private final boolean enabled;
+
+  private final long ttlMillis;
+
+  private final long maxBytes;
+
+  private final long maxEntryBytes;
+
+  private final int maxEntries;
+
+  private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true );
+
+  private long bytes;
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final AtomicLong evictions = new AtomicLong();
+
+  private final AtomicLong savedNanos = new AtomicLong();
+
+  QueryResultCache( boolean enabled, long ttlMillis, long maxBytes, long maxEntryBytes, int maxEntries ) {
+    this.enabled = enabled;
+    this.ttlMillis = ttlMillis;
+    this.maxBytes = maxBytes;
+    this.maxEntryBytes = maxEntryBytes;
+    this.maxEntries = Math.max( 1, maxEntries );
+  }
+
+  public static synchronized QueryResultCache getInstance() {
+    if ( instance == null ) {
+      boolean enabled = MetadataModelsSettings.getBoolean( MetadataModelsSettings.QUERY_CACHE_ENABLED, true );
+      long ttl = MetadataModelsSettings.getLong( MetadataModelsSettings.QUERY_CACHE_TTL_SECONDS, DEFAULT_TTL_SECONDS );
+      long maxBytes = MetadataModelsSettings.getLong( MetadataModelsSettings.QUERY_CACHE_MAX_BYTES, DEFAULT_MAX_BYTES );
+      long maxEntryBytes =
+          MetadataModelsSettings.getLong( MetadataModelsSettings.QUERY_CACHE_MAX_ENTRY_BYTES, DEFAULT_MAX_ENTRY_BYTES );
+      int maxEntries =
+          MetadataModelsSettings.getInt( MetadataModelsSettings.QUERY_CACHE_MAX_ENTRIES, DEFAULT_MAX_ENTRIES );
+      instance = new QueryResultCache( enabled, ttl * 1000, maxBytes, maxEntryBytes, maxEntries );
+    }
+    return instance;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return the estimated size above which a result is not cached
+   */
+  public long getMaxEntryBytes() {
+    return maxEntryBytes;
+  }
+
+  /**
+   * Builds the cache key of a query
+   *
+   * @param query
+   * @param rowLimit
+   * @param securityKey
+   *          the security context of the user, see {@link SecurityContextKey}
+   * @return
+   */
+  public String createKey( Query query, int rowLimit, String securityKey ) {
+    return QueryFingerprint.of( query ) + '|' + rowLimit + '|' + securityKey;
+  }
+
+  /**
+   * Returns a cached result
+   *
+   * @param key
+   * @return the result, or null if it is not cached or has expired
+   */
+  public synchronized DataTable get( String key ) {
+    Entry entry = entries.get( key );
+    if ( entry != null && isExpired( entry, currentTimeMillis() ) ) {
+      remove( key );
+      entry = null;
+    }
+    if ( entry == null ) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    savedNanos.addAndGet( entry.executionNanos );
+    return entry.table;
+  }
+
+  /**
+   * Caches a result, unless it is larger than {@link #getMaxEntryBytes()}
+   *
+   * @param key
+   * @param sourceId
+   *          the id of the model the result was queried from
+   * @param table
+   * @param size
+   *          the estimated size of the result
+   * @param executionNanos
+   *          the time it took to compute the result
+   */
+  public synchronized void put( String key, String sourceId, DataTable table, long size, long executionNanos ) {
+    if ( !enabled || table == null || ( maxEntryBytes > 0 && size > maxEntryBytes ) ) {
+      return;
+    }
+    remove( key );
+    entries.put( key, new Entry( sourceId, table, size, executionNanos, currentTimeMillis() ) );
+    bytes += size;
+    evict();
+  }
+
+  /**
+   * Drops the cached results of a domain
+   *
+   * @param domainId
+   *          the id of the domain, see {@link DomainIds}
+   * @return the number of dropped results
+   */
+  public synchronized int invalidate( String domainId ) {
+    int count = 0;
+    Iterator<Entry> it = entries.values().iterator();
+    while ( it.hasNext() ) {
+      Entry entry = it.next();
+      if ( DomainIds.matches( entry.sourceId, domainId ) ) {
+        it.remove();
+        bytes -= entry.size;
+        count++;
+      }
+    }
+    return count;
+  }
+
+  public synchronized void invalidateAll() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  /**
+   * @return the hit and miss counts, the hit ratio, the backend time saved by hits and the current size of the cache
+   */
+  public synchronized Map<String, Object> getStatistics() {
+    long hitCount = hits.get();
+    long missCount = misses.get();
+    long requests = hitCount + missCount;
+    Map<String, Object> stats = new LinkedHashMap<String, Object>();
+    stats.put( "enabled", enabled ); //$NON-NLS-1$
+    stats.put( "entries", entries.size() ); //$NON-NLS-1$
+    stats.put( "bytes", bytes ); //$NON-NLS-1$
+    stats.put( "hits", hitCount ); //$NON-NLS-1$
+    stats.put( "misses", missCount ); //$NON-NLS-1$
+    stats.put( "hitRatio", requests == 0 ? 0.0 : (double) hitCount / requests ); //$NON-NLS-1$
+    stats.put( "evictions", evictions.get() ); //$NON-NLS-1$
+    stats.put( "savedMillis", TimeUnit.NANOSECONDS.toMillis( savedNanos.get() ) ); //$NON-NLS-1$
+    return stats;
+  }
+
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  private boolean isExpired( Entry entry, long now ) {
+    return ttlMillis > 0 && now - entry.created > ttlMillis;
+  }
+
+  private void remove( String key ) {
+    Entry entry = entries.remove( key );
+    if ( entry != null ) {
+      bytes -= entry.size;
+    }
+  }
+
+  private void evict() {
+    long now = currentTimeMillis();
+    Iterator<Entry> it = entries.values().iterator();
+    while ( it.hasNext() ) {
+      Entry entry = it.next();
+      boolean overLimit = entries.size() > maxEntries || ( maxBytes > 0 && bytes > maxBytes );
+      if ( overLimit || isExpired( entry, now ) ) {
+        // the map is in access order, so the least recently used entries go first
+        it.remove();
+        bytes -= entry.size;
+        evictions.incrementAndGet();
+      }
+    }
+  }
+
+  private static class Entry {
+
+    private final String sourceId;
+
+    private final DataTable table;
+
+    private final long size;
+
+    private final long executionNanos;
+
+    private final long created;
+
+    Entry( String sourceId, DataTable table, long size, long executionNanos, long created ) {
+      this.sourceId = sourceId;
+      this.table = table;
+      this.size = size;
+      this.executionNanos = executionNanos;
+      this.created = created;
+    }
+  }
+
+}
@@ -0,0 +1,55 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.Row;
+
+/**
+ * Receives the results of a thin query one row at a time, as the provider produces them.
+ *
+ * The columns are always reported once, before the first row.
+ */
+public interface QueryRowCallback {
+
+  /**
+   * Called once with the columns of the result, before any row
+   *
+   * @param columns
+   * @throws Exception
+   */
+  public void columns( Column[] columns ) throws Exception;
+
+  /**
+   * Called for every row of the result
+   *
+   * @param row
+   * @return false if the consumer does not want any more rows, in which case the provider must stop the underlying
+   *         query and release its resources
+   * @throws Exception
+   */
+  public boolean row( Row row ) throws Exception;
+
+  /**
+   * Called when the server stops passing on rows because the query reached one of the {@link QueryLimits} of the
+   * user, so that the consumer can flag the result as incomplete. No rows follow.
+   *
+   * @param reason
+   * @throws Exception
+   */
+  public default void truncated( QueryLimits.Truncation reason ) throws Exception {
+  }
+
+}
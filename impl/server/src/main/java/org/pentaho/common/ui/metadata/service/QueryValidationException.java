@@ -0,0 +1,41 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+/**
+ * Thrown when a query refers to a model, category, column or aggregation that does not exist. The query is rejected
+ * before it reaches the provider; the message says which part of the query is wrong.
+ */
+public class QueryValidationException extends Exception {
+
+  private static final long serialVersionUID = -2231845337470162718L;
+
+  private final String code;
+
+  public QueryValidationException( String code, String message ) {
+    super( message );
+    this.code = code;
+  }
+
+  /**
+   * Returns the error code sent to the client, such as ERROR_0012_UNKNOWN_COLUMN
+   *
+   * @return
+   */
+  public String getCode() {
+    return code;
+  }
+
+}
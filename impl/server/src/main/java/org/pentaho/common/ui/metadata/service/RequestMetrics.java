@@ -0,0 +1,430 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Collects the request counts, the time spent in each {@link RequestTimer.Phase}, the rows and bytes returned and a
+ * latency histogram of the timed actions of the metadata models service, the number of query results cut short by the
+ * {@link QueryLimits}, and how long each provider takes to list its models. Requests slower than the configured limit
+ * are logged with the fingerprint of their query. The counters are published through JMX and the metrics action.
+ */
+public class RequestMetrics implements RequestMetricsMXBean {
+
+  static final String OBJECT_NAME = "org.pentaho.common.ui:type=MetadataModelsRequestMetrics"; //$NON-NLS-1$
+
+  private static final long DEFAULT_SLOW_REQUEST_MILLIS = 10000;
+
+  /**
+   * Upper bounds of the latency histogram buckets
+   */
+  private static final long[] BUCKET_MILLIS = { 10, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000 };
+
+  private static final Log logger = LogFactory.getLog( RequestMetrics.class );
+
+  private static RequestMetrics instance;
+
+  private final long slowRequestNanos;
+
+  private final Map<String, ActionMetrics> actions;
+
+  private final LongAdder[] truncations = new LongAdder[ QueryLimits.Truncation.values().length ];
+
+  private final ConcurrentMap<String, ProviderMetrics> providers = new ConcurrentHashMap<String, ProviderMetrics>();
+
+  /**
+   * @param slowRequestMillis
+   *          the duration from which a request is logged as slow, 0 or less to log none
+   * @param actions
+   *          the timed actions
+   */
+  RequestMetrics( long slowRequestMillis, String... actions ) {
+    this.slowRequestNanos = TimeUnit.MILLISECONDS.toNanos( slowRequestMillis );
+    Map<String, ActionMetrics> metrics = new LinkedHashMap<String, ActionMetrics>();
+    for ( String action : actions ) {
+      metrics.put( action, new ActionMetrics() );
+    }
+    this.actions = Collections.unmodifiableMap( metrics );
+    for ( int i = 0; i < truncations.length; i++ ) {
+      truncations[ i ] = new LongAdder();
+    }
+  }
+
+  public static synchronized RequestMetrics getInstance() {
+    if ( instance == null ) {
+      long slowRequestMillis = MetadataModelsSettings.getLong( MetadataModelsSettings.METRICS_SLOW_REQUEST_MILLIS,
+          DEFAULT_SLOW_REQUEST_MILLIS );
+      instance = new RequestMetrics( slowRequestMillis, MetadataModelsContentGenerator.LIST_MODELS_ACTION,
+          MetadataModelsContentGenerator.GET_MODEL_ACTION, MetadataModelsContentGenerator.QUERY_ACTION,
+          MetadataModelsContentGenerator.EXECUTE_ACTION, MetadataModelsContentGenerator.SEARCH_ACTION );
+      register( instance );
+    }
+    return instance;
+  }
+
+  private static void register( RequestMetrics metrics ) {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName( OBJECT_NAME );
+      if ( server.isRegistered( name ) ) {
+        // left behind by an earlier instance of the plugin
+        server.unregisterMBean( name );
+      }
+      server.registerMBean( metrics, name );
+    } catch ( Exception e ) {
+      logger.warn( "Could not register the request metrics with JMX", e ); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Starts timing a request
+   *
+   * @param action
+   * @return a timer that records nothing if the action is not timed
+   */
+  public RequestTimer start( String action ) {
+    return new RequestTimer( this, action != null && actions.containsKey( action ) ? action : null );
+  }
+
+  void record( RequestTimer timer ) {
+    ActionMetrics metrics = actions.get( timer.getAction() );
+    if ( metrics == null ) {
+      return;
+    }
+    long totalNanos = timer.getTotalNanos();
+    metrics.requests.increment();
+    if ( !timer.isSucceeded() ) {
+      metrics.errors.increment();
+    }
+    for ( RequestTimer.Phase phase : RequestTimer.Phase.values() ) {
+      long nanos = timer.getPhaseNanos( phase );
+      metrics.phaseNanos[ phase.ordinal() ].add( nanos );
+      metrics.phaseMaxNanos[ phase.ordinal() ].accumulate( nanos );
+    }
+    metrics.totalNanos.add( totalNanos );
+    metrics.maxNanos.accumulate( totalNanos );
+    metrics.buckets[ bucketOf( totalNanos ) ].increment();
+    metrics.rows.add( timer.getRows() );
+    metrics.bytes.add( timer.getBytes() );
+
+    if ( slowRequestNanos > 0 && totalNanos >= slowRequestNanos ) {
+      metrics.slowRequests.increment();
+      logSlowRequest( timer );
+    }
+  }
+
+  /**
+   * Counts a query result that was cut short
+   *
+   * @param reason
+   */
+  public void truncated( QueryLimits.Truncation reason ) {
+    truncations[ reason.ordinal() ].increment();
+  }
+
+  /**
+   * Records how a provider answered a listmodels request
+   *
+   * @param providerId
+   * @param status
+   *          one of the {@link ProviderStatus} values
+   * @param nanos
+   *          the time the provider took
+   */
+  public void providerListed( String providerId, String status, long nanos ) {
+    ProviderMetrics metrics = providers.computeIfAbsent( String.valueOf( providerId ), id -> new ProviderMetrics() );
+    if ( ProviderStatus.TIMEOUT.equals( status ) ) {
+      metrics.timeouts.increment();
+    } else if ( ProviderStatus.FAILED.equals( status ) ) {
+      metrics.failures.increment();
+    }
+    metrics.requests.increment();
+    metrics.totalNanos.add( nanos );
+    metrics.maxNanos.accumulate( nanos );
+  }
+
+  private static int bucketOf( long nanos ) {
+    long millis = TimeUnit.NANOSECONDS.toMillis( nanos );
+    int bucket = 0;
+    while ( bucket < BUCKET_MILLIS.length && millis > BUCKET_MILLIS[ bucket ] ) {
+      bucket++;
+    }
+    return bucket;
+  }
+
+  private void logSlowRequest( RequestTimer timer ) {
+    StringBuilder message = new StringBuilder();
+    message.append( "Slow " ).append( timer.getAction() ); //$NON-NLS-1$
+    message.append( " request took " ).append( millis( timer.getTotalNanos() ) ); //$NON-NLS-1$
+    message.append( " ms (" ); //$NON-NLS-1$
+    for ( RequestTimer.Phase phase : RequestTimer.Phase.values() ) {
+      message.append( phase.ordinal() == 0 ? "" : ", " ).append( phase.getLabel() ); //$NON-NLS-1$ //$NON-NLS-2$
+      message.append( ' ' ).append( millis( timer.getPhaseNanos( phase ) ) ).append( " ms" ); //$NON-NLS-1$
+    }
+    message.append( "), " ).append( timer.getRows() ).append( " rows, " ); //$NON-NLS-1$ //$NON-NLS-2$
+    message.append( timer.getBytes() ).append( " bytes" ); //$NON-NLS-1$
+    if ( timer.getQuery() != null ) {
+      message.append( ", query " ); //$NON-NLS-1$
+      try {
+        message.append( QueryFingerprint.of( timer.getQuery() ) );
+      } catch ( IllegalArgumentException e ) {
+        message.append( "without fingerprint" ); //$NON-NLS-1$
+      }
+    }
+    if ( timer.getSubject() != null ) {
+      message.append( ", " ).append( timer.getSubject() ); //$NON-NLS-1$
+    }
+    logger.warn( message.toString() );
+  }
+
+  private static long millis( long nanos ) {
+    return TimeUnit.NANOSECONDS.toMillis( nanos );
+  }
+
+  @Override
+  public Map<String, Long> getCounters() {
+    Map<String, Long> counters = new LinkedHashMap<String, Long>();
+    for ( Map.Entry<String, ActionMetrics> entry : actions.entrySet() ) {
+      String prefix = entry.getKey() + "."; //$NON-NLS-1$
+      ActionMetrics metrics = entry.getValue();
+      counters.put( prefix + "requests", metrics.requests.sum() ); //$NON-NLS-1$
+      counters.put( prefix + "errors", metrics.errors.sum() ); //$NON-NLS-1$
+      counters.put( prefix + "slowRequests", metrics.slowRequests.sum() ); //$NON-NLS-1$
+      counters.put( prefix + "rows", metrics.rows.sum() ); //$NON-NLS-1$
+      counters.put( prefix + "bytes", metrics.bytes.sum() ); //$NON-NLS-1$
+      counters.put( prefix + "total.nanos", metrics.totalNanos.sum() ); //$NON-NLS-1$
+      counters.put( prefix + "total.maxNanos", metrics.maxNanos.get() ); //$NON-NLS-1$
+      for ( RequestTimer.Phase phase : RequestTimer.Phase.values() ) {
+        String name = prefix + phase.getLabel();
+        counters.put( name + ".nanos", metrics.phaseNanos[ phase.ordinal() ].sum() ); //$NON-NLS-1$
+        counters.put( name + ".maxNanos", metrics.phaseMaxNanos[ phase.ordinal() ].get() ); //$NON-NLS-1$
+      }
+    }
+    for ( QueryLimits.Truncation reason : QueryLimits.Truncation.values() ) {
+      counters.put( "truncated." + reason.getLabel(), truncations[ reason.ordinal() ].sum() ); //$NON-NLS-1$
+    }
+    for ( Map.Entry<String, ProviderMetrics> entry : providers.entrySet() ) {
+      String prefix = "provider." + entry.getKey() + "."; //$NON-NLS-1$ //$NON-NLS-2$
+      ProviderMetrics metrics = entry.getValue();
+      counters.put( prefix + "requests", metrics.requests.sum() ); //$NON-NLS-1$
+      counters.put( prefix + "timeouts", metrics.timeouts.sum() ); //$NON-NLS-1$
+      counters.put( prefix + "failures", metrics.failures.sum() ); //$NON-NLS-1$
+      counters.put( prefix + "nanos", metrics.totalNanos.sum() ); //$NON-NLS-1$
+      counters.put( prefix + "maxNanos", metrics.maxNanos.get() ); //$NON-NLS-1$
+    }
+    return counters;
+  }
+
+  @Override
+  public String getText() {
+    StringBuilder text = new StringBuilder();
+    text.append( "# TYPE metadata_requests_total counter\n" ); //$NON-NLS-1$
+    for ( Map.Entry<String, ActionMetrics> entry : actions.entrySet() ) {
+      sample( text, "metadata_requests_total", entry.getKey(), null, entry.getValue().requests.sum() ); //$NON-NLS-1$
+    }
+    text.append( "# TYPE metadata_errors_total counter\n" ); //$NON-NLS-1$
+    for ( Map.Entry<String, ActionMetrics> entry : actions.entrySet() ) {
+      sample( text, "metadata_errors_total", entry.getKey(), null, entry.getValue().errors.sum() ); //$NON-NLS-1$
+    }
+    text.append( "# TYPE metadata_slow_requests_total counter\n" ); //$NON-NLS-1$
+    for ( Map.Entry<String, ActionMetrics> entry : actions.entrySet() ) {
+      sample( text, "metadata_slow_requests_total", entry.getKey(), null, //$NON-NLS-1$
+          entry.getValue().slowRequests.sum() );
+    }
+    text.append( "# TYPE metadata_rows_total counter\n" ); //$NON-NLS-1$
+    for ( Map.Entry<String, ActionMetrics> entry : actions.entrySet() ) {
+      sample( text, "metadata_rows_total", entry.getKey(), null, entry.getValue().rows.sum() ); //$NON-NLS-1$
+    }
+    text.append( "# TYPE metadata_bytes_total counter\n" ); //$NON-NLS-1$
+    for ( Map.Entry<String, ActionMetrics> entry : actions.entrySet() ) {
+      sample( text, "metadata_bytes_total", entry.getKey(), null, entry.getValue().bytes.sum() ); //$NON-NLS-1$
+    }
+    text.append( "# TYPE metadata_phase_seconds_total counter\n" ); //$NON-NLS-1$
+    for ( Map.Entry<String, ActionMetrics> entry : actions.entrySet() ) {
+      for ( RequestTimer.Phase phase : RequestTimer.Phase.values() ) {
+        sample( text, "metadata_phase_seconds_total", entry.getKey(), //$NON-NLS-1$
+            "phase=\"" + phase.getLabel() + "\"", //$NON-NLS-1$ //$NON-NLS-2$
+            seconds( entry.getValue().phaseNanos[ phase.ordinal() ].sum() ) );
+      }
+    }
+    text.append( "# TYPE metadata_phase_seconds_max gauge\n" ); //$NON-NLS-1$
+    for ( Map.Entry<String, ActionMetrics> entry : actions.entrySet() ) {
+      for ( RequestTimer.Phase phase : RequestTimer.Phase.values() ) {
+        sample( text, "metadata_phase_seconds_max", entry.getKey(), //$NON-NLS-1$
+            "phase=\"" + phase.getLabel() + "\"", //$NON-NLS-1$ //$NON-NLS-2$
+            seconds( entry.getValue().phaseMaxNanos[ phase.ordinal() ].get() ) );
+      }
+    }
+    text.append( "# TYPE metadata_request_seconds histogram\n" ); //$NON-NLS-1$
+    for ( Map.Entry<String, ActionMetrics> entry : actions.entrySet() ) {
+      ActionMetrics metrics = entry.getValue();
+      long count = 0;
+      for ( int i = 0; i <= BUCKET_MILLIS.length; i++ ) {
+        count += metrics.buckets[ i ].sum();
+        String bound = i < BUCKET_MILLIS.length ? seconds( TimeUnit.MILLISECONDS.toNanos( BUCKET_MILLIS[ i ] ) )
+            : "+Inf"; //$NON-NLS-1$
+        String label = "le=\"" + bound + "\""; //$NON-NLS-1$ //$NON-NLS-2$
+        sample( text, "metadata_request_seconds_bucket", entry.getKey(), label, count ); //$NON-NLS-1$
+      }
+      String sum = seconds( metrics.totalNanos.sum() );
+      sample( text, "metadata_request_seconds_sum", entry.getKey(), null, sum ); //$NON-NLS-1$
+      sample( text, "metadata_request_seconds_count", entry.getKey(), null, count ); //$NON-NLS-1$
+    }
+    text.append( "# TYPE metadata_truncated_queries_total counter\n" ); //$NON-NLS-1$
+    for ( QueryLimits.Truncation reason : QueryLimits.Truncation.values() ) {
+      text.append( "metadata_truncated_queries_total{reason=\"" ).append( reason.getLabel() ); //$NON-NLS-1$
+      text.append( "\"} " ).append( truncations[ reason.ordinal() ].sum() ).append( '\n' ); //$NON-NLS-1$
+    }
+    text.append( "# TYPE metadata_provider_list_requests_total counter\n" ); //$NON-NLS-1$
+    for ( Map.Entry<String, ProviderMetrics> entry : providers.entrySet() ) {
+      providerSample( text, "metadata_provider_list_requests_total", entry.getKey(), //$NON-NLS-1$
+          entry.getValue().requests.sum() );
+    }
+    text.append( "# TYPE metadata_provider_list_timeouts_total counter\n" ); //$NON-NLS-1$
+    for ( Map.Entry<String, ProviderMetrics> entry : providers.entrySet() ) {
+      providerSample( text, "metadata_provider_list_timeouts_total", entry.getKey(), //$NON-NLS-1$
+          entry.getValue().timeouts.sum() );
+    }
+    text.append( "# TYPE metadata_provider_list_failures_total counter\n" ); //$NON-NLS-1$
+    for ( Map.Entry<String, ProviderMetrics> entry : providers.entrySet() ) {
+      providerSample( text, "metadata_provider_list_failures_total", entry.getKey(), //$NON-NLS-1$
+          entry.getValue().failures.sum() );
+    }
+    text.append( "# TYPE metadata_provider_list_seconds_total counter\n" ); //$NON-NLS-1$
+    for ( Map.Entry<String, ProviderMetrics> entry : providers.entrySet() ) {
+      providerSample( text, "metadata_provider_list_seconds_total", entry.getKey(), //$NON-NLS-1$
+          seconds( entry.getValue().totalNanos.sum() ) );
+    }
+    text.append( "# TYPE metadata_provider_list_seconds_max gauge\n" ); //$NON-NLS-1$
+    for ( Map.Entry<String, ProviderMetrics> entry : providers.entrySet() ) {
+      providerSample( text, "metadata_provider_list_seconds_max", entry.getKey(), //$NON-NLS-1$
+          seconds( entry.getValue().maxNanos.get() ) );
+    }
+    return text.toString();
+  }
+
+  private static void sample( StringBuilder text, String name, String action, String label, Object value ) {
+    text.append( name ).append( "{action=\"" ).append( action ).append( '"' ); //$NON-NLS-1$
+    if ( label != null ) {
+      text.append( ',' ).append( label );
+    }
+    text.append( "} " ).append( value ).append( '\n' ); //$NON-NLS-1$
+  }
+
+  private static void providerSample( StringBuilder text, String name, String providerId, Object value ) {
+    text.append( name ).append( "{provider=\"" ); //$NON-NLS-1$
+    String escaped = providerId.replace( "\\", "\\\\" ); //$NON-NLS-1$ //$NON-NLS-2$
+    text.append( escaped.replace( "\"", "\\\"" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    text.append( "\"} " ).append( value ).append( '\n' ); //$NON-NLS-1$
+  }
+
+  private static String seconds( long nanos ) {
+    return Double.toString( nanos / 1e9 );
+  }
+
+  @Override
+  public void reset() {
+    for ( ActionMetrics metrics : actions.values() ) {
+      metrics.reset();
+    }
+    for ( LongAdder truncation : truncations ) {
+      truncation.reset();
+    }
+    providers.clear();
+  }
+
+  protected long nanoTime() {
+    return System.nanoTime();
+  }
+
+  private static class ProviderMetrics {
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder timeouts = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final LongAccumulator maxNanos = new LongAccumulator( Math::max, 0 );
+  }
+
+  private static class ActionMetrics {
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder slowRequests = new LongAdder();
+
+    private final LongAdder rows = new LongAdder();
+
+    private final LongAdder bytes = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final LongAccumulator maxNanos = new LongAccumulator( Math::max, 0 );
+
+    private final LongAdder[] phaseNanos = new LongAdder[ RequestTimer.Phase.values().length ];
+
+    private final LongAccumulator[] phaseMaxNanos = new LongAccumulator[ RequestTimer.Phase.values().length ];
+
+    private final LongAdder[] buckets = new LongAdder[ BUCKET_MILLIS.length + 1 ];
+
+    ActionMetrics() {
+      for ( int i = 0; i < phaseNanos.length; i++ ) {
+        phaseNanos[ i ] = new LongAdder();
+        phaseMaxNanos[ i ] = new LongAccumulator( Math::max, 0 );
+      }
+      for ( int i = 0; i < buckets.length; i++ ) {
+        buckets[ i ] = new LongAdder();
+      }
+    }
+
+    void reset() {
+      requests.reset();
+      errors.reset();
+      slowRequests.reset();
+      rows.reset();
+      bytes.reset();
+      totalNanos.reset();
+      maxNanos.reset();
+      for ( int i = 0; i < phaseNanos.length; i++ ) {
+        phaseNanos[ i ].reset();
+        phaseMaxNanos[ i ].reset();
+      }
+      for ( LongAdder bucket : buckets ) {
+        bucket.reset();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,43 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link RequestMetrics}, registered with the platform MBean server
+ */
+public interface RequestMetricsMXBean {
+
+  /**
+   * Returns every counter by name, such as <code>query.requests</code> or <code>query.execute.nanos</code>
+   *
+   * @return
+   */
+  Map<String, Long> getCounters();
+
+  /**
+   * Returns the counters in the text exposition format served by the metrics action
+   *
+   * @return
+   */
+  String getText();
+
+  /**
+   * Sets all the counters back to zero
+   */
+  void reset();
+
+}
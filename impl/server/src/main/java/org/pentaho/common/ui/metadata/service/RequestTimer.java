@@ -0,0 +1,284 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.Row;
+import org.pentaho.metadata.model.thin.Query;
+
+/**
+ * Measures one request of a timed action. The time of the request is split into phases: the timer is always in
+ * exactly one phase, and switching to another phase charges the time since the last switch to the phase being left.
+ * The thread that serves the request switches phases, but so do the {@link #serializing(QueryRowCallback)} callbacks,
+ * which run on the thread executing the query, possibly still after the request thread has given up on the query.
+ * The phases are therefore switched under the timer's lock, a callback only switches back if no other switch came in
+ * between, and nothing is switched any more once the timer is finished.
+ */
+public class RequestTimer {
+
+  /**
+   * The phases the time of a request is split into
+   */
+  public enum Phase {
+    /**
+     * Reading the request parameters and payload
+     */
+    PARSE,
+    /**
+     * Waiting for the cache or the provider
+     */
+    EXECUTE,
+    /**
+     * Writing the response
+     */
+    SERIALIZE;
+
+    /**
+     * Returns the name of the phase in metric names and labels
+     *
+     * @return
+     */
+    public String getLabel() {
+      return name().toLowerCase( Locale.ROOT );
+    }
+  }
+
+  private final RequestMetrics metrics;
+
+  private final String action;
+
+  private final long startNanos;
+
+  private final long[] phaseNanos = new long[ Phase.values().length ];
+
+  private Phase phase = Phase.PARSE;
+
+  private long phaseStartNanos;
+
+  private long switches;
+
+  private long endNanos = -1;
+
+  private long rows;
+
+  private CountingOutputStream output;
+
+  private Query query;
+
+  private String subject;
+
+  private boolean succeeded;
+
+  /**
+   * @param metrics
+   * @param action
+   *          the timed action, or null if the request is not recorded
+   */
+  RequestTimer( RequestMetrics metrics, String action ) {
+    this.metrics = metrics;
+    this.action = action;
+    this.startNanos = metrics.nanoTime();
+    this.phaseStartNanos = startNanos;
+  }
+
+  /**
+   * Switches to another phase
+   *
+   * @param phase
+   * @return the phase left
+   */
+  public synchronized Phase phase( Phase phase ) {
+    Phase previous = this.phase;
+    if ( endNanos >= 0 ) {
+      return previous;
+    }
+    long now = metrics.nanoTime();
+    phaseNanos[ previous.ordinal() ] += now - phaseStartNanos;
+    this.phase = phase;
+    phaseStartNanos = now;
+    switches++;
+    return previous;
+  }
+
+  /**
+   * Charges the time spent in a callback to the serialize phase, and switches back to the phase it interrupted unless
+   * the phase was switched meanwhile by another thread
+   */
+  private <T> T serialize( Callable<T> task ) throws Exception {
+    Phase previous;
+    long switched;
+    synchronized ( this ) {
+      previous = phase( Phase.SERIALIZE );
+      switched = switches;
+    }
+    try {
+      return task.call();
+    } finally {
+      synchronized ( this ) {
+        if ( switches == switched ) {
+          phase( previous );
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns a callback that charges the time spent in the given callback to the serialize phase, so that writing a
+   * streamed result is told apart from producing it
+   *
+   * @param callback
+   * @return
+   */
+  public QueryRowCallback serializing( QueryRowCallback callback ) {
+    if ( action == null ) {
+      return callback;
+    }
+    return new QueryRowCallback() {
+      @Override
+      public void columns( Column[] columns ) throws Exception {
+        serialize( () -> {
+          callback.columns( columns );
+          return null;
+        } );
+      }
+
+      @Override
+      public boolean row( Row row ) throws Exception {
+        return serialize( () -> callback.row( row ) );
+      }
+
+      @Override
+      public void truncated( QueryLimits.Truncation reason ) throws Exception {
+        callback.truncated( reason );
+      }
+    };
+  }
+
+  /**
+   * Returns a stream that counts the bytes written to the given output
+   *
+   * @param output
+   * @return
+   */
+  public OutputStream count( OutputStream output ) {
+    if ( action == null || output == null ) {
+      return output;
+    }
+    this.output = new CountingOutputStream( output );
+    return this.output;
+  }
+
+  public synchronized void addRows( long rows ) {
+    this.rows += rows;
+  }
+
+  /**
+   * Sets the query of the request, whose fingerprint identifies a slow request in the log
+   *
+   * @param query
+   */
+  public void setQuery( Query query ) {
+    this.query = query;
+  }
+
+  /**
+   * Sets a short description of what was requested, which identifies a slow request in the log
+   *
+   * @param subject
+   */
+  public void setSubject( String subject ) {
+    this.subject = subject;
+  }
+
+  public void succeeded() {
+    succeeded = true;
+  }
+
+  /**
+   * Stops the timer and records the request
+   */
+  public void finish() {
+    synchronized ( this ) {
+      if ( endNanos >= 0 ) {
+        return;
+      }
+      phase( phase );
+      endNanos = phaseStartNanos;
+    }
+    if ( action != null ) {
+      metrics.record( this );
+    }
+  }
+
+  String getAction() {
+    return action;
+  }
+
+  synchronized long getPhaseNanos( Phase phase ) {
+    return phaseNanos[ phase.ordinal() ];
+  }
+
+  synchronized long getTotalNanos() {
+    return ( endNanos < 0 ? metrics.nanoTime() : endNanos ) - startNanos;
+  }
+
+  synchronized long getRows() {
+    return rows;
+  }
+
+  long getBytes() {
+    return output == null ? 0 : output.count;
+  }
+
+  Query getQuery() {
+    return query;
+  }
+
+  String getSubject() {
+    return subject;
+  }
+
+  boolean isSucceeded() {
+    return succeeded;
+  }
+
+  private static class CountingOutputStream extends FilterOutputStream {
+
+    private long count;
+
+    CountingOutputStream( OutputStream out ) {
+      super( out );
+    }
+
+    @Override
+    public void write( int b ) throws IOException {
+      out.write( b );
+      count++;
+    }
+
+    @Override
+    public void write( byte[] b, int off, int len ) throws IOException {
+      out.write( b, off, len );
+      count += len;
+    }
+  }
+
+}
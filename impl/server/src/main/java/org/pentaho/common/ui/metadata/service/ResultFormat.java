@@ -0,0 +1,134 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.Locale;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * The encodings a query result can be sent in. JSON is the default; the binary encodings carry the same document
+ * structure, so a client decodes them into the same DataTable, but they are smaller and keep numbers in binary form.
+ * The format is chosen from the <code>format</code> request parameter, or else from the Accept header.
+ */
+public enum ResultFormat {
+
+  JSON( "json", "application/json", new ObjectMapper() ), //$NON-NLS-1$ //$NON-NLS-2$
+  SMILE( "smile", "application/x-jackson-smile", new ObjectMapper( new SmileFactory() ) ), //$NON-NLS-1$ //$NON-NLS-2$
+  CBOR( "cbor", "application/cbor", new ObjectMapper( new CBORFactory() ) ); //$NON-NLS-1$ //$NON-NLS-2$
+
+  private final String name;
+
+  private final String mimeType;
+
+  private final ObjectMapper mapper;
+
+  ResultFormat( String name, String mimeType, ObjectMapper mapper ) {
+    this.name = name;
+    this.mimeType = mimeType;
+    this.mapper = mapper;
+  }
+
+  /**
+   * Returns the short name accepted by the format parameter
+   *
+   * @return
+   */
+  public String getName() {
+    return name;
+  }
+
+  public String getMimeType() {
+    return mimeType;
+  }
+
+  /**
+   * Returns the mapper that reads and writes this format
+   *
+   * @return
+   */
+  public ObjectMapper getMapper() {
+    return mapper;
+  }
+
+  /**
+   * Chooses the format of a response. An explicit format name wins over the Accept header. Of the media ranges in
+   * the Accept header, the supported one with the highest quality is used; anything unsupported results in JSON.
+   *
+   * @param format
+   *          the format parameter of the request, or null
+   * @param accept
+   *          the Accept header of the request, or null
+   * @return
+   */
+  public static ResultFormat negotiate( String format, String accept ) {
+    if ( format != null ) {
+      for ( ResultFormat candidate : values() ) {
+        if ( candidate.name.equalsIgnoreCase( format.trim() ) ) {
+          return candidate;
+        }
+      }
+      return JSON;
+    }
+    if ( accept == null ) {
+      return JSON;
+    }
+    ResultFormat best = JSON;
+    double bestQuality = -1;
+    for ( String range : accept.split( "," ) ) { //$NON-NLS-1$
+      String[] parts = range.split( ";" ); //$NON-NLS-1$
+      ResultFormat candidate = forMimeType( parts[0] );
+      if ( candidate == null ) {
+        continue;
+      }
+      double quality = getQuality( parts );
+      if ( quality > bestQuality ) {
+        best = candidate;
+        bestQuality = quality;
+      }
+    }
+    return bestQuality > 0 ? best : JSON;
+  }
+
+  private static ResultFormat forMimeType( String mimeType ) {
+    String type = mimeType.trim().toLowerCase( Locale.ROOT );
+    if ( "*/*".equals( type ) || "application/*".equals( type ) ) { //$NON-NLS-1$ //$NON-NLS-2$
+      return JSON;
+    }
+    for ( ResultFormat candidate : values() ) {
+      if ( candidate.mimeType.equals( type ) ) {
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  private static double getQuality( String[] parts ) {
+    for ( int i = 1; i < parts.length; i++ ) {
+      String parameter = parts[i].trim();
+      if ( parameter.startsWith( "q=" ) ) { //$NON-NLS-1$
+        try {
+          return Double.parseDouble( parameter.substring( 2 ) );
+        } catch ( NumberFormatException e ) {
+          return 0;
+        }
+      }
+    }
+    return 1;
+  }
+
+}
@@ -0,0 +1,36 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import org.pentaho.metadata.model.thin.Query;
+
+/**
+ * Optional extension for providers that can estimate the number of rows of a query from statistics they already
+ * have, such as the table and column statistics of the database, without executing it. Estimators register
+ * themselves with {@link QueryCounter#addEstimator(RowCountEstimator)}. An estimator runs in the session of the user
+ * asking for the count and has to apply the same security restrictions as the query would.
+ */
+public interface RowCountEstimator {
+
+  /**
+   * Estimates the number of rows of a query
+   *
+   * @param query
+   * @return the estimate, or -1 if the query's source does not belong to this estimator or there are no statistics
+   * @throws Exception
+   */
+  public long estimateRowCount( Query query ) throws Exception;
+
+}
@@ -0,0 +1,78 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.List;
+import java.util.TreeSet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.engine.IUserRoleListService;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+
+/**
+ * Builds the part of a cache key that captures what a user is allowed to see. Metadata security constraints are
+ * assigned to roles and to individual users, so by default the key holds both the user name and the sorted role set.
+ * When <code>metadata-query-cache-share-by-roles</code> is enabled (no user specific constraints are in use) the user
+ * name is left out, so that users with the same roles share cached results.
+ *
+ * The key is computed once per session and kept as a session attribute.
+ */
+class SecurityContextKey {
+
+  static final String SESSION_ATTRIBUTE = SecurityContextKey.class.getName();
+
+  private static final Log logger = LogFactory.getLog( SecurityContextKey.class );
+
+  private SecurityContextKey() {
+  }
+
+  static String get( IPentahoSession session ) {
+    if ( session == null ) {
+      return ""; //$NON-NLS-1$
+    }
+    Object key = session.getAttribute( SESSION_ATTRIBUTE );
+    if ( key instanceof String ) {
+      return (String) key;
+    }
+    String name = session.getName();
+    boolean shareByRoles = MetadataModelsSettings.getBoolean( MetadataModelsSettings.QUERY_CACHE_SHARE_BY_ROLES, false );
+    TreeSet<String> roles = new TreeSet<String>();
+    IUserRoleListService roleService = PentahoSystem.get( IUserRoleListService.class, null );
+    if ( roleService != null && name != null ) {
+      try {
+        List<String> userRoles = roleService.getRolesForUser( null, name );
+        if ( userRoles != null ) {
+          roles.addAll( userRoles );
+        }
+      } catch ( RuntimeException e ) {
+        logger.debug( "Could not get the roles of user " + name, e ); //$NON-NLS-1$
+        shareByRoles = false;
+      }
+    } else {
+      shareByRoles = false;
+    }
+    StringBuilder sb = new StringBuilder();
+    if ( !shareByRoles ) {
+      sb.append( "user=" ).append( name ).append( ';' ); //$NON-NLS-1$
+    }
+    sb.append( "roles=" ).append( String.join( ",", roles ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    String result = sb.toString();
+    session.setAttribute( SESSION_ATTRIBUTE, result );
+    return result;
+  }
+
+}
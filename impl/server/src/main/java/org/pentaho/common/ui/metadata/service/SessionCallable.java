@@ -0,0 +1,75 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.util.messages.LocaleHelper;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Runs a task in the session, security context and locale of the thread that created it, so that work handed to a
+ * pool thread sees the same user as the request that submitted it, and is checked with that user's authorities. The
+ * thread's own session, security context and locale are restored afterwards, since the task may also run on the
+ * submitting thread, and a pool thread must not keep the user of the last task it ran.
+ */
+class SessionCallable<V> implements Callable<V> {
+
+  private final IPentahoSession session;
+
+  private final SecurityContext securityContext;
+
+  private final Locale locale;
+
+  private final Callable<V> task;
+
+  /**
+   * @param session
+   *          the session to run the task in
+   * @param task
+   */
+  SessionCallable( IPentahoSession session, Callable<V> task ) {
+    this.session = session;
+    this.securityContext = SecurityContextHolder.getContext();
+    this.locale = LocaleHelper.getLocale();
+    this.task = task;
+  }
+
+  @Override
+  public V call() throws Exception {
+    IPentahoSession previousSession = PentahoSessionHolder.getSession();
+    SecurityContext previousSecurityContext = SecurityContextHolder.getContext();
+    Locale previousLocale = LocaleHelper.getLocale();
+    PentahoSessionHolder.setSession( session );
+    SecurityContextHolder.setContext( securityContext );
+    LocaleHelper.setLocale( locale );
+    try {
+      return task.call();
+    } finally {
+      if ( previousSession == null ) {
+        PentahoSessionHolder.removeSession();
+      } else {
+        PentahoSessionHolder.setSession( previousSession );
+      }
+      SecurityContextHolder.setContext( previousSecurityContext );
+      LocaleHelper.setLocale( previousLocale );
+    }
+  }
+
+}
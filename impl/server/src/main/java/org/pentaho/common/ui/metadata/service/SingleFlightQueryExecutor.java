@@ -0,0 +1,233 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.Row;
+import org.pentaho.metadata.model.thin.Query;
+
+/**
+ * Shares one execution between identical queries that run at the same time. The first query is executed by the
+ * delegate; its rows are passed on to its caller and collected on the side. Identical queries arriving meanwhile wait
+ * for the execution to end and are served the collected result, or get the same error if the query itself failed; a
+ * failure that belongs to the first caller's request, such as its admission being rejected or its execution being
+ * cancelled, is not passed on, the waiting queries then execute the query themselves. When the first caller stops
+ * reading, the execution carries on for the waiting queries, and it is only stopped once no one is left. A result
+ * too large to share is not shared: the waiting queries then execute the query themselves. A waiting query does
+ * not wait longer than the query timeout either, so a hung execution does not take every identical query with it:
+ * once the wait is over, the query is executed on its own.
+ */
+public class SingleFlightQueryExecutor implements QueryExecutor {
+
+  private final InFlightQueries flights;
+
+  private final String securityKey;
+
+  private final long maxWaitMillis;
+
+  private final QueryExecutor delegate;
+
+  /**
+   * @param flights
+   * @param securityKey
+   *          the security context of the user running the queries
+   * @param delegate
+   *          the executor that runs the queries
+   */
+  public SingleFlightQueryExecutor( InFlightQueries flights, String securityKey, QueryExecutor delegate ) {
+    this( flights, securityKey, 0, delegate );
+  }
+
+  /**
+   * @param flights
+   * @param securityKey
+   *          the security context of the user running the queries
+   * @param maxWaitMillis
+   *          how long a query waits for an identical one before executing on its own, 0 or less to wait until it
+   *          ends; normally the query timeout of the user
+   * @param delegate
+   *          the executor that runs the queries
+   */
+  public SingleFlightQueryExecutor( InFlightQueries flights, String securityKey, long maxWaitMillis,
+      QueryExecutor delegate ) {
+    this.flights = flights;
+    this.securityKey = securityKey;
+    this.maxWaitMillis = maxWaitMillis;
+    this.delegate = delegate;
+  }
+
+  @Override
+  public boolean execute( Query query, int rowLimit, QueryRowCallback callback ) throws Exception {
+    if ( !flights.isEnabled() ) {
+      return delegate.execute( query, rowLimit, callback );
+    }
+    String key = flights.createKey( query, rowLimit, securityKey );
+    InFlightQueries.Flight flight = flights.newFlight();
+    InFlightQueries.Flight running = flights.join( key, flight );
+    if ( running == null ) {
+      return lead( key, flight, query, rowLimit, callback );
+    }
+    return follow( running, query, rowLimit, callback );
+  }
+
+  private boolean lead( String key, InFlightQueries.Flight flight, Query query, int rowLimit,
+      QueryRowCallback callback ) throws Exception {
+    LeaderCallback leader = new LeaderCallback( flight, callback, rowLimit );
+    boolean executed;
+    try {
+      executed = delegate.execute( query, rowLimit, leader );
+    } catch ( Exception e ) {
+      if ( isOwnFailure( e ) ) {
+        flights.land( key, flight, true, false, null );
+      } else {
+        flights.land( key, flight, false, false, e );
+      }
+      throw e;
+    }
+    flights.land( key, flight, executed, leader.isComplete(), null );
+    return executed;
+  }
+
+  private boolean follow( InFlightQueries.Flight flight, Query query, int rowLimit, QueryRowCallback callback )
+    throws Exception {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( maxWaitMillis );
+    boolean done;
+    synchronized ( flight ) {
+      try {
+        while ( !flight.done ) {
+          if ( maxWaitMillis <= 0 ) {
+            flight.wait();
+            continue;
+          }
+          long remaining = deadline - System.nanoTime();
+          if ( remaining <= 0 ) {
+            break;
+          }
+          TimeUnit.NANOSECONDS.timedWait( flight, remaining );
+        }
+        done = flight.done;
+      } finally {
+        flight.waiters--;
+      }
+    }
+    if ( !done ) {
+      flights.countWaitTimeout();
+      return delegate.execute( query, rowLimit, callback );
+    }
+    if ( flight.error != null ) {
+      throw flight.error;
+    }
+    if ( !flight.executed ) {
+      return false;
+    }
+    if ( !flight.complete ) {
+      flights.countFallback();
+      return delegate.execute( query, rowLimit, callback );
+    }
+    return StreamingQueryExecutor.replay( flight.collector.getTable(), callback );
+  }
+
+  /**
+   * Tells whether a failure of the first caller belongs to its own request rather than to the query: it was not
+   * admitted, or it was cancelled or interrupted, for instance by its own timeout
+   */
+  private static boolean isOwnFailure( Exception e ) {
+    if ( Thread.currentThread().isInterrupted() ) {
+      return true;
+    }
+    for ( Throwable cause = e; cause != null; cause = cause.getCause() ) {
+      if ( cause instanceof QueryRejectedException || cause instanceof InterruptedException
+          || cause instanceof InterruptedIOException || cause instanceof ClosedByInterruptException
+          || cause instanceof CancellationException ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Passes rows on to the first caller while collecting them for the waiting queries
+   */
+  private static class LeaderCallback implements QueryRowCallback {
+
+    private final InFlightQueries.Flight flight;
+
+    private final QueryRowCallback callback;
+
+    private final int rowLimit;
+
+    private boolean reading = true;
+
+    private boolean stopped;
+
+    private boolean truncated;
+
+    LeaderCallback( InFlightQueries.Flight flight, QueryRowCallback callback, int rowLimit ) {
+      this.flight = flight;
+      this.callback = callback;
+      this.rowLimit = rowLimit;
+    }
+
+    @Override
+    public void columns( Column[] columns ) throws Exception {
+      flight.collector.columns( columns );
+      callback.columns( columns );
+    }
+
+    @Override
+    public boolean row( Row row ) throws Exception {
+      boolean collected = flight.collector.row( row );
+      if ( reading && !callback.row( row ) ) {
+        reading = false;
+      }
+      if ( reading ) {
+        return true;
+      }
+      synchronized ( flight ) {
+        if ( !collected || flight.waiters == 0 ) {
+          stopped = true;
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * A result cut short by the limits of the first caller is passed on to it, but not shared
+     */
+    @Override
+    public void truncated( QueryLimits.Truncation reason ) throws Exception {
+      truncated = true;
+      callback.truncated( reason );
+    }
+
+    /**
+     * The collected result is complete if it fit and the execution was not stopped or truncated early; stopping right
+     * at the row limit still yields the complete result for that limit.
+     */
+    boolean isComplete() {
+      if ( truncated || flight.collector.isTruncated() ) {
+        return false;
+      }
+      return !stopped || ( rowLimit > 0 && flight.collector.getRowCount() >= rowLimit );
+    }
+  }
+
+}
@@ -0,0 +1,208 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.pentaho.metadata.model.thin.ModelInfo;
+
+/**
+ * Caches the sorted model lists that listmodels pages through, keyed like the lists of the {@link ModelResponseCache}
+ * and sharing its time to live and size. A list that expired or was invalidated is kept until it is reloaded, and the
+ * reloaded models are merged into it: models whose id and name did not change keep their place, and only the new and
+ * renamed models are sorted, instead of the whole list.
+ */
+public class SortedModelListCache {
+
+  private static final long DEFAULT_TTL_SECONDS = 600;
+
+  private static final int DEFAULT_MAX_ENTRIES = 500;
+
+  private static SortedModelListCache instance;
+
+  private final boolean enabled;
+
+  private final long ttlMillis;
+
+  private final int maxEntries;
+
+  private final Map<String, SortedList> entries = new LinkedHashMap<String, SortedList>( 16, 0.75f, true );
+
+  SortedModelListCache( boolean enabled, long ttlMillis, int maxEntries ) {
+    this.enabled = enabled;
+    this.ttlMillis = ttlMillis;
+    this.maxEntries = Math.max( 1, maxEntries );
+  }
+
+  public static synchronized SortedModelListCache getInstance() {
+    if ( instance == null ) {
+      boolean enabled = MetadataModelsSettings.getBoolean( MetadataModelsSettings.MODEL_CACHE_ENABLED, true );
+      long ttl = MetadataModelsSettings.getLong( MetadataModelsSettings.MODEL_CACHE_TTL_SECONDS, DEFAULT_TTL_SECONDS );
+      int maxEntries =
+          MetadataModelsSettings.getInt( MetadataModelsSettings.MODEL_CACHE_MAX_ENTRIES, DEFAULT_MAX_ENTRIES );
+      instance = new SortedModelListCache( enabled, ttl * 1000, maxEntries );
+    }
+    return instance;
+  }
+
+  /**
+   * @param key
+   *          the key of the list, see {@link ModelResponseCache#listKey}
+   * @return the sorted models, or null if the list is not cached, has expired or was invalidated
+   */
+  public synchronized ModelInfo[] get( String key ) {
+    SortedList list = entries.get( key );
+    if ( list == null || list.stale || isExpired( list, currentTimeMillis() ) ) {
+      return null;
+    }
+    return list.models;
+  }
+
+  /**
+   * Sorts freshly loaded models, reusing the order of the previous version of the list if there is one, and caches
+   * the result
+   *
+   * @param key
+   * @param models
+   *          the models as the provider listed them
+   * @param order
+   * @return the sorted models
+   */
+  public ModelInfo[] update( String key, ModelInfo[] models, Comparator<ModelInfo> order ) {
+    SortedList previous;
+    synchronized ( this ) {
+      previous = entries.get( key );
+    }
+    // merged outside of the lock, the collation keys of new names may take a while
+    ModelInfo[] sorted = merge( previous == null ? null : previous.models, models, order );
+    if ( enabled ) {
+      synchronized ( this ) {
+        entries.put( key, new SortedList( sorted, currentTimeMillis() ) );
+        evict();
+      }
+    }
+    return sorted;
+  }
+
+  /**
+   * Sorts models by merging the ones that changed into the order of a previous version of the same list
+   *
+   * @param previous
+   *          the previous version, sorted, or null
+   * @param models
+   *          the current version, in any order
+   * @param order
+   * @return the current version, sorted
+   */
+  static ModelInfo[] merge( ModelInfo[] previous, ModelInfo[] models, Comparator<ModelInfo> order ) {
+    if ( models == null ) {
+      return new ModelInfo[ 0 ];
+    }
+    Map<String, ModelInfo> current = new LinkedHashMap<String, ModelInfo>();
+    List<ModelInfo> changed = new ArrayList<ModelInfo>();
+    for ( ModelInfo model : models ) {
+      ModelInfo replaced = model == null ? null : current.put( model.getId(), model );
+      if ( replaced != null ) {
+        // the same id twice, both are sorted in
+        changed.add( replaced );
+      }
+    }
+    List<ModelInfo> kept = new ArrayList<ModelInfo>( current.size() );
+    if ( previous != null ) {
+      for ( ModelInfo old : previous ) {
+        ModelInfo model = current.get( old.getId() );
+        if ( model != null && Objects.equals( model.getName(), old.getName() )
+            && Objects.equals( model.getModelId(), old.getModelId() ) ) {
+          current.remove( old.getId() );
+          kept.add( model );
+        }
+      }
+    }
+    changed.addAll( current.values() );
+    Collections.sort( changed, order );
+
+    ModelInfo[] sorted = new ModelInfo[ kept.size() + changed.size() ];
+    int i = 0;
+    int j = 0;
+    for ( int k = 0; k < sorted.length; k++ ) {
+      if ( j >= changed.size() || ( i < kept.size() && order.compare( kept.get( i ), changed.get( j ) ) <= 0 ) ) {
+        sorted[ k ] = kept.get( i++ );
+      } else {
+        sorted[ k ] = changed.get( j++ );
+      }
+    }
+    return sorted;
+  }
+
+  /**
+   * Marks all the lists as outdated, since any of them may include a model of the domain. They are kept to be merged
+   * with when they are reloaded.
+   *
+   * @param domainId
+   * @return the number of invalidated lists
+   */
+  public synchronized int invalidate( String domainId ) {
+    for ( SortedList list : entries.values() ) {
+      list.stale = true;
+    }
+    return entries.size();
+  }
+
+  public synchronized void invalidateAll() {
+    entries.clear();
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  private boolean isExpired( SortedList list, long now ) {
+    return ttlMillis > 0 && now - list.created > ttlMillis;
+  }
+
+  private void evict() {
+    Iterator<SortedList> it = entries.values().iterator();
+    while ( it.hasNext() && entries.size() > maxEntries ) {
+      it.next();
+      it.remove();
+    }
+  }
+
+  private static class SortedList {
+
+    private final ModelInfo[] models;
+
+    private final long created;
+
+    private boolean stale;
+
+    SortedList( ModelInfo[] models, long created ) {
+      this.models = models;
+      this.created = created;
+    }
+  }
+
+}
@@ -0,0 +1,42 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import org.pentaho.metadata.model.thin.ModelProvider;
+import org.pentaho.metadata.model.thin.Query;
+
+/**
+ * Optional extension of {@link ModelProvider} for providers that can hand out rows while the query is still running,
+ * instead of materializing a whole DataTable first. Providers register themselves with
+ * {@link StreamingQueryExecutor#addProvider(StreamingModelProvider)}.
+ *
+ * @see QueryRowCallback
+ */
+public interface StreamingModelProvider extends ModelProvider {
+
+  /**
+   * Executes the query and passes every row to the callback as soon as it is available. Once the callback returns
+   * false the provider must stop fetching and close the underlying query.
+   *
+   * @param query
+   * @param rowLimit
+   *          the maximum number of rows, or -1 for no limit
+   * @param callback
+   * @return false if the query's source does not belong to this provider, true once the query has been executed
+   * @throws Exception
+   */
+  public boolean executeQuery( Query query, int rowLimit, QueryRowCallback callback ) throws Exception;
+
+}
@@ -0,0 +1,99 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.pentaho.metadata.datatable.DataTable;
+import org.pentaho.metadata.datatable.Row;
+import org.pentaho.metadata.model.thin.MetadataModelsService;
+import org.pentaho.metadata.model.thin.Query;
+
+/**
+ * Executes thin queries row by row. Queries are offered to the registered {@link StreamingModelProvider}s first; if
+ * none of them owns the query's source, the query is executed through {@link MetadataModelsService} and the
+ * materialized DataTable is replayed to the callback, so callers only have to deal with one result path.
+ */
+public class StreamingQueryExecutor implements QueryExecutor {
+
+  private static final List<StreamingModelProvider> providers = new CopyOnWriteArrayList<StreamingModelProvider>();
+
+  private final MetadataModelsService service;
+
+  public StreamingQueryExecutor() {
+    this( new MetadataModelsService() );
+  }
+
+  /**
+   * @param service
+   *          the service that executes the queries no streaming provider owns
+   */
+  public StreamingQueryExecutor( MetadataModelsService service ) {
+    this.service = service;
+  }
+
+  /**
+   * Registers a streaming provider. The provider still has to be registered with {@link MetadataModelsService} for
+   * the non-query actions.
+   *
+   * @param provider
+   */
+  public static void addProvider( StreamingModelProvider provider ) {
+    if ( provider != null && !providers.contains( provider ) ) {
+      providers.add( provider );
+    }
+  }
+
+  public static void removeProvider( StreamingModelProvider provider ) {
+    providers.remove( provider );
+  }
+
+  @Override
+  public boolean execute( Query query, int rowLimit, QueryRowCallback callback ) throws Exception {
+    for ( StreamingModelProvider provider : providers ) {
+      if ( provider.executeQuery( query, rowLimit, callback ) ) {
+        return true;
+      }
+    }
+    DataTable table = service.executeQuery( query, rowLimit );
+    return replay( table, callback );
+  }
+
+  /**
+   * Passes an already materialized table to a callback
+   *
+   * @param table
+   * @param callback
+   * @return false if the table is null
+   * @throws Exception
+   */
+  static boolean replay( DataTable table, QueryRowCallback callback ) throws Exception {
+    if ( table == null ) {
+      return false;
+    }
+    callback.columns( table.getCols() );
+    Row[] rows = table.getRows();
+    if ( rows != null ) {
+      for ( Row row : rows ) {
+        if ( !callback.row( row ) ) {
+          break;
+        }
+      }
+    }
+    return true;
+  }
+
+}
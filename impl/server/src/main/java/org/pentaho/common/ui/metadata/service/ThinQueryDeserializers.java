@@ -0,0 +1,446 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.pentaho.metadata.model.thin.Condition;
+import org.pentaho.metadata.model.thin.Element;
+import org.pentaho.metadata.model.thin.Order;
+import org.pentaho.metadata.model.thin.Parameter;
+import org.pentaho.metadata.model.thin.Query;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerBase;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.deser.ResolvableDeserializer;
+import com.fasterxml.jackson.databind.deser.SettableBeanProperty;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.exc.InvalidTypeIdException;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+/**
+ * Token streaming deserializers for the thin query protocol sent by models-svc.js. The properties a browser sends
+ * are read straight from the parser and set through the beans' setters. The Flexjson <code>class</code> property is
+ * checked against the modern and legacy type ids of each type, in whatever position it appears, without buffering
+ * the object. Any other property, or a property with an unusual value shape, is handed to Jackson's own bean
+ * deserializer for that type, so the result and the errors are the same as with plain data binding.
+ */
+final class ThinQueryDeserializers {
+
+  static final String TYPE_PROPERTY = "class"; //$NON-NLS-1$
+  static final String QUERY_TYPE = "org.pentaho.metadata.model.thin.Query"; //$NON-NLS-1$
+  static final String ELEMENT_TYPE = "org.pentaho.metadata.model.thin.Element"; //$NON-NLS-1$
+  static final String CONDITION_TYPE = "org.pentaho.metadata.model.thin.Condition"; //$NON-NLS-1$
+  static final String LEGACY_CONDITION_TYPE = "org.pentaho.common.ui.metadata.model.impl.Condition"; //$NON-NLS-1$
+  static final String ORDER_TYPE = "org.pentaho.metadata.model.thin.Order"; //$NON-NLS-1$
+  static final String PARAMETER_TYPE = "org.pentaho.metadata.model.thin.Parameter"; //$NON-NLS-1$
+  static final String LEGACY_PARAMETER_TYPE = "org.pentaho.common.ui.metadata.model.impl.Parameter"; //$NON-NLS-1$
+
+  private ThinQueryDeserializers() {
+  }
+
+  /**
+   * Returns a module that replaces the bean deserializers of Query, Element, Condition, Order and Parameter
+   *
+   * @return
+   */
+  static Module createModule() {
+    SimpleModule module = new SimpleModule( ThinQueryDeserializers.class.getSimpleName() );
+    module.setDeserializerModifier( new BeanDeserializerModifier() {
+      @Override
+      public JsonDeserializer<?> modifyDeserializer( DeserializationConfig config, BeanDescription beanDesc,
+          JsonDeserializer<?> deserializer ) {
+        if ( !( deserializer instanceof BeanDeserializerBase ) ) {
+          return deserializer;
+        }
+        BeanDeserializerBase beanDeserializer = (BeanDeserializerBase) deserializer;
+        Class<?> type = beanDesc.getBeanClass();
+        if ( type == Query.class ) {
+          return new QueryDeserializer( beanDeserializer );
+        } else if ( type == Element.class ) {
+          return new ElementDeserializer( beanDeserializer );
+        } else if ( type == Condition.class ) {
+          return new ConditionDeserializer( beanDeserializer );
+        } else if ( type == Order.class ) {
+          return new OrderDeserializer( beanDeserializer );
+        } else if ( type == Parameter.class ) {
+          return new ParameterDeserializer( beanDeserializer );
+        }
+        return deserializer;
+      }
+    } );
+    return module;
+  }
+
+  /**
+   * Reads the properties it knows about itself and leaves the rest to the bean deserializer
+   */
+  private abstract static class ProtocolDeserializer<T> extends StdDeserializer<T> implements
+      ResolvableDeserializer {
+
+    private static final long serialVersionUID = 1L;
+
+    private final BeanDeserializerBase beanDeserializer;
+
+    private final Set<String> typeIds;
+
+    ProtocolDeserializer( Class<T> type, BeanDeserializerBase beanDeserializer, String... typeIds ) {
+      super( type );
+      this.beanDeserializer = beanDeserializer;
+      this.typeIds = new HashSet<String>( Arrays.asList( typeIds ) );
+    }
+
+    abstract T create();
+
+    /**
+     * Reads the value of a property the parser is positioned on
+     *
+     * @return false if the property is left to the bean deserializer; nothing must have been consumed then
+     */
+    abstract boolean read( T bean, String name, JsonParser p, DeserializationContext ctxt ) throws IOException;
+
+    @Override
+    public void resolve( DeserializationContext ctxt ) throws JsonMappingException {
+      beanDeserializer.resolve( ctxt );
+    }
+
+    @Override
+    public Collection<Object> getKnownPropertyNames() {
+      return beanDeserializer.getKnownPropertyNames();
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public T deserialize( JsonParser p, DeserializationContext ctxt ) throws IOException {
+      JsonToken token = p.currentToken();
+      if ( token == JsonToken.START_OBJECT ) {
+        token = p.nextToken();
+      } else if ( token != JsonToken.FIELD_NAME && token != JsonToken.END_OBJECT ) {
+        return (T) beanDeserializer.deserialize( p, ctxt );
+      }
+      T bean = create();
+      for ( ; token == JsonToken.FIELD_NAME; token = p.nextToken() ) {
+        String name = p.currentName();
+        p.nextToken();
+        if ( TYPE_PROPERTY.equals( name ) ) {
+          checkTypeId( p, ctxt );
+        } else if ( !read( bean, name, p, ctxt ) ) {
+          SettableBeanProperty property = beanDeserializer.findProperty( name );
+          if ( property != null ) {
+            property.deserializeAndSet( p, ctxt, bean );
+          } else {
+            ctxt.handleUnknownProperty( p, beanDeserializer, bean, name );
+          }
+        }
+      }
+      return bean;
+    }
+
+    private void checkTypeId( JsonParser p, DeserializationContext ctxt ) throws IOException {
+      if ( p.currentToken() == JsonToken.VALUE_STRING && typeIds.contains( p.getText() ) ) {
+        return;
+      }
+      String id = p.currentToken().isScalarValue() ? p.getText() : null;
+      throw InvalidTypeIdException.from( p, "Could not resolve type id '" + id + "' as a subtype of " //$NON-NLS-1$ //$NON-NLS-2$
+          + handledType().getName(), ctxt.constructType( handledType() ), id );
+    }
+  }
+
+  private static boolean isText( JsonParser p ) {
+    return p.currentToken() == JsonToken.VALUE_STRING;
+  }
+
+  private static boolean isArray( JsonParser p ) {
+    return p.currentToken() == JsonToken.START_ARRAY;
+  }
+
+  private static String[] readStrings( JsonParser p, DeserializationContext ctxt ) throws IOException {
+    List<String> values = new ArrayList<String>();
+    JsonToken token;
+    while ( ( token = p.nextToken() ) != JsonToken.END_ARRAY ) {
+      if ( token == JsonToken.VALUE_STRING ) {
+        values.add( p.getText() );
+      } else if ( token == JsonToken.VALUE_NULL ) {
+        values.add( null );
+      } else {
+        values.add( ctxt.readValue( p, String.class ) );
+      }
+    }
+    return values.toArray( new String[values.size()] );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private static <E> List<E> readBeans( JsonParser p, DeserializationContext ctxt, JsonDeserializer<?> deserializer )
+    throws IOException {
+    List<E> values = new ArrayList<E>();
+    JsonToken token;
+    while ( ( token = p.nextToken() ) != JsonToken.END_ARRAY ) {
+      values.add( token == JsonToken.VALUE_NULL ? null : (E) deserializer.deserialize( p, ctxt ) );
+    }
+    return values;
+  }
+
+  private static class QueryDeserializer extends ProtocolDeserializer<Query> {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient JsonDeserializer<?> elementDeserializer;
+
+    private transient JsonDeserializer<?> conditionDeserializer;
+
+    private transient JsonDeserializer<?> orderDeserializer;
+
+    private transient JsonDeserializer<?> parameterDeserializer;
+
+    QueryDeserializer( BeanDeserializerBase beanDeserializer ) {
+      super( Query.class, beanDeserializer, QUERY_TYPE );
+    }
+
+    @Override
+    public void resolve( DeserializationContext ctxt ) throws JsonMappingException {
+      super.resolve( ctxt );
+      elementDeserializer = ctxt.findRootValueDeserializer( ctxt.constructType( Element.class ) );
+      conditionDeserializer = ctxt.findRootValueDeserializer( ctxt.constructType( Condition.class ) );
+      orderDeserializer = ctxt.findRootValueDeserializer( ctxt.constructType( Order.class ) );
+      parameterDeserializer = ctxt.findRootValueDeserializer( ctxt.constructType( Parameter.class ) );
+    }
+
+    @Override
+    Query create() {
+      return new Query();
+    }
+
+    @Override
+    boolean read( Query query, String name, JsonParser p, DeserializationContext ctxt ) throws IOException {
+      switch ( name ) {
+        case "sourceId": //$NON-NLS-1$
+          if ( isText( p ) ) {
+            query.setSourceId( p.getText() );
+            return true;
+          }
+          return false;
+        case "elements": //$NON-NLS-1$
+          if ( isArray( p ) ) {
+            List<Element> elements = readBeans( p, ctxt, elementDeserializer );
+            query.setElements( elements.toArray( new Element[elements.size()] ) );
+            return true;
+          }
+          return false;
+        case "conditions": //$NON-NLS-1$
+          if ( isArray( p ) ) {
+            List<Condition> conditions = readBeans( p, ctxt, conditionDeserializer );
+            query.setConditions( conditions.toArray( new Condition[conditions.size()] ) );
+            return true;
+          }
+          return false;
+        case "orders": //$NON-NLS-1$
+          if ( isArray( p ) ) {
+            List<Order> orders = readBeans( p, ctxt, orderDeserializer );
+            query.setOrders( orders.toArray( new Order[orders.size()] ) );
+            return true;
+          }
+          return false;
+        case "parameters": //$NON-NLS-1$
+          if ( isArray( p ) ) {
+            List<Parameter> parameters = readBeans( p, ctxt, parameterDeserializer );
+            query.setParameters( parameters.toArray( new Parameter[parameters.size()] ) );
+            return true;
+          }
+          return false;
+        default:
+          return false;
+      }
+    }
+  }
+
+  private static class ElementDeserializer extends ProtocolDeserializer<Element> {
+
+    private static final long serialVersionUID = 1L;
+
+    ElementDeserializer( BeanDeserializerBase beanDeserializer ) {
+      super( Element.class, beanDeserializer, ELEMENT_TYPE );
+    }
+
+    @Override
+    Element create() {
+      return new Element();
+    }
+
+    @Override
+    boolean read( Element element, String name, JsonParser p, DeserializationContext ctxt ) throws IOException {
+      if ( !isText( p ) ) {
+        return false;
+      }
+      switch ( name ) {
+        case "id": //$NON-NLS-1$
+          element.setId( p.getText() );
+          return true;
+        case "parentId": //$NON-NLS-1$
+          element.setParentId( p.getText() );
+          return true;
+        case "name": //$NON-NLS-1$
+          element.setName( p.getText() );
+          return true;
+        case "dataType": //$NON-NLS-1$
+          element.setDataType( p.getText() );
+          return true;
+        case "defaultAggregation": //$NON-NLS-1$
+        case "defaultAggType": //$NON-NLS-1$
+          element.setDefaultAggregation( p.getText() );
+          return true;
+        default:
+          return false;
+      }
+    }
+  }
+
+  private static class ConditionDeserializer extends ProtocolDeserializer<Condition> {
+
+    private static final long serialVersionUID = 1L;
+
+    ConditionDeserializer( BeanDeserializerBase beanDeserializer ) {
+      super( Condition.class, beanDeserializer, CONDITION_TYPE, LEGACY_CONDITION_TYPE );
+    }
+
+    @Override
+    Condition create() {
+      return new Condition();
+    }
+
+    @Override
+    boolean read( Condition condition, String name, JsonParser p, DeserializationContext ctxt ) throws IOException {
+      if ( "value".equals( name ) ) { //$NON-NLS-1$
+        if ( isArray( p ) ) {
+          condition.setValue( readStrings( p, ctxt ) );
+          return true;
+        }
+        return false;
+      }
+      if ( !isText( p ) ) {
+        return false;
+      }
+      switch ( name ) {
+        case "elementId": //$NON-NLS-1$
+          condition.setElementId( p.getText() );
+          return true;
+        case "parentId": //$NON-NLS-1$
+          condition.setParentId( p.getText() );
+          return true;
+        case "operator": //$NON-NLS-1$
+          condition.setOperator( p.getText() );
+          return true;
+        case "combinationType": //$NON-NLS-1$
+          condition.setCombinationType( p.getText() );
+          return true;
+        case "selectedAggregation": //$NON-NLS-1$
+        case "selectedAggType": //$NON-NLS-1$
+          condition.setSelectedAggregation( p.getText() );
+          return true;
+        default:
+          return false;
+      }
+    }
+  }
+
+  private static class OrderDeserializer extends ProtocolDeserializer<Order> {
+
+    private static final long serialVersionUID = 1L;
+
+    OrderDeserializer( BeanDeserializerBase beanDeserializer ) {
+      super( Order.class, beanDeserializer, ORDER_TYPE );
+    }
+
+    @Override
+    Order create() {
+      return new Order();
+    }
+
+    @Override
+    boolean read( Order order, String name, JsonParser p, DeserializationContext ctxt ) throws IOException {
+      if ( !isText( p ) ) {
+        return false;
+      }
+      switch ( name ) {
+        case "elementId": //$NON-NLS-1$
+          order.setElementId( p.getText() );
+          return true;
+        case "parentId": //$NON-NLS-1$
+          order.setParentId( p.getText() );
+          return true;
+        case "orderType": //$NON-NLS-1$
+          order.setOrderType( p.getText() );
+          return true;
+        default:
+          return false;
+      }
+    }
+  }
+
+  private static class ParameterDeserializer extends ProtocolDeserializer<Parameter> {
+
+    private static final long serialVersionUID = 1L;
+
+    ParameterDeserializer( BeanDeserializerBase beanDeserializer ) {
+      super( Parameter.class, beanDeserializer, PARAMETER_TYPE, LEGACY_PARAMETER_TYPE );
+    }
+
+    @Override
+    Parameter create() {
+      return new Parameter();
+    }
+
+    @Override
+    boolean read( Parameter parameter, String name, JsonParser p, DeserializationContext ctxt ) throws IOException {
+      if ( "value".equals( name ) ) { //$NON-NLS-1$
+        if ( isArray( p ) ) {
+          parameter.setValue( readStrings( p, ctxt ) );
+          return true;
+        }
+        return false;
+      }
+      if ( !isText( p ) ) {
+        return false;
+      }
+      switch ( name ) {
+        case "elementId": //$NON-NLS-1$
+          parameter.setElementId( p.getText() );
+          return true;
+        case "name": //$NON-NLS-1$
+          parameter.setName( p.getText() );
+          return true;
+        case "type": //$NON-NLS-1$
+          parameter.setType( p.getText() );
+          return true;
+        default:
+          return false;
+      }
+    }
+  }
+
+}
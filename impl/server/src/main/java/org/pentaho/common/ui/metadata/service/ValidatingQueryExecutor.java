@@ -0,0 +1,83 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import org.pentaho.common.ui.messages.Messages;
+import org.pentaho.metadata.model.thin.MetadataModelsService;
+import org.pentaho.metadata.model.thin.Query;
+
+/**
+ * Checks queries against the cached {@link ModelIndex} of their model before passing them on, so that a query with
+ * an unknown model, category, column or aggregation is rejected with a {@link QueryValidationException} instead of
+ * failing in the provider after it has opened a connection and generated SQL.
+ */
+public class ValidatingQueryExecutor implements QueryExecutor {
+
+  private final ModelIndexCache cache;
+
+  private final String securityKey;
+
+  private final MetadataModelsService service;
+
+  private final QueryExecutor delegate;
+
+  /**
+   * @param cache
+   * @param securityKey
+   *          the security context of the user running the queries
+   * @param service
+   *          the service that loads the models
+   * @param delegate
+   *          the executor that runs the valid queries
+   */
+  public ValidatingQueryExecutor( ModelIndexCache cache, String securityKey, MetadataModelsService service,
+      QueryExecutor delegate ) {
+    this.cache = cache;
+    this.securityKey = securityKey;
+    this.service = service;
+    this.delegate = delegate;
+  }
+
+  @Override
+  public boolean execute( Query query, int rowLimit, QueryRowCallback callback ) throws Exception {
+    getIndex( cache, query.getSourceId(), securityKey, service ).validate( query );
+    return delegate.execute( query, rowLimit, callback );
+  }
+
+  /**
+   * Returns the index of a model
+   *
+   * @param cache
+   * @param modelId
+   *          the model, such as the source of a query
+   * @param securityKey
+   * @param service
+   * @return
+   * @throws QueryValidationException
+   *           if the model does not exist or the user cannot see it
+   * @throws Exception
+   *           if the model could not be loaded
+   */
+  static ModelIndex getIndex( ModelIndexCache cache, String modelId, String securityKey,
+      MetadataModelsService service ) throws Exception {
+    ModelIndex index = cache.getIndex( modelId, securityKey, service );
+    if ( index == null ) {
+      throw new QueryValidationException( "ERROR_0010_UNKNOWN_MODEL", Messages.getErrorString( //$NON-NLS-1$
+          "MetadataModelsContentGenerator.ERROR_0010_UNKNOWN_MODEL", String.valueOf( modelId ) ) ); //$NON-NLS-1$
+    }
+    return index;
+  }
+
+}
@@ -29,4 +29,19 @@ public class CategoryTest {
     Assert.assertFalse( category.getId().contains("<") );
     Assert.assertFalse( category.getName().contains("<") );
   }
+
+  @Test
+  public void testEscapesOnce() {
+    category.setId( XSS_STRING );
+    category.setName( "Sales" );
+
+    Assert.assertEquals( "&lt;iMg SrC=x OnErRoR=alert(11113)&gt;", category.getId() );
+    Assert.assertSame( category.getId(), category.getId() );
+    Assert.assertEquals( "Sales", category.getName() );
+
+    category.setId( "a>b" );
+    Assert.assertEquals( "a&gt;b", category.getId() );
+    category.setName( null );
+    Assert.assertNull( category.getName() );
+  }
 }
@@ -0,0 +1,92 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.model.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Test;
+import org.pentaho.metadata.model.thin.Provider;
+
+public class ModelInfoComparatorTest {
+
+  private static ModelInfo createModelInfo( String modelId, String name ) {
+    ModelInfo info = new ModelInfo();
+    info.setModelId( modelId );
+    info.setModelName( name );
+    return info;
+  }
+
+  private static org.pentaho.metadata.model.thin.ModelInfo createThinModelInfo( String providerId, String modelId,
+      String name ) {
+    Provider provider = new Provider();
+    provider.setId( providerId );
+    org.pentaho.metadata.model.thin.ModelInfo info = new org.pentaho.metadata.model.thin.ModelInfo();
+    info.setProvider( provider );
+    info.setGroupId( "group" );
+    info.setModelId( modelId );
+    info.setName( name );
+    return info;
+  }
+
+  @Test
+  public void sortsByCollationOfLocale() {
+    List<ModelInfo> models = new ArrayList<ModelInfo>( Arrays.asList( createModelInfo( "1", "Banana" ),
+        createModelInfo( "2", "\u00c4pfel" ), createModelInfo( "3", "apple" ) ) );
+    Collections.sort( models, new ModelInfoComparator( Locale.GERMAN ) );
+    assertEquals( "2", models.get( 0 ).getModelId() );
+    assertEquals( "3", models.get( 1 ).getModelId() );
+    assertEquals( "1", models.get( 2 ).getModelId() );
+  }
+
+  @Test
+  public void sortsModelsWithoutNameLast() {
+    List<ModelInfo> models = new ArrayList<ModelInfo>( Arrays.asList( createModelInfo( "b", null ),
+        createModelInfo( "c", "Sales" ), createModelInfo( "a", null ), createModelInfo( "d", "Sales" ) ) );
+    Collections.sort( models, new ModelInfoComparator( Locale.ENGLISH ) );
+    assertEquals( "c", models.get( 0 ).getModelId() );
+    assertEquals( "d", models.get( 1 ).getModelId() );
+    assertEquals( "a", models.get( 2 ).getModelId() );
+    assertEquals( "b", models.get( 3 ).getModelId() );
+  }
+
+  @Test
+  public void sortsThinModelsById() {
+    org.pentaho.metadata.model.thin.ModelInfo second = createThinModelInfo( "p2", "m", "Sales" );
+    org.pentaho.metadata.model.thin.ModelInfo first = createThinModelInfo( "p1", "m", "Sales" );
+    List<org.pentaho.metadata.model.thin.ModelInfo> models =
+        new ArrayList<org.pentaho.metadata.model.thin.ModelInfo>( Arrays.asList( second,
+            createThinModelInfo( "p1", "x", null ), first ) );
+    Collections.sort( models, ModelInfoComparator.getInstance( Locale.ENGLISH ).forThinModels() );
+    // the same name and model id, sorted by provider
+    assertSame( first, models.get( 0 ) );
+    assertSame( second, models.get( 1 ) );
+    assertEquals( "x", models.get( 2 ).getModelId() );
+  }
+
+  @Test
+  public void cachesCollationKeys() {
+    ModelInfoComparator comparator = ModelInfoComparator.getInstance( Locale.FRENCH );
+    assertSame( comparator, ModelInfoComparator.getInstance( Locale.FRENCH ) );
+    assertSame( comparator.getKey( "Ventes" ), comparator.getKey( "Ventes" ) );
+    assertEquals( Locale.FRENCH, comparator.getLocale() );
+  }
+
+}
@@ -0,0 +1,238 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.pentaho.metadata.datatable.Cell;
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.Row;
+import org.pentaho.metadata.model.thin.Query;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+public class BatchQueryRunnerTest {
+
+  private final ExecutorService executor = Executors.newFixedThreadPool( 8 );
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private static BatchQueryItem createItem( String id, String sourceId, int rowLimit ) {
+    Query query = new Query();
+    query.setSourceId( sourceId );
+    BatchQueryItem item = new BatchQueryItem();
+    item.setId( id );
+    item.setQuery( query );
+    item.setRowLimit( rowLimit );
+    return item;
+  }
+
+  private static List<BatchQueryResult> run( BatchQueryRunner runner, List<BatchQueryItem> items,
+      QueryExecutor queryExecutor ) throws Exception {
+    final List<BatchQueryResult> results = new ArrayList<BatchQueryResult>();
+    runner.run( items, queryExecutor, null, result -> results.add( result ) );
+    return results;
+  }
+
+  /**
+   * Produces as many rows as the number in the query's source id, after waiting for the latch of "wait" sources
+   */
+  private static class TestExecutor implements QueryExecutor {
+
+    private final CountDownLatch latch = new CountDownLatch( 1 );
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    private final AtomicInteger executed = new AtomicInteger();
+
+    @Override
+    public boolean execute( Query query, int rowLimit, QueryRowCallback callback ) throws Exception {
+      maxRunning.accumulateAndGet( running.incrementAndGet(), Math::max );
+      executed.incrementAndGet();
+      try {
+        String source = query.getSourceId();
+        if ( source.startsWith( "wait" ) ) {
+          latch.await( 5, TimeUnit.SECONDS );
+          source = source.substring( 4 );
+        } else {
+          Thread.sleep( 20 );
+        }
+        if ( "fail".equals( source ) ) {
+          throw new IllegalStateException( "test failure" );
+        }
+        callback.columns( new Column[] { new Column( "c1", "Column 1", "number" ) } );
+        for ( int i = 0; i < Integer.parseInt( source ); i++ ) {
+          if ( !callback.row( new Row( new Cell[] { new Cell( new BigDecimal( i ), null ) } ) ) ) {
+            break;
+          }
+        }
+        return true;
+      } finally {
+        running.decrementAndGet();
+      }
+    }
+  }
+
+  @Test
+  public void returnsResultsInCompletionOrder() throws Exception {
+    BatchQueryRunner runner = new BatchQueryRunner( executor, 2, 10, -1 );
+    TestExecutor queryExecutor = new TestExecutor();
+
+    List<BatchQueryResult> results = new ArrayList<BatchQueryResult>();
+    runner.run( Arrays.asList( createItem( "slow", "wait5", -1 ), createItem( "fast", "3", -1 ) ), queryExecutor,
+        null, result -> {
+          results.add( result );
+          // the slow query only completes once the fast one has been delivered
+          queryExecutor.latch.countDown();
+          return true;
+        } );
+
+    assertEquals( 2, results.size() );
+    assertEquals( "fast", results.get( 0 ).getId() );
+    assertEquals( 3, results.get( 0 ).getTable().getRows().length );
+    assertEquals( "slow", results.get( 1 ).getId() );
+    assertEquals( 5, results.get( 1 ).getTable().getRows().length );
+    assertTrue( results.get( 1 ).isComplete() );
+  }
+
+  @Test
+  public void capsParallelismPerRequest() throws Exception {
+    BatchQueryRunner runner = new BatchQueryRunner( executor, 3, 20, -1 );
+    TestExecutor queryExecutor = new TestExecutor();
+    List<BatchQueryItem> items = new ArrayList<BatchQueryItem>();
+    for ( int i = 0; i < 12; i++ ) {
+      items.add( createItem( null, "1", -1 ) );
+    }
+
+    List<BatchQueryResult> results = run( runner, items, queryExecutor );
+
+    assertEquals( 12, results.size() );
+    assertTrue( queryExecutor.maxRunning.get() <= 3 );
+    List<String> ids = new ArrayList<String>();
+    for ( BatchQueryResult result : results ) {
+      ids.add( result.getId() );
+    }
+    Collections.sort( ids, ( a, b ) -> Integer.parseInt( a ) - Integer.parseInt( b ) );
+    assertEquals( Arrays.asList( "0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11" ), ids );
+  }
+
+  @Test
+  public void appliesRowLimitsAndReportsFailures() throws Exception {
+    BatchQueryRunner runner = new BatchQueryRunner( executor, 4, 10, -1 );
+
+    List<BatchQueryResult> results = run( runner, Arrays.asList( createItem( "limited", "10", 4 ),
+        createItem( "failed", "fail", -1 ) ), new TestExecutor() );
+
+    assertEquals( 2, results.size() );
+    for ( BatchQueryResult result : results ) {
+      if ( "limited".equals( result.getId() ) ) {
+        assertEquals( 4, result.getTable().getRows().length );
+        assertNull( result.getError() );
+      } else {
+        assertNull( result.getTable() );
+        assertEquals( "ERROR_0003_QUERY_FAILED", result.getError().getCode() );
+      }
+    }
+  }
+
+  @Test
+  public void cancelsRemainingQueriesWhenListenerStops() throws Exception {
+    BatchQueryRunner runner = new BatchQueryRunner( executor, 1, 10, -1 );
+    TestExecutor queryExecutor = new TestExecutor();
+    List<BatchQueryItem> items = new ArrayList<BatchQueryItem>();
+    for ( int i = 0; i < 5; i++ ) {
+      items.add( createItem( null, "1", -1 ) );
+    }
+
+    AtomicInteger delivered = new AtomicInteger();
+    runner.run( items, queryExecutor, null, result -> delivered.incrementAndGet() < 2 );
+
+    assertEquals( 2, delivered.get() );
+    assertEquals( 2, queryExecutor.executed.get() );
+  }
+
+  @Test
+  public void runsQueriesInCallersSession() throws Exception {
+    BatchQueryRunner runner = new BatchQueryRunner( executor, 2, 10, -1 );
+    IPentahoSession session = mock( IPentahoSession.class );
+    final List<IPentahoSession> sessions = Collections.synchronizedList( new ArrayList<IPentahoSession>() );
+    QueryExecutor queryExecutor = ( query, rowLimit, callback ) -> {
+      sessions.add( PentahoSessionHolder.getSession() );
+      return false;
+    };
+
+    List<BatchQueryResult> results = new ArrayList<BatchQueryResult>();
+    runner.run( Arrays.asList( createItem( "a", "1", -1 ), createItem( "b", "1", -1 ) ), queryExecutor, session,
+        result -> results.add( result ) );
+
+    assertEquals( 2, sessions.size() );
+    assertSame( session, sessions.get( 0 ) );
+    assertSame( session, sessions.get( 1 ) );
+    assertNull( results.get( 0 ).getTable() );
+    assertNull( PentahoSessionHolder.getSession() );
+  }
+
+  @Test
+  public void runsQueriesInCallersSecurityContext() throws Exception {
+    ExecutorService single = Executors.newSingleThreadExecutor();
+    SecurityContext context = mock( SecurityContext.class );
+    SecurityContext previous = SecurityContextHolder.getContext();
+    SecurityContextHolder.setContext( context );
+    try {
+      BatchQueryRunner runner = new BatchQueryRunner( single, 1, 10, -1 );
+      final List<SecurityContext> contexts = Collections.synchronizedList( new ArrayList<SecurityContext>() );
+      QueryExecutor queryExecutor = ( query, rowLimit, callback ) -> {
+        contexts.add( SecurityContextHolder.getContext() );
+        return false;
+      };
+      runner.run( Arrays.asList( createItem( "a", "1", -1 ), createItem( "b", "1", -1 ) ), queryExecutor, null,
+          result -> true );
+
+      assertEquals( 2, contexts.size() );
+      assertSame( context, contexts.get( 0 ) );
+      assertSame( context, contexts.get( 1 ) );
+      // the pool thread does not keep the context of the last query it ran
+      assertNotSame( context, single.submit( () -> SecurityContextHolder.getContext() ).get() );
+    } finally {
+      SecurityContextHolder.setContext( previous );
+      single.shutdownNow();
+    }
+  }
+
+}
@@ -0,0 +1,128 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ColumnValueCacheTest {
+
+  private final TestFixtures.Clock clock = new TestFixtures.Clock();
+
+  private final List<Runnable> refreshes = new ArrayList<Runnable>();
+
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private Callable<DistinctValues> loader() {
+    return () -> new DistinctValues( Arrays.asList( "load " + loads.incrementAndGet() ), true );
+  }
+
+  private static String first( DistinctValues values ) {
+    return values.first( 1 ).get( 0 );
+  }
+
+  @Test
+  public void cachesValuesBySecurityContext() throws Exception {
+    ColumnValueCache cache = TestFixtures.columnValueCache( clock, 0, 0, 10, refreshes::add );
+    String key = cache.createKey( "model", "category", "column", "user1" );
+    assertEquals( key, cache.createKey( "model", "category", "column", "user1" ) );
+    assertNotEquals( key, cache.createKey( "model", "category", "column", "user2" ) );
+    assertNotEquals( key, cache.createKey( "model", null, "column", "user1" ) );
+
+    DistinctValues values = cache.get( key, "model", loader(), null );
+    assertSame( values, cache.get( key, "model", loader(), null ) );
+    assertEquals( 1, loads.get() );
+    assertEquals( 1L, cache.getStatistics().get( "hits" ) );
+    assertEquals( 1L, cache.getStatistics().get( "misses" ) );
+  }
+
+  @Test
+  public void refreshesStaleValuesInTheBackground() throws Exception {
+    ColumnValueCache cache = TestFixtures.columnValueCache( clock, 10000, 1000, 10, refreshes::add );
+    cache.get( "key", "model", loader(), null );
+
+    clock.now += 1001;
+    assertEquals( "load 1", first( cache.get( "key", "model", loader(), null ) ) );
+    assertEquals( "load 1", first( cache.get( "key", "model", loader(), null ) ) );
+    assertEquals( "only one refresh at a time", 1, refreshes.size() );
+
+    refreshes.remove( 0 ).run();
+    assertEquals( "load 2", first( cache.get( "key", "model", loader(), null ) ) );
+    assertEquals( 1L, cache.getStatistics().get( "refreshes" ) );
+  }
+
+  @Test
+  public void retriesFailedRefreshes() throws Exception {
+    ColumnValueCache cache = TestFixtures.columnValueCache( clock, 10000, 1000, 10, refreshes::add );
+    cache.get( "key", "model", loader(), null );
+
+    clock.now += 1001;
+    cache.get( "key", "model", () -> {
+      throw new IllegalStateException( "test failure" );
+    }, null );
+    refreshes.remove( 0 ).run();
+    assertEquals( "load 1", first( cache.get( "key", "model", loader(), null ) ) );
+    refreshes.remove( 0 ).run();
+    assertEquals( "load 2", first( cache.get( "key", "model", loader(), null ) ) );
+  }
+
+  @Test
+  public void reloadsExpiredValues() throws Exception {
+    ColumnValueCache cache = TestFixtures.columnValueCache( clock, 1000, 0, 10, refreshes::add );
+    cache.get( "key", "model", loader(), null );
+    clock.now += 1001;
+    assertEquals( "load 2", first( cache.get( "key", "model", loader(), null ) ) );
+    assertEquals( 0, refreshes.size() );
+  }
+
+  @Test
+  public void dropsRefreshesOfInvalidatedValues() throws Exception {
+    ColumnValueCache cache = TestFixtures.columnValueCache( clock, 10000, 1000, 10, refreshes::add );
+    cache.get( "key", "domain.xmi", loader(), null );
+    cache.get( "other", "other.xmi", loader(), null );
+
+    clock.now += 1001;
+    cache.get( "key", "domain.xmi", loader(), null );
+    assertEquals( 0, cache.invalidate( "domain" ) );
+    assertEquals( 1, cache.invalidate( "domain.xmi" ) );
+    refreshes.remove( 0 ).run();
+    assertEquals( 1, cache.size() );
+
+    cache.invalidateAll();
+    assertEquals( 0, cache.size() );
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsedColumns() throws Exception {
+    ColumnValueCache cache = TestFixtures.columnValueCache( clock, 0, 0, 2, refreshes::add );
+    cache.get( "first", "model", loader(), null );
+    cache.get( "second", "model", loader(), null );
+    cache.get( "first", "model", loader(), null );
+    cache.get( "third", "model", loader(), null );
+    assertEquals( 2, cache.size() );
+
+    assertEquals( "load 1", first( cache.get( "first", "model", loader(), null ) ) );
+    assertEquals( "load 4", first( cache.get( "second", "model", loader(), null ) ) );
+  }
+
+}
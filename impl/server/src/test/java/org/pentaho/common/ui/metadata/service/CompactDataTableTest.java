@@ -0,0 +1,184 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Base64;
+import java.util.Random;
+
+import org.junit.Test;
+import org.pentaho.metadata.datatable.Cell;
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.DataTable;
+import org.pentaho.metadata.datatable.Row;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+public class CompactDataTableTest {
+
+  // keeps the scale of the decimals, as the values of the original table have
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+      .enable( DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS )
+      .setNodeFactory( JsonNodeFactory.withExactBigDecimals( true ) );
+
+  private static final String[] REGIONS = { "Central", "Eastern", "Western", "Southern", "Northern" };
+
+  private static final String[] PRODUCTS = { "Classic Cars", "Motorcycles", "Planes", "Ships", "Trains",
+    "Trucks and Buses", "Vintage Cars" };
+
+  /**
+   * Creates a typical category/measure result: two dimension columns with formatted values only and a measure with
+   * numeric values only
+   */
+  private static DataTable createTable( int rowCount ) {
+    Random random = new Random( 42 );
+    DataTable table = new DataTable();
+    table.setCols( new Column[] { new Column( "REGION", "Region", "string" ),
+      new Column( "PRODUCT_LINE", "Product Line", "string" ), new Column( "SALES", "Sales", "number" ) } );
+    Row[] rows = new Row[rowCount];
+    for ( int i = 0; i < rowCount; i++ ) {
+      rows[i] = new Row( new Cell[] { new Cell( null, REGIONS[random.nextInt( REGIONS.length )] ),
+        new Cell( null, PRODUCTS[random.nextInt( PRODUCTS.length )] ),
+        new Cell( BigDecimal.valueOf( random.nextInt( 100000 ), 2 ), null ) } );
+    }
+    table.setRows( rows );
+    return table;
+  }
+
+  /**
+   * Decodes the JSON of a compact table the way models-svc.js does
+   */
+  private static DataTable decode( JsonNode compact ) throws Exception {
+    DataTable table = new DataTable();
+    table.setCols( OBJECT_MAPPER.treeToValue( compact.get( "cols" ), Column[].class ) );
+    int rowCount = compact.get( "rowCount" ).asInt();
+    JsonNode data = compact.get( "data" );
+    Row[] rows = new Row[rowCount];
+    for ( int i = 0; i < rowCount; i++ ) {
+      Cell[] cells = new Cell[data.size()];
+      for ( int c = 0; c < data.size(); c++ ) {
+        JsonNode column = data.get( c );
+        BigDecimal value = null;
+        if ( column.has( "values" ) && !isNull( column.path( "valueNulls" ), i ) ) {
+          value = column.get( "values" ).get( i ).decimalValue();
+        }
+        String text = null;
+        if ( column.has( "formatted" ) && !isNull( column.path( "formattedNulls" ), i ) ) {
+          text = column.get( "dictionary" ).get( column.get( "formatted" ).get( i ).asInt() ).asText();
+        }
+        cells[c] = new Cell( value, text );
+      }
+      rows[i] = new Row( cells );
+    }
+    table.setRows( rows );
+    return table;
+  }
+
+  private static boolean isNull( JsonNode bitmap, int i ) {
+    if ( bitmap.isMissingNode() ) {
+      return false;
+    }
+    byte[] bits = Base64.getDecoder().decode( bitmap.asText() );
+    return ( bits[i >> 3] & ( 1 << ( i & 7 ) ) ) != 0;
+  }
+
+  private static void assertSameTable( DataTable expected, DataTable actual ) throws Exception {
+    assertEquals( OBJECT_MAPPER.writeValueAsString( expected ), OBJECT_MAPPER.writeValueAsString( actual ) );
+  }
+
+  private static JsonNode roundTrip( DataTable table, String[] columnIds ) throws Exception {
+    return OBJECT_MAPPER.readTree( OBJECT_MAPPER.writeValueAsBytes( CompactDataTable.encode( table, columnIds ) ) );
+  }
+
+  @Test
+  public void roundTripsTables() throws Exception {
+    DataTable table = createTable( 1000 );
+    JsonNode compact = roundTrip( table, null );
+    assertEquals( "compact", compact.get( "encoding" ).asText() );
+    assertEquals( 5, compact.get( "data" ).get( 0 ).get( "dictionary" ).size() );
+    assertFalse( compact.get( "data" ).get( 0 ).has( "values" ) );
+    assertFalse( compact.get( "data" ).get( 2 ).has( "formatted" ) );
+    assertSameTable( table, decode( compact ) );
+  }
+
+  @Test
+  public void roundTripsNulls() throws Exception {
+    DataTable table = new DataTable();
+    table.setCols( new Column[] { new Column( "c1", "Column 1", "number" ), new Column( "c2", "Column 2", "string" ) } );
+    Row[] rows = new Row[11];
+    for ( int i = 0; i < rows.length; i++ ) {
+      BigDecimal value = i % 3 == 0 ? null : new BigDecimal( i );
+      String text = i % 4 == 0 ? null : "value \u00e9 " + ( i % 2 );
+      rows[i] = new Row( new Cell[] { new Cell( value, value == null ? null : "#" + i ), new Cell( null, text ) } );
+    }
+    table.setRows( rows );
+
+    JsonNode compact = roundTrip( table, null );
+    assertTrue( compact.get( "data" ).get( 0 ).has( "valueNulls" ) );
+    assertEquals( 2, compact.get( "data" ).get( 1 ).get( "dictionary" ).size() );
+    assertSameTable( table, decode( compact ) );
+  }
+
+  @Test
+  public void treatsMissingCellsAsNulls() throws Exception {
+    DataTable table = new DataTable();
+    table.setCols( new Column[] { new Column( "c1", "Column 1", "number" ), new Column( "c2", "Column 2", "string" ) } );
+    table.setRows( new Row[] { new Row( new Cell[] { new Cell( BigDecimal.ONE, "one" ), null } ),
+      new Row( new Cell[] { new Cell( BigDecimal.TEN, "ten" ) } ) } );
+
+    DataTable decoded = decode( roundTrip( table, null ) );
+    assertEquals( 2, decoded.getRows().length );
+    assertEquals( "ten", decoded.getRows()[1].getC()[0].getF() );
+    assertNull( decoded.getRows()[0].getC()[1].getV() );
+    assertNull( decoded.getRows()[1].getC()[1].getF() );
+  }
+
+  @Test
+  public void projectsColumns() throws Exception {
+    DataTable table = createTable( 10 );
+    DataTable decoded = decode( roundTrip( table, new String[] { "SALES", "unknown", "REGION" } ) );
+    assertEquals( 2, decoded.getCols().length );
+    assertEquals( "SALES", decoded.getCols()[0].getId() );
+    assertEquals( "REGION", decoded.getCols()[1].getId() );
+    for ( int i = 0; i < 10; i++ ) {
+      assertEquals( table.getRows()[i].getC()[2].getV(), decoded.getRows()[i].getC()[0].getV() );
+      assertEquals( table.getRows()[i].getC()[0].getF(), decoded.getRows()[i].getC()[1].getF() );
+    }
+  }
+
+  @Test
+  public void roundTripsEmptyTables() throws Exception {
+    DataTable table = createTable( 0 );
+    JsonNode compact = roundTrip( table, null );
+    assertEquals( 0, compact.get( "rowCount" ).asInt() );
+    assertSameTable( table, decode( compact ) );
+  }
+
+  @Test
+  public void shrinksCategoryResults() throws Exception {
+    DataTable table = createTable( 10000 );
+    int plain = OBJECT_MAPPER.writeValueAsBytes( table ).length;
+    int compact = OBJECT_MAPPER.writeValueAsBytes( CompactDataTable.encode( table, null ) ).length;
+    assertTrue( "plain " + plain + " bytes, compact " + compact + " bytes", compact * 5 < plain );
+  }
+
+}
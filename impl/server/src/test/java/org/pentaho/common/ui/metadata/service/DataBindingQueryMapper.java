@@ -0,0 +1,89 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import org.pentaho.metadata.model.thin.Condition;
+import org.pentaho.metadata.model.thin.Element;
+import org.pentaho.metadata.model.thin.Order;
+import org.pentaho.metadata.model.thin.Parameter;
+import org.pentaho.metadata.model.thin.Query;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.annotation.OptBoolean;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The annotation driven query mapper the streaming deserializers replaced. It is kept as the reference the streaming
+ * deserializers are checked and measured against.
+ */
+public class DataBindingQueryMapper {
+
+  @JsonTypeInfo( use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "class",
+      requireTypeIdForSubtypes = OptBoolean.FALSE )
+  @JsonSubTypes( @JsonSubTypes.Type( value = Query.class, name = ThinQueryDeserializers.QUERY_TYPE ) )
+  private abstract static class QueryMixin {
+  }
+
+  @JsonTypeInfo( use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "class",
+      requireTypeIdForSubtypes = OptBoolean.FALSE )
+  @JsonSubTypes( @JsonSubTypes.Type( value = Element.class, name = ThinQueryDeserializers.ELEMENT_TYPE ) )
+  private abstract static class ElementMixin {
+    @JsonAlias( "defaultAggType" )
+    abstract void setDefaultAggregation( String defaultAggregation );
+  }
+
+  @JsonTypeInfo( use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "class",
+      requireTypeIdForSubtypes = OptBoolean.FALSE )
+  @JsonSubTypes( {
+    @JsonSubTypes.Type( value = Condition.class, name = ThinQueryDeserializers.CONDITION_TYPE ),
+    @JsonSubTypes.Type( value = Condition.class, name = ThinQueryDeserializers.LEGACY_CONDITION_TYPE )
+  } )
+  private abstract static class ConditionMixin {
+    @JsonAlias( "selectedAggType" )
+    abstract void setSelectedAggregation( String selectedAggregation );
+  }
+
+  @JsonTypeInfo( use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "class",
+      requireTypeIdForSubtypes = OptBoolean.FALSE )
+  @JsonSubTypes( @JsonSubTypes.Type( value = Order.class, name = ThinQueryDeserializers.ORDER_TYPE ) )
+  private abstract static class OrderMixin {
+  }
+
+  @JsonTypeInfo( use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "class",
+      requireTypeIdForSubtypes = OptBoolean.FALSE )
+  @JsonSubTypes( {
+    @JsonSubTypes.Type( value = Parameter.class, name = ThinQueryDeserializers.PARAMETER_TYPE ),
+    @JsonSubTypes.Type( value = Parameter.class, name = ThinQueryDeserializers.LEGACY_PARAMETER_TYPE )
+  } )
+  private abstract static class ParameterMixin {
+  }
+
+  private DataBindingQueryMapper() {
+  }
+
+  public static ObjectMapper create() {
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.enable( JsonParser.Feature.STRICT_DUPLICATE_DETECTION );
+    mapper.addMixIn( Query.class, QueryMixin.class );
+    mapper.addMixIn( Element.class, ElementMixin.class );
+    mapper.addMixIn( Condition.class, ConditionMixin.class );
+    mapper.addMixIn( Order.class, OrderMixin.class );
+    mapper.addMixIn( Parameter.class, ParameterMixin.class );
+    return mapper;
+  }
+
+}
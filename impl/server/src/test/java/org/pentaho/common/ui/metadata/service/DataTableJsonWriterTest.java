@@ -0,0 +1,120 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+
+import org.junit.Test;
+import org.pentaho.metadata.datatable.Cell;
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.DataTable;
+import org.pentaho.metadata.datatable.Row;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class DataTableJsonWriterTest {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private static DataTable createTable( int rowCount ) {
+    DataTable table = new DataTable();
+    table.setCols( new Column[] { new Column( "c1", "Column 1", "string" ), new Column( "c2", "Column 2", "number" ) } );
+    Row[] rows = new Row[ rowCount ];
+    for ( int i = 0; i < rowCount; i++ ) {
+      rows[ i ] = new Row( new Cell[] { new Cell( null, "value " + i ), new Cell( new BigDecimal( i ), null ) } );
+    }
+    table.setRows( rows );
+    return table;
+  }
+
+  @Test
+  public void writesSameJsonAsDataTable() throws Exception {
+    DataTable table = createTable( 5 );
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    DataTableJsonWriter writer = new DataTableJsonWriter( OBJECT_MAPPER, output, -1, 2 );
+    StreamingQueryExecutor.replay( table, writer );
+    writer.finish();
+
+    assertEquals( OBJECT_MAPPER.writeValueAsString( table ), output.toString( "UTF-8" ) );
+    assertEquals( 5, writer.getRowCount() );
+  }
+
+  @Test
+  public void writesNullWithoutColumns() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    DataTableJsonWriter writer = new DataTableJsonWriter( OBJECT_MAPPER, output, -1, 10 );
+    assertFalse( StreamingQueryExecutor.replay( null, writer ) );
+    writer.finish();
+
+    assertEquals( "null", output.toString( "UTF-8" ) );
+  }
+
+  @Test
+  public void stopsAtRowLimit() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    DataTableJsonWriter writer = new DataTableJsonWriter( OBJECT_MAPPER, output, 3, 10 );
+    StreamingQueryExecutor.replay( createTable( 10 ), writer );
+    writer.finish();
+
+    DataTable result = OBJECT_MAPPER.readValue( output.toByteArray(), DataTable.class );
+    assertEquals( 3, result.getRows().length );
+  }
+
+  @Test
+  public void stopsWhenClientGoesAway() throws Exception {
+    FailingOutputStream output = new FailingOutputStream();
+    DataTableJsonWriter writer = new DataTableJsonWriter( OBJECT_MAPPER, output, -1, 1 );
+
+    DataTable table = createTable( 3 );
+    writer.columns( table.getCols() );
+    assertTrue( writer.row( table.getRows()[ 0 ] ) );
+
+    output.failing = true;
+    assertFalse( writer.row( table.getRows()[ 1 ] ) );
+    assertFalse( writer.row( table.getRows()[ 2 ] ) );
+    assertTrue( writer.isAborted() );
+    assertEquals( 1, writer.getRowCount() );
+    writer.finish();
+  }
+
+  private static class FailingOutputStream extends OutputStream {
+
+    private boolean failing;
+
+    @Override
+    public void write( int b ) throws IOException {
+      if ( failing ) {
+        throw new IOException( "Broken pipe" );
+      }
+    }
+
+    @Override
+    public void write( byte[] b, int off, int len ) throws IOException {
+      if ( failing ) {
+        throw new IOException( "Broken pipe" );
+      }
+    }
+  }
+
+}
@@ -0,0 +1,104 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.pentaho.metadata.datatable.Cell;
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.Row;
+import org.pentaho.metadata.model.thin.Query;
+
+public class DistinctValuesTest {
+
+  private static final DistinctValues VALUES = new DistinctValues( Arrays.asList( "beta", "Alpha", null, "alphabet",
+      "ALPHA", "gamma", "beta", "Alpine" ), true );
+
+  @Test
+  public void sortsWithoutRegardToCase() {
+    assertEquals( 6, VALUES.size() );
+    assertEquals( Arrays.asList( "ALPHA", "Alpha", "alphabet", "Alpine", "beta", "gamma" ), VALUES.first( 0 ) );
+    assertEquals( Arrays.asList( "ALPHA", "Alpha" ), VALUES.first( 2 ) );
+  }
+
+  @Test
+  public void findsValuesByPrefix() {
+    assertEquals( Arrays.asList( "ALPHA", "Alpha", "alphabet" ), VALUES.startingWith( "alPH", 0 ) );
+    assertEquals( Arrays.asList( "ALPHA", "Alpha", "alphabet", "Alpine" ), VALUES.startingWith( "al", 0 ) );
+    assertEquals( Arrays.asList( "ALPHA" ), VALUES.startingWith( "al", 1 ) );
+    assertEquals( Arrays.asList( "gamma" ), VALUES.startingWith( "G", 0 ) );
+    assertEquals( Collections.emptyList(), VALUES.startingWith( "delta", 0 ) );
+    assertEquals( Collections.emptyList(), VALUES.startingWith( "zeta", 0 ) );
+    assertEquals( 6, VALUES.startingWith( "", 0 ).size() );
+  }
+
+  @Test
+  public void findsValuesContainingText() {
+    assertEquals( Arrays.asList( "ALPHA", "Alpha", "alphabet" ), VALUES.containing( "HA", 0 ) );
+    assertEquals( Arrays.asList( "gamma" ), VALUES.containing( "M", 0 ) );
+    assertEquals( Arrays.asList( "alphabet", "beta" ), VALUES.containing( "bet", 0 ) );
+    assertEquals( Arrays.asList( "ALPHA", "Alpha" ), VALUES.containing( "a", 2 ) );
+  }
+
+  @Test
+  public void loadsTheFirstColumnOfAQuery() throws Exception {
+    QueryExecutor executor = ( query, rowLimit, callback ) -> {
+      assertEquals( 4, rowLimit );
+      callback.columns( new Column[] { new Column( "c1", "Column 1", "string" ) } );
+      for ( int i = 0; i < 10; i++ ) {
+        Cell cell = i % 2 == 0 ? new Cell( null, "value " + i ) : new Cell( new BigDecimal( i ), "formatted" );
+        if ( !callback.row( new Row( new Cell[] { cell } ) ) ) {
+          break;
+        }
+      }
+      return true;
+    };
+    DistinctValues values = DistinctValues.load( executor, new Query(), 3 );
+    assertFalse( values.isComplete() );
+    assertEquals( Arrays.asList( "1", "value 0", "value 2" ), values.first( 0 ) );
+
+    values = DistinctValues.load( ( query, rowLimit, callback ) -> true, new Query(), 3 );
+    assertTrue( values.isComplete() );
+    assertEquals( 0, values.size() );
+  }
+
+  @Test
+  public void sortsNumericColumnsByNumber() throws Exception {
+    QueryExecutor executor = ( query, rowLimit, callback ) -> {
+      callback.columns( new Column[] { new Column( "c1", "Column 1", "number" ) } );
+      for ( int value : new int[] { 9, 10, 100, 12, 1 } ) {
+        callback.row( new Row( new Cell[] { new Cell( new BigDecimal( value ), "#" + value ) } ) );
+      }
+      callback.row( new Row( new Cell[] { new Cell( new BigDecimal( "2.50" ), null ) } ) );
+      return true;
+    };
+    DistinctValues values = DistinctValues.load( executor, new Query(), 10 );
+    assertTrue( values.isNumeric() );
+    assertEquals( Arrays.asList( "1", "2.50", "9", "10", "12", "100" ), values.first( 0 ) );
+    assertEquals( Arrays.asList( "1", "10", "12" ), values.startingWith( "1", 3 ) );
+    assertEquals( Arrays.asList( "2.50", "10", "100" ), values.containing( "0", 0 ) );
+
+    // a text value among them falls back to text order
+    assertFalse( new DistinctValues( Arrays.asList( "10", "9", "n/a" ), true, true ).isNumeric() );
+    assertEquals( Arrays.asList( "10", "9" ), new DistinctValues( Arrays.asList( "10", "9" ), true ).first( 0 ) );
+  }
+
+}
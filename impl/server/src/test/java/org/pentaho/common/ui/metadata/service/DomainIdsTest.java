@@ -0,0 +1,40 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DomainIdsTest {
+
+  @Test
+  public void matchesTheGroupExactly() {
+    assertTrue( DomainIds.matches( "reporting~steel-wheels~BV_ORDERS", "steel-wheels" ) );
+    assertFalse( DomainIds.matches( "reporting~steel-wheels-2~BV_ORDERS", "steel-wheels" ) );
+    assertFalse( DomainIds.matches( "reporting~sales~steel-wheels", "steel-wheels" ) );
+    assertFalse( DomainIds.matches( "steel-wheels~sales~model", "steel-wheels" ) );
+  }
+
+  @Test
+  public void matchesWholeIds() {
+    assertTrue( DomainIds.matches( "domain.xmi", "domain.xmi" ) );
+    assertTrue( DomainIds.matches( "reporting~sales~model", "reporting~sales~model" ) );
+    assertFalse( DomainIds.matches( "domain.xmi", "domain" ) );
+    assertFalse( DomainIds.matches( null, "sales" ) );
+    assertFalse( DomainIds.matches( "reporting~sales~model", null ) );
+  }
+
+}
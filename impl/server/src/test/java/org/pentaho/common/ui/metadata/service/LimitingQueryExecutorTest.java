@@ -0,0 +1,235 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.pentaho.metadata.datatable.Cell;
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.Row;
+import org.pentaho.metadata.model.thin.Query;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class LimitingQueryExecutorTest {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private final RequestMetrics metrics = new RequestMetrics( 0 );
+
+  private long now = 1000;
+
+  /**
+   * Produces rows up to the row limit, taking a millisecond for each one
+   */
+  private class ProducingExecutor implements QueryExecutor {
+
+    private final int rows;
+
+    private int rowLimit;
+
+    private int produced;
+
+    ProducingExecutor( int rows ) {
+      this.rows = rows;
+    }
+
+    @Override
+    public boolean execute( Query query, int rowLimit, QueryRowCallback callback ) throws Exception {
+      this.rowLimit = rowLimit;
+      callback.columns( new Column[] { new Column( "c1", "Column 1", "number" ) } );
+      for ( int i = 0; i < rows && ( rowLimit <= 0 || i < rowLimit ); i++ ) {
+        produced++;
+        now += 1000000;
+        if ( !callback.row( new Row( new Cell[] { new Cell( new BigDecimal( i ), null ) } ) ) ) {
+          break;
+        }
+      }
+      return true;
+    }
+  }
+
+  private LimitingQueryExecutor createExecutor( long timeoutMillis, int maxRows, QueryExecutor delegate ) {
+    return new LimitingQueryExecutor( new QueryLimits.Limit( timeoutMillis, maxRows ), metrics, delegate ) {
+      @Override
+      protected long nanoTime() {
+        return now;
+      }
+    };
+  }
+
+  @Test
+  public void capsRows() throws Exception {
+    ProducingExecutor delegate = new ProducingExecutor( 100 );
+    DataTableCollector collector = new DataTableCollector( -1, 0 );
+
+    assertTrue( createExecutor( 0, 10, delegate ).execute( new Query(), -1, collector ) );
+    assertEquals( 11, delegate.rowLimit );
+    assertEquals( 11, delegate.produced );
+    assertEquals( 10, collector.getRowCount() );
+    assertTrue( collector.isTruncated() );
+    assertEquals( Long.valueOf( 1 ), metrics.getCounters().get( "truncated.rows" ) );
+  }
+
+  @Test
+  public void keepsSmallerRowLimits() throws Exception {
+    ProducingExecutor delegate = new ProducingExecutor( 100 );
+    DataTableCollector collector = new DataTableCollector( -1, 0 );
+
+    createExecutor( 0, 10, delegate ).execute( new Query(), 10, collector );
+    assertEquals( 10, delegate.rowLimit );
+    assertEquals( 10, collector.getRowCount() );
+    assertFalse( collector.isTruncated() );
+
+    collector = new DataTableCollector( -1, 0 );
+    createExecutor( 0, 10, new ProducingExecutor( 10 ) ).execute( new Query(), -1, collector );
+    assertEquals( 10, collector.getRowCount() );
+    assertFalse( collector.isTruncated() );
+    assertEquals( Long.valueOf( 0 ), metrics.getCounters().get( "truncated.rows" ) );
+  }
+
+  @Test
+  public void stopsAtTimeout() throws Exception {
+    ProducingExecutor delegate = new ProducingExecutor( 100 );
+    DataTableCollector collector = new DataTableCollector( -1, 0 );
+
+    createExecutor( 5, 0, delegate ).execute( new Query(), -1, collector );
+    assertEquals( -1, delegate.rowLimit );
+    assertEquals( 6, delegate.produced );
+    assertEquals( 5, collector.getRowCount() );
+    assertTrue( collector.isTruncated() );
+    assertEquals( Long.valueOf( 1 ), metrics.getCounters().get( "truncated.timeout" ) );
+    assertTrue( metrics.getText().contains( "metadata_truncated_queries_total{reason=\"timeout\"} 1\n" ) );
+  }
+
+  @Test
+  public void cancelsQueriesBlockedBeforeTheirFirstRow() throws Exception {
+    CountDownLatch interrupted = new CountDownLatch( 1 );
+    QueryExecutor blocking = new QueryExecutor() {
+      @Override
+      public boolean execute( Query query, int rowLimit, QueryRowCallback callback ) throws Exception {
+        try {
+          Thread.sleep( 10000 );
+        } catch ( InterruptedException e ) {
+          interrupted.countDown();
+          callback.row( new Row( new Cell[] { new Cell( BigDecimal.ONE, null ) } ) );
+        }
+        return true;
+      }
+    };
+    ExecutorService executor = Executors.newCachedThreadPool();
+    try {
+      DataTableCollector collector = new DataTableCollector( -1, 0 );
+      LimitingQueryExecutor limiting =
+          new LimitingQueryExecutor( new QueryLimits.Limit( 50, 0 ), metrics, executor, null, blocking );
+
+      long start = System.nanoTime();
+      assertTrue( limiting.execute( new Query(), -1, collector ) );
+      assertTrue( System.nanoTime() - start < TimeUnit.SECONDS.toNanos( 5 ) );
+      assertTrue( interrupted.await( 5, TimeUnit.SECONDS ) );
+      assertEquals( 0, collector.getRowCount() );
+      assertTrue( collector.isTruncated() );
+      assertEquals( Long.valueOf( 1 ), metrics.getCounters().get( "truncated.timeout" ) );
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void runsQueriesAsTheirOwnUserOnSharedThreads() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    SecurityContext previous = SecurityContextHolder.getContext();
+    List<Thread> threads = Collections.synchronizedList( new ArrayList<Thread>() );
+    List<IPentahoSession> sessions = Collections.synchronizedList( new ArrayList<IPentahoSession>() );
+    List<SecurityContext> contexts = Collections.synchronizedList( new ArrayList<SecurityContext>() );
+    QueryExecutor recording = ( query, rowLimit, callback ) -> {
+      threads.add( Thread.currentThread() );
+      sessions.add( PentahoSessionHolder.getSession() );
+      contexts.add( SecurityContextHolder.getContext() );
+      return true;
+    };
+    try {
+      IPentahoSession[] users = new IPentahoSession[] { mock( IPentahoSession.class ), mock( IPentahoSession.class ) };
+      SecurityContext[] userContexts = new SecurityContext[] { mock( SecurityContext.class ),
+        mock( SecurityContext.class ) };
+      for ( int i = 0; i < users.length; i++ ) {
+        SecurityContextHolder.setContext( userContexts[ i ] );
+        new LimitingQueryExecutor( new QueryLimits.Limit( 5000, 0 ), metrics, executor, users[ i ], recording )
+            .execute( new Query(), -1, new DataTableCollector( -1, 0 ) );
+      }
+
+      assertSame( threads.get( 0 ), threads.get( 1 ) );
+      assertFalse( Thread.currentThread() == threads.get( 0 ) );
+      for ( int i = 0; i < users.length; i++ ) {
+        assertSame( users[ i ], sessions.get( i ) );
+        assertSame( userContexts[ i ], contexts.get( i ) );
+      }
+    } finally {
+      SecurityContextHolder.setContext( previous );
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void passesProviderErrorsOn() throws Exception {
+    ExecutorService executor = Executors.newCachedThreadPool();
+    try {
+      LimitingQueryExecutor limiting = new LimitingQueryExecutor( new QueryLimits.Limit( 5000, 0 ), metrics, executor,
+          null, ( query, rowLimit, callback ) -> {
+            throw new IllegalStateException( "failed" ); //$NON-NLS-1$
+          } );
+      limiting.execute( new Query(), -1, new DataTableCollector( -1, 0 ) );
+      fail();
+    } catch ( IllegalStateException e ) {
+      assertEquals( "failed", e.getMessage() );
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void flagsTruncatedStreams() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    DataTableJsonWriter writer = new DataTableJsonWriter( OBJECT_MAPPER, output, -1, 10 );
+
+    createExecutor( 0, 3, new ProducingExecutor( 5 ) ).execute( new Query(), -1, writer );
+    writer.finish();
+
+    JsonNode result = OBJECT_MAPPER.readTree( output.toByteArray() );
+    assertEquals( 3, result.get( "rows" ).size() );
+    assertTrue( result.get( "truncated" ).asBoolean() );
+  }
+
+}
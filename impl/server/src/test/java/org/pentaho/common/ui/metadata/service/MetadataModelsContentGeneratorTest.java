@@ -14,19 +14,36 @@
 
 package org.pentaho.common.ui.metadata.service;
 
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import junit.framework.Assert;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.pentaho.metadata.datatable.DataTable;
 import org.pentaho.metadata.model.thin.Element;
 import org.pentaho.metadata.model.thin.Query;
 import org.pentaho.platform.api.engine.IParameterProvider;
 import org.pentaho.platform.engine.core.solution.SimpleParameterProvider;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 @SuppressWarnings( { "all" } )
@@ -216,6 +233,540 @@ public class MetadataModelsContentGeneratorTest {
 
   }
 
+  @Test
+  public void testQueryPage() throws Exception {
+    String id = TestModelProvider.getInstance().getModelList( null, null, null )[0].getId();
+    String queryJson = "{\"sourceId\":\"" + id + "\",\"elements\":[{\"id\":\"element1\"},{\"id\":\"element2\"}]}";
+
+    SimpleParameterProvider requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.PAGE_ACTION );
+    requestParams.setParameter( "query", queryJson );
+    requestParams.setParameter( "limit", "10" );
+    String result = createContent( requestParams );
+
+    JsonNode page = OBJECT_MAPPER.readTree( result );
+    String cursor = page.path( "cursor" ).asText();
+    Assert.assertTrue( "No cursor", cursor.length() > 0 );
+    Assert.assertEquals( "Wrong total", 1, page.path( "totalRows" ).asInt() );
+    Assert.assertTrue( "Result not complete", page.path( "complete" ).asBoolean() );
+    Assert.assertEquals( "Wrong number of rows", 1, page.path( "table" ).path( "rows" ).size() );
+
+    // the next page comes from the held result
+    requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.PAGE_ACTION );
+    requestParams.setParameter( "cursor", cursor );
+    requestParams.setParameter( "offset", "1" );
+    page = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( "Wrong offset", 1, page.path( "offset" ).asInt() );
+    Assert.assertEquals( "Wrong number of rows", 0, page.path( "table" ).path( "rows" ).size() );
+
+    requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.CLOSE_CURSOR_ACTION );
+    requestParams.setParameter( "cursor", cursor );
+    Assert.assertEquals( "true", createContent( requestParams ) );
+
+    requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.PAGE_ACTION );
+    requestParams.setParameter( "cursor", cursor );
+    page = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( "Expected an error", "ERROR_0001_UNKNOWN_CURSOR", page.path( "code" ).asText() );
+  }
+
+  @Test
+  public void testBatchQuery() throws Exception {
+    String id = TestModelProvider.getInstance().getModelList( null, null, null )[0].getId();
+    String queryJson = "{\"sourceId\":\"" + id + "\",\"elements\":[{\"id\":\"element1\"},{\"id\":\"element2\"}]}";
+    SimpleParameterProvider requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.BATCH_QUERY_ACTION );
+    requestParams.setParameter( "queries", "[{\"id\":\"panel1\",\"query\":" + queryJson + "},"
+      + "{\"id\":\"panel2\",\"rowLimit\":1,\"query\":" + queryJson + "}]" );
+
+    JsonNode results = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( "Wrong number of results", 2, results.size() );
+    for ( JsonNode result : results ) {
+      Assert.assertTrue( "Unexpected id", result.path( "id" ).asText().startsWith( "panel" ) );
+      Assert.assertEquals( "Wrong number of columns", 2, result.path( "table" ).path( "cols" ).size() );
+      Assert.assertEquals( "Wrong number of rows", 1, result.path( "table" ).path( "rows" ).size() );
+    }
+  }
+
+  @Test
+  public void testQueryJob() throws Exception {
+    String id = TestModelProvider.getInstance().getModelList( null, null, null )[0].getId();
+    String queryJson = "{\"sourceId\":\"" + id + "\",\"elements\":[{\"id\":\"element1\"},{\"id\":\"element2\"}]}";
+    SimpleParameterProvider requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.SUBMIT_JOB_ACTION );
+    requestParams.setParameter( "query", queryJson );
+    JsonNode status = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    String jobId = status.path( "jobId" ).asText();
+    Assert.assertTrue( "No job id", jobId.length() > 0 );
+
+    requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.JOB_STATUS_ACTION );
+    requestParams.setParameter( "job", jobId );
+    for ( int i = 0; i < 500 && !"DONE".equals( status.path( "state" ).asText() ); i++ ) {
+      Thread.sleep( 10 );
+      status = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    }
+    Assert.assertEquals( "Job not done", "DONE", status.path( "state" ).asText() );
+    Assert.assertEquals( "Wrong row count", 1, status.path( "rowCount" ).asInt() );
+
+    requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.JOB_RESULT_ACTION );
+    requestParams.setParameter( "job", jobId );
+    JsonNode page = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( "Wrong number of rows", 1, page.path( "table" ).path( "rows" ).size() );
+
+    requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.CANCEL_JOB_ACTION );
+    requestParams.setParameter( "job", jobId );
+    Assert.assertEquals( "Finished job cancelled", "false", createContent( requestParams ) );
+
+    requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.JOB_STATUS_ACTION );
+    requestParams.setParameter( "job", "unknown" );
+    status = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( "Expected an error", "ERROR_0005_UNKNOWN_JOB", status.path( "code" ).asText() );
+  }
+
+  @Test
+  public void testQueryJsonBody() throws Exception {
+    String id = TestModelProvider.getInstance().getModelList( null, null, null )[0].getId();
+    String queryJson = "{\"class\":\"org.pentaho.metadata.model.thin.Query\",\"sourceId\":\"" + id + "\","
+      + "\"elements\":[{\"id\":\"element1\"},{\"id\":\"element2\"}]}";
+    SimpleParameterProvider requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.QUERY_ACTION );
+
+    String result = createContent( requestParams, createJsonBodyParams( queryJson ) );
+    DataTable table = OBJECT_MAPPER.readValue( result, DataTable.class );
+    Assert.assertEquals( "Wrong number of columns", 2, table.getCols().length );
+    Assert.assertEquals( "Wrong number of rows", 1, table.getRows().length );
+
+    try {
+      createContent( requestParams, createJsonBodyParams( "{\"sourceId\":\"a\",\"sourceId\":\"b\"}" ) );
+      Assert.fail( "Duplicate property accepted" );
+    } catch ( JsonProcessingException e ) {
+      // expected
+    }
+  }
+
+  private static SimpleParameterProvider createJsonBodyParams( String body ) throws Exception {
+    final ByteArrayInputStream input = new ByteArrayInputStream( body.getBytes( StandardCharsets.UTF_8 ) );
+    HttpServletRequest request = mock( HttpServletRequest.class );
+    when( request.getMethod() ).thenReturn( "POST" );
+    when( request.getContentType() ).thenReturn( "application/json; charset=UTF-8" );
+    when( request.getInputStream() ).thenReturn( new ServletInputStream() {
+      @Override
+      public int read() {
+        return input.read();
+      }
+
+      @Override
+      public boolean isFinished() {
+        return input.available() == 0;
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setReadListener( ReadListener readListener ) {
+      }
+    } );
+    SimpleParameterProvider pathParams = new SimpleParameterProvider();
+    pathParams.setParameter( "httprequest", request );
+    return pathParams;
+  }
+
+  @Test
+  public void testGetModelNotModified() throws Exception {
+    String id = TestModelProvider.getInstance().getModelList( null, null, null )[0].getId();
+    SimpleParameterProvider requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.GET_MODEL_ACTION );
+    requestParams.setParameter( "id", id );
+
+    HttpServletRequest request = mock( HttpServletRequest.class );
+    HttpServletResponse response = mock( HttpServletResponse.class );
+    SimpleParameterProvider pathParams = new SimpleParameterProvider();
+    pathParams.setParameter( "httprequest", request );
+    pathParams.setParameter( "httpresponse", response );
+
+    String result = createContent( requestParams, pathParams );
+    Assert.assertTrue( "Wrong contents", result.indexOf( "test model id" ) > 0 );
+    ArgumentCaptor<String> etag = ArgumentCaptor.forClass( String.class );
+    verify( response ).setHeader( eq( "ETag" ), etag.capture() );
+
+    when( request.getHeader( "If-None-Match" ) ).thenReturn( etag.getValue() );
+    result = createContent( requestParams, pathParams );
+    Assert.assertEquals( "Unexpected body", "", result );
+    verify( response ).setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+  }
+
+  @Test
+  public void testQueryNegotiatedFormat() throws Exception {
+    String id = TestModelProvider.getInstance().getModelList( null, null, null )[0].getId();
+    String queryJson = "{\"sourceId\":\"" + id + "\",\"elements\":[{\"id\":\"element1\"},{\"id\":\"element2\"}]}";
+    SimpleParameterProvider requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.QUERY_ACTION );
+    requestParams.setParameter( "query", queryJson );
+
+    HttpServletRequest request = mock( HttpServletRequest.class );
+    HttpServletResponse response = mock( HttpServletResponse.class );
+    when( request.getHeader( "Accept" ) ).thenReturn( "application/x-jackson-smile, application/json;q=0.9" );
+    SimpleParameterProvider pathParams = new SimpleParameterProvider();
+    pathParams.setParameter( "httprequest", request );
+    pathParams.setParameter( "httpresponse", response );
+
+    MetadataModelsContentGenerator cg = new MetadataModelsContentGenerator();
+    Map<String, IParameterProvider> parameterProviders = new HashMap<String, IParameterProvider>();
+    parameterProviders.put( IParameterProvider.SCOPE_REQUEST, requestParams );
+    parameterProviders.put( "path", pathParams );
+    cg.setParameterProviders( parameterProviders );
+    Assert.assertEquals( "application/x-jackson-smile", cg.getMimeType() );
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    cg.createContent( output );
+    verify( response ).setContentType( "application/x-jackson-smile" );
+
+    DataTable table = ResultFormat.SMILE.getMapper().readValue( output.toByteArray(), DataTable.class );
+    Assert.assertEquals( "Wrong number of columns", 2, table.getCols().length );
+    Assert.assertEquals( "Wrong number of rows", 1, table.getRows().length );
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    String id = TestModelProvider.getInstance().getModelList( null, null, null )[0].getId();
+    SimpleParameterProvider requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.QUERY_ACTION );
+    requestParams.setParameter( "query", "{\"sourceId\":\"" + id + "\",\"elements\":[{\"id\":\"element1\"}]}" );
+    long rows = RequestMetrics.getInstance().getCounters().get( "query.rows" );
+    createContent( requestParams );
+    Assert.assertEquals( rows + 1, (long) RequestMetrics.getInstance().getCounters().get( "query.rows" ) );
+
+    requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.METRICS_ACTION );
+    MetadataModelsContentGenerator cg = new MetadataModelsContentGenerator() {
+      @Override
+      boolean isAdministrator() {
+        return true;
+      }
+    };
+    Map<String, IParameterProvider> parameterProviders = new HashMap<String, IParameterProvider>();
+    parameterProviders.put( IParameterProvider.SCOPE_REQUEST, requestParams );
+    cg.setParameterProviders( parameterProviders );
+    Assert.assertEquals( "text/plain", cg.getMimeType() );
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    cg.createContent( output );
+    Assert.assertTrue( output.toString(), output.toString().contains( "metadata_requests_total{action=\"query\"}" ) );
+
+    Assert.assertTrue( createContent( requestParams ).contains( "ERROR_0002_NOT_ALLOWED" ) );
+  }
+
+  private String createContent( SimpleParameterProvider requestParams ) throws Exception {
+    return createContent( requestParams, null );
+  }
+
+  private String createContent( SimpleParameterProvider requestParams, SimpleParameterProvider pathParams )
+    throws Exception {
+    return createContent( new MetadataModelsContentGenerator(), requestParams, pathParams );
+  }
+
+  private String createContent( MetadataModelsContentGenerator cg, SimpleParameterProvider requestParams )
+    throws Exception {
+    return createContent( cg, requestParams, null );
+  }
+
+  private String createContent( MetadataModelsContentGenerator cg, SimpleParameterProvider requestParams,
+      SimpleParameterProvider pathParams ) throws Exception {
+    Map<String, IParameterProvider> parameterProviders = new HashMap<String, IParameterProvider>();
+    parameterProviders.put( IParameterProvider.SCOPE_REQUEST, requestParams );
+    if ( pathParams != null ) {
+      parameterProviders.put( "path", pathParams );
+    }
+    cg.setParameterProviders( parameterProviders );
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    cg.createContent( output );
+    return output.toString();
+  }
+
+  @Test
+  public void testColumnValues() throws Exception {
+    String id = TestModelProvider.getInstance().getModelList( null, null, null )[0].getId();
+    SimpleParameterProvider requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.VALUES_ACTION );
+    requestParams.setParameter( "id", id );
+    requestParams.setParameter( "columnid", "element1" );
+    JsonNode values = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( "element1", values.get( "columnId" ).asText() );
+    Assert.assertEquals( "[\"text value 1\"]", values.get( "values" ).toString() );
+    Assert.assertFalse( values.get( "more" ).asBoolean() );
+
+    requestParams.setParameter( "prefix", "TEXT" );
+    values = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( 1, values.get( "values" ).size() );
+    requestParams.setParameter( "prefix", "value" );
+    values = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( 0, values.get( "values" ).size() );
+
+    requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.VALUES_ACTION );
+    requestParams.setParameter( "id", id );
+    values = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( "ERROR_0009_MISSING_PARAMETER", values.get( "code" ).asText() );
+  }
+
+  @Test
+  public void testCompactQuery() throws Exception {
+    String id = TestModelProvider.getInstance().getModelList( null, null, null )[0].getId();
+    SimpleParameterProvider requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.QUERY_ACTION );
+    requestParams.setParameter( "query", "{\"sourceId\":\"" + id
+        + "\",\"elements\":[{\"id\":\"element1\"},{\"id\":\"element2\"}]}" );
+    requestParams.setParameter( "encoding", "compact" );
+    JsonNode table = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( "compact", table.get( "encoding" ).asText() );
+    Assert.assertEquals( 1, table.get( "rowCount" ).asInt() );
+    Assert.assertEquals( 2, table.get( "cols" ).size() );
+    Assert.assertEquals( "[\"text value 1\"]", table.get( "data" ).get( 0 ).get( "dictionary" ).toString() );
+
+    requestParams.setParameter( "columns", new String[] { "element2" } );
+    table = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( 1, table.get( "cols" ).size() );
+    Assert.assertEquals( "element2", table.get( "cols" ).get( 0 ).get( "id" ).asText() );
+  }
+
+  @Test
+  public void testQueryValidation() throws Exception {
+    String id = TestModelProvider.getInstance().getModelList( null, null, null )[0].getId();
+    SimpleParameterProvider requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.QUERY_ACTION );
+    requestParams.setParameter( "query", "{\"sourceId\":\"" + id
+        + "\",\"elements\":[{\"id\":\"element1\"},{\"id\":\"element3\"}]}" );
+    JsonNode error = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( "ERROR_0012_UNKNOWN_COLUMN", error.get( "code" ).asText() );
+    Assert.assertTrue( error.get( "message" ).asText().contains( "element3" ) );
+
+    requestParams.setParameter( "query", "{\"sourceId\":\"" + id
+        + "\",\"elements\":[{\"id\":\"element2\",\"parentId\":\"element1\",\"defaultAggType\":\"AVERAGE\"}]}" );
+    error = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( "ERROR_0013_INVALID_AGGREGATION", error.get( "code" ).asText() );
+
+    requestParams.setParameter( "query", "{\"sourceId\":\"no such model\",\"elements\":[{\"id\":\"element1\"}]}" );
+    error = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( "ERROR_0010_UNKNOWN_MODEL", error.get( "code" ).asText() );
+
+    // in a batch only the invalid query fails
+    requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.BATCH_QUERY_ACTION );
+    requestParams.setParameter( "queries", "[{\"id\":\"valid\",\"query\":{\"sourceId\":\"" + id
+        + "\",\"elements\":[{\"id\":\"element1\"}]}},{\"id\":\"invalid\",\"query\":{\"sourceId\":\"" + id
+        + "\",\"elements\":[{\"id\":\"element1\",\"parentId\":\"element9\"}]}}]" );
+    JsonNode results = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( 2, results.size() );
+    for ( JsonNode result : results ) {
+      if ( "valid".equals( result.get( "id" ).asText() ) ) {
+        Assert.assertFalse( result.has( "error" ) );
+      } else {
+        Assert.assertEquals( "ERROR_0011_UNKNOWN_CATEGORY", result.get( "error" ).get( "code" ).asText() );
+      }
+    }
+  }
+
+  @Test
+  public void testGetModelListStatus() throws Exception {
+    ExecutorService threads = Executors.newCachedThreadPool();
+    try {
+      ModelListFanOut fanOut = new ModelListFanOut( threads,
+          Collections.singletonList( TestModelProvider.getInstance().getId() ), 5000,
+          Collections.<String, Long>emptyMap(), new RequestMetrics( 0 ) );
+      MetadataModelsContentGenerator cg = new MetadataModelsContentGenerator() {
+        @Override
+        protected ModelListFanOut getModelListFanOut() {
+          return fanOut;
+        }
+      };
+      SimpleParameterProvider requestParams = new SimpleParameterProvider();
+      requestParams.setParameter( "action", MetadataModelsContentGenerator.LIST_MODELS_ACTION );
+      requestParams.setParameter( "status", "true" );
+      JsonNode list = OBJECT_MAPPER.readTree( createContent( cg, requestParams ) );
+      Assert.assertTrue( list.get( "complete" ).asBoolean() );
+      Assert.assertEquals( TestModelProvider.getInstance().getId(),
+          list.get( "providers" ).get( 0 ).get( "providerId" ).asText() );
+      Assert.assertEquals( "OK", list.get( "providers" ).get( 0 ).get( "status" ).asText() );
+      Assert.assertEquals( 1, list.get( "models" ).size() );
+
+      requestParams = new SimpleParameterProvider();
+      requestParams.setParameter( "action", MetadataModelsContentGenerator.LIST_MODELS_ACTION );
+      JsonNode models = OBJECT_MAPPER.readTree( createContent( cg, requestParams ) );
+      Assert.assertTrue( models.isArray() );
+      Assert.assertEquals( list.get( "models" ), models );
+    } finally {
+      threads.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testGetModelListPage() throws Exception {
+    String id = TestModelProvider.getInstance().getModelList( null, null, null )[0].getId();
+    SimpleParameterProvider requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.LIST_MODELS_ACTION );
+    requestParams.setParameter( "limit", "10" );
+    JsonNode page = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( 0, page.get( "offset" ).asInt() );
+    Assert.assertEquals( page.get( "total" ).asInt(), page.get( "models" ).size() );
+    boolean found = false;
+    for ( JsonNode model : page.get( "models" ) ) {
+      found |= id.equals( model.get( "id" ).asText() );
+    }
+    Assert.assertTrue( found );
+
+    requestParams.setParameter( "offset", String.valueOf( page.get( "total" ).asInt() ) );
+    page = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( 0, page.get( "models" ).size() );
+  }
+
+  @Test
+  public void testModelSummary() throws Exception {
+    String id = TestModelProvider.getInstance().getModelList( null, null, null )[0].getId();
+    SimpleParameterProvider requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.GET_MODEL_ACTION );
+    requestParams.setParameter( "id", id );
+    requestParams.setParameter( "summary", "true" );
+    JsonNode summary = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( id, summary.get( "id" ).asText() );
+    Assert.assertFalse( summary.has( "elements" ) );
+    Assert.assertEquals( 1, summary.get( "categories" ).size() );
+    Assert.assertEquals( "element1", summary.get( "categories" ).get( 0 ).get( "id" ).asText() );
+    Assert.assertEquals( 1, summary.get( "categories" ).get( 0 ).get( "columnCount" ).asInt() );
+
+    requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.CATEGORY_COLUMNS_ACTION );
+    requestParams.setParameter( "id", id );
+    requestParams.setParameter( "category", new String[] { "element1" } );
+    JsonNode columns = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( 1, columns.get( "element1" ).size() );
+    Assert.assertEquals( "element2", columns.get( "element1" ).get( 0 ).get( "id" ).asText() );
+
+    requestParams.setParameter( "category", new String[] { "element1", "unknown" } );
+    JsonNode error = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertTrue( error.toString().contains( "ERROR_0016_CATEGORY_NOT_FOUND" ) );
+  }
+
+  @Test
+  public void testModelDiff() throws Exception {
+    String id = TestModelProvider.getInstance().getModelList( null, null, null )[0].getId();
+    SimpleParameterProvider requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.MODEL_DIFF_ACTION );
+    requestParams.setParameter( "id", id );
+    JsonNode full = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertTrue( full.get( "full" ).asBoolean() );
+    Assert.assertEquals( 3, full.get( "added" ).size() );
+    String version = full.get( "version" ).asText();
+
+    requestParams.setParameter( "version", version );
+    JsonNode diff = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertFalse( diff.get( "full" ).asBoolean() );
+    Assert.assertEquals( version, diff.get( "baseVersion" ).asText() );
+    Assert.assertEquals( version, diff.get( "version" ).asText() );
+    Assert.assertEquals( 0, diff.get( "added" ).size() );
+
+    requestParams.setParameter( "version", "unknown" );
+    Assert.assertTrue( OBJECT_MAPPER.readTree( createContent( requestParams ) ).get( "full" ).asBoolean() );
+  }
+
+  @Test
+  public void testSearch() throws Exception {
+    String id = TestModelProvider.getInstance().getModelList( null, null, null )[0].getId();
+    SimpleParameterProvider requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.SEARCH_ACTION );
+    requestParams.setParameter( "q", "elem 2" );
+    JsonNode result = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( 1, result.get( "total" ).asInt() );
+    JsonNode hit = result.get( "hits" ).get( 0 );
+    Assert.assertEquals( CatalogHit.COLUMN, hit.get( "type" ).asText() );
+    Assert.assertEquals( id, hit.get( "modelId" ).asText() );
+    Assert.assertEquals( "element1", hit.get( "categoryId" ).asText() );
+    Assert.assertEquals( "element2", hit.get( "id" ).asText() );
+
+    requestParams.setParameter( "q", "element" );
+    requestParams.setParameter( "limit", "1" );
+    result = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( 3, result.get( "total" ).asInt() );
+    Assert.assertEquals( 1, result.get( "hits" ).size() );
+  }
+
+  @Test
+  public void testPreparedQuery() throws Exception {
+    String id = TestModelProvider.getInstance().getModelList( null, null, null )[0].getId();
+    SimpleParameterProvider requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.PREPARE_ACTION );
+    requestParams.setParameter( "query", "{\"sourceId\":\"" + id + "\",\"elements\":[{\"id\":\"element1\"}],"
+        + "\"parameters\":[{\"elementId\":\"element1\",\"name\":\"p1\",\"defaultValue\":[\"a\"]}]}" );
+    JsonNode info = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    String handle = info.get( "handle" ).asText();
+    Assert.assertEquals( id, info.get( "sourceId" ).asText() );
+    Assert.assertEquals( "p1", info.get( "parameters" ).get( 0 ).asText() );
+
+    requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.EXECUTE_ACTION );
+    requestParams.setParameter( "handle", handle );
+    requestParams.setParameter( "parameters", "{\"p1\":\"b\"}" );
+    DataTable table = OBJECT_MAPPER.readValue( createContent( requestParams ), DataTable.class );
+    Assert.assertEquals( 1, table.getCols().length );
+    Assert.assertEquals( 1, table.getRows().length );
+
+    requestParams.setParameter( "parameters", "{\"p2\":[\"b\"]}" );
+    JsonNode error = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( "ERROR_0015_UNKNOWN_PARAMETER", error.get( "code" ).asText() );
+
+    // an invalid query gets no handle
+    requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.PREPARE_ACTION );
+    requestParams.setParameter( "query", "{\"sourceId\":\"" + id + "\",\"elements\":[{\"id\":\"element3\"}]}" );
+    error = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( "ERROR_0012_UNKNOWN_COLUMN", error.get( "code" ).asText() );
+
+    requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.CLOSE_PREPARED_ACTION );
+    requestParams.setParameter( "handle", handle );
+    Assert.assertEquals( "true", createContent( requestParams ) );
+
+    requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.EXECUTE_ACTION );
+    requestParams.setParameter( "handle", handle );
+    error = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( "ERROR_0014_UNKNOWN_PREPARED_QUERY", error.get( "code" ).asText() );
+  }
+
+  @Test
+  public void testCount() throws Exception {
+    String id = TestModelProvider.getInstance().getModelList( null, null, null )[0].getId();
+    SimpleParameterProvider requestParams = new SimpleParameterProvider();
+    requestParams.setParameter( "action", MetadataModelsContentGenerator.COUNT_ACTION );
+    requestParams.setParameter( "query", "{\"sourceId\":\"" + id + "\",\"elements\":[{\"id\":\"element1\"}],"
+        + "\"orders\":[{\"elementId\":\"element1\",\"orderType\":\"ASC\"}]}" );
+    JsonNode count = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( 1, count.get( "count" ).asInt() );
+    Assert.assertFalse( count.get( "estimated" ).asBoolean() );
+    Assert.assertFalse( count.get( "more" ).asBoolean() );
+
+    // without an estimator the rows are counted
+    requestParams.setParameter( "estimate", "true" );
+    count = OBJECT_MAPPER.readTree( createContent( requestParams ) );
+    Assert.assertEquals( 1, count.get( "count" ).asInt() );
+    Assert.assertFalse( count.get( "estimated" ).asBoolean() );
+  }
+
+  @Test
+  public void testSharedModelsService() {
+    Assert.assertNotNull( new MetadataModelsContentGenerator().getModelsService() );
+    Assert.assertSame( new MetadataModelsContentGenerator().getModelsService(),
+        new MetadataModelsContentGenerator().getModelsService() );
+  }
+
   @Test
   public void testMimeType() {
     MetadataModelsContentGenerator cg = new MetadataModelsContentGenerator();
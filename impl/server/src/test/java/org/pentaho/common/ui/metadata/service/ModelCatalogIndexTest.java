@@ -0,0 +1,306 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Test;
+import org.pentaho.metadata.model.thin.Element;
+import org.pentaho.metadata.model.thin.MetadataModelsService;
+import org.pentaho.metadata.model.thin.Model;
+import org.pentaho.metadata.model.thin.ModelInfo;
+import org.pentaho.metadata.model.thin.Provider;
+
+public class ModelCatalogIndexTest {
+
+  private static final String USER = "user=admin";
+
+  private final TestFixtures.Clock clock = new TestFixtures.Clock();
+
+  private static Model createModel( String modelId, String name, String description ) {
+    Provider provider = new Provider();
+    provider.setId( "provider1" );
+    Model model = new Model();
+    model.setProvider( provider );
+    model.setGroupId( "group1" );
+    model.setModelId( modelId );
+    model.setName( name );
+    model.setDescription( description );
+    model.setElements( new Element[] { createElement( "CAT_SALES", null, "Sales", "Orders and invoices", false ),
+      createElement( "AMOUNT", "CAT_SALES", "Sales amount", "Net amount of an order", true ),
+      createElement( "CITY", "CAT_SALES", "Customer city", "City of the sales office", true ),
+      createElement( "COST", "CAT_SALES", "Cost", null, true ) } );
+    return model;
+  }
+
+  private static Element createElement( String id, String parentId, String name, String description,
+      boolean column ) {
+    Element element = new Element();
+    element.setId( id );
+    element.setParentId( parentId );
+    element.setName( name );
+    element.setDescription( description );
+    element.setIsQueryElement( column );
+    return element;
+  }
+
+  @Test
+  public void tokenizesWithoutCaseAndAccents() {
+    assertEquals( Arrays.asList( "cafe", "creme", "2024" ),
+        Arrays.asList( ModelCatalogIndex.tokenize( "Caf\u00e9 CR\u00c8ME_2024 caf\u00e9" ).toArray() ) );
+    assertTrue( ModelCatalogIndex.tokenize( null ).isEmpty() );
+  }
+
+  @Test
+  public void ranksNameMatchesBeforeDescriptionMatches() {
+    ModelCatalogIndex index = new ModelCatalogIndex( Collections.<Locale>emptyList() );
+    index.index( createModel( "orders", "Orders", "Sales per order" ), Locale.ENGLISH, USER );
+
+    CatalogSearchResult result = index.search( "sales", null, USER, 0, 0 );
+    assertEquals( 4, result.getTotal() );
+    // the exact name first, then the other names, then the descriptions
+    assertEquals( "CAT_SALES", result.getHits()[0].getId() );
+    assertEquals( CatalogHit.CATEGORY, result.getHits()[0].getType() );
+    assertEquals( "AMOUNT", result.getHits()[1].getId() );
+    assertEquals( "CAT_SALES", result.getHits()[1].getCategoryId() );
+    assertEquals( "CITY", result.getHits()[2].getId() );
+    assertEquals( CatalogHit.MODEL, result.getHits()[3].getType() );
+    assertEquals( "Orders", result.getHits()[3].getModelName() );
+    assertEquals( "en", result.getHits()[3].getLocale() );
+  }
+
+  @Test
+  public void matchesEveryTokenAsPrefix() {
+    ModelCatalogIndex index = new ModelCatalogIndex( Collections.<Locale>emptyList() );
+    index.index( createModel( "orders", "Orders", "Sales per order" ), Locale.ENGLISH, USER );
+
+    CatalogSearchResult result = index.search( "sal amo", null, USER, 0, 0 );
+    assertEquals( 1, result.getTotal() );
+    assertEquals( "AMOUNT", result.getHits()[0].getId() );
+    assertEquals( 0, index.search( "sales xyz", null, USER, 0, 0 ).getTotal() );
+    assertEquals( 0, index.search( " ", null, USER, 0, 0 ).getTotal() );
+    // an exact token counts more than a prefix
+    assertTrue( index.search( "cost", null, USER, 0, 0 ).getHits()[0].getScore()
+        > index.search( "cos", null, USER, 0, 0 ).getHits()[0].getScore() );
+  }
+
+  @Test
+  public void pagesHits() {
+    ModelCatalogIndex index = new ModelCatalogIndex( Collections.<Locale>emptyList() );
+    index.index( createModel( "orders", "Orders", "Sales per order" ), Locale.ENGLISH, USER );
+
+    CatalogSearchResult result = index.search( "sales", null, USER, 1, 2 );
+    assertEquals( 4, result.getTotal() );
+    assertEquals( 1, result.getOffset() );
+    assertEquals( 2, result.getHits().length );
+    assertEquals( "AMOUNT", result.getHits()[0].getId() );
+    assertEquals( 0, index.search( "sales", null, USER, 10, 2 ).getHits().length );
+  }
+
+  @Test
+  public void returnsVisibleModelsOnly() {
+    ModelCatalogIndex index = new ModelCatalogIndex( Collections.<Locale>emptyList() );
+    Model orders = createModel( "orders", "Orders", null );
+    Model returns = createModel( "returns", "Returns", null );
+    index.index( orders, Locale.ENGLISH, USER );
+    index.index( returns, Locale.ENGLISH, USER );
+
+    assertEquals( 6, index.search( "sales", null, USER, 0, 0 ).getTotal() );
+    CatalogSearchResult result = index.search( "sales", Collections.singleton( returns.getId() ), USER, 0, 0 );
+    assertEquals( 3, result.getTotal() );
+    for ( CatalogHit hit : result.getHits() ) {
+      assertEquals( returns.getId(), hit.getModelId() );
+    }
+  }
+
+  @Test
+  public void searchesAllLocalesOnce() {
+    ModelCatalogIndex index = new ModelCatalogIndex( Arrays.asList( Locale.ENGLISH, Locale.GERMAN ) );
+    index.index( createModel( "orders", "Orders", null ), Locale.ENGLISH, USER );
+    Model german = createModel( "orders", "Bestellungen", null );
+    german.getElements()[1].setName( "Umsatz" );
+    index.index( german, Locale.GERMAN, USER );
+
+    CatalogSearchResult result = index.search( "umsatz", null, USER, 0, 0 );
+    assertEquals( 1, result.getTotal() );
+    assertEquals( "AMOUNT", result.getHits()[0].getId() );
+    assertEquals( "de", result.getHits()[0].getLocale() );
+    // the element is in both locales but found once
+    assertEquals( 1, index.search( "cost", null, USER, 0, 0 ).getTotal() );
+  }
+
+  @Test
+  public void replacesAndInvalidatesModels() {
+    ModelCatalogIndex index = new ModelCatalogIndex( Collections.<Locale>emptyList() );
+    Model orders = createModel( "orders", "Orders", null );
+    Model returns = createModel( "returns", "Returns", null );
+    returns.setGroupId( "group10" );
+    index.index( orders, Locale.ENGLISH, USER );
+    index.index( returns, Locale.ENGLISH, USER );
+    assertEquals( 10, index.size() );
+
+    orders.getElements()[3].setName( "Expense" );
+    index.index( orders, Locale.ENGLISH, USER );
+    assertEquals( 10, index.size() );
+    assertEquals( 1, index.search( "cost", null, USER, 0, 0 ).getTotal() );
+    assertEquals( 1, index.search( "expense", null, USER, 0, 0 ).getTotal() );
+
+    assertEquals( 0, index.invalidate( "orders" ) );
+    assertEquals( 0, index.invalidate( "group" ) );
+    assertEquals( 1, index.invalidate( "group1" ) );
+    assertFalse( index.isIndexed( orders.getId(), Locale.ENGLISH, USER ) );
+    assertEquals( 0, index.search( "expense", null, USER, 0, 0 ).getTotal() );
+    assertEquals( 5, index.size() );
+
+    index.invalidateAll();
+    assertEquals( 0, index.size() );
+  }
+
+  @Test
+  public void updatesNewModelsOnly() throws Exception {
+    ModelCatalogIndex index = new ModelCatalogIndex( Collections.<Locale>emptyList() );
+    Model orders = createModel( "orders", "Orders", null );
+    MetadataModelsService service = mock( MetadataModelsService.class );
+    when( service.getModel( orders.getId() ) ).thenReturn( orders );
+    ModelInfo[] models = new ModelInfo[] { orders };
+
+    index.update( models, index.getLocales( Locale.ENGLISH ), USER, service );
+    index.update( models, index.getLocales( Locale.ENGLISH ), USER, service );
+    verify( service, times( 1 ) ).getModel( orders.getId() );
+    assertTrue( index.isIndexed( orders.getId(), Locale.ENGLISH, USER ) );
+    assertEquals( 1, index.search( "customer", null, USER, 0, 0 ).getTotal() );
+  }
+
+  @Test
+  public void searchesWhatTheUserCanSee() throws Exception {
+    ModelCatalogIndex index = new ModelCatalogIndex( Collections.<Locale>emptyList() );
+    Model orders = createModel( "orders", "Orders", null );
+    index.index( orders, Locale.ENGLISH, "user=admin" );
+    Model restricted = createModel( "orders", "Orders", null );
+    restricted.getElements()[1].setHiddenForUser( true );
+    index.index( restricted, Locale.ENGLISH, "user=guest" );
+
+    assertEquals( 1, index.search( "amount", null, "user=admin", 0, 0 ).getTotal() );
+    assertEquals( 0, index.search( "amount", null, "user=guest", 0, 0 ).getTotal() );
+    assertEquals( 0, index.search( "amount", null, "user=other", 0, 0 ).getTotal() );
+    assertTrue( index.isIndexed( orders.getId(), Locale.ENGLISH, "user=guest" ) );
+    assertFalse( index.isIndexed( orders.getId(), Locale.ENGLISH, "user=other" ) );
+  }
+
+  @Test
+  public void retriesFailedModelsLater() throws Exception {
+    ModelCatalogIndex index = new ModelCatalogIndex( Collections.<Locale>emptyList() ) {
+      @Override
+      protected long currentTimeMillis() {
+        return clock.now;
+      }
+    };
+    Model orders = createModel( "orders", "Orders", null );
+    MetadataModelsService service = mock( MetadataModelsService.class );
+    when( service.getModel( orders.getId() ) ).thenThrow( new IllegalStateException( "unavailable" ) );
+    ModelInfo[] models = new ModelInfo[] { orders };
+    List<Locale> locales = index.getLocales( Locale.ENGLISH );
+
+    index.update( models, locales, USER, service );
+    index.update( models, locales, USER, service );
+    verify( service, times( 1 ) ).getModel( orders.getId() );
+
+    clock.now += 30000;
+    index.update( models, locales, USER, service );
+    verify( service, times( 2 ) ).getModel( orders.getId() );
+    // the delay doubles
+    clock.now += 30000;
+    index.update( models, locales, USER, service );
+    verify( service, times( 2 ) ).getModel( orders.getId() );
+
+    // a republished domain is tried again at once
+    index.invalidate( "group1" );
+    reset( service );
+    when( service.getModel( orders.getId() ) ).thenReturn( orders );
+    index.update( models, locales, USER, service );
+    assertTrue( index.isIndexed( orders.getId(), Locale.ENGLISH, USER ) );
+  }
+
+  @Test
+  public void dropsLeastRecentlySearchedModels() throws Exception {
+    ModelCatalogIndex index = new ModelCatalogIndex( Collections.<Locale>emptyList(), 0, 2 );
+    Model orders = createModel( "orders", "Orders", null );
+    Model returns = createModel( "returns", "Returns", null );
+    MetadataModelsService service = mock( MetadataModelsService.class );
+    when( service.getModel( orders.getId() ) ).thenReturn( orders );
+    when( service.getModel( returns.getId() ) ).thenReturn( returns );
+    List<Locale> locales = index.getLocales( Locale.ENGLISH );
+
+    index.update( new ModelInfo[] { orders, returns }, locales, "user=admin", service );
+    // the admin searches orders again, then a guest searches
+    index.update( new ModelInfo[] { orders }, locales, "user=admin", service );
+    index.update( new ModelInfo[] { orders }, locales, "user=guest", service );
+
+    assertTrue( index.isIndexed( orders.getId(), Locale.ENGLISH, "user=admin" ) );
+    assertFalse( index.isIndexed( returns.getId(), Locale.ENGLISH, "user=admin" ) );
+    assertTrue( index.isIndexed( orders.getId(), Locale.ENGLISH, "user=guest" ) );
+    assertEquals( 10, index.size() );
+    assertEquals( 0, index.search( "returns", null, "user=admin", 0, 0 ).getTotal() );
+  }
+
+  @Test
+  public void indexesModelsAgainAfterTheirTimeToLive() throws Exception {
+    ModelCatalogIndex index = new ModelCatalogIndex( Collections.<Locale>emptyList(), 60000, 10 ) {
+      @Override
+      protected long currentTimeMillis() {
+        return clock.now;
+      }
+    };
+    Model orders = createModel( "orders", "Orders", null );
+    MetadataModelsService service = mock( MetadataModelsService.class );
+    when( service.getModel( orders.getId() ) ).thenReturn( orders );
+    ModelInfo[] models = new ModelInfo[] { orders };
+    List<Locale> locales = index.getLocales( Locale.ENGLISH );
+
+    index.update( models, locales, USER, service );
+    clock.now += 60000;
+    index.update( models, locales, USER, service );
+    verify( service, times( 1 ) ).getModel( orders.getId() );
+
+    // the model changed without its domain being republished
+    Model changed = createModel( "orders", "Orders", null );
+    changed.getElements()[3].setName( "Expense" );
+    when( service.getModel( orders.getId() ) ).thenReturn( changed );
+    clock.now += 1;
+    assertFalse( index.isIndexed( orders.getId(), Locale.ENGLISH, USER ) );
+    index.update( models, locales, USER, service );
+    verify( service, times( 2 ) ).getModel( orders.getId() );
+    assertEquals( 1, index.search( "expense", null, USER, 0, 0 ).getTotal() );
+    assertEquals( 5, index.size() );
+  }
+
+  @Test
+  public void parsesLocales() {
+    assertEquals( Arrays.asList( Locale.ENGLISH, Locale.GERMANY ), ModelCatalogIndex.parseLocales( "en, de_DE," ) );
+    assertTrue( ModelCatalogIndex.parseLocales( null ).isEmpty() );
+  }
+
+}
@@ -0,0 +1,105 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+import org.pentaho.metadata.model.thin.MetadataModelsService;
+import org.pentaho.metadata.model.thin.Model;
+import org.pentaho.metadata.model.thin.Provider;
+
+public class ModelIndexCacheTest {
+
+  private final TestFixtures.Clock clock = new TestFixtures.Clock();
+
+  private static MetadataModelsService createService( String... ids ) {
+    MetadataModelsService service = mock( MetadataModelsService.class );
+    Provider provider = new Provider();
+    provider.setId( "provider1" );
+    for ( String id : ids ) {
+      Model model = new Model();
+      model.setProvider( provider );
+      // domain/model ids are published in the domain's group
+      model.setGroupId( id.contains( "/" ) ? id.substring( 0, id.indexOf( '/' ) ) : null );
+      model.setModelId( id );
+      when( service.getModel( id ) ).thenReturn( model );
+    }
+    return service;
+  }
+
+  @Test
+  public void cachesIndexesPerUser() throws Exception {
+    ModelIndexCache cache = TestFixtures.modelIndexCache( clock, true, 0, 10 );
+    MetadataModelsService service = createService( "model1" );
+
+    ModelIndex index = cache.getIndex( "model1", "user=a", service );
+    assertSame( index, cache.getIndex( "model1", "user=a", service ) );
+    assertNotSame( index, cache.getIndex( "model1", "user=b", service ) );
+    verify( service, times( 2 ) ).getModel( "model1" );
+    assertEquals( 2, cache.size() );
+  }
+
+  @Test
+  public void expiresIndexes() throws Exception {
+    ModelIndexCache cache = TestFixtures.modelIndexCache( clock, true, 1000, 10 );
+    MetadataModelsService service = createService( "model1" );
+
+    ModelIndex index = cache.getIndex( "model1", "user=a", service );
+    clock.now += 1000;
+    assertSame( index, cache.getIndex( "model1", "user=a", service ) );
+    clock.now += 1;
+    assertNotSame( index, cache.getIndex( "model1", "user=a", service ) );
+  }
+
+  @Test
+  public void evictsAndInvalidatesIndexes() throws Exception {
+    ModelIndexCache cache = TestFixtures.modelIndexCache( clock, true, 0, 3 );
+    MetadataModelsService service =
+        createService( "domain1/model1", "domain1/model2", "domain2/model1", "domain2/domain1" );
+
+    cache.getIndex( "domain1/model1", "user=a", service );
+    cache.getIndex( "domain1/model2", "user=a", service );
+    cache.getIndex( "domain2/model1", "user=domain1admin", service );
+    cache.getIndex( "domain2/domain1", "user=a", service );
+    assertEquals( 3, cache.size() );
+
+    assertEquals( 1, cache.invalidate( "domain1" ) );
+    assertEquals( 2, cache.size() );
+    cache.invalidateAll();
+    assertEquals( 0, cache.size() );
+  }
+
+  @Test
+  public void doesNotCacheMissingModels() throws Exception {
+    ModelIndexCache cache = TestFixtures.modelIndexCache( clock, true, 0, 10 );
+    MetadataModelsService service = createService();
+
+    assertNull( cache.getIndex( "model1", "user=a", service ) );
+    assertNull( cache.getIndex( null, "user=a", service ) );
+    assertEquals( 0, cache.size() );
+
+    cache = TestFixtures.modelIndexCache( clock, false, 0, 10 );
+    cache.getIndex( "model1", "user=a", createService( "model1" ) );
+    assertEquals( 0, cache.size() );
+  }
+
+}
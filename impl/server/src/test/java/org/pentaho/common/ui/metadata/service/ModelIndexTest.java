@@ -0,0 +1,276 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.pentaho.metadata.model.thin.Condition;
+import org.pentaho.metadata.model.thin.Element;
+import org.pentaho.metadata.model.thin.Model;
+import org.pentaho.metadata.model.thin.Order;
+import org.pentaho.metadata.model.thin.Parameter;
+import org.pentaho.metadata.model.thin.Provider;
+import org.pentaho.metadata.model.thin.Query;
+
+public class ModelIndexTest {
+
+  private static Model createModel() {
+    Element category = new Element();
+    category.setId( "CUSTOMERS" );
+    category.setIsQueryElement( false );
+    Element name = createColumn( "CUSTOMERS", "NAME" );
+    Element sales = createColumn( "CUSTOMERS", "SALES" );
+    sales.setAvailableAggregations( new String[] { "SUM", "AVERAGE" } );
+    sales.setDefaultAggregation( "SUM" );
+    Element orderSales = createColumn( "ORDERS", "SALES" );
+    Provider provider = new Provider();
+    provider.setId( "provider1" );
+    Model model = new Model();
+    model.setProvider( provider );
+    model.setGroupId( "group1" );
+    model.setModelId( "model1" );
+    model.setElements( new Element[] { category, name, sales, orderSales } );
+    return model;
+  }
+
+  private static Element createColumn( String categoryId, String id ) {
+    Element column = new Element();
+    column.setId( id );
+    column.setParentId( categoryId );
+    column.setIsQueryElement( true );
+    return column;
+  }
+
+  private static Query createQuery( Element... elements ) {
+    Query query = new Query();
+    query.setSourceId( "model1" );
+    query.setElements( elements );
+    return query;
+  }
+
+  private static void assertInvalid( ModelIndex index, Query query, String code, String part ) {
+    try {
+      index.validate( query );
+      fail( "query should be rejected" );
+    } catch ( QueryValidationException e ) {
+      assertEquals( code, e.getCode() );
+      assertTrue( e.getMessage(), e.getMessage().contains( part ) );
+    }
+  }
+
+  @Test
+  public void acceptsKnownColumns() throws Exception {
+    ModelIndex index = new ModelIndex( createModel() );
+    Element sales = createColumn( "CUSTOMERS", "SALES" );
+    sales.setDefaultAggregation( "average" );
+    Query query = createQuery( createColumn( null, "NAME" ), sales, createColumn( "ORDERS", "SALES" ) );
+
+    Condition condition = new Condition();
+    condition.setElementId( "SALES" );
+    condition.setSelectedAggregation( "NONE" );
+    query.setConditions( new Condition[] { condition } );
+    Order order = new Order();
+    order.setElementId( "NAME" );
+    order.setParentId( "CUSTOMERS" );
+    query.setOrders( new Order[] { order } );
+    Parameter parameter = new Parameter();
+    parameter.setElementId( "NAME" );
+    query.setParameters( new Parameter[] { parameter, new Parameter() } );
+
+    index.validate( query );
+  }
+
+  @Test
+  public void rejectsUnknownColumns() {
+    ModelIndex index = new ModelIndex( createModel() );
+    assertInvalid( index, createQuery( createColumn( null, "NAME" ), createColumn( null, "ADDRESS" ) ),
+        "ERROR_0012_UNKNOWN_COLUMN", "elements[1]" );
+    // a category is not a column
+    assertInvalid( index, createQuery( createColumn( null, "CUSTOMERS" ) ), "ERROR_0012_UNKNOWN_COLUMN",
+        "CUSTOMERS" );
+    // the column is in another category
+    assertInvalid( index, createQuery( createColumn( "ORDERS", "NAME" ) ), "ERROR_0012_UNKNOWN_COLUMN", "NAME" );
+
+    Query query = createQuery( createColumn( null, "NAME" ) );
+    Order order = new Order();
+    order.setElementId( "ADDRESS" );
+    query.setOrders( new Order[] { order } );
+    assertInvalid( index, query, "ERROR_0012_UNKNOWN_COLUMN", "orders[0]" );
+  }
+
+  @Test
+  public void rejectsUnknownCategories() {
+    ModelIndex index = new ModelIndex( createModel() );
+    Query query = createQuery( createColumn( null, "NAME" ) );
+    Condition condition = new Condition();
+    condition.setElementId( "NAME" );
+    condition.setParentId( "PRODUCTS" );
+    query.setConditions( new Condition[] { condition } );
+    assertInvalid( index, query, "ERROR_0011_UNKNOWN_CATEGORY", "conditions[0]" );
+  }
+
+  @Test
+  public void rejectsUnavailableAggregations() {
+    ModelIndex index = new ModelIndex( createModel() );
+    Element sales = createColumn( "CUSTOMERS", "SALES" );
+    sales.setSelectedAggregation( "COUNT_DISTINCT" );
+    assertInvalid( index, createQuery( sales ), "ERROR_0013_INVALID_AGGREGATION", "COUNT_DISTINCT" );
+
+    Query query = createQuery( createColumn( null, "NAME" ) );
+    Condition condition = new Condition();
+    condition.setElementId( "SALES" );
+    condition.setParentId( "CUSTOMERS" );
+    condition.setSelectedAggregation( "MAX" );
+    query.setConditions( new Condition[] { condition } );
+    assertInvalid( index, query, "ERROR_0013_INVALID_AGGREGATION", "MAX" );
+  }
+
+  @Test
+  public void acceptsAnyAggregationOfColumnsWithoutAggregations() throws Exception {
+    // the model does not say which aggregations the column supports, so the provider decides
+    Element name = createColumn( "CUSTOMERS", "NAME" );
+    name.setSelectedAggregation( "COUNT" );
+    new ModelIndex( createModel() ).validate( createQuery( name ) );
+  }
+
+  @Test
+  public void summarizesCategories() {
+    Model model = createModel();
+    model.setName( "Customers" );
+    model.getElements()[0].setName( "Customer" );
+    ModelSummary summary = new ModelIndex( model ).getSummary();
+    assertEquals( model.getId(), summary.getId() );
+    assertEquals( "Customers", summary.getName() );
+    assertEquals( 2, summary.getCategories().length );
+    assertEquals( "CUSTOMERS", summary.getCategories()[0].getId() );
+    assertEquals( "Customer", summary.getCategories()[0].getName() );
+    assertEquals( 2, summary.getCategories()[0].getColumnCount() );
+    // a category without an element of its own is named by its id
+    assertEquals( "ORDERS", summary.getCategories()[1].getName() );
+    assertEquals( 1, summary.getCategories()[1].getColumnCount() );
+  }
+
+  @Test
+  public void returnsColumnsOfCategories() throws Exception {
+    ModelIndex index = new ModelIndex( createModel() );
+    Map<String, Element[]> columns = index.getColumns( new String[] { "ORDERS", "CUSTOMERS" } );
+    assertEquals( Arrays.asList( "ORDERS", "CUSTOMERS" ), new ArrayList<String>( columns.keySet() ) );
+    assertEquals( 1, columns.get( "ORDERS" ).length );
+    assertEquals( "NAME", columns.get( "CUSTOMERS" )[0].getId() );
+    assertEquals( "SALES", columns.get( "CUSTOMERS" )[1].getId() );
+    try {
+      index.getColumns( new String[] { "PRODUCTS" } );
+      fail( "unknown category should be rejected" );
+    } catch ( QueryValidationException e ) {
+      assertEquals( "ERROR_0016_CATEGORY_NOT_FOUND", e.getCode() );
+    }
+  }
+
+  @Test
+  public void diffsVersions() {
+    ModelIndex base = new ModelIndex( createModel() );
+    assertEquals( base.getVersion(), new ModelIndex( createModel() ).getVersion() );
+
+    ModelDiff full = base.diff( null );
+    assertTrue( full.isFull() );
+    assertEquals( 4, full.getAdded().length );
+
+    Model model = createModel();
+    model.getElements()[1].setName( "Customer name" );
+    Element city = createColumn( "CUSTOMERS", "CITY" );
+    // SALES of ORDERS moves to CUSTOMERS
+    model.setElements( new Element[] { model.getElements()[0], model.getElements()[1], model.getElements()[2],
+      city, createColumn( "PRODUCTS", "SALES" ) } );
+    ModelIndex current = new ModelIndex( model );
+    ModelDiff diff = current.diff( base );
+    assertFalse( diff.isFull() );
+    assertEquals( base.getVersion(), diff.getBaseVersion() );
+    assertEquals( current.getVersion(), diff.getVersion() );
+    assertEquals( 2, diff.getAdded().length );
+    assertEquals( "CITY", diff.getAdded()[0].getId() );
+    assertEquals( "PRODUCTS", diff.getAdded()[1].getParentId() );
+    assertEquals( 1, diff.getChanged().length );
+    assertEquals( "Customer name", diff.getChanged()[0].getName() );
+    assertEquals( 1, diff.getRemoved().length );
+    assertEquals( "ORDERS", diff.getRemoved()[0].getParentId() );
+
+    ModelDiff none = current.diff( current );
+    assertEquals( 0, none.getAdded().length + none.getChanged().length + none.getRemoved().length );
+  }
+
+  @Test
+  public void versionsModelProperties() {
+    Model model = createModel();
+    model.setDescription( "changed" );
+    assertFalse( new ModelIndex( createModel() ).getVersion().equals( new ModelIndex( model ).getVersion() ) );
+  }
+
+  @Test
+  public void sharesSnapshots() throws Exception {
+    ModelIndex index = new ModelIndex( createModel() );
+    ModelIndex same = new ModelIndex( createModel() );
+    assertEquals( index, same );
+    assertEquals( index.hashCode(), same.hashCode() );
+    Model model = createModel();
+    model.setDescription( "changed" );
+    assertFalse( index.equals( new ModelIndex( model ) ) );
+
+    // the columns of a category are built once, and the values repeated across models are shared
+    String[] categories = new String[] { "CUSTOMERS" };
+    Element[] columns = index.getColumns( categories ).get( "CUSTOMERS" );
+    assertSame( columns[0], index.getColumns( categories ).get( "CUSTOMERS" )[0] );
+    assertSame( columns[0].getParentId(), same.getColumns( categories ).get( "CUSTOMERS" )[0].getParentId() );
+    // but the arrays handed out are not the index's own
+    columns[0] = null;
+    assertNotNull( index.getColumns( categories ).get( "CUSTOMERS" )[0] );
+  }
+
+  @Test
+  public void leavesTheModelAsItIs() throws Exception {
+    Model model = createModel();
+    Element sales = model.getElements()[2];
+    Map<String, String> capabilities = new HashMap<String, String>();
+    capabilities.put( "canSort", "true" );
+    sales.setCapabilities( capabilities );
+    String[] aggregations = sales.getAvailableAggregations();
+    ModelIndex index = new ModelIndex( model );
+
+    assertSame( capabilities, sales.getCapabilities() );
+    assertSame( aggregations, sales.getAvailableAggregations() );
+    Element indexed = index.getColumns( new String[] { "CUSTOMERS" } ).get( "CUSTOMERS" )[1];
+    assertNotSame( sales, indexed );
+    assertEquals( "SALES", indexed.getId() );
+    assertEquals( Arrays.asList( aggregations ), Arrays.asList( indexed.getAvailableAggregations() ) );
+
+    // changes the provider makes to its model afterwards do not reach the index
+    String version = index.getVersion();
+    sales.setName( "renamed" );
+    assertNull( indexed.getName() );
+    assertEquals( version, index.getVersion() );
+  }
+
+}
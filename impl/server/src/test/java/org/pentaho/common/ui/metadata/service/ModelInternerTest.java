@@ -0,0 +1,79 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.pentaho.metadata.model.thin.Element;
+import org.pentaho.metadata.model.thin.Model;
+
+public class ModelInternerTest {
+
+  private static Element createColumn( String id, Map<String, String> capabilities ) {
+    Element column = new Element();
+    column.setId( id );
+    column.setParentId( new String( "CUSTOMERS" ) );
+    column.setDataType( new String( "STRING" ) );
+    column.setAvailableAggregations( new String[] { new String( "NONE" ), new String( "COUNT" ) } );
+    column.setCapabilities( capabilities );
+    return column;
+  }
+
+  @Test
+  public void internsStrings() {
+    ModelInterner interner = new ModelInterner();
+    String value = new String( "NUMERIC" );
+    assertSame( value, interner.intern( value ) );
+    assertSame( value, interner.intern( new String( "NUMERIC" ) ) );
+    assertNull( interner.intern( null ) );
+  }
+
+  @Test
+  public void internsModels() {
+    Map<String, String> capabilities = new HashMap<String, String>();
+    capabilities.put( "canFilter", "true" );
+    Element first = createColumn( "NAME", capabilities );
+    Element second = createColumn( "CITY", new HashMap<String, String>( capabilities ) );
+    Model model = new Model();
+    model.setElements( new Element[] { first, null, second } );
+
+    ModelInterner interner = new ModelInterner();
+    Model interned = interner.internModel( model );
+    // the model is copied, not changed
+    assertSame( capabilities, first.getCapabilities() );
+    assertNull( interned.getElements()[1] );
+    first = interned.getElements()[0];
+    second = interned.getElements()[2];
+    assertEquals( "NAME", first.getId() );
+    assertSame( first.getParentId(), second.getParentId() );
+    assertSame( first.getDataType(), second.getDataType() );
+    assertSame( first.getAvailableAggregations()[1], second.getAvailableAggregations()[1] );
+    assertSame( first.getCapabilities(), second.getCapabilities() );
+    assertEquals( "true", first.getCapabilities().get( "canFilter" ) );
+    try {
+      first.getCapabilities().put( "canSort", "true" );
+      fail();
+    } catch ( UnsupportedOperationException e ) {
+      // shared maps cannot be changed
+    }
+  }
+
+}
@@ -0,0 +1,198 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.pentaho.metadata.model.thin.MetadataModelsService;
+import org.pentaho.metadata.model.thin.ModelInfo;
+import org.pentaho.metadata.model.thin.Provider;
+
+public class ModelListFanOutTest {
+
+  private final ExecutorService threads = Executors.newCachedThreadPool();
+
+  private final CountDownLatch release = new CountDownLatch( 1 );
+
+  private final RequestMetrics metrics = new RequestMetrics( 0 );
+
+  @After
+  public void tearDown() {
+    release.countDown();
+    threads.shutdownNow();
+  }
+
+  private final Map<String, ListingProvider> providers = new HashMap<String, ListingProvider>();
+
+  /**
+   * Lists the models of the provider asked for, like the platform does with its registered providers
+   */
+  private final MetadataModelsService service = new MetadataModelsService() {
+    @Override
+    public ModelInfo[] getModelList( String providerId, String groupId, String match ) {
+      return providers.get( providerId ).list();
+    }
+  };
+
+  /**
+   * Lists the given models, waiting for the test to release it first if it is slow
+   */
+  private class ListingProvider {
+
+    private final String id;
+
+    private final boolean slow;
+
+    private final String[] names;
+
+    ListingProvider( String id, boolean slow, String... names ) {
+      this.id = id;
+      this.slow = slow;
+      this.names = names;
+      providers.put( id, this );
+    }
+
+    ModelInfo[] list() {
+      if ( slow ) {
+        try {
+          release.await( 5, TimeUnit.SECONDS );
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      if ( names == null ) {
+        throw new IllegalStateException( "provider " + id + " is broken" );
+      }
+      Provider provider = new Provider();
+      provider.setId( id );
+      ModelInfo[] models = new ModelInfo[ names.length ];
+      for ( int i = 0; i < names.length; i++ ) {
+        models[ i ] = new ModelInfo();
+        models[ i ].setProvider( provider );
+        models[ i ].setGroupId( "group" );
+        models[ i ].setModelId( names[ i ] == null ? "unnamed" : names[ i ].toLowerCase() );
+        models[ i ].setName( names[ i ] );
+      }
+      return models;
+    }
+  }
+
+  private ModelListFanOut createFanOut( long timeoutMillis, Map<String, Long> providerTimeouts,
+      List<String> providerIds ) {
+    return new ModelListFanOut( threads, providerIds, timeoutMillis, providerTimeouts, metrics );
+  }
+
+  private static String[] names( ModelInfo[] models ) {
+    String[] names = new String[ models.length ];
+    for ( int i = 0; i < models.length; i++ ) {
+      names[ i ] = models[ i ].getName();
+    }
+    return names;
+  }
+
+  @Test
+  public void mergesAndSortsModels() {
+    new ListingProvider( "p1", false, "Sales", null, "Orders" );
+    new ListingProvider( "p2", false, "Inventory" );
+    ModelList list = createFanOut( 5000, Collections.<String, Long>emptyMap(), Arrays.asList( "p1", "p2" ) ).list(
+        service, null, null, null );
+
+    assertTrue( list.isComplete() );
+    assertEquals( Arrays.asList( "Inventory", "Orders", "Sales", null ), Arrays.asList( names( list.getModels() ) ) );
+    assertEquals( ProviderStatus.OK, list.getProviders()[ 0 ].getStatus() );
+    assertEquals( 3, list.getProviders()[ 0 ].getModelCount() );
+    assertEquals( Long.valueOf( 1 ), metrics.getCounters().get( "provider.p2.requests" ) );
+  }
+
+  @Test
+  public void returnsPartialResults() {
+    new ListingProvider( "slow", true, "Remote" );
+    new ListingProvider( "broken", false, (String[]) null );
+    new ListingProvider( "fast", false, "Local" );
+    ModelList list = createFanOut( 5000, Collections.singletonMap( "slow", 50L ),
+        Arrays.asList( "slow", "broken", "fast" ) ).list( service, null, null, null );
+
+    assertFalse( list.isComplete() );
+    assertEquals( Arrays.asList( "Local" ), Arrays.asList( names( list.getModels() ) ) );
+    assertEquals( ProviderStatus.TIMEOUT, list.getProviders()[ 0 ].getStatus() );
+    assertTrue( list.getProviders()[ 0 ].getMillis() >= 50 );
+    assertEquals( ProviderStatus.FAILED, list.getProviders()[ 1 ].getStatus() );
+    assertEquals( ProviderStatus.OK, list.getProviders()[ 2 ].getStatus() );
+    assertEquals( Long.valueOf( 1 ), metrics.getCounters().get( "provider.slow.timeouts" ) );
+    assertEquals( Long.valueOf( 1 ), metrics.getCounters().get( "provider.broken.failures" ) );
+    assertTrue( metrics.getText().contains( "metadata_provider_list_timeouts_total{provider=\"slow\"} 1\n" ) );
+  }
+
+  @Test
+  public void listsRegisteredProvidersWithoutConfiguration() {
+    new ListingProvider( "registered", false, "Sales" );
+    new ListingProvider( "added", false, "Inventory" );
+    List<String> registered = new ArrayList<String>( Arrays.asList( "registered" ) );
+    ModelListFanOut fanOut = new ModelListFanOut( threads, ModelListFanOut.parseProviderIds( null ), () -> registered,
+        5000, Collections.<String, Long>emptyMap(), metrics );
+    assertTrue( fanOut.hasProviders() );
+    ModelList list = fanOut.list( service, null, null, null );
+    assertEquals( Arrays.asList( "Sales" ), Arrays.asList( names( list.getModels() ) ) );
+
+    // configured ids add providers, but never leave a registered one out
+    fanOut = new ModelListFanOut( threads, Arrays.asList( "added", "registered" ), () -> registered, 5000,
+        Collections.<String, Long>emptyMap(), metrics );
+    list = fanOut.list( service, null, null, null );
+    assertEquals( Arrays.asList( "Inventory", "Sales" ), Arrays.asList( names( list.getModels() ) ) );
+    assertEquals( 2, list.getProviders().length );
+    assertEquals( "registered", list.getProviders()[ 0 ].getProviderId() );
+
+    // providers registered later are listed too
+    new ListingProvider( "late", false, "Returns" );
+    registered.add( "late" );
+    assertEquals( 3, fanOut.list( service, null, null, null ).getModels().length );
+  }
+
+  @Test
+  public void listsNothingWithoutProviders() {
+    ModelListFanOut fanOut = createFanOut( 5000, Collections.<String, Long>emptyMap(),
+        ModelListFanOut.parseProviderIds( null ) );
+    assertFalse( fanOut.hasProviders() );
+    assertEquals( 0, fanOut.list( service, null, null, null ).getModels().length );
+  }
+
+  @Test
+  public void parsesProviderIds() {
+    assertEquals( Arrays.asList( "remote", "local" ), ModelListFanOut.parseProviderIds( " remote, ,local,remote" ) );
+  }
+
+  @Test
+  public void parsesProviderTimeouts() {
+    Map<String, Long> timeouts = ModelListFanOut.parseTimeouts( " remote = 20000, ,local=x,=5,cda=100" );
+    assertEquals( 2, timeouts.size() );
+    assertEquals( Long.valueOf( 20000 ), timeouts.get( "remote" ) );
+    assertEquals( Long.valueOf( 100 ), timeouts.get( "cda" ) );
+  }
+
+}
@@ -0,0 +1,114 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import org.junit.Test;
+
+public class ModelResponseCacheTest {
+
+  private final TestFixtures.Clock clock = new TestFixtures.Clock();
+
+  private static byte[] bytes( String value ) {
+    return value.getBytes( StandardCharsets.UTF_8 );
+  }
+
+  @Test
+  public void keysIncludeLocaleAndSecurityContext() {
+    assertNotEquals( ModelResponseCache.modelKey( "m1", Locale.US, "user=a" ),
+        ModelResponseCache.modelKey( "m1", Locale.FRENCH, "user=a" ) );
+    assertNotEquals( ModelResponseCache.modelKey( "m1", Locale.US, "user=a" ),
+        ModelResponseCache.modelKey( "m1", Locale.US, "user=b" ) );
+    assertNotEquals( ModelResponseCache.listKey( "p1", null, null, Locale.US, "" ),
+        ModelResponseCache.listKey( "p1", null, "sales", Locale.US, "" ) );
+  }
+
+  @Test
+  public void expiresAndEvictsEntries() {
+    ModelResponseCache cache = TestFixtures.modelResponseCache( clock, 1000, 2, 0 );
+    CachedResponse first = cache.put( "first", bytes( "1" ) );
+    assertSame( first, cache.get( "first" ) );
+
+    cache.put( "second", bytes( "2" ) );
+    cache.put( "third", bytes( "3" ) );
+    assertEquals( 2, cache.size() );
+    assertNull( cache.get( "first" ) );
+
+    clock.now += 1001;
+    assertNull( cache.get( "second" ) );
+  }
+
+  @Test
+  public void invalidatesDomainModelsAndAllLists() {
+    ModelResponseCache cache = TestFixtures.modelResponseCache( clock, 0, 10, 0 );
+    String model1 = ModelResponseCache.modelKey( "provider~domain1~model", Locale.US, "" );
+    String model2 = ModelResponseCache.modelKey( "provider~domain2~model", Locale.US, "" );
+    // the user name and the model name contain the domain id too
+    String model3 = ModelResponseCache.modelKey( "provider~domain2~domain1", Locale.US, "user=domain1admin" );
+    String list = ModelResponseCache.listKey( null, null, null, Locale.US, "" );
+    cache.put( model1, bytes( "1" ) );
+    cache.put( model2, bytes( "2" ) );
+    cache.put( model3, bytes( "3" ) );
+    cache.put( list, bytes( "[]" ) );
+
+    assertEquals( 2, cache.invalidate( "domain1" ) );
+    assertNull( cache.get( model1 ) );
+    assertNull( cache.get( list ) );
+    assertNotNull( cache.get( model2 ) );
+    assertNotNull( cache.get( model3 ) );
+    assertEquals( 2, cache.bytes() );
+  }
+
+  @Test
+  public void evictsBySize() {
+    ModelResponseCache cache = TestFixtures.modelResponseCache( clock, 0, 10, 10 );
+    cache.put( "first", bytes( "12345" ) );
+    cache.put( "second", bytes( "12345" ) );
+    cache.get( "first" );
+    cache.put( "third", bytes( "123" ) );
+    assertNull( cache.get( "second" ) );
+    assertNotNull( cache.get( "first" ) );
+    assertEquals( 8, cache.bytes() );
+
+    // a response larger than the whole cache is served but not kept
+    cache.put( "huge", bytes( "12345678901" ) );
+    assertNull( cache.get( "huge" ) );
+    assertEquals( 2, cache.size() );
+  }
+
+  @Test
+  public void matchesEntityTags() {
+    CachedResponse response = new CachedResponse( bytes( "{}" ), 0 );
+    String etag = response.getETag();
+
+    assertEquals( etag, new CachedResponse( bytes( "{}" ), 0 ).getETag() );
+    assertNotEquals( etag, new CachedResponse( bytes( "[]" ), 0 ).getETag() );
+    assertTrue( response.matches( etag ) );
+    assertTrue( response.matches( "\"other\", W/" + etag ) );
+    assertTrue( response.matches( "*" ) );
+    assertFalse( response.matches( "\"other\"" ) );
+    assertFalse( response.matches( null ) );
+  }
+
+}
@@ -0,0 +1,70 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.pentaho.metadata.model.thin.Model;
+import org.pentaho.metadata.model.thin.Provider;
+
+public class ModelSnapshotCacheTest {
+
+  private static ModelIndex createIndex( String description ) {
+    Provider provider = new Provider();
+    provider.setId( "provider1" );
+    Model model = new Model();
+    model.setProvider( provider );
+    model.setModelId( "model1" );
+    model.setDescription( description );
+    return new ModelIndex( model );
+  }
+
+  @Test
+  public void keepsLastVersions() {
+    ModelSnapshotCache cache = new ModelSnapshotCache( 2, 10 );
+    ModelIndex v1 = createIndex( "v1" );
+    ModelIndex v2 = createIndex( "v2" );
+    ModelIndex v3 = createIndex( "v3" );
+    cache.add( "key1", v1 );
+    cache.add( "key1", v2 );
+    assertSame( v1, cache.get( "key1", v1.getVersion() ) );
+    // v1 was seen again last, so v2 is the oldest
+    cache.add( "key1", v1 );
+    cache.add( "key1", v3 );
+    assertNull( cache.get( "key1", v2.getVersion() ) );
+    assertSame( v1, cache.get( "key1", v1.getVersion() ) );
+    assertSame( v3, cache.get( "key1", v3.getVersion() ) );
+    assertNull( cache.get( "key2", v3.getVersion() ) );
+    assertNull( cache.get( "key1", null ) );
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsedModels() {
+    ModelSnapshotCache cache = new ModelSnapshotCache( 2, 2 );
+    ModelIndex index = createIndex( "v1" );
+    cache.add( "key1", index );
+    cache.add( "key2", index );
+    cache.get( "key1", index.getVersion() );
+    cache.add( "key3", index );
+    assertEquals( 2, cache.size() );
+    assertNull( cache.get( "key2", index.getVersion() ) );
+
+    cache.clear();
+    assertEquals( 0, cache.size() );
+  }
+
+}
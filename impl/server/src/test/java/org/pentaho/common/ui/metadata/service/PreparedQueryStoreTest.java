@@ -0,0 +1,161 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.pentaho.metadata.model.thin.Element;
+import org.pentaho.metadata.model.thin.Model;
+import org.pentaho.metadata.model.thin.Parameter;
+import org.pentaho.metadata.model.thin.Provider;
+import org.pentaho.metadata.model.thin.Query;
+
+public class PreparedQueryStoreTest {
+
+  private final TestFixtures.Clock clock = new TestFixtures.Clock();
+
+  private static Query createQuery() {
+    Element column = new Element();
+    column.setId( "NAME" );
+    column.setParentId( "CUSTOMERS" );
+    Parameter country = new Parameter();
+    country.setElementId( "COUNTRY" );
+    country.setName( "country" );
+    country.setDefaultValue( new String[] { "Canada" } );
+    Parameter city = new Parameter();
+    city.setElementId( "CITY" );
+    Query query = new Query();
+    query.setSourceId( "model1" );
+    query.setElements( new Element[] { column } );
+    query.setParameters( new Parameter[] { country, city } );
+    return query;
+  }
+
+  private static Model createModel( String... columnIds ) {
+    Element category = new Element();
+    category.setId( "CUSTOMERS" );
+    category.setIsQueryElement( false );
+    Element[] elements = new Element[ columnIds.length + 1 ];
+    elements[ 0 ] = category;
+    for ( int i = 0; i < columnIds.length; i++ ) {
+      elements[ i + 1 ] = new Element();
+      elements[ i + 1 ].setId( columnIds[ i ] );
+      elements[ i + 1 ].setParentId( "CUSTOMERS" );
+      elements[ i + 1 ].setIsQueryElement( true );
+    }
+    Provider provider = new Provider();
+    provider.setId( "provider1" );
+    Model model = new Model();
+    model.setProvider( provider );
+    model.setGroupId( "group1" );
+    model.setModelId( "model1" );
+    model.setElements( elements );
+    return model;
+  }
+
+  @Test
+  public void bindsParameterValues() throws Exception {
+    Query query = createQuery();
+    PreparedQuery prepared = TestFixtures.preparedQueryStore( clock, 0, 5 ).add( query, null );
+    assertArrayEquals( new String[] { "country", "CITY" }, prepared.getInfo().getParameters() );
+    assertSame( query, prepared.bind( null ) );
+
+    Map<String, String[]> values = new HashMap<String, String[]>();
+    values.put( "country", new String[] { "France", "Spain" } );
+    Query bound = prepared.bind( values );
+    assertSame( query.getElements(), bound.getElements() );
+    assertEquals( "model1", bound.getSourceId() );
+    assertArrayEquals( new String[] { "France", "Spain" }, bound.getParameters()[ 0 ].getValue() );
+    assertArrayEquals( new String[] { "Canada" }, bound.getParameters()[ 0 ].getDefaultValue() );
+    assertSame( query.getParameters()[ 1 ], bound.getParameters()[ 1 ] );
+    // the prepared query is left as it is
+    assertNull( query.getParameters()[ 0 ].getValue() );
+
+    try {
+      prepared.bind( Collections.singletonMap( "region", new String[] { "EMEA" } ) );
+      fail( "unknown parameter should be rejected" );
+    } catch ( QueryValidationException e ) {
+      assertEquals( "ERROR_0015_UNKNOWN_PARAMETER", e.getCode() );
+    }
+
+    Query unparameterized = createQuery();
+    unparameterized.setParameters( null );
+    prepared = TestFixtures.preparedQueryStore( clock, 0, 5 ).add( unparameterized, null );
+    try {
+      prepared.bind( values );
+      fail( "a query without parameters should reject values" );
+    } catch ( QueryValidationException e ) {
+      assertEquals( "ERROR_0015_UNKNOWN_PARAMETER", e.getCode() );
+    }
+  }
+
+  @Test
+  public void revalidatesWhenTheModelChanges() throws Exception {
+    ModelIndex index = new ModelIndex( createModel( "NAME", "COUNTRY", "CITY" ) );
+    PreparedQuery prepared = TestFixtures.preparedQueryStore( clock, 0, 5 ).add( createQuery(), index );
+    prepared.revalidate( index );
+    prepared.revalidate( new ModelIndex( createModel( "NAME", "ADDRESS", "COUNTRY", "CITY" ) ) );
+    try {
+      prepared.revalidate( new ModelIndex( createModel( "ADDRESS", "COUNTRY", "CITY" ) ) );
+      fail( "query should no longer fit its model" );
+    } catch ( QueryValidationException e ) {
+      assertEquals( "ERROR_0012_UNKNOWN_COLUMN", e.getCode() );
+    }
+  }
+
+  @Test
+  public void expiresUnusedQueries() {
+    PreparedQueryStore store = TestFixtures.preparedQueryStore( clock, 1000, 5 );
+    String handle = store.add( createQuery(), null ).getHandle();
+
+    clock.now += 999;
+    assertNotNull( store.get( handle ) );
+    clock.now += 999;
+    assertNotNull( store.get( handle ) );
+    clock.now += 1001;
+    assertNull( store.get( handle ) );
+    assertEquals( 0, store.size() );
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsedQueries() {
+    PreparedQueryStore store = TestFixtures.preparedQueryStore( clock, 0, 2 );
+    String first = store.add( createQuery(), null ).getHandle();
+    String second = store.add( createQuery(), null ).getHandle();
+    store.get( first );
+
+    String third = store.add( createQuery(), null ).getHandle();
+    assertEquals( 2, store.size() );
+    assertNotNull( store.get( first ) );
+    assertNull( store.get( second ) );
+    assertNotNull( store.get( third ) );
+
+    assertTrue( store.remove( third ) );
+    assertFalse( store.remove( third ) );
+    assertFalse( store.remove( null ) );
+  }
+
+}
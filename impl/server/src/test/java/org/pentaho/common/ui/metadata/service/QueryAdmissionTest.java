@@ -0,0 +1,140 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class QueryAdmissionTest {
+
+  private static Thread acquireInBackground( final QueryAdmission admission, final String user,
+      final CountDownLatch admitted ) {
+    Thread thread = new Thread( () -> {
+      try {
+        admission.acquire( user );
+        admitted.countDown();
+      } catch ( Exception e ) {
+        // not admitted
+      }
+    } );
+    thread.start();
+    return thread;
+  }
+
+  private static void waitForQueued( QueryAdmission admission, int queued ) throws InterruptedException {
+    for ( int i = 0; i < 500 && admission.getQueued() != queued; i++ ) {
+      Thread.sleep( 10 );
+    }
+    assertEquals( queued, admission.getQueued() );
+  }
+
+  @Test
+  public void limitsQueriesPerUser() throws Exception {
+    QueryAdmission admission = new QueryAdmission( 10, 2, 5, 0, 5 );
+    admission.acquire( "joe" );
+    admission.acquire( "joe" );
+    admission.acquire( "suzy" );
+    assertEquals( 3, admission.getRunning() );
+
+    CountDownLatch admitted = new CountDownLatch( 1 );
+    acquireInBackground( admission, "joe", admitted );
+    waitForQueued( admission, 1 );
+
+    // suzy's query ending does not help joe
+    admission.release( "suzy" );
+    assertEquals( 1, admission.getQueued() );
+    admission.release( "joe" );
+    assertTrue( admitted.await( 5, TimeUnit.SECONDS ) );
+    assertEquals( 0, admission.getQueued() );
+    assertEquals( 2, admission.getRunning() );
+  }
+
+  @Test
+  public void limitsQueriesInTotal() throws Exception {
+    QueryAdmission admission = new QueryAdmission( 2, 0, 5, 0, 5 );
+    admission.acquire( "joe" );
+    admission.acquire( "suzy" );
+
+    CountDownLatch admitted = new CountDownLatch( 1 );
+    acquireInBackground( admission, "pat", admitted );
+    waitForQueued( admission, 1 );
+
+    admission.release( "joe" );
+    assertTrue( admitted.await( 5, TimeUnit.SECONDS ) );
+    Map<String, Object> stats = admission.getStatistics();
+    assertEquals( 3L, stats.get( "admitted" ) );
+    assertEquals( 1, stats.get( "peakQueued" ) );
+    assertTrue( (Double) stats.get( "averageWaitMillis" ) > 0 );
+  }
+
+  @Test
+  public void rejectsWhenQueueIsFull() throws Exception {
+    QueryAdmission admission = new QueryAdmission( 1, 0, 1, 0, 7 );
+    admission.acquire( "joe" );
+    Thread waiting = acquireInBackground( admission, "suzy", new CountDownLatch( 1 ) );
+    waitForQueued( admission, 1 );
+
+    try {
+      admission.acquire( "pat" );
+      fail( "Expected the query to be rejected" );
+    } catch ( QueryRejectedException e ) {
+      assertEquals( 7, e.getRetryAfterSeconds() );
+    }
+    assertEquals( 1L, admission.getStatistics().get( "rejected" ) );
+
+    waiting.interrupt();
+    waitForQueued( admission, 0 );
+  }
+
+  @Test
+  public void rejectsAfterWaitingTooLong() throws Exception {
+    QueryAdmission admission = new QueryAdmission( 1, 0, 5, 50, 5 );
+    admission.acquire( "joe" );
+
+    long start = System.nanoTime();
+    try {
+      admission.acquire( "suzy" );
+      fail( "Expected the query to be rejected" );
+    } catch ( QueryRejectedException e ) {
+      assertTrue( TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) >= 50 );
+    }
+    assertEquals( 0, admission.getQueued() );
+    assertEquals( 1, admission.getRunning() );
+  }
+
+  @Test
+  public void releasesPermitWhenQueryFails() throws Exception {
+    QueryAdmission admission = new QueryAdmission( 1, 1, 0, 0, 5 );
+    AdmissionQueryExecutor executor = new AdmissionQueryExecutor( admission, "joe", ( query, rowLimit, callback ) -> {
+      throw new IllegalStateException( "test failure" );
+    } );
+    for ( int i = 0; i < 3; i++ ) {
+      try {
+        executor.execute( null, -1, null );
+        fail( "Expected the query to fail" );
+      } catch ( IllegalStateException e ) {
+        // expected
+      }
+    }
+    assertEquals( 0, admission.getRunning() );
+  }
+
+}
@@ -0,0 +1,208 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import org.pentaho.metadata.datatable.Cell;
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.Row;
+import org.pentaho.metadata.model.thin.Order;
+import org.pentaho.metadata.model.thin.Query;
+
+public class QueryCounterTest {
+
+  private static final QueryLimits.Limit NO_LIMIT = new QueryLimits.Limit( 0, 0 );
+
+  private final List<RowCountEstimator> estimators = new ArrayList<RowCountEstimator>();
+
+  @After
+  public void tearDown() {
+    for ( RowCountEstimator estimator : estimators ) {
+      QueryCounter.removeEstimator( estimator );
+    }
+  }
+
+  private static Query createQuery() {
+    Query query = new Query();
+    query.setSourceId( "test source" );
+    Order order = new Order();
+    order.setElementId( "c1" );
+    query.setOrders( new Order[] { order } );
+    return query;
+  }
+
+  /**
+   * Produces the given number of rows and remembers the queries it executed
+   */
+  private static class RecordingExecutor implements QueryExecutor {
+
+    private final List<Query> queries = new ArrayList<Query>();
+
+    private final int rows;
+
+    private int produced;
+
+    RecordingExecutor( int rows ) {
+      this.rows = rows;
+    }
+
+    @Override
+    public boolean execute( Query query, int rowLimit, QueryRowCallback callback ) throws Exception {
+      queries.add( query );
+      if ( rows < 0 ) {
+        return false;
+      }
+      callback.columns( new Column[] { new Column( "c1", "Column 1", "number" ) } );
+      for ( int i = 0; i < rows; i++ ) {
+        produced++;
+        if ( !callback.row( new Row( new Cell[] { new Cell( new BigDecimal( i ), null ) } ) ) ) {
+          break;
+        }
+      }
+      return true;
+    }
+  }
+
+  private void addEstimator( final long estimate ) {
+    RowCountEstimator estimator = new RowCountEstimator() {
+      @Override
+      public long estimateRowCount( Query query ) {
+        return estimate;
+      }
+    };
+    estimators.add( estimator );
+    QueryCounter.addEstimator( estimator );
+  }
+
+  @Test
+  public void countsRowsWithoutOrders() throws Exception {
+    RecordingExecutor executor = new RecordingExecutor( 42 );
+    QueryCounter counter = new QueryCounter( new QueryResultCache( false, 0, 0, 0, 10 ), "user", NO_LIMIT, executor );
+    Query query = createQuery();
+
+    QueryCount count = counter.count( query, -1, false );
+    assertEquals( 42, count.getCount() );
+    assertFalse( count.isEstimated() );
+    assertFalse( count.isMore() );
+    assertEquals( 1, executor.queries.size() );
+    assertEquals( query.getSourceId(), executor.queries.get( 0 ).getSourceId() );
+    assertEquals( 0, executor.queries.get( 0 ).getOrders().length );
+    assertEquals( 1, query.getOrders().length );
+  }
+
+  @Test
+  public void stopsAtMaxCount() throws Exception {
+    RecordingExecutor executor = new RecordingExecutor( 42 );
+    QueryCounter counter = new QueryCounter( new QueryResultCache( false, 0, 0, 0, 10 ), "user", NO_LIMIT, executor );
+
+    QueryCount count = counter.count( createQuery(), 10, false );
+    assertEquals( 10, count.getCount() );
+    assertTrue( count.isMore() );
+    assertEquals( 11, executor.produced );
+
+    count = counter.count( createQuery(), 42, false );
+    assertEquals( 42, count.getCount() );
+    assertFalse( count.isMore() );
+  }
+
+  @Test
+  public void countsCachedResults() throws Exception {
+    QueryResultCache cache = new QueryResultCache( true, 0, 0, 0, 10 );
+    Query query = createQuery();
+    cache.put( cache.createKey( query, -1, "user" ), query.getSourceId(), TestFixtures.createTable( 7 ), 100, 0 );
+    RecordingExecutor executor = new RecordingExecutor( 42 );
+
+    QueryCount count = new QueryCounter( cache, "user", NO_LIMIT, executor ).count( query, -1, false );
+    assertEquals( 7, count.getCount() );
+    assertEquals( 0, executor.queries.size() );
+
+    // another user's result is not used
+    count = new QueryCounter( cache, "other user", NO_LIMIT, executor ).count( query, -1, false );
+    assertEquals( 42, count.getCount() );
+    assertEquals( 1, executor.queries.size() );
+  }
+
+  @Test
+  public void countsResultsCachedWithTheServerRowLimit() throws Exception {
+    QueryLimits.Limit limit = new QueryLimits.Limit( 0, 10 );
+    QueryResultCache cache = new QueryResultCache( true, 0, 0, 0, 10 );
+    Query query = createQuery();
+    // as cached by a normal execution of the query through the LimitingQueryExecutor
+    cache.put( cache.createKey( query, limit.getExecutedRowLimit( -1 ), "user" ), query.getSourceId(),
+        TestFixtures.createTable( 11 ), 100, 0 );
+    RecordingExecutor executor = new RecordingExecutor( 42 );
+
+    QueryCount count = new QueryCounter( cache, "user", limit, executor ).count( query, -1, false );
+    assertEquals( 10, count.getCount() );
+    assertTrue( count.isMore() );
+    count = new QueryCounter( cache, "user", limit, executor ).count( query, 5, false );
+    assertEquals( 5, count.getCount() );
+    assertTrue( count.isMore() );
+    assertEquals( 0, executor.queries.size() );
+
+    // an earlier count of the query, cached without its orders
+    Query other = createQuery();
+    other.setSourceId( "other source" );
+    cache.put( cache.createKey( QueryCounter.withoutOrders( other ), 11, "user" ), other.getSourceId(),
+        TestFixtures.createTable( 3 ), 100, 0 );
+    assertEquals( 3, new QueryCounter( cache, "user", limit, executor ).count( other, -1, false ).getCount() );
+    assertEquals( 0, executor.queries.size() );
+  }
+
+  @Test
+  public void estimatesFromStatistics() throws Exception {
+    addEstimator( -1 );
+    addEstimator( 1000 );
+    RecordingExecutor executor = new RecordingExecutor( 42 );
+    QueryCounter counter = new QueryCounter( new QueryResultCache( false, 0, 0, 0, 10 ), "user", NO_LIMIT, executor );
+
+    QueryCount count = counter.count( createQuery(), -1, true );
+    assertEquals( 1000, count.getCount() );
+    assertTrue( count.isEstimated() );
+    assertEquals( 0, executor.queries.size() );
+
+    count = counter.count( createQuery(), -1, false );
+    assertEquals( 42, count.getCount() );
+    assertFalse( count.isEstimated() );
+  }
+
+  @Test
+  public void countsWhenNothingCanEstimate() throws Exception {
+    addEstimator( -1 );
+    QueryCounter counter = new QueryCounter( new QueryResultCache( false, 0, 0, 0, 10 ), "user", NO_LIMIT,
+        new RecordingExecutor( 3 ) );
+
+    QueryCount count = counter.count( createQuery(), -1, true );
+    assertEquals( 3, count.getCount() );
+    assertFalse( count.isEstimated() );
+  }
+
+  @Test
+  public void returnsNullForUnknownSources() throws Exception {
+    QueryCounter counter = new QueryCounter( new QueryResultCache( false, 0, 0, 0, 10 ), "user", NO_LIMIT,
+        new RecordingExecutor( -1 ) );
+    assertNull( counter.count( createQuery(), -1, false ) );
+  }
+
+}
@@ -0,0 +1,94 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+public class QueryCursorStoreTest {
+
+  private final TestFixtures.Clock clock = new TestFixtures.Clock();
+
+  @Test
+  public void returnsPages() {
+    QueryCursorStore store = TestFixtures.queryCursorStore( clock, 0, 0, 5 );
+    String cursor = store.add( TestFixtures.createTable( 25 ), true, 100 );
+
+    QueryPage page = store.getPage( cursor, 10, 10 );
+    assertEquals( cursor, page.getCursor() );
+    assertEquals( 10, page.getOffset() );
+    assertEquals( 25, page.getTotalRows() );
+    assertTrue( page.isComplete() );
+    assertEquals( 10, page.getTable().getRows().length );
+    assertEquals( new BigDecimal( 10 ), page.getTable().getRows()[ 0 ].getC()[ 0 ].getV() );
+
+    page = store.getPage( cursor, 20, 10 );
+    assertEquals( 5, page.getTable().getRows().length );
+
+    page = store.getPage( cursor, 40, 10 );
+    assertEquals( 25, page.getOffset() );
+    assertEquals( 0, page.getTable().getRows().length );
+  }
+
+  @Test
+  public void expiresUnusedResults() {
+    QueryCursorStore store = TestFixtures.queryCursorStore( clock, 1000, 0, 5 );
+    String cursor = store.add( TestFixtures.createTable( 1 ), true, 100 );
+
+    clock.now += 500;
+    assertNotNull( store.getPage( cursor, 0, 10 ) );
+    clock.now += 999;
+    assertNotNull( store.getPage( cursor, 0, 10 ) );
+    clock.now += 1001;
+    assertNull( store.getPage( cursor, 0, 10 ) );
+    assertEquals( 0, store.getBytes() );
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsedResults() {
+    QueryCursorStore store = TestFixtures.queryCursorStore( clock, 0, 250, 2 );
+    String first = store.add( TestFixtures.createTable( 1 ), true, 100 );
+    String second = store.add( TestFixtures.createTable( 1 ), true, 100 );
+    store.getPage( first, 0, 1 );
+
+    String third = store.add( TestFixtures.createTable( 1 ), true, 100 );
+    assertEquals( 2, store.size() );
+    assertNotNull( store.getPage( first, 0, 1 ) );
+    assertNull( store.getPage( second, 0, 1 ) );
+    assertNotNull( store.getPage( third, 0, 1 ) );
+
+    store.add( TestFixtures.createTable( 1 ), true, 200 );
+    assertEquals( 1, store.size() );
+    assertEquals( 200, store.getBytes() );
+  }
+
+  @Test
+  public void removesResults() {
+    QueryCursorStore store = TestFixtures.queryCursorStore( clock, 0, 0, 5 );
+    String cursor = store.add( TestFixtures.createTable( 1 ), false, 100 );
+
+    assertFalse( store.getPage( cursor, 0, 1 ).isComplete() );
+    assertTrue( store.remove( cursor ) );
+    assertFalse( store.remove( cursor ) );
+    assertNull( store.getPage( cursor, 0, 1 ) );
+  }
+
+}
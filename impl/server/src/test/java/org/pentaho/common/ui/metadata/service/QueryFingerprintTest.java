@@ -0,0 +1,63 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+import org.pentaho.metadata.model.thin.Query;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class QueryFingerprintTest {
+
+  private static final ObjectMapper QUERY_MAPPER = MetadataModelsContentGenerator.createQueryObjectMapper();
+
+  private static String fingerprint( String json ) throws Exception {
+    return QueryFingerprint.of( QUERY_MAPPER.readValue( json, Query.class ) );
+  }
+
+  @Test
+  public void ignoresPropertyOrderTypeIdsAndEmptyProperties() throws Exception {
+    String browser = "{\"class\":\"org.pentaho.metadata.model.thin.Query\",\"sourceId\":\"model1\","
+      + "\"elements\":[{\"class\":\"org.pentaho.metadata.model.thin.Element\",\"id\":\"el1\",\"name\":null}],"
+      + "\"conditions\":[],\"orders\":[],\"parameters\":[],\"defaultParameterMap\":null,\"disableDistinct\":null}";
+    String minimal = "{\"elements\":[{\"id\":\"el1\"}],\"sourceId\":\"model1\"}";
+
+    assertEquals( fingerprint( browser ), fingerprint( minimal ) );
+  }
+
+  @Test
+  public void ignoresParameterOrder() throws Exception {
+    String first = "{\"sourceId\":\"model1\",\"parameters\":[{\"name\":\"a\",\"value\":[\"1\"]},"
+      + "{\"name\":\"b\",\"value\":[\"2\"]}]}";
+    String second = "{\"sourceId\":\"model1\",\"parameters\":[{\"name\":\"b\",\"value\":[\"2\"]},"
+      + "{\"name\":\"a\",\"value\":[\"1\"]}]}";
+
+    assertEquals( fingerprint( first ), fingerprint( second ) );
+  }
+
+  @Test
+  public void distinguishesDifferentQueries() throws Exception {
+    String base = fingerprint( "{\"sourceId\":\"model1\",\"elements\":[{\"id\":\"el1\"},{\"id\":\"el2\"}]}" );
+
+    assertNotEquals( base, fingerprint( "{\"sourceId\":\"model2\",\"elements\":[{\"id\":\"el1\"},{\"id\":\"el2\"}]}" ) );
+    assertNotEquals( base, fingerprint( "{\"sourceId\":\"model1\",\"elements\":[{\"id\":\"el2\"},{\"id\":\"el1\"}]}" ) );
+    assertNotEquals( base, fingerprint( "{\"sourceId\":\"model1\",\"elements\":[{\"id\":\"el1\"},{\"id\":\"el2\"}],"
+      + "\"conditions\":[{\"elementId\":\"el1\",\"operator\":\"EQUAL\",\"value\":[\"x\"]}]}" ) );
+    assertEquals( 64, base.length() );
+  }
+
+}
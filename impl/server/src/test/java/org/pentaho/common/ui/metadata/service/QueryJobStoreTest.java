@@ -0,0 +1,218 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.pentaho.metadata.datatable.Cell;
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.Row;
+import org.pentaho.metadata.model.thin.Query;
+
+public class QueryJobStoreTest {
+
+  private final ExecutorService executor = new ThreadPoolExecutor( 1, 1, 0, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<Runnable>( 1 ) );
+
+  private final QueryCursorStore cursors = new QueryCursorStore( 0, 0, 5 );
+
+  private final TestFixtures.Clock clock = new TestFixtures.Clock();
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Produces rows until it is told to stop, after the first row waits for the test to release it
+   */
+  private static class EndlessExecutor implements QueryExecutor {
+
+    private final CountDownLatch started = new CountDownLatch( 1 );
+
+    private final CountDownLatch release = new CountDownLatch( 1 );
+
+    private final CountDownLatch stopped = new CountDownLatch( 1 );
+
+    private final int rows;
+
+    EndlessExecutor( int rows ) {
+      this.rows = rows;
+    }
+
+    @Override
+    public boolean execute( Query query, int rowLimit, QueryRowCallback callback ) throws Exception {
+      try {
+        callback.columns( new Column[] { new Column( "c1", "Column 1", "number" ) } );
+        for ( int i = 0; i < rows; i++ ) {
+          if ( !callback.row( new Row( new Cell[] { new Cell( new BigDecimal( i ), null ) } ) ) ) {
+            return true;
+          }
+          if ( i == 0 ) {
+            started.countDown();
+            release.await( 5, TimeUnit.SECONDS );
+          }
+        }
+        return true;
+      } finally {
+        stopped.countDown();
+      }
+    }
+  }
+
+  private static void waitUntilFinished( QueryJob job ) throws InterruptedException {
+    for ( int i = 0; i < 500 && !job.isFinished(); i++ ) {
+      Thread.sleep( 10 );
+    }
+    assertTrue( job.isFinished() );
+  }
+
+  @Test
+  public void runsJobAndHoldsResult() throws Exception {
+    QueryJobStore store = TestFixtures.queryJobStore( clock, executor, 0, 5 );
+    EndlessExecutor queryExecutor = new EndlessExecutor( 3 );
+
+    QueryJob job = store.submit( new Query(), -1, queryExecutor, null, cursors );
+    assertTrue( queryExecutor.started.await( 5, TimeUnit.SECONDS ) );
+    assertEquals( QueryJob.State.RUNNING, store.get( job.getId() ).getState() );
+    assertNull( job.getStatus().getCursor() );
+
+    queryExecutor.release.countDown();
+    waitUntilFinished( job );
+    QueryJobStatus status = job.getStatus();
+    assertEquals( "DONE", status.getState() );
+    assertEquals( 3, status.getRowCount() );
+    assertTrue( status.getComplete() );
+    assertEquals( 3, cursors.getPage( status.getCursor(), 0, 10 ).getTable().getRows().length );
+  }
+
+  @Test
+  public void cancelStopsProvider() throws Exception {
+    QueryJobStore store = TestFixtures.queryJobStore( clock, executor, 0, 5 );
+    EndlessExecutor queryExecutor = new EndlessExecutor( Integer.MAX_VALUE );
+
+    QueryJob job = store.submit( new Query(), -1, queryExecutor, null, cursors );
+    assertTrue( queryExecutor.started.await( 5, TimeUnit.SECONDS ) );
+    assertTrue( store.cancel( job.getId() ) );
+
+    assertTrue( queryExecutor.stopped.await( 5, TimeUnit.SECONDS ) );
+    waitUntilFinished( job );
+    assertEquals( QueryJob.State.CANCELLED, job.getState() );
+    assertNull( job.getCursor() );
+    assertFalse( store.cancel( job.getId() ) );
+    assertEquals( 0, cursors.size() );
+  }
+
+  @Test
+  public void cancelledJobIsRunningUntilProviderStops() throws Exception {
+    QueryJobStore store = TestFixtures.queryJobStore( clock, executor, 0, 5 );
+    CountDownLatch started = new CountDownLatch( 1 );
+    CountDownLatch release = new CountDownLatch( 1 );
+    // a provider that does not notice the interrupt
+    QueryJob job = store.submit( new Query(), -1, ( query, rowLimit, callback ) -> {
+      started.countDown();
+      while ( release.getCount() > 0 ) {
+        try {
+          release.await();
+        } catch ( InterruptedException e ) {
+          // keeps going
+        }
+      }
+      return callback.row( new Row( new Cell[] { new Cell( BigDecimal.ONE, null ) } ) );
+    }, null, cursors );
+    assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+
+    assertTrue( job.cancel() );
+    assertFalse( job.cancel() );
+    assertEquals( QueryJob.State.RUNNING, job.getState() );
+    assertFalse( job.isFinished() );
+
+    release.countDown();
+    waitUntilFinished( job );
+    assertEquals( QueryJob.State.CANCELLED, job.getState() );
+    assertNull( job.getCursor() );
+  }
+
+  @Test
+  public void completedJobCannotBeCancelled() throws Exception {
+    QueryJobStore store = TestFixtures.queryJobStore( clock, executor, 0, 5 );
+    EndlessExecutor queryExecutor = new EndlessExecutor( 1 );
+    queryExecutor.release.countDown();
+
+    QueryJob job = store.submit( new Query(), -1, queryExecutor, null, cursors );
+    waitUntilFinished( job );
+    assertFalse( job.cancel() );
+    assertEquals( QueryJob.State.DONE, job.getState() );
+    assertNotNull( job.getCursor() );
+  }
+
+  @Test
+  public void abandonedJobsAreCancelled() throws Exception {
+    QueryJobStore store = TestFixtures.queryJobStore( clock, executor, 1000, 5 );
+    EndlessExecutor queryExecutor = new EndlessExecutor( Integer.MAX_VALUE );
+
+    QueryJob job = store.submit( new Query(), -1, queryExecutor, null, cursors );
+    assertTrue( queryExecutor.started.await( 5, TimeUnit.SECONDS ) );
+    clock.now += 500;
+    assertNotNull( store.get( job.getId() ) );
+
+    // nobody polls the job any more: the provider is stopped at its next row
+    clock.now += 1001;
+    queryExecutor.release.countDown();
+    assertTrue( queryExecutor.stopped.await( 5, TimeUnit.SECONDS ) );
+    waitUntilFinished( job );
+    assertEquals( QueryJob.State.CANCELLED, job.getState() );
+    assertNull( store.get( job.getId() ) );
+    assertEquals( 0, store.size() );
+  }
+
+  @Test
+  public void refusesJobsWhenQueueIsFull() throws Exception {
+    QueryJobStore store = TestFixtures.queryJobStore( clock, executor, 0, 5 );
+    EndlessExecutor running = new EndlessExecutor( Integer.MAX_VALUE );
+    QueryJob first = store.submit( new Query(), -1, running, null, cursors );
+    assertTrue( running.started.await( 5, TimeUnit.SECONDS ) );
+    QueryJob queued = store.submit( new Query(), -1, new EndlessExecutor( 1 ), null, cursors );
+    assertEquals( QueryJob.State.QUEUED, queued.getState() );
+
+    try {
+      store.submit( new Query(), -1, new EndlessExecutor( 1 ), null, cursors );
+      fail( "Expected the job to be refused" );
+    } catch ( RejectedExecutionException e ) {
+      // expected
+    }
+    assertEquals( 2, store.size() );
+
+    assertTrue( queued.cancel() );
+    assertEquals( QueryJob.State.CANCELLED, queued.getState() );
+    first.cancel();
+    waitUntilFinished( first );
+  }
+
+}
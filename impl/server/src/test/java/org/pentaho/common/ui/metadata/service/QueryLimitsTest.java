@@ -0,0 +1,65 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+public class QueryLimitsTest {
+
+  @Test
+  public void usesDefaultsForOtherUsers() {
+    QueryLimits.Limit defaults = new QueryLimits.Limit( 300000, 1000 );
+    QueryLimits limits = new QueryLimits( defaults, QueryLimits.parseUserLimits( "etl=3600/0" ) );
+
+    assertEquals( 3600000, limits.get( "etl" ).getTimeoutMillis() );
+    assertEquals( 0, limits.get( "etl" ).getMaxRows() );
+    assertEquals( defaults, limits.get( "suzy" ) );
+    assertEquals( defaults, limits.get( null ) );
+  }
+
+  @Test
+  public void parsesUserLimits() {
+    Map<String, QueryLimits.Limit> users = QueryLimits.parseUserLimits( " etl = 3600/0 , kiosk=30/ 10000,," );
+
+    assertEquals( 2, users.size() );
+    assertEquals( 3600000, users.get( "etl" ).getTimeoutMillis() );
+    assertEquals( 30000, users.get( "kiosk" ).getTimeoutMillis() );
+    assertEquals( 10000, users.get( "kiosk" ).getMaxRows() );
+  }
+
+  @Test
+  public void skipsMalformedUserLimits() {
+    Map<String, QueryLimits.Limit> users =
+        QueryLimits.parseUserLimits( "etl=3600,=30/10,kiosk=x/10,admin/10=5,suzy=60/100" );
+
+    assertEquals( 1, users.size() );
+    assertEquals( 100, users.get( "suzy" ).getMaxRows() );
+    assertTrue( QueryLimits.parseUserLimits( null ).isEmpty() );
+  }
+
+  @Test
+  public void executesOneRowMoreThanTheMaximum() {
+    QueryLimits.Limit limit = new QueryLimits.Limit( 0, 1000 );
+    assertEquals( 1001, limit.getExecutedRowLimit( -1 ) );
+    assertEquals( 1001, limit.getExecutedRowLimit( 5000 ) );
+    assertEquals( 10, limit.getExecutedRowLimit( 10 ) );
+    assertEquals( -1, new QueryLimits.Limit( 0, 0 ).getExecutedRowLimit( -1 ) );
+  }
+
+}
@@ -0,0 +1,128 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.pentaho.metadata.datatable.DataTable;
+import org.pentaho.metadata.model.thin.Query;
+
+public class QueryResultCacheTest {
+
+  private final TestFixtures.Clock clock = new TestFixtures.Clock();
+
+  private static Query createQuery( String sourceId ) {
+    Query query = new Query();
+    query.setSourceId( sourceId );
+    return query;
+  }
+
+  @Test
+  public void expiresEntries() {
+    QueryResultCache cache = TestFixtures.queryResultCache( clock, 1000, 0, 0, 10 );
+    DataTable table = TestFixtures.createTable( 1 );
+    cache.put( "key", "model1", table, 100, 0 );
+
+    clock.now += 1000;
+    assertSame( table, cache.get( "key" ) );
+    clock.now += 1;
+    assertNull( cache.get( "key" ) );
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsedEntries() {
+    QueryResultCache cache = TestFixtures.queryResultCache( clock, 0, 300, 150, 2 );
+    cache.put( "first", "model1", TestFixtures.createTable( 1 ), 100, 0 );
+    cache.put( "second", "model1", TestFixtures.createTable( 1 ), 100, 0 );
+    cache.get( "first" );
+    cache.put( "third", "model1", TestFixtures.createTable( 1 ), 100, 0 );
+
+    assertNotNull( cache.get( "first" ) );
+    assertNull( cache.get( "second" ) );
+    assertNotNull( cache.get( "third" ) );
+
+    cache.put( "too big", "model1", TestFixtures.createTable( 1 ), 200, 0 );
+    assertNull( cache.get( "too big" ) );
+    assertEquals( 1L, cache.getStatistics().get( "evictions" ) );
+  }
+
+  @Test
+  public void invalidatesByDomain() {
+    QueryResultCache cache = TestFixtures.queryResultCache( clock, 0, 0, 0, 10 );
+    cache.put( "a", "provider~domain1~model1", TestFixtures.createTable( 1 ), 100, 0 );
+    cache.put( "b", "provider~domain2~model1", TestFixtures.createTable( 1 ), 100, 0 );
+    cache.put( "c", "provider~domain10~domain1", TestFixtures.createTable( 1 ), 100, 0 );
+
+    assertEquals( 1, cache.invalidate( "domain1" ) );
+    assertNull( cache.get( "a" ) );
+    assertNotNull( cache.get( "b" ) );
+    assertNotNull( cache.get( "c" ) );
+    assertEquals( 200L, cache.getStatistics().get( "bytes" ) );
+  }
+
+  @Test
+  public void executorServesRepeatedQueriesFromCache() throws Exception {
+    QueryResultCache cache = TestFixtures.queryResultCache( clock, 0, 0, 0, 10 );
+    CountingExecutor delegate = new CountingExecutor( TestFixtures.createTable( 3 ) );
+
+    DataTableCollector first = new DataTableCollector( -1, 0 );
+    new CachingQueryExecutor( cache, "user=a", delegate ).execute( createQuery( "model1" ), -1, first );
+    DataTableCollector second = new DataTableCollector( -1, 0 );
+    new CachingQueryExecutor( cache, "user=a", delegate ).execute( createQuery( "model1" ), -1, second );
+
+    assertEquals( 1, delegate.executions );
+    assertEquals( 3, second.getRowCount() );
+    assertEquals( 1L, cache.getStatistics().get( "hits" ) );
+
+    // another security context does not share the result
+    new CachingQueryExecutor( cache, "user=b", delegate ).execute( createQuery( "model1" ), -1,
+        new DataTableCollector( -1, 0 ) );
+    assertEquals( 2, delegate.executions );
+  }
+
+  @Test
+  public void executorDoesNotCacheAbandonedResults() throws Exception {
+    QueryResultCache cache = TestFixtures.queryResultCache( clock, 0, 0, 0, 10 );
+    CountingExecutor delegate = new CountingExecutor( TestFixtures.createTable( 3 ) );
+
+    new CachingQueryExecutor( cache, "", delegate ).execute( createQuery( "model1" ), -1,
+        new DataTableCollector( 1, 0 ) );
+    new CachingQueryExecutor( cache, "", delegate ).execute( createQuery( "model1" ), -1,
+        new DataTableCollector( -1, 0 ) );
+
+    assertEquals( 2, delegate.executions );
+  }
+
+  private static class CountingExecutor implements QueryExecutor {
+
+    private final DataTable table;
+
+    private int executions;
+
+    CountingExecutor( DataTable table ) {
+      this.table = table;
+    }
+
+    @Override
+    public boolean execute( Query query, int rowLimit, QueryRowCallback callback ) throws Exception {
+      executions++;
+      return StreamingQueryExecutor.replay( table, callback );
+    }
+  }
+
+}
@@ -0,0 +1,176 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.Row;
+
+public class RequestMetricsTest {
+
+  private static final long MILLIS = 1000000L;
+
+  private long now = 1000 * MILLIS;
+
+  private RequestMetrics createMetrics( long slowRequestMillis ) {
+    return new RequestMetrics( slowRequestMillis, "listmodels", "query" ) {
+      @Override
+      protected long nanoTime() {
+        return now;
+      }
+    };
+  }
+
+  @Test
+  public void splitsRequestsIntoPhases() throws Exception {
+    RequestMetrics metrics = createMetrics( 0 );
+    RequestTimer timer = metrics.start( "query" );
+    now += 10 * MILLIS;
+    timer.phase( RequestTimer.Phase.EXECUTE );
+    QueryRowCallback callback = timer.serializing( new QueryRowCallback() {
+      @Override
+      public void columns( Column[] columns ) {
+        now += 3 * MILLIS;
+      }
+
+      @Override
+      public boolean row( Row row ) {
+        now += 2 * MILLIS;
+        return true;
+      }
+    } );
+    now += 20 * MILLIS;
+    callback.columns( new Column[0] );
+    callback.row( new Row() );
+    now += 20 * MILLIS;
+    timer.phase( RequestTimer.Phase.SERIALIZE );
+    OutputStream output = timer.count( new ByteArrayOutputStream() );
+    output.write( new byte[100], 10, 50 );
+    output.write( 1 );
+    now += 5 * MILLIS;
+    timer.addRows( 1 );
+    timer.succeeded();
+    timer.finish();
+    timer.finish();
+
+    Map<String, Long> counters = metrics.getCounters();
+    assertEquals( 1L, (long) counters.get( "query.requests" ) );
+    assertEquals( 0L, (long) counters.get( "query.errors" ) );
+    assertEquals( 10 * MILLIS, (long) counters.get( "query.parse.nanos" ) );
+    assertEquals( 40 * MILLIS, (long) counters.get( "query.execute.nanos" ) );
+    assertEquals( 10 * MILLIS, (long) counters.get( "query.serialize.nanos" ) );
+    assertEquals( 60 * MILLIS, (long) counters.get( "query.total.nanos" ) );
+    assertEquals( 1L, (long) counters.get( "query.rows" ) );
+    assertEquals( 51L, (long) counters.get( "query.bytes" ) );
+    assertEquals( 0L, (long) counters.get( "listmodels.requests" ) );
+  }
+
+  @Test
+  public void keepsPhasesOfRequestThreadOverLateCallbacks() throws Exception {
+    RequestMetrics metrics = createMetrics( 0 );
+    RequestTimer timer = metrics.start( "query" );
+    timer.phase( RequestTimer.Phase.EXECUTE );
+    // the request thread gives up on the query and writes its response while a row is still being written
+    QueryRowCallback callback = timer.serializing( new QueryRowCallback() {
+      @Override
+      public void columns( Column[] columns ) {
+      }
+
+      @Override
+      public boolean row( Row row ) {
+        now += 2 * MILLIS;
+        timer.phase( RequestTimer.Phase.SERIALIZE );
+        now += 3 * MILLIS;
+        return true;
+      }
+    } );
+    now += 10 * MILLIS;
+    callback.row( new Row() );
+    now += 5 * MILLIS;
+    assertEquals( RequestTimer.Phase.SERIALIZE, timer.phase( RequestTimer.Phase.SERIALIZE ) );
+    timer.finish();
+    // rows written after the request ended are not charged to it
+    now += 100 * MILLIS;
+    callback.row( new Row() );
+
+    Map<String, Long> counters = metrics.getCounters();
+    assertEquals( 10 * MILLIS, (long) counters.get( "query.execute.nanos" ) );
+    assertEquals( 10 * MILLIS, (long) counters.get( "query.serialize.nanos" ) );
+    assertEquals( 20 * MILLIS, (long) counters.get( "query.total.nanos" ) );
+  }
+
+  @Test
+  public void ignoresUntimedActions() throws Exception {
+    RequestMetrics metrics = createMetrics( 0 );
+    OutputStream output = new ByteArrayOutputStream();
+    for ( String action : new String[] { "page", null } ) {
+      RequestTimer timer = metrics.start( action );
+      assertSame( output, timer.count( output ) );
+      timer.finish();
+    }
+    for ( long value : metrics.getCounters().values() ) {
+      assertEquals( 0L, value );
+    }
+  }
+
+  @Test
+  public void countsSlowRequestsAndErrors() {
+    RequestMetrics metrics = createMetrics( 1000 );
+    RequestTimer timer = metrics.start( "listmodels" );
+    timer.setSubject( "providerid test" );
+    now += 1500 * MILLIS;
+    timer.finish();
+    timer = metrics.start( "listmodels" );
+    now += 999 * MILLIS;
+    timer.succeeded();
+    timer.finish();
+
+    Map<String, Long> counters = metrics.getCounters();
+    assertEquals( 2L, (long) counters.get( "listmodels.requests" ) );
+    assertEquals( 1L, (long) counters.get( "listmodels.errors" ) );
+    assertEquals( 1L, (long) counters.get( "listmodels.slowRequests" ) );
+    assertEquals( 1500 * MILLIS, (long) counters.get( "listmodels.total.maxNanos" ) );
+
+    String text = metrics.getText();
+    assertTrue( text, text.contains( "metadata_slow_requests_total{action=\"listmodels\"} 1\n" ) );
+    assertTrue( text, text.contains( "metadata_request_seconds_bucket{action=\"listmodels\",le=\"0.5\"} 0\n" ) );
+    assertTrue( text, text.contains( "metadata_request_seconds_bucket{action=\"listmodels\",le=\"1.0\"} 1\n" ) );
+    assertTrue( text, text.contains( "metadata_request_seconds_bucket{action=\"listmodels\",le=\"+Inf\"} 2\n" ) );
+    assertTrue( text, text.contains( "metadata_request_seconds_count{action=\"listmodels\"} 2\n" ) );
+
+    metrics.reset();
+    assertEquals( 0L, (long) metrics.getCounters().get( "listmodels.requests" ) );
+  }
+
+  @Test
+  public void registersWithJmx() throws Exception {
+    RequestMetrics.getInstance();
+    ObjectName name = new ObjectName( RequestMetrics.OBJECT_NAME );
+    assertTrue( ManagementFactory.getPlatformMBeanServer().isRegistered( name ) );
+    assertFalse( ManagementFactory.getPlatformMBeanServer().getAttribute( name, "Text" ).toString().isEmpty() );
+  }
+
+}
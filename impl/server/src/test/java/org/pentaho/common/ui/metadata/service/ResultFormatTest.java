@@ -0,0 +1,91 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+
+import org.junit.Test;
+import org.pentaho.metadata.datatable.Cell;
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.DataTable;
+import org.pentaho.metadata.datatable.Row;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ResultFormatTest {
+
+  private static DataTable createTable( int rowCount ) {
+    DataTable table = new DataTable();
+    table.setCols( new Column[] { new Column( "c1", "Column 1", "string" ), new Column( "c2", "Column 2", "number" ) } );
+    Row[] rows = new Row[ rowCount ];
+    for ( int i = 0; i < rowCount; i++ ) {
+      rows[ i ] = new Row( new Cell[] {
+        new Cell( null, i % 3 == 0 ? null : "value \u00e9 " + i ),
+        new Cell( new BigDecimal( "12345678901234567890.0123456789" ).add( new BigDecimal( i ) ), null ) } );
+    }
+    table.setRows( rows );
+    return table;
+  }
+
+  private static byte[] write( ResultFormat format, DataTable table ) throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    DataTableJsonWriter writer = new DataTableJsonWriter( format.getMapper(), output, -1, 10 );
+    StreamingQueryExecutor.replay( table, writer );
+    writer.finish();
+    return output.toByteArray();
+  }
+
+  @Test
+  public void binaryFormatsRoundTripLikeJson() throws Exception {
+    DataTable table = createTable( 25 );
+    ObjectMapper json = ResultFormat.JSON.getMapper();
+    String expected = json.writeValueAsString( json.readValue( write( ResultFormat.JSON, table ), DataTable.class ) );
+
+    for ( ResultFormat format : new ResultFormat[] { ResultFormat.SMILE, ResultFormat.CBOR } ) {
+      byte[] bytes = write( format, table );
+      DataTable decoded = format.getMapper().readValue( bytes, DataTable.class );
+      assertEquals( format.getName(), expected, json.writeValueAsString( decoded ) );
+      assertEquals( table.getRows()[ 7 ].getC()[ 1 ].getV(), decoded.getRows()[ 7 ].getC()[ 1 ].getV() );
+    }
+  }
+
+  @Test
+  public void binaryFormatsWriteMissingTableAsNull() throws Exception {
+    for ( ResultFormat format : ResultFormat.values() ) {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      DataTableJsonWriter writer = new DataTableJsonWriter( format.getMapper(), output, -1, 10 );
+      writer.finish();
+      assertNull( format.getMapper().readValue( output.toByteArray(), DataTable.class ) );
+    }
+  }
+
+  @Test
+  public void negotiatesFormat() {
+    assertEquals( ResultFormat.JSON, ResultFormat.negotiate( null, null ) );
+    assertEquals( ResultFormat.JSON, ResultFormat.negotiate( null, "*/*" ) );
+    assertEquals( ResultFormat.JSON, ResultFormat.negotiate( null, "text/html, application/xml" ) );
+    assertEquals( ResultFormat.SMILE, ResultFormat.negotiate( null, "application/x-jackson-smile" ) );
+    assertEquals( ResultFormat.CBOR, ResultFormat.negotiate( null, "application/json;q=0.5, application/cbor" ) );
+    assertEquals( ResultFormat.SMILE,
+        ResultFormat.negotiate( null, "application/cbor;q=0.2, Application/X-Jackson-Smile;q=0.8, */*;q=0.1" ) );
+    assertEquals( ResultFormat.JSON, ResultFormat.negotiate( null, "application/cbor;q=0" ) );
+    assertEquals( ResultFormat.CBOR, ResultFormat.negotiate( "cbor", "application/x-jackson-smile" ) );
+    assertEquals( ResultFormat.JSON, ResultFormat.negotiate( "arrow", "application/cbor" ) );
+  }
+
+}
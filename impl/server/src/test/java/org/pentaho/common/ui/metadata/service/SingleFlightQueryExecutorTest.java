@@ -0,0 +1,297 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.pentaho.metadata.datatable.Cell;
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.DataTable;
+import org.pentaho.metadata.datatable.Row;
+import org.pentaho.metadata.model.thin.Query;
+
+public class SingleFlightQueryExecutorTest {
+
+  private final ExecutorService threads = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    threads.shutdownNow();
+  }
+
+  private static Query createQuery() {
+    Query query = new Query();
+    query.setSourceId( "test source" );
+    return query;
+  }
+
+  /**
+   * Produces the given number of rows, waiting for the test to release it after the first one
+   */
+  private static class BlockingExecutor implements QueryExecutor {
+
+    private final CountDownLatch started = new CountDownLatch( 1 );
+
+    private final CountDownLatch release = new CountDownLatch( 1 );
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private final AtomicInteger produced = new AtomicInteger();
+
+    private final int rows;
+
+    private Exception failure;
+
+    BlockingExecutor( int rows ) {
+      this.rows = rows;
+    }
+
+    @Override
+    public boolean execute( Query query, int rowLimit, QueryRowCallback callback ) throws Exception {
+      executions.incrementAndGet();
+      callback.columns( new Column[] { new Column( "c1", "Column 1", "number" ) } );
+      for ( int i = 0; i < rows; i++ ) {
+        produced.incrementAndGet();
+        if ( !callback.row( new Row( new Cell[] { new Cell( new BigDecimal( i ), null ) } ) ) ) {
+          break;
+        }
+        if ( i == 0 && started.getCount() > 0 ) {
+          started.countDown();
+          release.await( 5, TimeUnit.SECONDS );
+          if ( failure != null ) {
+            throw failure;
+          }
+        }
+      }
+      return true;
+    }
+  }
+
+  private Future<DataTable> submit( final QueryExecutor executor, final int maxRows ) {
+    return threads.submit( new Callable<DataTable>() {
+      @Override
+      public DataTable call() throws Exception {
+        DataTableCollector collector = new DataTableCollector( maxRows, -1 );
+        executor.execute( createQuery(), -1, collector );
+        return collector.getTable();
+      }
+    } );
+  }
+
+  private static void waitForCoalesced( InFlightQueries flights, long coalesced ) throws InterruptedException {
+    for ( int i = 0; i < 500 && !Long.valueOf( coalesced ).equals( flights.getStatistics().get( "coalesced" ) ); i++ ) {
+      Thread.sleep( 10 );
+    }
+    assertEquals( coalesced, flights.getStatistics().get( "coalesced" ) );
+  }
+
+  @Test
+  public void sharesOneExecution() throws Exception {
+    InFlightQueries flights = new InFlightQueries( true, -1 );
+    BlockingExecutor delegate = new BlockingExecutor( 5 );
+
+    Future<DataTable> first = submit( new SingleFlightQueryExecutor( flights, "joe", delegate ), -1 );
+    assertTrue( delegate.started.await( 5, TimeUnit.SECONDS ) );
+    Future<DataTable> second = submit( new SingleFlightQueryExecutor( flights, "joe", delegate ), -1 );
+    Future<DataTable> third = submit( new SingleFlightQueryExecutor( flights, "joe", delegate ), -1 );
+    waitForCoalesced( flights, 2 );
+
+    delegate.release.countDown();
+    assertEquals( 5, first.get( 5, TimeUnit.SECONDS ).getRows().length );
+    assertEquals( 5, second.get( 5, TimeUnit.SECONDS ).getRows().length );
+    assertEquals( 5, third.get( 5, TimeUnit.SECONDS ).getRows().length );
+    assertEquals( 1, delegate.executions.get() );
+    assertEquals( 0, flights.size() );
+  }
+
+  @Test
+  public void doesNotShareBetweenSecurityContexts() throws Exception {
+    InFlightQueries flights = new InFlightQueries( true, -1 );
+    BlockingExecutor delegate = new BlockingExecutor( 2 );
+
+    Future<DataTable> first = submit( new SingleFlightQueryExecutor( flights, "joe", delegate ), -1 );
+    assertTrue( delegate.started.await( 5, TimeUnit.SECONDS ) );
+    DataTableCollector collector = new DataTableCollector( -1, -1 );
+    new SingleFlightQueryExecutor( flights, "suzy", delegate ).execute( createQuery(), -1, collector );
+
+    delegate.release.countDown();
+    first.get( 5, TimeUnit.SECONDS );
+    assertEquals( 2, delegate.executions.get() );
+    assertEquals( 0L, flights.getStatistics().get( "coalesced" ) );
+  }
+
+  @Test
+  public void propagatesErrors() throws Exception {
+    InFlightQueries flights = new InFlightQueries( true, -1 );
+    BlockingExecutor delegate = new BlockingExecutor( 5 );
+    delegate.failure = new IllegalStateException( "test failure" );
+
+    Future<DataTable> first = submit( new SingleFlightQueryExecutor( flights, "joe", delegate ), -1 );
+    assertTrue( delegate.started.await( 5, TimeUnit.SECONDS ) );
+    Future<DataTable> second = submit( new SingleFlightQueryExecutor( flights, "joe", delegate ), -1 );
+    waitForCoalesced( flights, 1 );
+
+    delegate.release.countDown();
+    for ( Future<DataTable> future : new Future[] { first, second } ) {
+      try {
+        future.get( 5, TimeUnit.SECONDS );
+        fail( "Expected the query to fail" );
+      } catch ( ExecutionException e ) {
+        assertSame( delegate.failure, e.getCause() );
+      }
+    }
+    assertEquals( 1, delegate.executions.get() );
+  }
+
+  @Test
+  public void waitingQueriesExecuteThemselvesWhenFirstIsRejected() throws Exception {
+    InFlightQueries flights = new InFlightQueries( true, -1 );
+    BlockingExecutor delegate = new BlockingExecutor( 5 );
+    delegate.failure = new QueryRejectedException( "Query queue is full", 1 );
+
+    Future<DataTable> first = submit( new SingleFlightQueryExecutor( flights, "joe", delegate ), -1 );
+    assertTrue( delegate.started.await( 5, TimeUnit.SECONDS ) );
+    Future<DataTable> second = submit( new SingleFlightQueryExecutor( flights, "joe", delegate ), -1 );
+    waitForCoalesced( flights, 1 );
+
+    delegate.release.countDown();
+    try {
+      first.get( 5, TimeUnit.SECONDS );
+      fail( "Expected the first query to be rejected" );
+    } catch ( ExecutionException e ) {
+      assertSame( delegate.failure, e.getCause() );
+    }
+    assertEquals( 5, second.get( 5, TimeUnit.SECONDS ).getRows().length );
+    assertEquals( 2, delegate.executions.get() );
+    assertEquals( 1L, flights.getStatistics().get( "fallbacks" ) );
+  }
+
+  @Test
+  public void passesTruncationOnWithoutSharingIt() throws Exception {
+    InFlightQueries flights = new InFlightQueries( true, -1 );
+    CountDownLatch started = new CountDownLatch( 1 );
+    CountDownLatch release = new CountDownLatch( 1 );
+    AtomicInteger executions = new AtomicInteger();
+    // the first execution is cut short by the limits of its caller, the others are not
+    QueryExecutor delegate = ( query, rowLimit, callback ) -> {
+      boolean first = executions.incrementAndGet() == 1;
+      callback.columns( new Column[] { new Column( "c1", "Column 1", "number" ) } );
+      callback.row( new Row( new Cell[] { new Cell( BigDecimal.ONE, null ) } ) );
+      if ( first ) {
+        started.countDown();
+        release.await( 5, TimeUnit.SECONDS );
+        callback.truncated( QueryLimits.Truncation.TIMEOUT );
+      } else {
+        callback.row( new Row( new Cell[] { new Cell( BigDecimal.TEN, null ) } ) );
+      }
+      return true;
+    };
+
+    DataTableCollector collector = new DataTableCollector( -1, -1 );
+    Future<Boolean> first = threads.submit(
+        () -> new SingleFlightQueryExecutor( flights, "joe", delegate ).execute( createQuery(), -1, collector ) );
+    assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+    Future<DataTable> second = submit( new SingleFlightQueryExecutor( flights, "joe", delegate ), -1 );
+    waitForCoalesced( flights, 1 );
+
+    release.countDown();
+    first.get( 5, TimeUnit.SECONDS );
+    assertTrue( collector.isTruncated() );
+    assertEquals( 1, collector.getRowCount() );
+    assertEquals( 2, second.get( 5, TimeUnit.SECONDS ).getRows().length );
+    assertEquals( 2, executions.get() );
+  }
+
+  @Test
+  public void keepsRunningForWaitingQueries() throws Exception {
+    InFlightQueries flights = new InFlightQueries( true, -1 );
+    BlockingExecutor delegate = new BlockingExecutor( 10 );
+
+    // the first caller only wants 2 rows
+    Future<DataTable> first = submit( new SingleFlightQueryExecutor( flights, "joe", delegate ), 2 );
+    assertTrue( delegate.started.await( 5, TimeUnit.SECONDS ) );
+    Future<DataTable> second = submit( new SingleFlightQueryExecutor( flights, "joe", delegate ), -1 );
+    waitForCoalesced( flights, 1 );
+
+    delegate.release.countDown();
+    assertEquals( 2, first.get( 5, TimeUnit.SECONDS ).getRows().length );
+    assertEquals( 10, second.get( 5, TimeUnit.SECONDS ).getRows().length );
+    assertEquals( 1, delegate.executions.get() );
+    assertEquals( 10, delegate.produced.get() );
+  }
+
+  @Test
+  public void stopsWhenNoOneIsLeft() throws Exception {
+    InFlightQueries flights = new InFlightQueries( true, -1 );
+    BlockingExecutor delegate = new BlockingExecutor( 10 );
+    delegate.release.countDown();
+
+    DataTableCollector collector = new DataTableCollector( 3, -1 );
+    new SingleFlightQueryExecutor( flights, "joe", delegate ).execute( createQuery(), -1, collector );
+
+    assertEquals( 3, collector.getRowCount() );
+    assertEquals( 4, delegate.produced.get() );
+  }
+
+  @Test
+  public void waitingQueriesExecuteThemselvesWhenResultIsTooLarge() throws Exception {
+    InFlightQueries flights = new InFlightQueries( true, 1 );
+    BlockingExecutor delegate = new BlockingExecutor( 3 );
+
+    Future<DataTable> first = submit( new SingleFlightQueryExecutor( flights, "joe", delegate ), -1 );
+    assertTrue( delegate.started.await( 5, TimeUnit.SECONDS ) );
+    Future<DataTable> second = submit( new SingleFlightQueryExecutor( flights, "joe", delegate ), -1 );
+    waitForCoalesced( flights, 1 );
+
+    delegate.release.countDown();
+    assertEquals( 3, first.get( 5, TimeUnit.SECONDS ).getRows().length );
+    assertEquals( 3, second.get( 5, TimeUnit.SECONDS ).getRows().length );
+    assertEquals( 2, delegate.executions.get() );
+    assertEquals( 1L, flights.getStatistics().get( "fallbacks" ) );
+  }
+
+  @Test
+  public void waitingQueriesExecuteThemselvesWhenExecutionHangs() throws Exception {
+    InFlightQueries flights = new InFlightQueries( true, -1 );
+    BlockingExecutor delegate = new BlockingExecutor( 3 );
+
+    Future<DataTable> first = submit( new SingleFlightQueryExecutor( flights, "joe", delegate ), -1 );
+    assertTrue( delegate.started.await( 5, TimeUnit.SECONDS ) );
+    // the first execution stays blocked until the second one has given up waiting for it
+    Future<DataTable> second = submit( new SingleFlightQueryExecutor( flights, "joe", 50, delegate ), -1 );
+    assertEquals( 3, second.get( 5, TimeUnit.SECONDS ).getRows().length );
+    assertEquals( 1L, flights.getStatistics().get( "waitTimeouts" ) );
+
+    delegate.release.countDown();
+    assertEquals( 3, first.get( 5, TimeUnit.SECONDS ).getRows().length );
+    assertEquals( 2, delegate.executions.get() );
+    assertEquals( 0, flights.size() );
+  }
+
+}
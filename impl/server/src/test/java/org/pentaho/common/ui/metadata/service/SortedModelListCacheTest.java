@@ -0,0 +1,124 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.pentaho.common.ui.metadata.model.impl.ModelInfoComparator;
+import org.pentaho.metadata.model.thin.ModelInfo;
+import org.pentaho.metadata.model.thin.Provider;
+
+public class SortedModelListCacheTest {
+
+  private static final Comparator<ModelInfo> ORDER =
+      ModelInfoComparator.getInstance( Locale.ENGLISH ).forThinModels();
+
+  private final TestFixtures.Clock clock = new TestFixtures.Clock();
+
+  private static ModelInfo createModelInfo( String modelId, String name ) {
+    Provider provider = new Provider();
+    provider.setId( "provider1" );
+    ModelInfo info = new ModelInfo();
+    info.setProvider( provider );
+    info.setGroupId( "group1" );
+    info.setModelId( modelId );
+    info.setName( name );
+    return info;
+  }
+
+  private static String[] names( ModelInfo[] models ) {
+    String[] names = new String[ models.length ];
+    for ( int i = 0; i < models.length; i++ ) {
+      names[ i ] = models[ i ].getName();
+    }
+    return names;
+  }
+
+  @Test
+  public void sortsAndCachesLists() {
+    SortedModelListCache cache = TestFixtures.sortedModelListCache( clock, 0, 10 );
+    assertNull( cache.get( "list1" ) );
+    ModelInfo[] sorted = cache.update( "list1", new ModelInfo[] { createModelInfo( "c", "Cost" ),
+      createModelInfo( "a", "Accounts" ), createModelInfo( "b", "Budget" ) }, ORDER );
+    assertArrayEquals( new String[] { "Accounts", "Budget", "Cost" }, names( sorted ) );
+    assertSame( sorted, cache.get( "list1" ) );
+  }
+
+  @Test
+  public void mergesChangedModelsIntoPreviousOrder() {
+    ModelInfo[] previous = SortedModelListCache.merge( null, new ModelInfo[] { createModelInfo( "a", "Accounts" ),
+      createModelInfo( "b", "Budget" ), createModelInfo( "c", "Cost" ), createModelInfo( "d", "Debts" ) }, ORDER );
+
+    AtomicInteger comparisons = new AtomicInteger();
+    Comparator<ModelInfo> counting = ( model1, model2 ) -> {
+      comparisons.incrementAndGet();
+      return ORDER.compare( model1, model2 );
+    };
+    ModelInfo budget = createModelInfo( "b", "Budget" );
+    ModelInfo[] sorted = SortedModelListCache.merge( previous, new ModelInfo[] { createModelInfo( "d", "Debts" ),
+      createModelInfo( "e", "Capital" ), budget, createModelInfo( "a", "Zones" ) }, counting );
+    // Cost was removed, Zones renamed and Capital added
+    assertArrayEquals( new String[] { "Budget", "Capital", "Debts", "Zones" }, names( sorted ) );
+    assertSame( budget, sorted[ 0 ] );
+    // one comparison to sort the two changed models, and at most one per model to merge them
+    assertTrue( comparisons.get() <= 1 + sorted.length );
+  }
+
+  @Test
+  public void keepsModelsWithTheSameId() {
+    ModelInfo[] sorted = SortedModelListCache.merge( null, new ModelInfo[] { createModelInfo( "a", "Budget" ),
+      createModelInfo( "a", "Accounts" ), null }, ORDER );
+    assertArrayEquals( new String[] { "Accounts", "Budget" }, names( sorted ) );
+    assertEquals( 0, SortedModelListCache.merge( null, null, ORDER ).length );
+  }
+
+  @Test
+  public void expiresAndInvalidatesLists() {
+    SortedModelListCache cache = TestFixtures.sortedModelListCache( clock, 100, 10 );
+    cache.update( "list1", new ModelInfo[] { createModelInfo( "a", "Accounts" ) }, ORDER );
+    clock.now += 101;
+    assertNull( cache.get( "list1" ) );
+
+    cache.update( "list1", new ModelInfo[] { createModelInfo( "a", "Accounts" ) }, ORDER );
+    assertEquals( 1, cache.get( "list1" ).length );
+    assertEquals( 1, cache.invalidate( "domain1" ) );
+    assertNull( cache.get( "list1" ) );
+    // an invalidated list is kept to merge the reloaded models with
+    assertEquals( 1, cache.size() );
+
+    cache.invalidateAll();
+    assertEquals( 0, cache.size() );
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsedLists() {
+    SortedModelListCache cache = TestFixtures.sortedModelListCache( clock, 0, 2 );
+    cache.update( "list1", new ModelInfo[ 0 ], ORDER );
+    cache.update( "list2", new ModelInfo[ 0 ], ORDER );
+    cache.get( "list1" );
+    cache.update( "list3", new ModelInfo[ 0 ], ORDER );
+    assertEquals( 2, cache.size() );
+    assertNull( cache.get( "list2" ) );
+  }
+
+}
@@ -0,0 +1,133 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import java.math.BigDecimal;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+import org.pentaho.metadata.datatable.Cell;
+import org.pentaho.metadata.datatable.Column;
+import org.pentaho.metadata.datatable.DataTable;
+import org.pentaho.metadata.datatable.Row;
+
+/**
+ * Fixtures shared by the cache and store tests: results to cache, and caches and stores that read the time from a
+ * {@link Clock} the test moves forward.
+ */
+public class TestFixtures {
+
+  /**
+   * The time seen by the caches and stores of a test
+   */
+  public static class Clock {
+
+    public volatile long now = 1000;
+  }
+
+  private TestFixtures() {
+  }
+
+  /**
+   * Returns a result with one numeric column holding the numbers from 0
+   *
+   * @param rowCount
+   * @return
+   */
+  public static DataTable createTable( int rowCount ) {
+    DataTable table = new DataTable();
+    table.setCols( new Column[] { new Column( "c1", "Column 1", "number" ) } );
+    Row[] rows = new Row[ rowCount ];
+    for ( int i = 0; i < rowCount; i++ ) {
+      rows[ i ] = new Row( new Cell[] { new Cell( new BigDecimal( i ), null ) } );
+    }
+    table.setRows( rows );
+    return table;
+  }
+
+  public static QueryResultCache queryResultCache( Clock clock, long ttlMillis, long maxBytes, long maxEntryBytes,
+      int maxEntries ) {
+    return new QueryResultCache( true, ttlMillis, maxBytes, maxEntryBytes, maxEntries ) {
+      @Override
+      protected long currentTimeMillis() {
+        return clock.now;
+      }
+    };
+  }
+
+  public static ModelResponseCache modelResponseCache( Clock clock, long ttlMillis, int maxEntries, long maxBytes ) {
+    return new ModelResponseCache( true, ttlMillis, maxEntries, maxBytes ) {
+      @Override
+      protected long currentTimeMillis() {
+        return clock.now;
+      }
+    };
+  }
+
+  public static ModelIndexCache modelIndexCache( Clock clock, boolean enabled, long ttlMillis, int maxEntries ) {
+    return new ModelIndexCache( enabled, ttlMillis, maxEntries ) {
+      @Override
+      protected long currentTimeMillis() {
+        return clock.now;
+      }
+    };
+  }
+
+  public static SortedModelListCache sortedModelListCache( Clock clock, long ttlMillis, int maxEntries ) {
+    return new SortedModelListCache( true, ttlMillis, maxEntries ) {
+      @Override
+      protected long currentTimeMillis() {
+        return clock.now;
+      }
+    };
+  }
+
+  public static ColumnValueCache columnValueCache( Clock clock, long ttlMillis, long refreshMillis, int maxEntries,
+      Executor refresher ) {
+    return new ColumnValueCache( ttlMillis, refreshMillis, maxEntries, 100, refresher ) {
+      @Override
+      protected long currentTimeMillis() {
+        return clock.now;
+      }
+    };
+  }
+
+  public static QueryCursorStore queryCursorStore( Clock clock, long ttlMillis, long maxBytes, int maxResults ) {
+    return new QueryCursorStore( ttlMillis, maxBytes, maxResults ) {
+      @Override
+      protected long currentTimeMillis() {
+        return clock.now;
+      }
+    };
+  }
+
+  public static PreparedQueryStore preparedQueryStore( Clock clock, long ttlMillis, int maxQueries ) {
+    return new PreparedQueryStore( ttlMillis, maxQueries ) {
+      @Override
+      protected long currentTimeMillis() {
+        return clock.now;
+      }
+    };
+  }
+
+  public static QueryJobStore queryJobStore( Clock clock, ExecutorService executor, long ttlMillis, int maxJobs ) {
+    return new QueryJobStore( executor, ttlMillis, maxJobs ) {
+      @Override
+      protected long currentTimeMillis() {
+        return clock.now;
+      }
+    };
+  }
+
+}
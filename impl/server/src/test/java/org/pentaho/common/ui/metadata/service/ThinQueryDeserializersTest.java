@@ -0,0 +1,309 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package org.pentaho.common.ui.metadata.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.pentaho.metadata.model.thin.Query;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.exc.InvalidTypeIdException;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Checks the streaming query deserializers against the annotation driven mapper they replaced, on randomly generated
+ * payloads: property order, legacy and modern type ids, aliases, nulls, unexpected value shapes and unknown
+ * properties. Both mappers have to either produce the same query or both reject the payload.
+ */
+public class ThinQueryDeserializersTest {
+
+  private static final int PAYLOADS = 5000;
+
+  private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+  private static final ObjectMapper REFERENCE = DataBindingQueryMapper.create();
+
+  private static final ObjectMapper STREAMING = MetadataModelsContentGenerator.createQueryObjectMapper();
+
+  private static final ObjectMapper CANONICAL = JsonMapper.builder()
+      .enable( MapperFeature.SORT_PROPERTIES_ALPHABETICALLY )
+      .enable( SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS )
+      .build();
+
+  private static final String[] UNRELATED_TYPES = { "java.lang.Runtime", "org.pentaho.metadata.model.thin.Model",
+    "", "Query" };
+
+  private final Random random = new Random( 20260601L );
+
+  @Test
+  public void matchesDataBindingOnRandomPayloads() throws Exception {
+    int accepted = 0;
+    for ( int i = 0; i < PAYLOADS; i++ ) {
+      String json = REFERENCE.writeValueAsString( randomQuery() );
+      if ( assertSameOutcome( json ) ) {
+        accepted++;
+      }
+    }
+    // the generator mostly produces valid payloads; make sure both paths were really exercised
+    assertTrue( accepted > PAYLOADS / 4 );
+    assertTrue( accepted < PAYLOADS );
+  }
+
+  @Test
+  public void matchesDataBindingOnBrowserPayload() throws Exception {
+    String json = "{\"sourceId\":\"model1\","
+      + "\"elements\":[{\"class\":\"org.pentaho.metadata.model.thin.Element\",\"id\":\"el1\",\"parentId\":\"cat1\","
+      + "\"defaultAggType\":\"SUM\",\"availableAggregations\":[\"SUM\",\"COUNT\"],\"hiddenForUser\":false}],"
+      + "\"conditions\":[{\"elementId\":\"el1\",\"parentId\":\"cat1\",\"operator\":\"EQUAL\",\"value\":[\"x\",null],"
+      + "\"class\":\"org.pentaho.common.ui.metadata.model.impl.Condition\",\"parameterized\":true}],"
+      + "\"defaultParameterMap\":{\"p1\":\"x\"},\"disableDistinct\":true,"
+      + "\"class\":\"org.pentaho.metadata.model.thin.Query\"}";
+    assertTrue( assertSameOutcome( json ) );
+  }
+
+  @Test
+  public void rejectsTypeIdsInAnyPosition() throws Exception {
+    assertRejectedTypeId( "{\"sourceId\":\"m\",\"class\":\"java.lang.Runtime\"}" );
+    assertRejectedTypeId( "{\"orders\":[{\"elementId\":\"e\",\"class\":\"org.pentaho.metadata.model.thin.Element\"}]}" );
+    assertRejectedTypeId( "{\"parameters\":[{\"class\":\"org.pentaho.common.ui.metadata.model.impl.Condition\"}]}" );
+  }
+
+  private void assertRejectedTypeId( String json ) throws Exception {
+    try {
+      STREAMING.readValue( json, Query.class );
+      fail( json );
+    } catch ( InvalidTypeIdException e ) {
+      assertNotNull( e.getMessage() );
+    }
+    assertSameOutcome( json );
+  }
+
+  /**
+   * @return true if the payload was accepted
+   */
+  private static boolean assertSameOutcome( String json ) throws Exception {
+    String expected;
+    Exception expectedError = null;
+    try {
+      expected = CANONICAL.writeValueAsString( REFERENCE.readValue( json, Query.class ) );
+    } catch ( Exception e ) {
+      expected = null;
+      expectedError = e;
+    }
+    String actual;
+    try {
+      actual = CANONICAL.writeValueAsString( STREAMING.readValue( json, Query.class ) );
+    } catch ( Exception e ) {
+      if ( expectedError == null ) {
+        throw new AssertionError( "Rejected " + json, e );
+      }
+      // a payload with several faults may be reported with a different one, as the type ids are no longer read ahead
+      return false;
+    }
+    if ( expectedError != null ) {
+      throw new AssertionError( "Accepted " + json, expectedError );
+    }
+    assertEquals( json, expected, actual );
+    return true;
+  }
+
+  private ObjectNode randomQuery() {
+    ObjectNode query = NODES.objectNode();
+    List<Runnable> properties = new ArrayList<Runnable>();
+    properties.add( () -> putType( query, ThinQueryDeserializers.QUERY_TYPE ) );
+    properties.add( () -> query.set( "sourceId", randomText() ) );
+    properties.add( () -> query.set( "elements", randomArray( this::randomElement ) ) );
+    properties.add( () -> query.set( "conditions", randomArray( this::randomCondition ) ) );
+    properties.add( () -> query.set( "orders", randomArray( this::randomOrder ) ) );
+    properties.add( () -> query.set( "parameters", randomArray( this::randomParameter ) ) );
+    properties.add( () -> query.set( "disableDistinct", randomBoolean() ) );
+    properties.add( () -> {
+      ObjectNode map = NODES.objectNode();
+      for ( int i = random.nextInt( 3 ); i > 0; i-- ) {
+        map.set( "p" + i, randomText() );
+      }
+      query.set( "defaultParameterMap", rarely() ? NODES.nullNode() : map );
+    } );
+    fill( query, properties );
+    return query;
+  }
+
+  private JsonNode randomElement() {
+    ObjectNode element = NODES.objectNode();
+    List<Runnable> properties = new ArrayList<Runnable>();
+    properties.add( () -> putType( element, ThinQueryDeserializers.ELEMENT_TYPE ) );
+    for ( String name : new String[] { "id", "parentId", "name", "description", "elementType", "dataType",
+      "horizontalAlignment", "formatMask", "selectedAggregation" } ) {
+      properties.add( () -> element.set( name, randomText() ) );
+    }
+    properties.add( () -> element.set( random.nextBoolean() ? "defaultAggregation" : "defaultAggType",
+        randomText() ) );
+    properties.add( () -> element.set( "availableAggregations", randomStrings() ) );
+    properties.add( () -> element.set( "hiddenForUser", randomBoolean() ) );
+    fill( element, properties );
+    return element;
+  }
+
+  private JsonNode randomCondition() {
+    ObjectNode condition = NODES.objectNode();
+    List<Runnable> properties = new ArrayList<Runnable>();
+    properties.add( () -> putType( condition, random.nextBoolean() ? ThinQueryDeserializers.CONDITION_TYPE
+        : ThinQueryDeserializers.LEGACY_CONDITION_TYPE ) );
+    for ( String name : new String[] { "elementId", "parentId", "operator", "combinationType" } ) {
+      properties.add( () -> condition.set( name, randomText() ) );
+    }
+    properties.add( () -> condition.set( random.nextBoolean() ? "selectedAggregation" : "selectedAggType",
+        randomText() ) );
+    properties.add( () -> condition.set( "value", randomStrings() ) );
+    properties.add( () -> condition.set( "parameterized", randomBoolean() ) );
+    fill( condition, properties );
+    return condition;
+  }
+
+  private JsonNode randomOrder() {
+    ObjectNode order = NODES.objectNode();
+    List<Runnable> properties = new ArrayList<Runnable>();
+    properties.add( () -> putType( order, ThinQueryDeserializers.ORDER_TYPE ) );
+    for ( String name : new String[] { "elementId", "parentId", "orderType" } ) {
+      properties.add( () -> order.set( name, randomText() ) );
+    }
+    fill( order, properties );
+    return order;
+  }
+
+  private JsonNode randomParameter() {
+    ObjectNode parameter = NODES.objectNode();
+    List<Runnable> properties = new ArrayList<Runnable>();
+    properties.add( () -> putType( parameter, random.nextBoolean() ? ThinQueryDeserializers.PARAMETER_TYPE
+        : ThinQueryDeserializers.LEGACY_PARAMETER_TYPE ) );
+    for ( String name : new String[] { "elementId", "name", "type" } ) {
+      properties.add( () -> parameter.set( name, randomText() ) );
+    }
+    properties.add( () -> parameter.set( "value", randomStrings() ) );
+    properties.add( () -> parameter.set( "defaultValue", randomStrings() ) );
+    fill( parameter, properties );
+    return parameter;
+  }
+
+  /**
+   * Sets a random subset of the properties in random order, sometimes with an unknown property in between
+   */
+  private void fill( ObjectNode node, List<Runnable> properties ) {
+    Collections.shuffle( properties, random );
+    for ( Runnable property : properties ) {
+      if ( random.nextInt( 4 ) > 0 ) {
+        property.run();
+      }
+      if ( rarely() ) {
+        node.put( "unknown" + random.nextInt( 3 ), "x" );
+      }
+    }
+  }
+
+  private void putType( ObjectNode node, String type ) {
+    if ( !rarely() ) {
+      node.put( "class", type );
+      return;
+    }
+    switch ( random.nextInt( 4 ) ) {
+      case 0:
+        node.put( "class", UNRELATED_TYPES[ random.nextInt( UNRELATED_TYPES.length ) ] );
+        break;
+      case 1:
+        node.put( "class", ThinQueryDeserializers.ELEMENT_TYPE );
+        break;
+      case 2:
+        node.set( "class", NODES.nullNode() );
+        break;
+      default:
+        node.set( "class", oddValue() );
+        break;
+    }
+  }
+
+  private JsonNode randomArray( Supplier<JsonNode> items ) {
+    if ( rarely() ) {
+      return random.nextBoolean() ? NODES.nullNode() : oddValue();
+    }
+    ArrayNode array = NODES.arrayNode();
+    for ( int i = random.nextInt( 4 ); i > 0; i-- ) {
+      array.add( rarely() ? NODES.nullNode() : items.get() );
+    }
+    return array;
+  }
+
+  private JsonNode randomStrings() {
+    if ( rarely() ) {
+      return random.nextBoolean() ? NODES.nullNode() : oddValue();
+    }
+    ArrayNode array = NODES.arrayNode();
+    for ( int i = random.nextInt( 4 ); i > 0; i-- ) {
+      array.add( randomText() );
+    }
+    return array;
+  }
+
+  private JsonNode randomText() {
+    if ( rarely() ) {
+      return random.nextBoolean() ? NODES.nullNode() : oddValue();
+    }
+    StringBuilder text = new StringBuilder();
+    for ( int i = random.nextInt( 8 ); i > 0; i-- ) {
+      text.append( (char) ( random.nextBoolean() ? 'a' + random.nextInt( 26 ) : 0x20 + random.nextInt( 0x2000 ) ) );
+    }
+    return NODES.textNode( text.toString() );
+  }
+
+  private JsonNode randomBoolean() {
+    return rarely() ? oddValue() : NODES.booleanNode( random.nextBoolean() );
+  }
+
+  private JsonNode oddValue() {
+    switch ( random.nextInt( 6 ) ) {
+      case 0:
+        return NODES.numberNode( random.nextInt( 100 ) );
+      case 1:
+        return NODES.numberNode( random.nextDouble() );
+      case 2:
+        return NODES.booleanNode( random.nextBoolean() );
+      case 3:
+        return NODES.textNode( random.nextBoolean() ? "true" : "" );
+      case 4:
+        return NODES.arrayNode().add( "a" ).add( 1 );
+      default:
+        return NODES.objectNode().put( "a", 1 );
+    }
+  }
+
+  private boolean rarely() {
+    return random.nextInt( 100 ) == 0;
+  }
+
+}